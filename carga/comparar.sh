@@ -0,0 +1,72 @@
+#!/usr/bin/env bash
+# =====================================================================
+# Compara hilos de plataforma vs hilos virtuales con la misma carga.
+# Arranca la aplicación en cada modo, corre carga/escenario.js y muestra
+# throughput, p99 y errores por escenario. Ver carga/README.md.
+# =====================================================================
+set -euo pipefail
+
+RAIZ="$(cd "$(dirname "$0")/.." && pwd)"
+JAR="${JAR:-$(ls "$RAIZ"/target/sumajflow-*.jar 2>/dev/null | grep -v plain | head -n 1 || true)}"
+PUERTO="${SERVER_PORT:-8080}"
+BASE_URL="http://localhost:$PUERTO"
+USUARIOS="${USUARIOS:-$RAIZ/carga/usuarios.json}"
+RESULTADOS="$RAIZ/carga/resultados"
+CALENTAMIENTO_S="${CALENTAMIENTO_S:-20}"
+
+command -v k6 >/dev/null || { echo "Falta k6 (https://k6.io/docs/get-started/installation/)"; exit 1; }
+command -v jq >/dev/null || { echo "Falta jq"; exit 1; }
+[ -f "$USUARIOS" ] || { echo "Falta $USUARIOS (copiar carga/usuarios.ejemplo.json)"; exit 1; }
+
+if [ -z "$JAR" ]; then
+    (cd "$RAIZ" && ./mvnw -q -B -DskipTests package)
+    JAR="$(ls "$RAIZ"/target/sumajflow-*.jar | grep -v plain | head -n 1)"
+fi
+
+mkdir -p "$RESULTADOS"
+
+correr_modo() {
+    local modo="$1" virtual="$2"
+    echo "==> Modo $modo (HILOS_VIRTUALES=$virtual)"
+
+    HILOS_VIRTUALES="$virtual" SERVER_PORT="$PUERTO" \
+        java -jar "$JAR" > "$RESULTADOS/$modo.log" 2>&1 &
+    local pid=$!
+    trap "kill $pid 2>/dev/null || true" EXIT
+
+    until curl -sf "$BASE_URL/auth/health" >/dev/null; do
+        kill -0 "$pid" 2>/dev/null || { echo "La aplicación no arrancó, ver $RESULTADOS/$modo.log"; exit 1; }
+        sleep 2
+    done
+
+    # Calentamiento (JIT, pools, cachés) fuera de la medición
+    k6 run -q -e BASE_URL="$BASE_URL" -e USUARIOS="$USUARIOS" -e DURACION="${CALENTAMIENTO_S}s" \
+        "$RAIZ/carga/escenario.js" >/dev/null || true
+    k6 run -e BASE_URL="$BASE_URL" -e USUARIOS="$USUARIOS" \
+        --summary-export "$RESULTADOS/$modo.json" "$RAIZ/carga/escenario.js" | tee "$RESULTADOS/$modo.txt"
+
+    kill "$pid"
+    wait "$pid" 2>/dev/null || true
+    trap - EXIT
+}
+
+correr_modo plataforma false
+correr_modo virtual true
+
+metrica() {
+    jq -r --arg m "$2" --arg c "$3" '.metrics[$m][$c] // 0' "$RESULTADOS/$1.json"
+}
+
+echo
+printf "%-12s %-11s %12s %12s %12s %10s\n" "escenario" "modo" "req/s" "p99 (ms)" "p95 (ms)" "errores"
+for escenario in gps dashboards; do
+    for modo in plataforma virtual; do
+        printf "%-12s %-11s %12.1f %12.1f %12.1f %9.2f%%\n" "$escenario" "$modo" \
+            "$(metrica "$modo" "http_reqs{escenario:$escenario}" rate)" \
+            "$(metrica "$modo" "http_req_duration{escenario:$escenario}" 'p(99)')" \
+            "$(metrica "$modo" "http_req_duration{escenario:$escenario}" 'p(95)')" \
+            "$(echo "$(metrica "$modo" "http_req_failed{escenario:$escenario}" value) * 100" | bc -l)"
+    done
+done
+echo
+echo "503 por límite de concurrencia: plataforma=$(metrica plataforma rechazadas_503 count) virtual=$(metrica virtual rechazadas_503 count)"
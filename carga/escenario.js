@@ -0,0 +1,126 @@
+// =====================================================================
+// Prueba de carga: transportistas enviando GPS + dashboards consultando
+// =====================================================================
+// Uso (ver carga/README.md):
+//   k6 run -e BASE_URL=http://localhost:8080 -e USUARIOS=./usuarios.json \
+//          --summary-export resultados/virtual.json carga/escenario.js
+//
+// Escenarios (tasa de llegada constante, así los dos modos reciben la misma carga):
+//   gps         cada transportista envía un ping cada GPS_INTERVALO_S segundos
+//   dashboards  cada socio/cooperativa consulta su dashboard cada DASHBOARD_INTERVALO_S segundos
+// =====================================================================
+
+import http from 'k6/http';
+import { check } from 'k6';
+import { SharedArray } from 'k6/data';
+import { Counter } from 'k6/metrics';
+import exec from 'k6/execution';
+
+const BASE_URL = __ENV.BASE_URL || 'http://localhost:8080';
+const DURACION = __ENV.DURACION || '3m';
+const TRANSPORTISTAS = parseInt(__ENV.TRANSPORTISTAS || '500');
+const GPS_INTERVALO_S = parseInt(__ENV.GPS_INTERVALO_S || '5');
+const DASHBOARDS = parseInt(__ENV.DASHBOARDS || '100');
+const DASHBOARD_INTERVALO_S = parseInt(__ENV.DASHBOARD_INTERVALO_S || '10');
+
+const usuarios = new SharedArray('usuarios', () => [JSON.parse(open(__ENV.USUARIOS || './usuarios.json'))]);
+
+const rechazadas503 = new Counter('rechazadas_503');
+
+export const options = {
+    scenarios: {
+        gps: {
+            executor: 'constant-arrival-rate',
+            exec: 'enviarUbicacion',
+            rate: TRANSPORTISTAS,
+            timeUnit: `${GPS_INTERVALO_S}s`,
+            duration: DURACION,
+            preAllocatedVUs: Math.ceil(TRANSPORTISTAS / GPS_INTERVALO_S) * 2,
+            maxVUs: TRANSPORTISTAS * 2,
+            tags: { escenario: 'gps' },
+        },
+        dashboards: {
+            executor: 'constant-arrival-rate',
+            exec: 'consultarDashboard',
+            rate: DASHBOARDS,
+            timeUnit: `${DASHBOARD_INTERVALO_S}s`,
+            duration: DURACION,
+            preAllocatedVUs: Math.ceil(DASHBOARDS / DASHBOARD_INTERVALO_S) * 4,
+            maxVUs: DASHBOARDS * 2,
+            tags: { escenario: 'dashboards' },
+        },
+    },
+    summaryTrendStats: ['avg', 'med', 'p(95)', 'p(99)', 'max'],
+    thresholds: {
+        // Sin umbral de corte: solo para que el resumen muestre p99 y errores por escenario
+        'http_req_duration{escenario:gps}': ['p(99)>=0'],
+        'http_req_duration{escenario:dashboards}': ['p(99)>=0'],
+        'http_req_failed{escenario:gps}': ['rate>=0'],
+        'http_req_failed{escenario:dashboards}': ['rate>=0'],
+        'http_reqs{escenario:gps}': ['count>=0'],
+        'http_reqs{escenario:dashboards}': ['count>=0'],
+    },
+};
+
+// Un login por usuario al inicio; los tokens se comparten entre VUs
+export function setup() {
+    const datos = usuarios[0];
+
+    const login = (u) => {
+        const res = http.post(`${BASE_URL}/auth/login`,
+            JSON.stringify({ email: u.email, password: u.password }),
+            { headers: { 'Content-Type': 'application/json' }, tags: { escenario: 'setup' } });
+        if (res.status !== 200) {
+            throw new Error(`Login fallido para ${u.email}: ${res.status} ${res.body}`);
+        }
+        return res.json('token');
+    };
+
+    return {
+        transportistas: datos.transportistas.map((t) => ({ token: login(t), asignaciones: t.asignaciones })),
+        dashboards: datos.dashboards.map((d) => ({ token: login(d), ruta: d.ruta })),
+        origen: datos.origen || { lat: -19.5836, lng: -65.7531 },
+    };
+}
+
+export function enviarUbicacion(datos) {
+    const n = exec.scenario.iterationInTest;
+    const t = datos.transportistas[n % datos.transportistas.length];
+    const asignacionId = t.asignaciones[Math.floor(n / datos.transportistas.length) % t.asignaciones.length];
+
+    // Recorrido simulado alrededor del origen, ~50 m entre pings del mismo camión
+    const paso = Math.floor(n / datos.transportistas.length) * 0.01 + n % datos.transportistas.length;
+    const body = {
+        asignacionCamionId: asignacionId,
+        lat: datos.origen.lat + Math.sin(paso) * 0.05,
+        lng: datos.origen.lng + Math.cos(paso) * 0.05,
+        precision: 8 + Math.random() * 5,
+        velocidad: 30 + Math.random() * 30,
+        rumbo: (paso * 57.3) % 360,
+        altitud: 3900,
+        timestampCaptura: new Date().toISOString().slice(0, 19),
+        esOffline: false,
+    };
+
+    const res = http.post(`${BASE_URL}/tracking/ubicacion`, JSON.stringify(body), {
+        headers: { 'Content-Type': 'application/json', Authorization: `Bearer ${t.token}` },
+        tags: { escenario: 'gps' },
+    });
+    registrar(res);
+}
+
+export function consultarDashboard(datos) {
+    const d = datos.dashboards[exec.scenario.iterationInTest % datos.dashboards.length];
+    const res = http.get(`${BASE_URL}${d.ruta}`, {
+        headers: { Authorization: `Bearer ${d.token}` },
+        tags: { escenario: 'dashboards' },
+    });
+    registrar(res);
+}
+
+function registrar(res) {
+    if (res.status === 503) {
+        rechazadas503.add(1);
+    }
+    check(res, { 'status 200': (r) => r.status === 200 });
+}
@@ -0,0 +1,89 @@
+package ucb.edu.bo.sumajflow.bl;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import ucb.edu.bo.sumajflow.entity.Persona;
+import ucb.edu.bo.sumajflow.entity.Usuarios;
+import ucb.edu.bo.sumajflow.repository.PersonaRepository;
+
+import java.util.*;
+import java.util.stream.Collectors;
+
+/**
+ * Carga por lotes de Persona a partir de usuarios, para los conversores a DTO.
+ * Quien arma una página llama a {@link #precargar} con los usuarios de todas sus filas
+ * (una sola consulta IN) y cada conversor usa {@link #obtener}, que lee de lo ya cargado.
+ * Lo cargado vive mientras dure la transacción actual; fuera de una transacción
+ * cada {@link #obtener} consulta por separado.
+ */
+@Component
+@RequiredArgsConstructor
+public class CargadorPersonas {
+
+    private final PersonaRepository personaRepository;
+
+    /**
+     * Cargar en una consulta las personas de los usuarios que aún no se conocen
+     */
+    public void precargar(Collection<Usuarios> usuarios) {
+        Map<Integer, Optional<Persona>> cargadas = cargadasEnTransaccion();
+        if (cargadas == null) {
+            return;
+        }
+
+        Set<Integer> faltantes = usuarios.stream()
+                .filter(Objects::nonNull)
+                .map(Usuarios::getId)
+                .filter(id -> !cargadas.containsKey(id))
+                .collect(Collectors.toSet());
+        if (faltantes.isEmpty()) {
+            return;
+        }
+
+        Map<Integer, Persona> encontradas = personaRepository.findByUsuarioIds(faltantes).stream()
+                .collect(Collectors.toMap(p -> p.getUsuariosId().getId(), p -> p, (a, b) -> a));
+        // Los usuarios sin persona también se recuerdan, para no volver a consultarlos
+        faltantes.forEach(id -> cargadas.put(id, Optional.ofNullable(encontradas.get(id))));
+    }
+
+    public Optional<Persona> obtener(Usuarios usuario) {
+        if (usuario == null) {
+            return Optional.empty();
+        }
+
+        Map<Integer, Optional<Persona>> cargadas = cargadasEnTransaccion();
+        if (cargadas == null) {
+            return personaRepository.findByUsuariosId(usuario);
+        }
+        return cargadas.computeIfAbsent(usuario.getId(), id -> personaRepository.findByUsuariosId(usuario));
+    }
+
+    // ==================== MÉTODOS PRIVADOS ====================
+
+    /**
+     * Personas ya cargadas en la transacción actual; null si no hay transacción
+     */
+    @SuppressWarnings("unchecked")
+    private Map<Integer, Optional<Persona>> cargadasEnTransaccion() {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            return null;
+        }
+
+        Map<Integer, Optional<Persona>> cargadas =
+                (Map<Integer, Optional<Persona>>) TransactionSynchronizationManager.getResource(this);
+        if (cargadas == null) {
+            Map<Integer, Optional<Persona>> nuevas = new HashMap<>();
+            TransactionSynchronizationManager.bindResource(this, nuevas);
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    TransactionSynchronizationManager.unbindResourceIfPossible(CargadorPersonas.this);
+                }
+            });
+            cargadas = nuevas;
+        }
+        return cargadas;
+    }
+}
@@ -13,6 +13,7 @@ import org.springframework.data.domain.Sort;
 import org.springframework.messaging.simp.SimpMessagingTemplate;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import ucb.edu.bo.sumajflow.bl.dashboard.DashboardCache;
 import ucb.edu.bo.sumajflow.bl.ingenio.LiquidacionTollIngenioBl;
 import ucb.edu.bo.sumajflow.dto.ingenio.*;
 import ucb.edu.bo.sumajflow.dto.socio.MineralInfoDto;
@@ -40,15 +41,17 @@ public class ConcentradoBl {
 
     // Repositorios
     protected final ConcentradoRepository concentradoRepository;
-    protected final PersonaRepository personaRepository;
+    protected final CargadorPersonas cargadorPersonas;
     protected final LoteMineralesRepository loteMineralesRepository;
     protected final LoteProcesoPlantaRepository loteProcesoPlantaRepository;
     protected final ObjectMapper objectMapper;
     protected final SimpMessagingTemplate messagingTemplate;
+    protected final PresenciaWebSocketService presencia;
     private final LiquidacionTollBl liquidacionTollBl;
 
     private final LiquidacionConcentradoRepository liquidacionConcentradoRepository;
     private final LiquidacionVentaBl liquidacionVentaBl;
+    private final DashboardCache dashboardCache;
 
     // ==================== LISTAR CONCENTRADOS (GENÉRICO) ====================
 
@@ -79,7 +82,14 @@ public class ConcentradoBl {
         int start = (int) pageable.getOffset();
         int end = Math.min((start + pageable.getPageSize()), concentradosFiltrados.size());
 
-        List<ConcentradoResponseDto> paginaActual = concentradosFiltrados.subList(start, end).stream()
+        List<Concentrado> concentradosPagina = concentradosFiltrados.subList(start, end);
+        cargadorPersonas.precargar(concentradosPagina.stream()
+                .map(Concentrado::getSocioPropietarioId)
+                .filter(Objects::nonNull)
+                .map(Socio::getUsuariosId)
+                .toList());
+
+        List<ConcentradoResponseDto> paginaActual = concentradosPagina.stream()
                 .map(this::convertirAResponseDto)
                 .collect(Collectors.toList());
 
@@ -145,7 +155,7 @@ public class ConcentradoBl {
         Socio socio = concentrado.getSocioPropietarioId();
         if (socio != null) {
             dto.setSocioId(socio.getId());
-            Persona persona = personaRepository.findByUsuariosId(socio.getUsuariosId()).orElse(null);
+            Persona persona = cargadorPersonas.obtener(socio.getUsuariosId()).orElse(null);
             if (persona != null) {
                 dto.setSocioNombres(persona.getNombres());
                 dto.setSocioApellidos(persona.getPrimerApellido() +
@@ -309,7 +319,7 @@ public class ConcentradoBl {
         Socio socio = concentrado.getSocioPropietarioId();
         if (socio != null) {
             dto.setSocioId(socio.getId());
-            Persona persona = personaRepository.findByUsuariosId(socio.getUsuariosId()).orElse(null);
+            Persona persona = cargadorPersonas.obtener(socio.getUsuariosId()).orElse(null);
             if (persona != null) {
                 dto.setSocioNombres(persona.getNombres());
                 dto.setSocioApellidos(persona.getPrimerApellido() +
@@ -428,15 +438,23 @@ public class ConcentradoBl {
             payloadLigero.put("estado", concentrado.getEstado());
             payloadLigero.put("timestamp", now.toString());
             Integer socioUsuarioId = concentrado.getSocioPropietarioId().getUsuariosId().getId();
-            messagingTemplate.convertAndSendToUser(
-                    socioUsuarioId.toString(),
-                    "/queue/concentrados",
-                    payloadLigero
-            );
+            if (presencia.hayAudienciaUsuario(socioUsuarioId.toString(), "/queue/concentrados")) {
+                messagingTemplate.convertAndSendToUser(
+                        socioUsuarioId.toString(),
+                        "/queue/concentrados",
+                        payloadLigero
+                );
+                log.debug("📤 WebSocket ligero enviado a socio {} (cola personal): {}", socioUsuarioId, evento);
+            }
 
-            log.debug("📤 WebSocket ligero enviado a socio {} (cola personal): {}", socioUsuarioId, evento);
+            invalidarDashboards(concentrado);
 
             // ========== PAYLOAD COMPLETO PARA DETALLE ==========
+            // Topic público del concentrado específico; el DTO solo se arma si alguien lo tiene abierto
+            String topicDetalle = "/topic/concentrado/" + concentrado.getId() + "/updates";
+            if (!presencia.hayAudiencia(topicDetalle)) {
+                return;
+            }
             ConcentradoResponseDto dtoCompleto = convertirAResponseDto(concentrado);
 
             Map<String, Object> payloadCompleto = new HashMap<>();
@@ -444,8 +462,6 @@ public class ConcentradoBl {
             payloadCompleto.put("timestamp", now.toString());
             payloadCompleto.put("concentrado", dtoCompleto);
 
-            // Topic público del concentrado específico
-            String topicDetalle = "/topic/concentrado/" + concentrado.getId() + "/updates";
             messagingTemplate.convertAndSend(topicDetalle, payloadCompleto);
 
             log.debug("✅ WebSocket completo enviado - Evento: {}, Concentrado ID: {}", evento, concentrado.getId());
@@ -464,13 +480,13 @@ public class ConcentradoBl {
             payload.put("estado", evento);
             payload.put("timestamp", now.toString());
 
-            messagingTemplate.convertAndSendToUser(
-                    concentrado.getIngenioMineroId().getUsuariosId().getId().toString(),
-                    "/queue/concentrados",
-                    payload
-            );
+            String ingenioUsuarioId = concentrado.getIngenioMineroId().getUsuariosId().getId().toString();
+            if (presencia.hayAudienciaUsuario(ingenioUsuarioId, "/queue/concentrados")) {
+                messagingTemplate.convertAndSendToUser(ingenioUsuarioId, "/queue/concentrados", payload);
+                log.debug("📤 WebSocket enviado a ingenio {}: {}", concentrado.getIngenioMineroId().getRazonSocial(), evento);
+            }
 
-            log.debug("📤 WebSocket enviado a ingenio {}: {}", concentrado.getIngenioMineroId().getRazonSocial(), evento);
+            invalidarDashboards(concentrado);
 
         } catch (Exception e) {
             log.error("❌ Error al publicar evento WebSocket para ingenio ID: {}",
@@ -480,6 +496,11 @@ public class ConcentradoBl {
 
     public void publicarActualizacionKanban(Concentrado concentrado) {
         try {
+            String topicDetalle = "/topic/concentrado/" + concentrado.getId() + "/updates";
+            if (!presencia.hayAudiencia(topicDetalle)) {
+                return;
+            }
+
             // Construir DTO completo de procesos
             ProcesosConcentradoResponseDto procesosDto = construirProcesosResponseDto(concentrado);
 
@@ -490,7 +511,6 @@ public class ConcentradoBl {
             payload.put("procesos", procesosDto);
 
             // Enviar al topic del concentrado
-            String topicDetalle = "/topic/concentrado/" + concentrado.getId() + "/updates";
             messagingTemplate.convertAndSend(topicDetalle, payload);
 
             log.debug("✅ Kanban WebSocket enviado - Concentrado ID: {}", concentrado.getId());
@@ -501,6 +521,17 @@ public class ConcentradoBl {
         }
     }
 
+    /**
+     * Invalidar los dashboards del socio propietario y del ingenio
+     */
+    private void invalidarDashboards(Concentrado concentrado) {
+        IngenioMinero ingenio = concentrado.getIngenioMineroId();
+        dashboardCache.invalidar(
+                concentrado.getSocioPropietarioId().getUsuariosId().getId(),
+                ingenio != null ? ingenio.getUsuariosId().getId() : null
+        );
+    }
+
 
     // ==================== CONSTRUCCIÓN DE PROCESOS DTO ====================
 
@@ -4,10 +4,7 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.data.domain.Page;
-import org.springframework.data.domain.PageImpl;
-import org.springframework.data.domain.PageRequest;
-import org.springframework.data.domain.Pageable;
-import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import ucb.edu.bo.sumajflow.dto.ingenio.LiquidacionTollResponseDto;
@@ -31,7 +28,7 @@ public class LiquidacionTollBl {
 
     private final LiquidacionRepository liquidacionRepository;
     private final LiquidacionLoteRepository liquidacionLoteRepository;
-    private final PersonaRepository personaRepository;
+    private final CargadorPersonas cargadorPersonas;
     private final LotesRepository lotesRepository;
     private final ObjectMapper objectMapper;
 
@@ -50,35 +47,32 @@ public class LiquidacionTollBl {
 
     /**
      * Listar liquidaciones con filtros y paginación - METODO GENERAL
+     * Filtros, orden y página se resuelven en la base de datos; con cursorFecha/cursorId
+     * (createdAt e id de la última fila recibida) se usa keyset en lugar de OFFSET.
      */
     @Transactional(readOnly = true)
     public Page<LiquidacionTollResponseDto> listarLiquidaciones(
-            List<Liquidacion> liquidacionesBase,
+            Specification<Liquidacion> base,
             String estado,
             LocalDateTime fechaDesde,
             LocalDateTime fechaHasta,
             int page,
-            int size
+            int size,
+            boolean incluirTotal,
+            LocalDateTime cursorFecha,
+            Integer cursorId
     ) {
-        log.debug("Aplicando filtros a {} liquidaciones", liquidacionesBase.size());
-
-        // Aplicar filtros
-        List<Liquidacion> liquidacionesFiltradas = liquidacionesBase.stream()
-                .filter(l -> aplicarFiltros(l, estado, fechaDesde, fechaHasta))
-                .toList();
-
-        // Paginar
-        Pageable pageable = PageRequest.of(page, size, Sort.by("createdAt").descending());
-        int start = (int) pageable.getOffset();
-        int end = Math.min((start + pageable.getPageSize()), liquidacionesFiltradas.size());
-
-        List<LiquidacionTollResponseDto> liquidacionesDto = liquidacionesFiltradas
-                .subList(start, end)
-                .stream()
-                .map(this::convertirADto)
-                .collect(Collectors.toList());
+        Specification<Liquidacion> spec = base
+                .and(LiquidacionSpecifications.conEstado(estado))
+                .and(LiquidacionSpecifications.creadaDesde(fechaDesde))
+                .and(LiquidacionSpecifications.creadaHasta(fechaHasta));
+
+        Page<Liquidacion> pagina = cursorFecha != null && cursorId != null
+                ? liquidacionRepository.buscarDespuesDe(spec, cursorFecha, cursorId, size)
+                : liquidacionRepository.buscarPagina(spec, page, size, incluirTotal);
 
-        return new PageImpl<>(liquidacionesDto, pageable, liquidacionesFiltradas.size());
+        cargadorPersonas.precargar(pagina.map(l -> l.getSocioId().getUsuariosId()).getContent());
+        return pagina.map(this::convertirADto);
     }
 
     // ==================== BÚSQUEDA ====================
@@ -137,7 +131,7 @@ public class LiquidacionTollBl {
      */
     public LiquidacionTollResponseDto convertirADto(Liquidacion liquidacion) {
         Socio socio = liquidacion.getSocioId();
-        Persona persona = personaRepository.findByUsuariosId(socio.getUsuariosId()).orElse(null);
+        Persona persona = cargadorPersonas.obtener(socio.getUsuariosId()).orElse(null);
 
         List<LoteSimpleDto> lotesDto = liquidacion.getLiquidacionLoteList().stream()
                 .map(ll -> LoteSimpleDto.builder()
@@ -201,21 +195,4 @@ public class LiquidacionTollBl {
                 .updatedAt(liquidacion.getUpdatedAt())
                 .build();
     }
-
-    // ==================== MÉTODOS AUXILIARES PRIVADOS ====================
-
-    private boolean aplicarFiltros(
-            Liquidacion l,
-            String estado,
-            LocalDateTime fechaDesde,
-            LocalDateTime fechaHasta
-    ) {
-        if (estado != null && !estado.isEmpty() && !estado.equals(l.getEstado())) {
-            return false;
-        }
-        if (fechaDesde != null && l.getCreatedAt().isBefore(fechaDesde)) {
-            return false;
-        }
-        return fechaHasta == null || !l.getCreatedAt().isAfter(fechaHasta);
-    }
-}
\ No newline at end of file
+}
@@ -5,11 +5,9 @@ import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.hibernate.Hibernate;
 import org.springframework.data.domain.Page;
-import org.springframework.data.domain.PageImpl;
-import org.springframework.data.domain.PageRequest;
-import org.springframework.data.domain.Pageable;
-import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import ucb.edu.bo.sumajflow.dto.ingenio.LoteSimpleDto;
@@ -46,7 +44,7 @@ public class LiquidacionVentaBl {
     private final LiquidacionRepository liquidacionRepository;
     private final LiquidacionConcentradoRepository liquidacionConcentradoRepository;
     private final LiquidacionLoteRepository liquidacionLoteRepository;
-    private final PersonaRepository personaRepository;
+    private final CargadorPersonas cargadorPersonas;
     private final ReporteQuimicoRepository reporteQuimicoRepository;
     private final ObjectMapper objectMapper;
 
@@ -65,48 +63,37 @@ public class LiquidacionVentaBl {
 
     // ==================== LISTAR CON FILTROS ====================
 
+    /**
+     * Filtra, ordena y pagina en la base de datos.
+     * Con cursorFecha/cursorId (createdAt e id de la última fila recibida) usa keyset en lugar de OFFSET.
+     */
     @Transactional(readOnly = true)
     public Page<VentaLiquidacionResponseDto> listarLiquidaciones(
-            List<Liquidacion> liquidacionesBase,
+            Specification<Liquidacion> base,
             String estado,
             String tipoLiquidacion,
             LocalDateTime fechaDesde,
             LocalDateTime fechaHasta,
             int page,
-            int size
+            int size,
+            boolean incluirTotal,
+            LocalDateTime cursorFecha,
+            Integer cursorId
     ) {
-        log.debug("Aplicando filtros a {} liquidaciones de venta", liquidacionesBase.size());
-
-        List<Liquidacion> filtradas = liquidacionesBase.stream()
-                .filter(l -> aplicarFiltros(l, estado, tipoLiquidacion, fechaDesde, fechaHasta))
-                .toList();
-
-        Pageable pageable = PageRequest.of(page, size, Sort.by("createdAt").descending());
-        int start = (int) pageable.getOffset();
-        int end = Math.min(start + pageable.getPageSize(), filtradas.size());
-
-        List<VentaLiquidacionResponseDto> dtos = filtradas.subList(start, end).stream()
-                .map(this::convertirADto)
-                .collect(Collectors.toList());
-
-        return new PageImpl<>(dtos, pageable, filtradas.size());
+        Specification<Liquidacion> spec = base
+                .and(LiquidacionSpecifications.conEstado(estado))
+                .and(LiquidacionSpecifications.conTipo(tipoLiquidacion))
+                .and(LiquidacionSpecifications.creadaDesde(fechaDesde))
+                .and(LiquidacionSpecifications.creadaHasta(fechaHasta));
+
+        Page<Liquidacion> pagina = cursorFecha != null && cursorId != null
+                ? liquidacionRepository.buscarDespuesDe(spec, cursorFecha, cursorId, size)
+                : liquidacionRepository.buscarPagina(spec, page, size, incluirTotal);
+
+        cargadorPersonas.precargar(pagina.map(l -> l.getSocioId().getUsuariosId()).getContent());
+        return pagina.map(this::convertirADto);
     }
 
-    private boolean aplicarFiltros(
-            Liquidacion l, String estado, String tipoLiquidacion,
-            LocalDateTime fechaDesde, LocalDateTime fechaHasta
-    ) {
-        if (estado != null && !estado.isEmpty() && !estado.equals(l.getEstado())) {
-            return false;
-        }
-        if (tipoLiquidacion != null && !tipoLiquidacion.isEmpty() && !tipoLiquidacion.equals(l.getTipoLiquidacion())) {
-            return false;
-        }
-        if (fechaDesde != null && l.getCreatedAt().isBefore(fechaDesde)) {
-            return false;
-        }
-        return fechaHasta == null || !l.getCreatedAt().isAfter(fechaHasta);
-    }
     /**
      * Calcular venta con deducciones aplicadas sobre diferentes bases de cálculo
      * @param valorBrutoPrincipal - Valor del mineral principal (Pb o Zn)
@@ -347,7 +334,7 @@ public class LiquidacionVentaBl {
         // Socio
         Socio socio = liquidacion.getSocioId();
         dto.setSocioId(socio.getId());
-        Persona personaSocio = personaRepository.findByUsuariosId(socio.getUsuariosId()).orElse(null);
+        Persona personaSocio = cargadorPersonas.obtener(socio.getUsuariosId()).orElse(null);
         if (personaSocio != null) {
             dto.setSocioNombres(personaSocio.getNombres());
             dto.setSocioApellidos(personaSocio.getPrimerApellido() +
@@ -412,6 +399,8 @@ public class LiquidacionVentaBl {
     public VentaLiquidacionDetalleDto convertirADtoDetallado(Liquidacion liquidacion) {
         log.debug("Convirtiendo liquidación ID: {} a DTO detallado", liquidacion.getId());
 
+        cargarPlanDetalle(liquidacion);
+
         VentaLiquidacionDetalleDto dto = VentaLiquidacionDetalleDto.builder().build();
 
         // ========== INFORMACIÓN BÁSICA ==========
@@ -461,10 +450,36 @@ public class LiquidacionVentaBl {
         return dto;
     }
 
+    /**
+     * Inicializa lo que recorre el detalle con una consulta por colección (partes, items con su
+     * reporte químico, cotizaciones, deducciones) en lugar de una carga perezosa por fila.
+     * Las colecciones ya inicializadas no se vuelven a consultar.
+     */
+    private void cargarPlanDetalle(Liquidacion liquidacion) {
+        Integer id = liquidacion.getId();
+
+        if (!Hibernate.isInitialized(liquidacion.getSocioId())) {
+            liquidacionRepository.cargarPartes(id);
+        }
+        if (TIPO_VENTA_CONCENTRADO.equals(liquidacion.getTipoLiquidacion())) {
+            if (!Hibernate.isInitialized(liquidacion.getLiquidacionConcentradoList())) {
+                liquidacionRepository.cargarConcentrados(id);
+            }
+        } else if (!Hibernate.isInitialized(liquidacion.getLiquidacionLoteList())) {
+            liquidacionRepository.cargarLotes(id);
+        }
+        if (!Hibernate.isInitialized(liquidacion.getCotizacionesList())) {
+            liquidacionRepository.cargarCotizaciones(id);
+        }
+        if (!Hibernate.isInitialized(liquidacion.getDeduccionesList())) {
+            liquidacionRepository.cargarDeducciones(id);
+        }
+    }
+
 // ========== MÉTODOS AUXILIARES DE MAPEO ==========
 
     private VentaLiquidacionDetalleDto.SocioInfoDto mapearSocioInfo(Socio socio) {
-        Persona persona = personaRepository.findByUsuariosId(socio.getUsuariosId()).orElse(null);
+        Persona persona = cargadorPersonas.obtener(socio.getUsuariosId()).orElse(null);
 
         return VentaLiquidacionDetalleDto.SocioInfoDto.builder()
                 .id(socio.getId())
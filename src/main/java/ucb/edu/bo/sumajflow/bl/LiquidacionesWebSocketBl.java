@@ -4,6 +4,7 @@ import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.messaging.simp.SimpMessagingTemplate;
 import org.springframework.stereotype.Service;
+import ucb.edu.bo.sumajflow.bl.dashboard.DashboardCache;
 import ucb.edu.bo.sumajflow.dto.ingenio.LiquidacionTollResponseDto;
 import ucb.edu.bo.sumajflow.dto.venta.VentaLiquidacionResponseDto;
 import ucb.edu.bo.sumajflow.entity.*;
@@ -25,9 +26,11 @@ import java.util.Map;
 public class LiquidacionesWebSocketBl {
 
     private final SimpMessagingTemplate messagingTemplate;
+    private final PresenciaWebSocketService presencia;
     private final LiquidacionTollBl liquidacionTollBl;
     private final LiquidacionVentaBl liquidacionVentaBl;
     private final ConcentradoBl concentradoBl;
+    private final DashboardCache dashboardCache;
 
     // ==================== LIQUIDACIÓN TOLL ====================
 
@@ -59,15 +62,19 @@ public class LiquidacionesWebSocketBl {
                 log.debug("📤 Notificado ingenio (usuario {}): toll_creado", ingenioUsuarioId);
             }
 
-            // Payload completo para detalle
-            LiquidacionTollResponseDto dtoCompleto = liquidacionTollBl.convertirADto(liquidacion);
+            dashboardCache.invalidar(socioUsuarioId, ingenioUsuarioId);
 
-            Map<String, Object> payloadCompleto = new HashMap<>();
-            payloadCompleto.put("evento", "toll_creado");
-            payloadCompleto.put("timestamp", now.toString());
-            payloadCompleto.put("liquidacion", dtoCompleto);
+            // Payload completo para detalle, solo si alguien lo tiene abierto
+            if (presencia.hayAudiencia(destinoDetalle(liquidacion.getId()))) {
+                LiquidacionTollResponseDto dtoCompleto = liquidacionTollBl.convertirADto(liquidacion);
 
-            enviarADetalle(liquidacion.getId(), payloadCompleto);
+                Map<String, Object> payloadCompleto = new HashMap<>();
+                payloadCompleto.put("evento", "toll_creado");
+                payloadCompleto.put("timestamp", now.toString());
+                payloadCompleto.put("liquidacion", dtoCompleto);
+
+                enviarADetalle(liquidacion.getId(), payloadCompleto);
+            }
 
             log.info("✅ WebSocket enviado - toll_creado, ID: {}", liquidacion.getId());
 
@@ -100,14 +107,18 @@ public class LiquidacionesWebSocketBl {
                 enviarAUsuario(ingenioUsuarioId, payloadLigero);
             }
 
-            LiquidacionTollResponseDto dtoCompleto = liquidacionTollBl.convertirADto(liquidacion);
+            dashboardCache.invalidar(socioUsuarioId, ingenioUsuarioId);
 
-            Map<String, Object> payloadCompleto = new HashMap<>();
-            payloadCompleto.put("evento", "toll_pagado");
-            payloadCompleto.put("timestamp", now.toString());
-            payloadCompleto.put("liquidacion", dtoCompleto);
+            if (presencia.hayAudiencia(destinoDetalle(liquidacion.getId()))) {
+                LiquidacionTollResponseDto dtoCompleto = liquidacionTollBl.convertirADto(liquidacion);
 
-            enviarADetalle(liquidacion.getId(), payloadCompleto);
+                Map<String, Object> payloadCompleto = new HashMap<>();
+                payloadCompleto.put("evento", "toll_pagado");
+                payloadCompleto.put("timestamp", now.toString());
+                payloadCompleto.put("liquidacion", dtoCompleto);
+
+                enviarADetalle(liquidacion.getId(), payloadCompleto);
+            }
 
             // Notificar concentrados actualizados
             notificarConcentradosActualizados(liquidacion);
@@ -142,14 +153,18 @@ public class LiquidacionesWebSocketBl {
             Integer comercializadoraUsuarioId = liquidacion.getComercializadoraId().getUsuariosId().getId();
             enviarAUsuario(comercializadoraUsuarioId, payloadLigero);
 
-            VentaLiquidacionResponseDto dtoCompleto = liquidacionVentaBl.convertirADto(liquidacion);
+            dashboardCache.invalidar(socioUsuarioId, comercializadoraUsuarioId);
+
+            if (presencia.hayAudiencia(destinoDetalle(liquidacion.getId()))) {
+                VentaLiquidacionResponseDto dtoCompleto = liquidacionVentaBl.convertirADto(liquidacion);
 
-            Map<String, Object> payloadCompleto = new HashMap<>();
-            payloadCompleto.put("evento", "venta_creada");
-            payloadCompleto.put("timestamp", now.toString());
-            payloadCompleto.put("liquidacion", dtoCompleto);
+                Map<String, Object> payloadCompleto = new HashMap<>();
+                payloadCompleto.put("evento", "venta_creada");
+                payloadCompleto.put("timestamp", now.toString());
+                payloadCompleto.put("liquidacion", dtoCompleto);
 
-            enviarADetalle(liquidacion.getId(), payloadCompleto);
+                enviarADetalle(liquidacion.getId(), payloadCompleto);
+            }
 
             notificarItemsActualizados(liquidacion);
 
@@ -180,14 +195,18 @@ public class LiquidacionesWebSocketBl {
             Integer comercializadoraUsuarioId = liquidacion.getComercializadoraId().getUsuariosId().getId();
             enviarAUsuario(comercializadoraUsuarioId, payloadLigero);
 
-            VentaLiquidacionResponseDto dtoCompleto = liquidacionVentaBl.convertirADto(liquidacion);
+            dashboardCache.invalidar(socioUsuarioId, comercializadoraUsuarioId);
+
+            if (presencia.hayAudiencia(destinoDetalle(liquidacion.getId()))) {
+                VentaLiquidacionResponseDto dtoCompleto = liquidacionVentaBl.convertirADto(liquidacion);
 
-            Map<String, Object> payloadCompleto = new HashMap<>();
-            payloadCompleto.put("evento", "venta_aprobada");
-            payloadCompleto.put("timestamp", now.toString());
-            payloadCompleto.put("liquidacion", dtoCompleto);
+                Map<String, Object> payloadCompleto = new HashMap<>();
+                payloadCompleto.put("evento", "venta_aprobada");
+                payloadCompleto.put("timestamp", now.toString());
+                payloadCompleto.put("liquidacion", dtoCompleto);
 
-            enviarADetalle(liquidacion.getId(), payloadCompleto);
+                enviarADetalle(liquidacion.getId(), payloadCompleto);
+            }
 
             log.info("✅ WebSocket enviado - venta_aprobada, ID: {}", liquidacion.getId());
 
@@ -217,15 +236,19 @@ public class LiquidacionesWebSocketBl {
             Integer comercializadoraUsuarioId = liquidacion.getComercializadoraId().getUsuariosId().getId();
             enviarAUsuario(comercializadoraUsuarioId, payloadLigero);
 
-            VentaLiquidacionResponseDto dtoCompleto = liquidacionVentaBl.convertirADto(liquidacion);
+            dashboardCache.invalidar(socioUsuarioId, comercializadoraUsuarioId);
 
-            Map<String, Object> payloadCompleto = new HashMap<>();
-            payloadCompleto.put("evento", "venta_rechazada");
-            payloadCompleto.put("timestamp", now.toString());
-            payloadCompleto.put("motivoRechazo", motivoRechazo);
-            payloadCompleto.put("liquidacion", dtoCompleto);
+            if (presencia.hayAudiencia(destinoDetalle(liquidacion.getId()))) {
+                VentaLiquidacionResponseDto dtoCompleto = liquidacionVentaBl.convertirADto(liquidacion);
 
-            enviarADetalle(liquidacion.getId(), payloadCompleto);
+                Map<String, Object> payloadCompleto = new HashMap<>();
+                payloadCompleto.put("evento", "venta_rechazada");
+                payloadCompleto.put("timestamp", now.toString());
+                payloadCompleto.put("motivoRechazo", motivoRechazo);
+                payloadCompleto.put("liquidacion", dtoCompleto);
+
+                enviarADetalle(liquidacion.getId(), payloadCompleto);
+            }
 
             notificarItemsActualizados(liquidacion);
 
@@ -257,15 +280,19 @@ public class LiquidacionesWebSocketBl {
             enviarAUsuario(socioUsuarioId, payloadLigero);
             enviarAUsuario(comercializadoraUsuarioId, payloadLigero);
 
-            VentaLiquidacionResponseDto dtoCompleto = liquidacionVentaBl.convertirADto(liquidacion);
+            dashboardCache.invalidar(socioUsuarioId, comercializadoraUsuarioId);
 
-            Map<String, Object> payloadCompleto = new HashMap<>();
-            payloadCompleto.put("evento", "reporte_quimico_subido");
-            payloadCompleto.put("timestamp", now.toString());
-            payloadCompleto.put("tipoReporte", tipoReporte);
-            payloadCompleto.put("liquidacion", dtoCompleto);
+            if (presencia.hayAudiencia(destinoDetalle(liquidacion.getId()))) {
+                VentaLiquidacionResponseDto dtoCompleto = liquidacionVentaBl.convertirADto(liquidacion);
 
-            enviarADetalle(liquidacion.getId(), payloadCompleto);
+                Map<String, Object> payloadCompleto = new HashMap<>();
+                payloadCompleto.put("evento", "reporte_quimico_subido");
+                payloadCompleto.put("timestamp", now.toString());
+                payloadCompleto.put("tipoReporte", tipoReporte);
+                payloadCompleto.put("liquidacion", dtoCompleto);
+
+                enviarADetalle(liquidacion.getId(), payloadCompleto);
+            }
 
             log.info("✅ WebSocket enviado - reporte_quimico_subido ({}), ID: {}", tipoReporte, liquidacion.getId());
 
@@ -296,14 +323,18 @@ public class LiquidacionesWebSocketBl {
             enviarAUsuario(socioUsuarioId, payloadLigero);
             enviarAUsuario(comercializadoraUsuarioId, payloadLigero);
 
-            VentaLiquidacionResponseDto dtoCompleto = liquidacionVentaBl.convertirADto(liquidacion);
+            dashboardCache.invalidar(socioUsuarioId, comercializadoraUsuarioId);
 
-            Map<String, Object> payloadCompleto = new HashMap<>();
-            payloadCompleto.put("evento", "venta_cerrada");
-            payloadCompleto.put("timestamp", now.toString());
-            payloadCompleto.put("liquidacion", dtoCompleto);
+            if (presencia.hayAudiencia(destinoDetalle(liquidacion.getId()))) {
+                VentaLiquidacionResponseDto dtoCompleto = liquidacionVentaBl.convertirADto(liquidacion);
 
-            enviarADetalle(liquidacion.getId(), payloadCompleto);
+                Map<String, Object> payloadCompleto = new HashMap<>();
+                payloadCompleto.put("evento", "venta_cerrada");
+                payloadCompleto.put("timestamp", now.toString());
+                payloadCompleto.put("liquidacion", dtoCompleto);
+
+                enviarADetalle(liquidacion.getId(), payloadCompleto);
+            }
 
             log.info("✅ WebSocket enviado - venta_cerrada, ID: {}", liquidacion.getId());
 
@@ -333,14 +364,18 @@ public class LiquidacionesWebSocketBl {
             enviarAUsuario(socioUsuarioId, payloadLigero);
             enviarAUsuario(comercializadoraUsuarioId, payloadLigero);
 
-            VentaLiquidacionResponseDto dtoCompleto = liquidacionVentaBl.convertirADto(liquidacion);
+            dashboardCache.invalidar(socioUsuarioId, comercializadoraUsuarioId);
 
-            Map<String, Object> payloadCompleto = new HashMap<>();
-            payloadCompleto.put("evento", "venta_pagada");
-            payloadCompleto.put("timestamp", now.toString());
-            payloadCompleto.put("liquidacion", dtoCompleto);
+            if (presencia.hayAudiencia(destinoDetalle(liquidacion.getId()))) {
+                VentaLiquidacionResponseDto dtoCompleto = liquidacionVentaBl.convertirADto(liquidacion);
 
-            enviarADetalle(liquidacion.getId(), payloadCompleto);
+                Map<String, Object> payloadCompleto = new HashMap<>();
+                payloadCompleto.put("evento", "venta_pagada");
+                payloadCompleto.put("timestamp", now.toString());
+                payloadCompleto.put("liquidacion", dtoCompleto);
+
+                enviarADetalle(liquidacion.getId(), payloadCompleto);
+            }
 
             notificarItemsActualizados(liquidacion);
 
@@ -355,12 +390,17 @@ public class LiquidacionesWebSocketBl {
 
     private void enviarAUsuario(Integer usuarioId, Map<String, Object> payload) {
         String destination = "/user/" + usuarioId + "/queue/liquidaciones";
-        messagingTemplate.convertAndSend(destination, payload);
+        if (presencia.hayAudiencia(destination)) {
+            messagingTemplate.convertAndSend(destination, payload);
+        }
     }
 
     private void enviarADetalle(Integer liquidacionId, Map<String, Object> payload) {
-        String destination = "/topic/liquidacion/" + liquidacionId;
-        messagingTemplate.convertAndSend(destination, payload);
+        messagingTemplate.convertAndSend(destinoDetalle(liquidacionId), payload);
+    }
+
+    private String destinoDetalle(Integer liquidacionId) {
+        return "/topic/liquidacion/" + liquidacionId;
     }
 
     private Integer obtenerIngenioUsuarioId(Liquidacion liquidacion) {
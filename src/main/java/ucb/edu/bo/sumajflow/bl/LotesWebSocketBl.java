@@ -4,6 +4,7 @@ import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.messaging.simp.SimpMessagingTemplate;
 import org.springframework.stereotype.Service;
+import ucb.edu.bo.sumajflow.bl.dashboard.DashboardCache;
 import ucb.edu.bo.sumajflow.dto.socio.LoteDetalleDto;
 import ucb.edu.bo.sumajflow.dto.socio.LoteResponseDto;
 import ucb.edu.bo.sumajflow.entity.*;
@@ -27,9 +28,11 @@ import java.util.Map;
 public class LotesWebSocketBl {
 
     private final SimpMessagingTemplate messagingTemplate;
+    private final PresenciaWebSocketService presencia;
     private final LoteIngenioRepository loteIngenioRepository;
     private final LoteComercializadoraRepository loteComercializadoraRepository;
     private final NotificacionBl notificacionBl;
+    private final DashboardCache dashboardCache;
 
     // ==================== CREACIÓN DE LOTE ====================
 
@@ -66,6 +69,7 @@ public class LotesWebSocketBl {
 
             // Notificar al destino (ingenio o comercializadora)
             Integer destinoUsuarioId = obtenerUsuarioIdDestino(lote);
+            invalidarDashboards(lote, destinoUsuarioId);
             if (destinoUsuarioId != null) {
                 enviarAUsuario(destinoUsuarioId, payloadLigero);
                 notificacionBl.crearNotificacion(destinoUsuarioId, "info", "Nuevo lote creado: " + lote.getId(), "Se ha creado una solicitud de lote con destino al almacen, pendiente de aprobación" , payloadLigero);
@@ -115,6 +119,7 @@ public class LotesWebSocketBl {
 
             //Notificar al destino
             Integer destinoUsuarioId = obtenerUsuarioIdDestino(lote);
+            invalidarDashboards(lote, destinoUsuarioId);
             if (destinoUsuarioId != null && !destinoUsuarioId.equals(cooperativaUsuarioId)) {
                 enviarAUsuario(destinoUsuarioId, payloadLigero);
                 log.debug("📤 Notificado destino (usuario {}): lote_aprobado_cooperativa", destinoUsuarioId);
@@ -160,6 +165,7 @@ public class LotesWebSocketBl {
 
             //  Notificar al destino
             Integer destinoUsuarioId = obtenerUsuarioIdDestino(lote);
+            invalidarDashboards(lote, destinoUsuarioId);
             if (destinoUsuarioId != null && !destinoUsuarioId.equals(cooperativaUsuarioId)) {
                 enviarAUsuario(destinoUsuarioId, payloadLigero);
             }
@@ -198,6 +204,8 @@ public class LotesWebSocketBl {
             payloadLigero.put("minaNombre", lote.getMinasId().getNombre());
             payloadLigero.put("timestamp", now.toString());
 
+            invalidarDashboards(lote, destinoUsuarioId);
+
             // Notificar al socio
             Integer socioUsuarioId = lote.getMinasId().getSocioId().getUsuariosId().getId();
             enviarAUsuario(socioUsuarioId, payloadLigero);
@@ -244,6 +252,8 @@ public class LotesWebSocketBl {
             payloadLigero.put("minaNombre", lote.getMinasId().getNombre());
             payloadLigero.put("timestamp", now.toString());
 
+            invalidarDashboards(lote, destinoUsuarioId);
+
             // Notificar al socio
             Integer socioUsuarioId = lote.getMinasId().getSocioId().getUsuariosId().getId();
             enviarAUsuario(socioUsuarioId, payloadLigero);
@@ -336,7 +346,9 @@ public class LotesWebSocketBl {
      */
     private void enviarAUsuario(Integer usuarioId, Map<String, Object> payload) {
         String destination = "/user/" + usuarioId + "/queue/lotes";
-        messagingTemplate.convertAndSend(destination, payload);
+        if (presencia.hayAudiencia(destination)) {
+            messagingTemplate.convertAndSend(destination, payload);
+        }
     }
 
     /**
@@ -344,7 +356,9 @@ public class LotesWebSocketBl {
      */
     private void enviarADetalle(Integer loteId, Map<String, Object> payload) {
         String destination = "/topic/lote/" + loteId;
-        messagingTemplate.convertAndSend(destination, payload);
+        if (presencia.hayAudiencia(destination)) {
+            messagingTemplate.convertAndSend(destination, payload);
+        }
     }
 
     /**
@@ -368,6 +382,21 @@ public class LotesWebSocketBl {
         if (destinoUsuarioId != null) {
             enviarAUsuario(destinoUsuarioId, payload);
         }
+
+        invalidarDashboards(lote, destinoUsuarioId);
+    }
+
+    /**
+     * Invalidar los dashboards de socio, cooperativa y destino, notificados o no
+     * (p. ej. la cooperativa que aprueba también ve cambiar sus KPIs)
+     */
+    private void invalidarDashboards(Lotes lote, Integer destinoUsuarioId) {
+        Minas mina = lote.getMinasId();
+        dashboardCache.invalidar(
+                mina.getSocioId().getUsuariosId().getId(),
+                mina.getSectoresId().getCooperativaId().getUsuariosId().getId(),
+                destinoUsuarioId
+        );
     }
 
     /**
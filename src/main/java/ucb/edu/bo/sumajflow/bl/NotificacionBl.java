@@ -4,13 +4,21 @@ import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
 import org.springframework.messaging.simp.SimpMessagingTemplate;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 import ucb.edu.bo.sumajflow.dto.NotificacionDto;
 import ucb.edu.bo.sumajflow.entity.Notificacion;
 import ucb.edu.bo.sumajflow.entity.Usuarios;
 import ucb.edu.bo.sumajflow.repository.NotificacionRepository;
+import ucb.edu.bo.sumajflow.repository.NotificacionSpecifications;
 import ucb.edu.bo.sumajflow.repository.UsuariosRepository;
 
 import java.time.Duration;
@@ -18,6 +26,7 @@ import java.time.LocalDateTime;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Collectors;
 
 @Slf4j
@@ -28,16 +37,27 @@ public class NotificacionBl {
     private final NotificacionRepository notificacionRepository;
     private final UsuariosRepository usuariosRepository;
     private final SimpMessagingTemplate messagingTemplate;
+    private final PresenciaWebSocketService presencia;
     private final ObjectMapper objectMapper;
 
+    // Orden de la bandeja; id desempata fechas iguales (orden total para keyset)
+    private static final Sort ORDEN_BANDEJA = Sort.by(Sort.Direction.DESC, "fechaCreacion", "id");
+
+    // Acota el desfase con cambios confirmados en otra instancia
+    @Value("${notificaciones.no-leidas.vigencia:PT1M}")
+    private Duration vigenciaContador;
+
+    private final Map<Integer, ContadorNoLeidas> contadoresNoLeidas = new ConcurrentHashMap<>();
 
     /**
-     * Obtiene notificaciones paginadas con filtros
+     * Obtiene notificaciones paginadas con filtros (resueltos en la base de datos)
      * @param usuarioId ID del usuario
      * @param soloNoLeidas Filtrar solo no leídas
      * @param tipo Filtrar por tipo (info, success, warning, error)
-     * @param page Número de página (0-indexed)
+     * @param page Número de página (0-indexed), si no se usa cursor
      * @param size Elementos por página
+     * @param cursorFecha fechaCreacion de la última notificación recibida (modo keyset, sin COUNT)
+     * @param cursorId id de la última notificación recibida (modo keyset)
      * @return Map con notificaciones y metadata de paginación
      */
     @Transactional(readOnly = true)
@@ -46,59 +66,62 @@ public class NotificacionBl {
             Boolean soloNoLeidas,
             String tipo,
             Integer page,
-            Integer size) {
+            Integer size,
+            LocalDateTime cursorFecha,
+            Integer cursorId) {
 
-        log.debug("Obteniendo notificaciones paginadas - Usuario: {}, Página: {}, Tamaño: {}",
-                usuarioId, page, size);
+        log.debug("Obteniendo notificaciones paginadas - Usuario: {}, Página: {}, Tamaño: {}, Cursor: {}/{}",
+                usuarioId, page, size, cursorFecha, cursorId);
 
         Usuarios usuario = usuariosRepository.findById(usuarioId)
                 .orElseThrow(() -> new IllegalArgumentException("Usuario no encontrado"));
 
-        // Obtener todas las notificaciones (sin paginación en repository)
-        List<Notificacion> todasLasNotificaciones = notificacionRepository
-                .findByUsuariosIdOrderByFechaCreacionDesc(usuario);
-
-        // Aplicar filtros
-        List<Notificacion> notificacionesFiltradas = todasLasNotificaciones.stream()
-                .filter(n -> {
-                    // Filtro de leído/no leído
-                    if (Boolean.TRUE.equals(soloNoLeidas) && n.getLeido()) {
-                        return false;
-                    }
-                    // Filtro por tipo
-                    if (tipo != null && !tipo.isEmpty() && !tipo.equals(n.getTipo())) {
-                        return false;
-                    }
-                    return true;
-                })
-                .collect(Collectors.toList());
+        Specification<Notificacion> spec = NotificacionSpecifications.deUsuario(usuario)
+                .and(NotificacionSpecifications.soloNoLeidas(soloNoLeidas))
+                .and(NotificacionSpecifications.conTipo(tipo));
 
-        // Calcular paginación
-        int totalElementos = notificacionesFiltradas.size();
-        int totalPaginas = (int) Math.ceil((double) totalElementos / size);
-        int inicio = page * size;
-        int fin = Math.min(inicio + size, totalElementos);
+        Map<String, Object> resultado = new HashMap<>();
 
-        // Obtener página actual
-        List<NotificacionDto> notificacionesPagina = notificacionesFiltradas.stream()
-                .skip(inicio)
-                .limit(size)
-                .map(this::convertirADto)
-                .collect(Collectors.toList());
+        if (cursorFecha != null && cursorId != null) {
+            // Keyset: se busca una fila extra para saber si hay más, sin OFFSET ni COUNT
+            List<Notificacion> filas = notificacionRepository.findBy(
+                    spec.and(NotificacionSpecifications.despuesDe(cursorFecha, cursorId)),
+                    q -> q.sortBy(ORDEN_BANDEJA).limit(size + 1).all());
 
-        // Construir respuesta
-        Map<String, Object> resultado = new HashMap<>();
-        resultado.put("notificaciones", notificacionesPagina);
-        resultado.put("totalElementos", totalElementos);
-        resultado.put("totalPaginas", totalPaginas);
+            boolean tieneSiguiente = filas.size() > size;
+            List<Notificacion> pagina = tieneSiguiente ? filas.subList(0, size) : filas;
+
+            resultado.put("notificaciones", pagina.stream().map(this::convertirADto).collect(Collectors.toList()));
+            resultado.put("elementosPorPagina", size);
+            resultado.put("tieneSiguiente", tieneSiguiente);
+            resultado.put("siguienteCursor", tieneSiguiente ? cursorDe(pagina.getLast()) : null);
+            return resultado;
+        }
+
+        Page<Notificacion> pagina = notificacionRepository.findBy(
+                spec, q -> q.sortBy(ORDEN_BANDEJA).page(PageRequest.of(page, size)));
+
+        resultado.put("notificaciones", pagina.getContent().stream()
+                .map(this::convertirADto)
+                .collect(Collectors.toList()));
+        resultado.put("totalElementos", pagina.getTotalElements());
+        resultado.put("totalPaginas", pagina.getTotalPages());
         resultado.put("paginaActual", page);
         resultado.put("elementosPorPagina", size);
-        resultado.put("tieneSiguiente", page < totalPaginas - 1);
+        resultado.put("tieneSiguiente", pagina.hasNext());
         resultado.put("tieneAnterior", page > 0);
+        resultado.put("siguienteCursor", pagina.hasNext() ? cursorDe(pagina.getContent().getLast()) : null);
 
         return resultado;
     }
 
+    private Map<String, Object> cursorDe(Notificacion notificacion) {
+        Map<String, Object> cursor = new HashMap<>();
+        cursor.put("fecha", notificacion.getFechaCreacion());
+        cursor.put("id", notificacion.getId());
+        return cursor;
+    }
+
 
     /**
      * Crea y envía una notificación en tiempo real
@@ -130,6 +153,7 @@ public class NotificacionBl {
 
         // Enviar por WebSocket en tiempo real
         enviarNotificacionWebSocket(usuario.getId(), convertirADto(notificacion));
+        refrescarNoLeidas(usuario.getId());
 
         log.info("Notificación creada y enviada - ID: {}", notificacion.getId());
     }
@@ -141,6 +165,9 @@ public class NotificacionBl {
         try {
             String destination = "/queue/notificaciones";
             String userIdStr = usuarioId.toString();
+            if (!presencia.hayAudienciaUsuario(userIdStr, destination)) {
+                return;
+            }
 
             log.info("📤 Enviando notificación WebSocket - Usuario: {}, Destino: {}", userIdStr, destination);
 
@@ -193,7 +220,10 @@ public class NotificacionBl {
             throw new SecurityException("No tienes permiso para modificar esta notificación");
         }
 
-        notificacionRepository.marcarComoLeida(notificacionId);
+        int marcadas = notificacionRepository.marcarComoLeida(notificacionId);
+        if (marcadas > 0) {
+            refrescarNoLeidas(usuarioId);
+        }
         log.debug("Notificación marcada como leída - ID: {}", notificacionId);
     }
 
@@ -207,21 +237,29 @@ public class NotificacionBl {
         Usuarios usuario = usuariosRepository.findById(usuarioId)
                 .orElseThrow(() -> new IllegalArgumentException("Usuario no encontrado"));
 
-        notificacionRepository.marcarTodasComoLeidas(usuario);
+        int marcadas = notificacionRepository.marcarTodasComoLeidas(usuario);
+        if (marcadas > 0) {
+            refrescarNoLeidas(usuarioId);
+        }
         log.debug("Todas las notificaciones marcadas como leídas - Usuario ID: {}", usuarioId);
     }
 
     /**
-     * Cuenta notificaciones no leídas
+     * Cuenta notificaciones no leídas.
+     * Se sirve desde el contador en memoria; el COUNT solo se ejecuta la primera vez,
+     * cuando el contador vence o después de un cambio confirmado en esta instancia
      */
     @Transactional(readOnly = true)
     public Long contarNoLeidas(Integer usuarioId) {
-        log.debug("Contando notificaciones no leídas - Usuario ID: {}", usuarioId);
-
-        Usuarios usuario = usuariosRepository.findById(usuarioId)
-                .orElseThrow(() -> new IllegalArgumentException("Usuario no encontrado"));
+        ContadorNoLeidas contador = contadoresNoLeidas.get(usuarioId);
+        if (contador != null && !contador.vencido(vigenciaContador)) {
+            return contador.valor();
+        }
 
-        return notificacionRepository.countByUsuariosIdAndLeido(usuario, false);
+        if (!usuariosRepository.existsById(usuarioId)) {
+            throw new IllegalArgumentException("Usuario no encontrado");
+        }
+        return recontarNoLeidas(usuarioId);
     }
 
     /**
@@ -243,9 +281,84 @@ public class NotificacionBl {
         }
 
         notificacionRepository.delete(notificacion);
+        if (!Boolean.TRUE.equals(notificacion.getLeido())) {
+            refrescarNoLeidas(usuarioId);
+        }
         log.info("Notificación eliminada - ID: {}", notificacionId);
     }
 
+    // ==================== CONTADOR DE NO LEÍDAS ====================
+
+    /**
+     * Cuando la transacción confirma, descarta el contador del usuario y, si alguien está suscrito,
+     * lo recuenta y envía el nuevo valor por WebSocket (/user/queue/notificaciones/no-leidas),
+     * para que el cliente no tenga que consultar.
+     * No se suman deltas al valor en caché: podría venir de antes de cambios hechos desde otra
+     * instancia y el error se arrastraría; el recuento parte de lo ya confirmado en la base de datos.
+     */
+    private void refrescarNoLeidas(Integer usuarioId) {
+        despuesDeConfirmar(() -> {
+            contadoresNoLeidas.remove(usuarioId);
+            // Sin nadie suscrito no se recuenta: la próxima lectura lo hará
+            if (!presencia.hayAudienciaUsuario(usuarioId.toString(), "/queue/notificaciones/no-leidas")) {
+                return;
+            }
+            try {
+                enviarNoLeidasWebSocket(usuarioId, recontarNoLeidas(usuarioId));
+            } catch (Exception e) {
+                log.error("❌ Error al recontar no leídas - Usuario ID: {}", usuarioId, e);
+            }
+        });
+    }
+
+    /**
+     * COUNT directo por el repositorio (su propia transacción de lectura): se llama también desde
+     * afterCommit, donde la transacción original ya terminó y una llamada a this no pasaría por el proxy
+     */
+    private long recontarNoLeidas(Integer usuarioId) {
+        log.debug("Contando notificaciones no leídas - Usuario ID: {}", usuarioId);
+
+        long noLeidas = notificacionRepository.countByUsuariosId_IdAndLeido(usuarioId, false);
+        contadoresNoLeidas.put(usuarioId, new ContadorNoLeidas(noLeidas, System.currentTimeMillis()));
+        return noLeidas;
+    }
+
+    private void enviarNoLeidasWebSocket(Integer usuarioId, long noLeidas) {
+        try {
+            messagingTemplate.convertAndSendToUser(
+                    usuarioId.toString(),
+                    "/queue/notificaciones/no-leidas",
+                    Map.of("noLeidas", noLeidas)
+            );
+        } catch (Exception e) {
+            log.error("❌ Error al enviar contador de no leídas - Usuario ID: {}", usuarioId, e);
+        }
+    }
+
+    private void despuesDeConfirmar(Runnable accion) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            accion.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                accion.run();
+            }
+        });
+    }
+
+    /**
+     * Contador en memoria de una instancia; vence para recoger los cambios
+     * confirmados desde otra instancia
+     */
+    private record ContadorNoLeidas(long valor, long cargadoEn) {
+
+        boolean vencido(Duration vigencia) {
+            return System.currentTimeMillis() - cargadoEn > vigencia.toMillis();
+        }
+    }
+
     // ==================== MÉTODOS AUXILIARES PRIVADOS ====================
 
     /**
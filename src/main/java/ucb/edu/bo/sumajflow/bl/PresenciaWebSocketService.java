@@ -0,0 +1,244 @@
+package ucb.edu.bo.sumajflow.bl;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.util.AntPathMatcher;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Registro en memoria de las sesiones STOMP: sesiones por usuario y suscripciones por destino.
+ * Lo alimenta WebSocketEventListener y lo consultan los publicadores para no construir ni serializar
+ * mensajes que no tienen suscriptores.
+ * <p>
+ * Las salidas se confirman tras un periodo de gracia en un único programador compartido: si el usuario
+ * vuelve a conectarse antes (reconexión de SockJS o de la app móvil) sigue en línea sin interrupción.
+ * <p>
+ * Con el broker en modo relay las suscripciones pueden estar en otras instancias, así que
+ * {@link #hayAudiencia} siempre responde que sí.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class PresenciaWebSocketService {
+
+    private static final String PREFIJO_USUARIO = "/user/";
+
+    private final MeterRegistry meterRegistry;
+
+    @Value("${websocket.broker.modo:simple}")
+    private String modoBroker;
+
+    @Value("${websocket.presencia.gracia-desconexion:PT5S}")
+    private Duration graciaDesconexion;
+
+    private final AntPathMatcher matcher = new AntPathMatcher();
+
+    // sesionId -> sesión abierta con sus suscripciones
+    private final Map<String, Sesion> sesiones = new ConcurrentHashMap<>();
+
+    // usuario -> sesiones abiertas; un conjunto vacío es un usuario dentro del periodo de gracia
+    private final Map<String, Set<String>> sesionesPorUsuario = new ConcurrentHashMap<>();
+
+    // destino -> suscripciones; los destinos de usuario se guardan como "usuario:/queue/..."
+    private final Map<String, Integer> suscriptoresPorDestino = new ConcurrentHashMap<>();
+
+    // Suscripciones con comodines (/topic/tracking/lote/*), resueltas con AntPathMatcher como el broker
+    private final Map<String, Integer> suscriptoresPorPatron = new ConcurrentHashMap<>();
+
+    private ScheduledExecutorService programador;
+    private Counter omitidas;
+    private boolean relay;
+
+    @PostConstruct
+    public void iniciar() {
+        relay = "relay".equalsIgnoreCase(modoBroker);
+        programador = Executors.newSingleThreadScheduledExecutor(
+                Thread.ofPlatform().name("ws-presencia").daemon().factory());
+
+        Gauge.builder("websocket.presencia.usuarios", sesionesPorUsuario, Map::size)
+                .description("Usuarios en línea en esta instancia")
+                .register(meterRegistry);
+        Gauge.builder("websocket.presencia.sesiones", sesiones, Map::size)
+                .description("Sesiones STOMP abiertas en esta instancia")
+                .register(meterRegistry);
+        Gauge.builder("websocket.presencia.suscripciones", sesiones,
+                        s -> s.values().stream().mapToInt(sesion -> sesion.suscripciones().size()).sum())
+                .description("Suscripciones STOMP activas en esta instancia")
+                .register(meterRegistry);
+        omitidas = Counter.builder("websocket.publicaciones.omitidas")
+                .description("Mensajes no construidos ni enviados por no tener suscriptores")
+                .register(meterRegistry);
+    }
+
+    @PreDestroy
+    public void detener() {
+        programador.shutdownNow();
+    }
+
+    /**
+     * Registra una sesión abierta
+     *
+     * @return true si el usuario ya estaba en línea (otra sesión o dentro del periodo de gracia)
+     */
+    public boolean conectar(String sesionId, String usuario) {
+        sesiones.putIfAbsent(sesionId, new Sesion(usuario, new ConcurrentHashMap<>()));
+
+        boolean[] yaEnLinea = {false};
+        sesionesPorUsuario.compute(usuario, (u, abiertas) -> {
+            yaEnLinea[0] = abiertas != null;
+            Set<String> resultado = abiertas != null ? abiertas : ConcurrentHashMap.newKeySet();
+            resultado.add(sesionId);
+            return resultado;
+        });
+        return yaEnLinea[0];
+    }
+
+    /**
+     * Cierra una sesión y sus suscripciones. Spring puede publicar la desconexión más de una vez
+     * por sesión; las repetidas no tienen efecto.
+     */
+    public void desconectar(String sesionId) {
+        Sesion sesion = sesiones.remove(sesionId);
+        if (sesion == null) {
+            return;
+        }
+        sesion.suscripciones().values().forEach(this::restarSuscriptor);
+
+        boolean[] ultimaSesion = {false};
+        sesionesPorUsuario.computeIfPresent(sesion.usuario(), (u, abiertas) -> {
+            abiertas.remove(sesionId);
+            ultimaSesion[0] = abiertas.isEmpty();
+            return abiertas;
+        });
+        if (ultimaSesion[0]) {
+            programador.schedule(() -> confirmarSalida(sesion.usuario()),
+                    graciaDesconexion.toMillis(), TimeUnit.MILLISECONDS);
+        }
+    }
+
+    public void suscribir(String sesionId, String usuario, String suscripcionId, String destino) {
+        if (suscripcionId == null || destino == null) {
+            return;
+        }
+        Sesion sesion = sesiones.computeIfAbsent(sesionId, id -> new Sesion(usuario, new ConcurrentHashMap<>()));
+        String clave = clave(sesion.usuario(), destino);
+        String anterior = sesion.suscripciones().put(suscripcionId, clave);
+        if (anterior != null) {
+            restarSuscriptor(anterior);
+        }
+        mapaDe(clave).merge(clave, 1, Integer::sum);
+    }
+
+    public void desuscribir(String sesionId, String suscripcionId) {
+        Sesion sesion = sesiones.get(sesionId);
+        if (sesion == null || suscripcionId == null) {
+            return;
+        }
+        String clave = sesion.suscripciones().remove(suscripcionId);
+        if (clave != null) {
+            restarSuscriptor(clave);
+        }
+    }
+
+    /**
+     * Indica si vale la pena publicar en el destino: algún suscriptor local (o modo relay).
+     * Acepta destinos de topic/queue y de usuario en la forma {@code /user/{usuario}/queue/...}.
+     */
+    public boolean hayAudiencia(String destino) {
+        if (relay) {
+            return true;
+        }
+        if (destino.startsWith(PREFIJO_USUARIO)) {
+            int fin = destino.indexOf('/', PREFIJO_USUARIO.length());
+            if (fin < 0) {
+                return true;
+            }
+            return hayAudienciaUsuario(destino.substring(PREFIJO_USUARIO.length(), fin), destino.substring(fin));
+        }
+        return registrarResultado(tieneSuscriptores(destino));
+    }
+
+    /**
+     * Igual que {@link #hayAudiencia} para {@code convertAndSendToUser(usuario, destino, ...)}
+     */
+    public boolean hayAudienciaUsuario(String usuario, String destino) {
+        if (relay) {
+            return true;
+        }
+        return registrarResultado(tieneSuscriptores(usuario + ":" + destino));
+    }
+
+    public boolean estaEnLinea(String usuario) {
+        return sesionesPorUsuario.containsKey(usuario);
+    }
+
+    public int usuariosEnLinea() {
+        return sesionesPorUsuario.size();
+    }
+
+    // ==================== MÉTODOS PRIVADOS ====================
+
+    private void confirmarSalida(String usuario) {
+        // Dentro de compute para no competir con una reconexión simultánea
+        sesionesPorUsuario.computeIfPresent(usuario, (u, abiertas) -> {
+            if (!abiertas.isEmpty()) {
+                return abiertas;
+            }
+            log.debug("🔌 Usuario fuera de línea: {}", u);
+            return null;
+        });
+    }
+
+    private boolean tieneSuscriptores(String clave) {
+        if (suscriptoresPorDestino.containsKey(clave)) {
+            return true;
+        }
+        if (suscriptoresPorPatron.isEmpty()) {
+            return false;
+        }
+        return suscriptoresPorPatron.keySet().stream().anyMatch(patron -> matcher.match(patron, clave));
+    }
+
+    private boolean registrarResultado(boolean hayAudiencia) {
+        if (!hayAudiencia) {
+            omitidas.increment();
+        }
+        return hayAudiencia;
+    }
+
+    private void restarSuscriptor(String clave) {
+        mapaDe(clave).computeIfPresent(clave, (c, total) -> total > 1 ? total - 1 : null);
+    }
+
+    private Map<String, Integer> mapaDe(String clave) {
+        return matcher.isPattern(clave) ? suscriptoresPorPatron : suscriptoresPorDestino;
+    }
+
+    /**
+     * "/user/queue/x" de una sesión del usuario 7 es el mismo destino que
+     * convertAndSendToUser("7", "/queue/x") o "/user/7/queue/x"
+     */
+    private String clave(String usuario, String destino) {
+        if (destino.startsWith(PREFIJO_USUARIO)) {
+            return usuario + ":" + destino.substring(PREFIJO_USUARIO.length() - 1);
+        }
+        return destino;
+    }
+
+    private record Sesion(String usuario, Map<String, String> suscripciones) {
+    }
+}
@@ -4,8 +4,12 @@ import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import ucb.edu.bo.sumajflow.bl.CargadorPersonas;
 import ucb.edu.bo.sumajflow.bl.CotizacionMineralBl;
 import ucb.edu.bo.sumajflow.bl.LiquidacionVentaBl;
+import ucb.edu.bo.sumajflow.bl.dashboard.DashboardCache;
+import ucb.edu.bo.sumajflow.bl.dashboard.ResumenDashboard;
+import ucb.edu.bo.sumajflow.bl.dashboard.ResumenDashboardService;
 import ucb.edu.bo.sumajflow.dto.CotizacionMineralDto;
 import ucb.edu.bo.sumajflow.dto.comercializadora.*;
 import ucb.edu.bo.sumajflow.entity.*;
@@ -19,6 +23,10 @@ import java.time.format.TextStyle;
 import java.time.temporal.ChronoUnit;
 import java.util.*;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static ucb.edu.bo.sumajflow.bl.dashboard.DashboardCache.*;
+import static ucb.edu.bo.sumajflow.bl.dashboard.ResumenDashboardService.*;
 
 @Slf4j
 @Service
@@ -32,22 +40,37 @@ public class DashboardComercializadoraBl {
     private final ConcentradoRepository concentradoRepository;
     private final SocioRepository socioRepository;
     private final PersonaRepository personaRepository;
+    private final CargadorPersonas cargadorPersonas;
     private final IngenioMineroRepository ingenioMineroRepository;
     private final UsuariosRepository usuariosRepository;
     private final CotizacionMineralBl cotizacionMineralBl;
     private final LiquidacionVentaBl liquidacionVentaBl;
+    private final ResumenDashboardService resumenDashboardService;
+    private final DashboardCache dashboardCache;
 
-    @Transactional(readOnly = true)
+    /**
+     * Dashboard del usuario, servido desde caché mientras no llegue un evento que lo invalide
+     */
     public DashboardComercializadoraDto obtenerDashboard(Integer usuarioId) {
+        return dashboardCache.obtener(TABLERO_COMERCIALIZADORA, usuarioId, DashboardComercializadoraDto.class, () -> construirDashboard(usuarioId));
+    }
+
+    private DashboardComercializadoraDto construirDashboard(Integer usuarioId) {
         log.debug("Obteniendo dashboard para comercializadora - Usuario: {}", usuarioId);
 
         Comercializadora comercializadora = obtenerComercializadora(usuarioId);
 
+        // Liquidaciones por estado pre-agregadas (las métricas diarias no se usan aquí)
+        ResumenDashboard resumen = resumenDashboardService.obtenerResumen(
+                ACTOR_COMERCIALIZADORA, comercializadora.getId(), LocalDate.now());
+
+        List<ResumenDashboard.FilaEstado> compras = obtenerComprasPorEstado(comercializadora, resumen);
+
         DashboardComercializadoraDto dashboard = new DashboardComercializadoraDto();
 
         // Cargar todos los datos
-        dashboard.setComprasData(obtenerDatosCompras(comercializadora));
-        dashboard.setFinancieroData(obtenerDatosFinancieros(comercializadora));
+        dashboard.setComprasData(obtenerDatosCompras(compras));
+        dashboard.setFinancieroData(obtenerDatosFinancieros(comercializadora, compras));
         dashboard.setConcentradosData(obtenerDatosConcentrados(comercializadora));
         dashboard.setCotizacionesActuales(obtenerCotizacionesActuales());
         dashboard.setPipelineEtapas(obtenerPipelineCompras(comercializadora));
@@ -75,80 +98,32 @@ public class DashboardComercializadoraBl {
     }
 
     // === DATOS DE COMPRAS ===
-    private ComprasDataDto obtenerDatosCompras(Comercializadora comercializadora) {
-        List<Liquidacion> liquidaciones = liquidacionRepository
-                .findByComercializadoraId(comercializadora);
-
-        // Filtrar solo liquidaciones de venta (compras desde el punto de vista de la comercializadora)
-        List<Liquidacion> liquidacionesVenta = liquidaciones.stream()
-                .filter(liq -> Arrays.asList("venta_concentrado", "venta_lote_complejo")
-                        .contains(liq.getTipoLiquidacion()))
-                .toList();
-
-        long pendienteAprobacion = liquidacionesVenta.stream()
-                .filter(liq -> "pendiente_aprobacion".equals(liq.getEstado()))
-                .count();
-
-        long aprobadas = liquidacionesVenta.stream()
-                .filter(liq -> "aprobado".equals(liq.getEstado()))
-                .count();
-
-        long esperandoCierre = liquidacionesVenta.stream()
-                .filter(liq -> Arrays.asList("esperando_reportes", "esperando_cierre_venta")
-                        .contains(liq.getEstado()))
-                .count();
-
-        long esperandoPago = liquidacionesVenta.stream()
-                .filter(liq -> "cerrado".equals(liq.getEstado()))
-                .count();
-
+    private ComprasDataDto obtenerDatosCompras(List<ResumenDashboard.FilaEstado> compras) {
+        // Solo liquidaciones de venta (compras desde el punto de vista de la comercializadora), agrupadas por estado
         return new ComprasDataDto(
-                (int) pendienteAprobacion,
-                (int) aprobadas,
-                (int) esperandoCierre,
-                (int) esperandoPago
+                (int) contarCompras(compras, "pendiente_aprobacion"),
+                (int) contarCompras(compras, "aprobado"),
+                (int) contarCompras(compras, "esperando_reportes", "esperando_cierre_venta"),
+                (int) contarCompras(compras, "cerrado")
         );
     }
 
     // === DATOS FINANCIEROS ===
-    private FinancieroDataDto obtenerDatosFinancieros(Comercializadora comercializadora) {
-        LocalDate hoy = LocalDate.now();
-        LocalDate inicioMes = hoy.withDayOfMonth(1);
-        LocalDate finMes = hoy.withDayOfMonth(hoy.lengthOfMonth());
-
-        List<Liquidacion> liquidacionesVenta = liquidacionRepository
-                .findByComercializadoraId(comercializadora).stream()
-                .filter(liq -> Arrays.asList("venta_concentrado", "venta_lote_complejo")
-                        .contains(liq.getTipoLiquidacion()))
-                .toList();
+    private FinancieroDataDto obtenerDatosFinancieros(Comercializadora comercializadora, List<ResumenDashboard.FilaEstado> compras) {
+        YearMonth mesActual = YearMonth.now();
 
         // Pendiente de pago
-        BigDecimal totalPendientePago = liquidacionesVenta.stream()
-                .filter(liq -> "cerrado".equals(liq.getEstado()))
-                .map(Liquidacion::getValorNetoBob)
-                .filter(Objects::nonNull)
+        BigDecimal totalPendientePago = filtrarCompras(compras, "cerrado")
+                .map(ResumenDashboard.FilaEstado::monto)
                 .reduce(BigDecimal.ZERO, BigDecimal::add);
 
-        // Pagado este mes
-        BigDecimal totalPagadoMes = liquidacionesVenta.stream()
-                .filter(liq -> "pagado".equals(liq.getEstado()))
-                .filter(liq -> liq.getFechaPago() != null &&
-                        !liq.getFechaPago().toLocalDate().isBefore(inicioMes) &&
-                        !liq.getFechaPago().toLocalDate().isAfter(finMes))
-                .map(Liquidacion::getValorNetoBob)
-                .filter(Objects::nonNull)
-                .reduce(BigDecimal.ZERO, BigDecimal::add);
-
-        // Volumen comprado este mes (suma de pesos de concentrados) - ✅ YA EN TONELADAS
-        BigDecimal volumenCompradoMes = liquidacionesVenta.stream()
-                .filter(liq -> "pagado".equals(liq.getEstado()))
-                .filter(liq -> liq.getFechaPago() != null &&
-                        !liq.getFechaPago().toLocalDate().isBefore(inicioMes) &&
-                        !liq.getFechaPago().toLocalDate().isAfter(finMes))
-                .flatMap(liq -> liquidacionConcentradoRepository.findByLiquidacionId(liq).stream())
-                .map(lc -> lc.getConcentradoId() != null ? lc.getConcentradoId().getPesoFinal() : null)
-                .filter(Objects::nonNull)
-                .reduce(BigDecimal.ZERO, BigDecimal::add);
+        // Pagado y volumen comprado este mes (suma de pesos de concentrados) - ✅ YA EN TONELADAS
+        BigDecimal totalPagadoMes = BigDecimal.ZERO;
+        BigDecimal volumenCompradoMes = BigDecimal.ZERO;
+        for (ComprasMesProyeccion fila : agregarComprasPorMes(comercializadora, mesActual, mesActual)) {
+            totalPagadoMes = totalPagadoMes.add(fila.getValorNetoBob());
+            volumenCompradoMes = volumenCompradoMes.add(fila.getPesoFinal());
+        }
 
         return new FinancieroDataDto(
                 totalPendientePago,
@@ -157,6 +132,56 @@ public class DashboardComercializadoraBl {
         );
     }
 
+    /**
+     * Liquidaciones de venta por tipo y estado, desde el resumen pre-agregado.
+     * Si el resumen no tiene ninguna (comercializadora sin compras, o un recálculo al confirmar que falló
+     * y la reconciliación aún no corrigió) se agrupan en SQL sobre liquidacion, para no mostrar ceros falsos.
+     */
+    private List<ResumenDashboard.FilaEstado> obtenerComprasPorEstado(Comercializadora comercializadora, ResumenDashboard resumen) {
+        List<ResumenDashboard.FilaEstado> compras = resumen.estados(ENTIDAD_LIQUIDACION)
+                .filter(fila -> LiquidacionVentaBl.TIPOS_VENTA.contains(fila.categoria()))
+                .toList();
+        if (!compras.isEmpty()) {
+            return compras;
+        }
+
+        return liquidacionRepository
+                .agregarPorEstadoComercializadora(comercializadora.getId(), LiquidacionVentaBl.TIPOS_VENTA).stream()
+                .map(fila -> new ResumenDashboard.FilaEstado(
+                        ENTIDAD_LIQUIDACION,
+                        fila.getTipoLiquidacion(),
+                        fila.getEstado(),
+                        fila.getCantidad(),
+                        fila.getValorNetoBob(),
+                        BigDecimal.ZERO))
+                .toList();
+    }
+
+    /**
+     * Filas de compras en los estados indicados
+     */
+    private Stream<ResumenDashboard.FilaEstado> filtrarCompras(List<ResumenDashboard.FilaEstado> compras, String... estados) {
+        List<String> buscados = Arrays.asList(estados);
+        return compras.stream().filter(fila -> buscados.contains(fila.estado()));
+    }
+
+    private long contarCompras(List<ResumenDashboard.FilaEstado> compras, String... estados) {
+        return filtrarCompras(compras, estados)
+                .mapToLong(ResumenDashboard.FilaEstado::cantidad)
+                .sum();
+    }
+
+    /**
+     * Compras pagadas agrupadas en SQL por mes de pago y tipo, entre dos meses inclusive
+     */
+    private List<ComprasMesProyeccion> agregarComprasPorMes(Comercializadora comercializadora, YearMonth desde, YearMonth hasta) {
+        return liquidacionRepository.agregarComprasPagadasPorMes(
+                comercializadora.getId(),
+                LiquidacionVentaBl.TIPOS_VENTA,
+                desde.atDay(1).atStartOfDay(),
+                hasta.plusMonths(1).atDay(1).atStartOfDay());
+    }
+
     // === DATOS DE CONCENTRADOS ===
     private ConcentradosDataDto obtenerDatosConcentrados(Comercializadora comercializadora) {
         List<CarteraConcentradoDto> cartera = obtenerCarteraConcentrados(comercializadora.getId());
@@ -220,8 +245,14 @@ public class DashboardComercializadoraBl {
                 .filter(liq -> estados.contains(liq.getEstado()))
                 .toList();
 
-        List<LiquidacionPipelineDto> liquidacionesDto = liquidacionesEtapa.stream()
-                .limit(3)
+        List<Liquidacion> visibles = liquidacionesEtapa.stream().limit(3).toList();
+        cargadorPersonas.precargar(visibles.stream()
+                .map(Liquidacion::getSocioId)
+                .filter(Objects::nonNull)
+                .map(Socio::getUsuariosId)
+                .toList());
+
+        List<LiquidacionPipelineDto> liquidacionesDto = visibles.stream()
                 .map(this::mapearLiquidacionPipeline)
                 .filter(Objects::nonNull)
                 .collect(Collectors.toList());
@@ -252,7 +283,7 @@ public class DashboardComercializadoraBl {
                 return null;
             }
 
-            Persona persona = personaRepository.findByUsuariosId(socio.getUsuariosId()).orElse(null);
+            Persona persona = cargadorPersonas.obtener(socio.getUsuariosId()).orElse(null);
             String nombreCompleto = persona != null ? persona.getNombres() + " " + persona.getPrimerApellido() : "Socio";
 
             BigDecimal peso = liquidacionConcentradoRepository.findByLiquidacionId(liquidacion).stream()
@@ -742,64 +773,28 @@ public class DashboardComercializadoraBl {
 
     // === COMPRAS POR MES ===
     private List<CompraPorMesDto> obtenerComprasPorMes(Comercializadora comercializadora) {
-        List<CompraPorMesDto> resultado = new ArrayList<>();
+        YearMonth mesActual = YearMonth.now();
+        YearMonth primerMes = mesActual.minusMonths(5);
 
-        for (int i = 5; i >= 0; i--) {
-            YearMonth mes = YearMonth.now().minusMonths(i);
-            LocalDate inicio = mes.atDay(1);
-            LocalDate fin = mes.atEndOfMonth();
-
-            List<Liquidacion> liquidacionesMes = liquidacionRepository
-                    .findByComercializadoraId(comercializadora).stream()
-                    .filter(liq -> Arrays.asList("venta_concentrado", "venta_lote_complejo")
-                            .contains(liq.getTipoLiquidacion()))
-                    .filter(liq -> "pagado".equals(liq.getEstado()))
-                    .filter(liq -> liq.getFechaPago() != null)
-                    .filter(liq -> {
-                        LocalDate fechaPago = liq.getFechaPago().toLocalDate();
-                        return !fechaPago.isBefore(inicio) && !fechaPago.isAfter(fin);
-                    })
-                    .toList();
-
-            int cantidadLiquidaciones = liquidacionesMes.size();
-            List<Liquidacion> liquidacionesMesComplejo = liquidacionRepository
-                    .findByComercializadoraId(comercializadora).stream()
-                    .filter(liq -> Objects.equals("venta_lote_complejo", liq.getTipoLiquidacion()))
-                    .filter(liq -> "pagado".equals(liq.getEstado()))
-                    .filter(liq -> liq.getFechaPago() != null)
-                    .filter(liq -> {
-                        LocalDate fechaPago = liq.getFechaPago().toLocalDate();
-                        return !fechaPago.isBefore(inicio) && !fechaPago.isAfter(fin);
-                    })
-                    .toList();
-            List<Liquidacion> liquidacionesMesConcentrado = liquidacionRepository
-                    .findByComercializadoraId(comercializadora).stream()
-                    .filter(liq -> Objects.equals("venta_concentrado", liq.getTipoLiquidacion()))
-                    .filter(liq -> "pagado".equals(liq.getEstado()))
-                    .filter(liq -> liq.getFechaPago() != null)
-                    .filter(liq -> {
-                        LocalDate fechaPago = liq.getFechaPago().toLocalDate();
-                        return !fechaPago.isBefore(inicio) && !fechaPago.isAfter(fin);
-                    })
-                    .toList();
-
-            BigDecimal pesoLoteComplejo = liquidacionesMesComplejo.stream()
-                    .flatMap(liq -> liquidacionConcentradoRepository.findByLiquidacionId(liq).stream())
-                    .map(lc -> lc.getConcentradoId() != null ? lc.getConcentradoId().getPesoTmh() : null)
-                    .filter(Objects::nonNull)
-                    .reduce(BigDecimal.ZERO, BigDecimal::add);
-            BigDecimal pesoConcentrado = liquidacionesMesConcentrado.stream()
-                    .flatMap(liq -> liquidacionConcentradoRepository.findByLiquidacionId(liq).stream())
-                    .map(lc -> lc.getConcentradoId() != null ? lc.getConcentradoId().getPesoFinal() : null)
-                    .filter(Objects::nonNull)
-                    .reduce(BigDecimal.ZERO, BigDecimal::add);
+        Map<String, List<ComprasMesProyeccion>> porMes = agregarComprasPorMes(comercializadora, primerMes, mesActual)
+                .stream()
+                .collect(Collectors.groupingBy(ComprasMesProyeccion::getMes));
 
-            BigDecimal pesoTotal = pesoLoteComplejo.add(pesoConcentrado);
+        List<CompraPorMesDto> resultado = new ArrayList<>();
 
-            BigDecimal inversionTotal = liquidacionesMes.stream()
-                    .map(Liquidacion::getValorNetoBob)
-                    .filter(Objects::nonNull)
-                    .reduce(BigDecimal.ZERO, BigDecimal::add);
+        for (YearMonth mes = primerMes; !mes.isAfter(mesActual); mes = mes.plusMonths(1)) {
+            int cantidadLiquidaciones = 0;
+            BigDecimal pesoTotal = BigDecimal.ZERO;
+            BigDecimal inversionTotal = BigDecimal.ZERO;
+
+            for (ComprasMesProyeccion fila : porMes.getOrDefault(mes.toString(), List.of())) {
+                cantidadLiquidaciones += fila.getCantidad().intValue();
+                inversionTotal = inversionTotal.add(fila.getValorNetoBob());
+                // Lote complejo se mide en TMH; concentrado, en peso final
+                pesoTotal = pesoTotal.add(LiquidacionVentaBl.TIPO_VENTA_LOTE_COMPLEJO.equals(fila.getTipoLiquidacion())
+                        ? fila.getPesoTmh()
+                        : fila.getPesoFinal());
+            }
 
             BigDecimal precioPromedioTon = BigDecimal.ZERO;
             if (pesoTotal.compareTo(BigDecimal.ZERO) > 0) {
@@ -817,40 +812,29 @@ public class DashboardComercializadoraBl {
 
     // === COMPRAS POR SOCIO ===
     private List<CompraPorSocioDto> obtenerComprasPorSocio(Comercializadora comercializadora) {
-        List<Liquidacion> todasLiquidaciones = liquidacionRepository
-                .findByComercializadoraId(comercializadora).stream()
-                .filter(liq -> Arrays.asList("venta_concentrado", "venta_lote_complejo")
-                        .contains(liq.getTipoLiquidacion()))
-                .filter(liq -> "pagado".equals(liq.getEstado()))
-                .toList();
+        // Top 5 por monto, agrupado y ordenado en SQL
+        List<ComprasSocioProyeccion> filas = liquidacionRepository.agregarComprasPagadasPorSocio(
+                comercializadora.getId(), LiquidacionVentaBl.TIPOS_VENTA, 5);
 
-        Map<Socio, List<Liquidacion>> porSocio = todasLiquidaciones.stream()
-                .filter(liq -> liq.getSocioId() != null)
-                .collect(Collectors.groupingBy(Liquidacion::getSocioId));
+        if (filas.isEmpty()) {
+            return new ArrayList<>();
+        }
 
-        List<CompraPorSocioDto> resultado = new ArrayList<>();
+        Map<Integer, Persona> personaPorUsuario = personaRepository.findByUsuarioIds(
+                        filas.stream().map(ComprasSocioProyeccion::getUsuarioId).toList()).stream()
+                .collect(Collectors.toMap(p -> p.getUsuariosId().getId(), p -> p, (a, b) -> a));
 
-        for (Map.Entry<Socio, List<Liquidacion>> entry : porSocio.entrySet()) {
-            Socio socio = entry.getKey();
-            List<Liquidacion> liquidaciones = entry.getValue();
+        List<CompraPorSocioDto> resultado = new ArrayList<>();
 
-            Persona persona = personaRepository.findByUsuariosId(socio.getUsuariosId()).orElse(null);
+        for (ComprasSocioProyeccion fila : filas) {
+            Persona persona = personaPorUsuario.get(fila.getUsuarioId());
             String nombreCompleto = persona != null
                     ? persona.getNombres() + " " + persona.getPrimerApellido()
                     : "Socio";
 
-            int cantidadCompras = liquidaciones.size();
-
-            BigDecimal pesoTotal = liquidaciones.stream()
-                    .flatMap(liq -> liquidacionConcentradoRepository.findByLiquidacionId(liq).stream())
-                    .map(lc -> lc.getConcentradoId() != null ? lc.getConcentradoId().getPesoFinal() : null)
-                    .filter(Objects::nonNull)
-                    .reduce(BigDecimal.ZERO, BigDecimal::add);
-
-            BigDecimal montoTotal = liquidaciones.stream()
-                    .map(Liquidacion::getValorNetoBob)
-                    .filter(Objects::nonNull)
-                    .reduce(BigDecimal.ZERO, BigDecimal::add);
+            int cantidadCompras = fila.getCantidad().intValue();
+            BigDecimal pesoTotal = fila.getPesoFinal();
+            BigDecimal montoTotal = fila.getValorNetoBob();
 
             BigDecimal precioPromedio = BigDecimal.ZERO;
             if (pesoTotal.compareTo(BigDecimal.ZERO) > 0) {
@@ -862,9 +846,6 @@ public class DashboardComercializadoraBl {
             resultado.add(new CompraPorSocioDto(nombreCompleto, cantidadCompras, pesoTotal, montoTotal, precioPromedio, confiabilidad));
         }
 
-        return resultado.stream()
-                .sorted(Comparator.comparing(CompraPorSocioDto::getMontoTotal).reversed())
-                .limit(5)
-                .collect(Collectors.toList());
+        return resultado;
     }
 }
\ No newline at end of file
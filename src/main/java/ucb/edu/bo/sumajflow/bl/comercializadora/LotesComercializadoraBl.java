@@ -10,6 +10,7 @@ import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import ucb.edu.bo.sumajflow.bl.CargadorPersonas;
 import ucb.edu.bo.sumajflow.bl.LiquidacionVentaBl;
 import ucb.edu.bo.sumajflow.bl.LotesWebSocketBl;
 import ucb.edu.bo.sumajflow.bl.NotificacionBl;
@@ -36,7 +37,7 @@ public class LotesComercializadoraBl {
     private final AsignacionCamionRepository asignacionCamionRepository;
     private final ComercializadoraRepository comercializadoraRepository;
     private final UsuariosRepository usuariosRepository;
-    private final PersonaRepository personaRepository;
+    private final CargadorPersonas cargadorPersonas;
     private final AuditoriaLotesRepository auditoriaLotesRepository;
     private final NotificacionBl notificacionBl;
     private final AuditoriaLotesBl auditoriaLotesBl;
@@ -90,7 +91,10 @@ public class LotesComercializadoraBl {
                 pageable
         );
 
-        // Convertir a DTOs
+        // Convertir a DTOs (personas de los socios de la página en una consulta)
+        cargadorPersonas.precargar(lotesPage.getContent().stream()
+                .map(lc -> lc.getLotesId().getMinasId().getSocioId().getUsuariosId())
+                .toList());
         List<LoteComercializadoraResponseDto> lotesDto = lotesPage.getContent().stream()
                 .map(this::convertToComercializadoraResponseDto)
                 .collect(Collectors.toList());
@@ -673,7 +677,7 @@ public class LotesComercializadoraBl {
         Socio socio = mina.getSocioId();
         dto.setSocioId(socio.getId());
 
-        Persona persona = personaRepository.findByUsuariosId(socio.getUsuariosId()).orElse(null);
+        Persona persona = cargadorPersonas.obtener(socio.getUsuariosId()).orElse(null);
         if (persona != null) {
             dto.setSocioNombres(persona.getNombres());
             dto.setSocioApellidos(persona.getPrimerApellido() +
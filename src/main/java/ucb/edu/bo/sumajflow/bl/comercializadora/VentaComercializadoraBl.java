@@ -314,11 +314,13 @@ public class VentaComercializadoraBl {
     @Transactional(readOnly = true)
     public Page<VentaLiquidacionResponseDto> listarVentas(
             Integer usuarioId, String estado, String tipoLiquidacion,
-            LocalDateTime fechaDesde, LocalDateTime fechaHasta, int page, int size) {
+            LocalDateTime fechaDesde, LocalDateTime fechaHasta, int page, int size,
+            boolean incluirTotal, LocalDateTime cursorFecha, Integer cursorId) {
         Comercializadora com = obtenerComercializadoraDelUsuario(usuarioId);
-        List<Liquidacion> ventas = liquidacionRepository
-                .findByComercializadoraIdAndTipoLiquidacionInOrderByCreatedAtDesc(com, LiquidacionVentaBl.TIPOS_VENTA);
-        return liquidacionVentaBl.listarLiquidaciones(ventas, estado, tipoLiquidacion, fechaDesde, fechaHasta, page, size);
+        return liquidacionVentaBl.listarLiquidaciones(
+                LiquidacionSpecifications.deComercializadora(com)
+                        .and(LiquidacionSpecifications.conTipos(LiquidacionVentaBl.TIPOS_VENTA)),
+                estado, tipoLiquidacion, fechaDesde, fechaHasta, page, size, incluirTotal, cursorFecha, cursorId);
     }
 
     // ==================== ESTADÍSTICAS ====================
@@ -1,11 +1,16 @@
 package ucb.edu.bo.sumajflow.bl.cooperativa;
 
-import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
+import ucb.edu.bo.sumajflow.bl.CargadorPersonas;
+import ucb.edu.bo.sumajflow.bl.dashboard.DashboardCache;
+import ucb.edu.bo.sumajflow.bl.dashboard.ResumenDashboard;
+import ucb.edu.bo.sumajflow.bl.dashboard.ResumenDashboardService;
+import ucb.edu.bo.sumajflow.bl.tracking.FlotaEnVivoService;
+import ucb.edu.bo.sumajflow.bl.tracking.ViajeEnVivo;
+import ucb.edu.bo.sumajflow.bl.transporte.EventosViajeBl;
+import ucb.edu.bo.sumajflow.document.TrackingUbicacion;
 import ucb.edu.bo.sumajflow.dto.cooperativa.*;
 import ucb.edu.bo.sumajflow.entity.*;
 import ucb.edu.bo.sumajflow.repository.*;
@@ -19,6 +24,9 @@ import java.time.temporal.ChronoUnit;
 import java.util.*;
 import java.util.stream.Collectors;
 
+import static ucb.edu.bo.sumajflow.bl.dashboard.DashboardCache.*;
+import static ucb.edu.bo.sumajflow.bl.dashboard.ResumenDashboardService.*;
+
 @Slf4j
 @Service
 @RequiredArgsConstructor
@@ -28,16 +36,18 @@ public class DashboardCooperativaBl {
     private final CooperativaSocioRepository cooperativaSocioRepository;
     private final SocioRepository socioRepository;
     private final MinasRepository minasRepository;
-    private final SectoresRepository sectoresRepository;
     private final LotesRepository lotesRepository;
     private final AsignacionCamionRepository asignacionCamionRepository;
     private final TransportistaRepository transportistaRepository;
     private final InvitacionCooperativaRepository invitacionCooperativaRepository;
     private final BalanzaCooperativaRepository balanzaCooperativaRepository;
-    private final AuditoriaLotesRepository auditoriaLotesRepository;
-    private final PersonaRepository personaRepository;
+    private final CargadorPersonas cargadorPersonas;
     private final UsuariosRepository usuariosRepository;
-    private final ObjectMapper objectMapper;
+    private final FlotaEnVivoService flotaEnVivoService;
+    private final ResumenDashboardService resumenDashboardService;
+    private final DashboardCache dashboardCache;
+    private final EventosViajeBl eventosViajeBl;
+    private final AsignacionEventoRepository asignacionEventoRepository;
 
     private static final Map<String, Integer> PROGRESO_ESTADOS_VIAJE = Map.of(
             "Esperando iniciar", 5,
@@ -50,28 +60,64 @@ public class DashboardCooperativaBl {
             "Completado", 100
     );
 
-    @Transactional(readOnly = true)
+    /**
+     * Dashboard del usuario, servido desde caché mientras no llegue un evento que lo invalide.
+     * Los transportistas en ruta (estado del viaje y posición GPS) no se guardan: se leen en cada consulta.
+     */
     public DashboardCooperativaDto obtenerDashboard(Integer usuarioId) {
+        DashboardBase base = dashboardCache.obtener(TABLERO_COOPERATIVA, usuarioId, DashboardBase.class, () -> construirDashboard(usuarioId));
+        List<TransportistaEnRutaDto> enRuta = dashboardCache.leerEnVivo(() ->
+                obtenerTransportistasEnRuta(cooperativaRepository.getReferenceById(base.cooperativaId())));
+
+        // Copia: el valor en caché lo comparten todas las consultas
+        DashboardCooperativaDto guardado = base.dashboard();
+        return new DashboardCooperativaDto(
+                guardado.getSociosData(),
+                guardado.getLotesData(),
+                guardado.getTransportistasData(),
+                guardado.getVolumetriaData(),
+                guardado.getLotesPendientes(),
+                enRuta,
+                guardado.getBalanzasMonitor(),
+                guardado.getAprobacionesPorDia(),
+                guardado.getMinasPorSector());
+    }
+
+    /**
+     * Parte cacheable del dashboard, sin transportistas en ruta
+     */
+    private record DashboardBase(Integer cooperativaId, DashboardCooperativaDto dashboard) {
+    }
+
+    private DashboardBase construirDashboard(Integer usuarioId) {
         log.debug("Obteniendo dashboard para cooperativa - Usuario: {}", usuarioId);
 
         // Obtener cooperativa
         Cooperativa cooperativa = obtenerCooperativa(usuarioId);
 
+        // KPIs pre-agregados: desde el mes anterior (volumetría) o hace 30 días (tiempo de aprobación)
+        LocalDate hoy = LocalDate.now();
+        LocalDate desde = hoy.withDayOfMonth(1).minusMonths(1);
+        if (hoy.minusDays(30).isBefore(desde)) {
+            desde = hoy.minusDays(30);
+        }
+        ResumenDashboard resumen = resumenDashboardService.obtenerResumen(ACTOR_COOPERATIVA, cooperativa.getId(), desde);
+        List<MinasPorSectorDto> minasPorSector = obtenerMinasPorSector(cooperativa);
+
         DashboardCooperativaDto dashboard = new DashboardCooperativaDto();
 
         // Cargar todos los datos
-        dashboard.setSociosData(obtenerDatosSocios(cooperativa));
-        dashboard.setLotesData(obtenerDatosLotes(cooperativa));
-        dashboard.setTransportistasData(obtenerDatosTransportistas(cooperativa));
-        dashboard.setVolumetriaData(obtenerDatosVolumetria(cooperativa));
+        dashboard.setSociosData(obtenerDatosSocios(cooperativa, minasPorSector));
+        dashboard.setLotesData(obtenerDatosLotes(resumen));
+        dashboard.setTransportistasData(obtenerDatosTransportistas(cooperativa, resumen));
+        dashboard.setVolumetriaData(obtenerDatosVolumetria(resumen));
         dashboard.setLotesPendientes(obtenerLotesPendientes(cooperativa));
-        dashboard.setTransportistasEnRuta(obtenerTransportistasEnRuta(cooperativa));
         dashboard.setBalanzasMonitor(obtenerMonitorBalanzas(cooperativa));
-        dashboard.setAprobacionesPorDia(obtenerAprobacionesPorDia(cooperativa));
-        dashboard.setMinasPorSector(obtenerMinasPorSector(cooperativa));
+        dashboard.setAprobacionesPorDia(obtenerAprobacionesPorDia(resumen));
+        dashboard.setMinasPorSector(minasPorSector);
 
         log.info("Dashboard generado exitosamente para cooperativa {}", cooperativa.getId());
-        return dashboard;
+        return new DashboardBase(cooperativa.getId(), dashboard);
     }
 
     // ==================== MÉTODOS PRIVADOS ====================
@@ -85,7 +131,7 @@ public class DashboardCooperativaBl {
     }
 
     // === DATOS DE SOCIOS ===
-    private SociosDataDto obtenerDatosSocios(Cooperativa cooperativa) {
+    private SociosDataDto obtenerDatosSocios(Cooperativa cooperativa, List<MinasPorSectorDto> minasPorSector) {
         // Total de socios
         List<CooperativaSocio> todasRelaciones = cooperativaSocioRepository
                 .findByCooperativaId(cooperativa);
@@ -106,69 +152,33 @@ public class DashboardCooperativaBl {
                 .count();
 
         // Minas registradas
-        List<Sectores> sectores = sectoresRepository.findByCooperativaId(cooperativa);
-        List<Minas> todasMinas = new ArrayList<>();
-        for (Sectores sector : sectores) {
-            todasMinas.addAll(minasRepository.findBySectoresId(sector));
-        }
-
-        // Minas por sector
-        List<MinasPorSectorDto> minasPorSector = obtenerMinasPorSector(cooperativa);
+        int totalMinas = minasPorSector.stream()
+                .mapToInt(MinasPorSectorDto::getCantidad)
+                .sum();
 
         return new SociosDataDto(
                 totalSocios,
                 (int) sociosActivos,
                 (int) nuevosEsteMes,
-                todasMinas.size(),
+                totalMinas,
                 minasPorSector
         );
     }
 
     // === DATOS DE LOTES ===
-    private LotesDataDto obtenerDatosLotes(Cooperativa cooperativa) {
-        // Obtener todos los lotes de los socios de esta cooperativa
-        List<CooperativaSocio> sociosAprobados = cooperativaSocioRepository
-                .findByCooperativaIdAndEstado(cooperativa, "aprobado");
-
-        List<Lotes> todosLotes = new ArrayList<>();
-        for (CooperativaSocio cs : sociosAprobados) {
-            todosLotes.addAll(lotesRepository.findByMinasSocioId(cs.getSocioId()));
-        }
-
+    private LotesDataDto obtenerDatosLotes(ResumenDashboard resumen) {
         // Pendientes de aprobación
-        long pendientes = todosLotes.stream()
-                .filter(lote -> "Pendiente de aprobación cooperativa".equals(lote.getEstado()))
-                .count();
+        long pendientes = resumen.contar(ENTIDAD_LOTE, "Pendiente de aprobación cooperativa");
 
-        // Hoy
+        // Aprobados y rechazados hoy
         LocalDate hoy = LocalDate.now();
-        LocalDateTime inicioHoy = hoy.atStartOfDay();
-        LocalDateTime finHoy = hoy.plusDays(1).atStartOfDay();
-
-        // Aprobados hoy (auditoria)
-        long aprobadosHoy = auditoriaLotesRepository.findByFechaRegistroBetween(inicioHoy, finHoy).stream()
-                .filter(a -> "lote_aprobado_cooperativa".equals(a.getAccion()))
-                .count();
-
-        // Rechazados hoy
-        long rechazadosHoy = auditoriaLotesRepository.findByFechaRegistroBetween(inicioHoy, finHoy).stream()
-                .filter(a -> "lote_rechazado_cooperativa".equals(a.getAccion()))
-                .count();
+        long aprobadosHoy = resumen.contarDiario(METRICA_LOTE_APROBADO, hoy, hoy);
+        long rechazadosHoy = resumen.contarDiario(METRICA_LOTE_RECHAZADO, hoy, hoy);
 
         // Tasa de aprobación del mes
         LocalDate inicioMes = hoy.withDayOfMonth(1);
-        LocalDateTime inicioMesDateTime = inicioMes.atStartOfDay();
-
-        List<AuditoriaLotes> auditoriasMes = auditoriaLotesRepository
-                .findByFechaRegistroAfter(inicioMesDateTime);
-
-        long aprobadosMes = auditoriasMes.stream()
-                .filter(a -> "lote_aprobado_cooperativa".equals(a.getAccion()))
-                .count();
-
-        long rechazadosMes = auditoriasMes.stream()
-                .filter(a -> "lote_rechazado_cooperativa".equals(a.getAccion()))
-                .count();
+        long aprobadosMes = resumen.contarDiario(METRICA_LOTE_APROBADO, inicioMes, hoy);
+        long rechazadosMes = resumen.contarDiario(METRICA_LOTE_RECHAZADO, inicioMes, hoy);
 
         BigDecimal tasaAprobacion = BigDecimal.ZERO;
         long totalRevisados = aprobadosMes + rechazadosMes;
@@ -178,34 +188,17 @@ public class DashboardCooperativaBl {
                     .multiply(new BigDecimal("100"));
         }
 
-        // Tiempo promedio de aprobación (últimos 30 días)
-        LocalDateTime hace30Dias = LocalDateTime.now().minusDays(30);
-        List<AuditoriaLotes> aprobacionesRecientes = auditoriaLotesRepository
-                .findByFechaRegistroAfter(hace30Dias).stream()
-                .filter(a -> "lote_aprobado_cooperativa".equals(a.getAccion()))
+        // Tiempo promedio de aprobación (últimos 30 días): horas desde la creación del lote
+        List<ResumenDashboard.FilaDiaria> aprobacionesRecientes = resumen
+                .diario(METRICA_LOTE_APROBADO, hoy.minusDays(30), hoy)
                 .toList();
+        long totalHoras = aprobacionesRecientes.stream().mapToLong(ResumenDashboard.FilaDiaria::horasEspera).sum();
+        long count = aprobacionesRecientes.stream().mapToLong(ResumenDashboard.FilaDiaria::cantidad).sum();
 
         BigDecimal tiempoPromedio = BigDecimal.ZERO;
-        if (!aprobacionesRecientes.isEmpty()) {
-            long totalHoras = 0;
-            int count = 0;
-
-            for (AuditoriaLotes auditoria : aprobacionesRecientes) {
-                Lotes lote = lotesRepository.findById(auditoria.getLoteId().getId()).orElse(null);
-                if (lote != null && lote.getFechaCreacion() != null && auditoria.getFechaRegistro() != null) {
-                    long horas = ChronoUnit.HOURS.between(
-                            lote.getFechaCreacion(),
-                            auditoria.getFechaRegistro()
-                    );
-                    totalHoras += horas;
-                    count++;
-                }
-            }
-
-            if (count > 0) {
-                tiempoPromedio = BigDecimal.valueOf(totalHoras)
-                        .divide(BigDecimal.valueOf(count), 2, RoundingMode.HALF_UP);
-            }
+        if (count > 0) {
+            tiempoPromedio = BigDecimal.valueOf(totalHoras)
+                    .divide(BigDecimal.valueOf(count), 2, RoundingMode.HALF_UP);
         }
 
         return new LotesDataDto(
@@ -218,7 +211,7 @@ public class DashboardCooperativaBl {
     }
 
     // === DATOS DE TRANSPORTISTAS ===
-    private TransportistasDataDto obtenerDatosTransportistas(Cooperativa cooperativa) {
+    private TransportistasDataDto obtenerDatosTransportistas(Cooperativa cooperativa, ResumenDashboard resumen) {
         // Obtener invitaciones de esta cooperativa
         List<InvitacionCooperativa> invitaciones = invitacionCooperativaRepository
                 .findByCooperativa(cooperativa);
@@ -254,20 +247,7 @@ public class DashboardCooperativaBl {
 
         // Completados hoy
         LocalDate hoy = LocalDate.now();
-        LocalDateTime inicioHoy = hoy.atStartOfDay();
-        LocalDateTime finHoy = hoy.plusDays(1).atStartOfDay();
-
-        long completadosHoy = asignacionCamionRepository
-                .findByEstadoAndFechaFinBetween("Completado", inicioHoy, finHoy)
-                .stream()
-                .filter(asig -> {
-                    Lotes lote = asig.getLotesId();
-                    Socio socio = lote.getMinasId().getSocioId();
-                    return cooperativaSocioRepository
-                            .findByCooperativaIdAndSocioId(cooperativa, socio)
-                            .isPresent();
-                })
-                .count();
+        long completadosHoy = resumen.contarDiario(METRICA_VIAJE_COMPLETADO, hoy, hoy);
 
         // Calificación promedio
         BigDecimal calificacionPromedio = transportistas.stream()
@@ -277,20 +257,7 @@ public class DashboardCooperativaBl {
                 .divide(BigDecimal.valueOf(Math.max(transportistas.size(), 1)), 2, RoundingMode.HALF_UP);
 
         // Viajes completados este mes
-        LocalDate inicioMes = hoy.withDayOfMonth(1);
-        LocalDateTime inicioMesDateTime = inicioMes.atStartOfDay();
-
-        long viajesCompletadosMes = asignacionCamionRepository
-                .findByEstadoAndFechaFinAfter("Completado", inicioMesDateTime)
-                .stream()
-                .filter(asig -> {
-                    Lotes lote = asig.getLotesId();
-                    Socio socio = lote.getMinasId().getSocioId();
-                    return cooperativaSocioRepository
-                            .findByCooperativaIdAndSocioId(cooperativa, socio)
-                            .isPresent();
-                })
-                .count();
+        long viajesCompletadosMes = resumen.contarDiario(METRICA_VIAJE_COMPLETADO, hoy.withDayOfMonth(1), hoy);
 
         return new TransportistasDataDto(
                 (int) totalDisponibles,
@@ -302,37 +269,18 @@ public class DashboardCooperativaBl {
     }
 
     // === DATOS DE VOLUMETRÍA ===
-    private VolumetriaDataDto obtenerDatosVolumetria(Cooperativa cooperativa) {
+    private VolumetriaDataDto obtenerDatosVolumetria(ResumenDashboard resumen) {
         LocalDate hoy = LocalDate.now();
         LocalDate inicioMes = hoy.withDayOfMonth(1);
         LocalDate finMes = hoy.withDayOfMonth(hoy.lengthOfMonth());
-        LocalDateTime inicioMesDateTime = inicioMes.atStartOfDay();
-        LocalDateTime finMesDateTime = finMes.plusDays(1).atStartOfDay();
 
         // Mes anterior
         LocalDate inicioMesAnterior = inicioMes.minusMonths(1);
         LocalDate finMesAnterior = inicioMesAnterior.withDayOfMonth(inicioMesAnterior.lengthOfMonth());
-        LocalDateTime inicioMesAnteriorDateTime = inicioMesAnterior.atStartOfDay();
-        LocalDateTime finMesAnteriorDateTime = finMesAnterior.plusDays(1).atStartOfDay();
-
-        // Obtener asignaciones completadas este mes
-        List<AsignacionCamion> asignacionesMes = asignacionCamionRepository
-                .findByEstadoAndFechaFinBetween("Completado", inicioMesDateTime, finMesDateTime)
-                .stream()
-                .filter(asig -> {
-                    Lotes lote = asig.getLotesId();
-                    Socio socio = lote.getMinasId().getSocioId();
-                    return cooperativaSocioRepository
-                            .findByCooperativaIdAndSocioId(cooperativa, socio)
-                            .isPresent();
-                })
-                .toList();
 
-        BigDecimal pesoTotalMes = asignacionesMes.stream()
-                .map(this::extraerPesoNetoPesajeOrigen)
-                .reduce(BigDecimal.ZERO, BigDecimal::add);
-
-        int camionesDespachadosMes = asignacionesMes.size();
+        // Viajes completados este mes (peso neto del pesaje de origen)
+        BigDecimal pesoTotalMes = resumen.pesoDiario(METRICA_VIAJE_COMPLETADO, inicioMes, finMes);
+        int camionesDespachadosMes = (int) resumen.contarDiario(METRICA_VIAJE_COMPLETADO, inicioMes, finMes);
 
         BigDecimal promedioKgPorCamion = BigDecimal.ZERO;
         if (camionesDespachadosMes > 0) {
@@ -341,21 +289,7 @@ public class DashboardCooperativaBl {
         }
 
         // Mes anterior
-        List<AsignacionCamion> asignacionesMesAnterior = asignacionCamionRepository
-                .findByEstadoAndFechaFinBetween("Completado", inicioMesAnteriorDateTime, finMesAnteriorDateTime)
-                .stream()
-                .filter(asig -> {
-                    Lotes lote = asig.getLotesId();
-                    Socio socio = lote.getMinasId().getSocioId();
-                    return cooperativaSocioRepository
-                            .findByCooperativaIdAndSocioId(cooperativa, socio)
-                            .isPresent();
-                })
-                .toList();
-
-        BigDecimal pesoTotalMesAnterior = asignacionesMesAnterior.stream()
-                .map(this::extraerPesoNetoPesajeOrigen)
-                .reduce(BigDecimal.ZERO, BigDecimal::add);
+        BigDecimal pesoTotalMesAnterior = resumen.pesoDiario(METRICA_VIAJE_COMPLETADO, inicioMesAnterior, finMesAnterior);
 
         BigDecimal comparativo = BigDecimal.ZERO;
         if (pesoTotalMesAnterior.compareTo(BigDecimal.ZERO) > 0) {
@@ -386,6 +320,10 @@ public class DashboardCooperativaBl {
             ));
         }
 
+        cargadorPersonas.precargar(lotesPendientes.stream()
+                .map(lote -> lote.getMinasId().getSocioId().getUsuariosId())
+                .toList());
+
         return lotesPendientes.stream()
                 .map(this::mapearLotePendiente)
                 .sorted(Comparator.comparing((LotePendienteDashboardDto lp) -> {
@@ -398,7 +336,7 @@ public class DashboardCooperativaBl {
 
     private LotePendienteDashboardDto mapearLotePendiente(Lotes lote) {
         Socio socio = lote.getMinasId().getSocioId();
-        Persona persona = personaRepository.findByUsuariosId(socio.getUsuariosId()).orElse(null);
+        Persona persona = cargadorPersonas.obtener(socio.getUsuariosId()).orElse(null);
 
         String nombreCompleto = persona != null
                 ? persona.getNombres() + " " + persona.getPrimerApellido() +
@@ -486,22 +424,28 @@ public class DashboardCooperativaBl {
                         "En camino almacén destino", "Descargando")
         );
 
-        return asignacionesActivas.stream()
-                .filter(asig -> {
-                    Lotes lote = asig.getLotesId();
-                    Socio socio = lote.getMinasId().getSocioId();
-                    return cooperativaSocioRepository
-                            .findByCooperativaIdAndSocioId(cooperativa, socio)
-                            .isPresent();
-                })
-                .map(this::mapearTransportistaEnRuta)
+        // Socios de la cooperativa en una consulta, en lugar de una por asignación
+        Set<Integer> sociosCooperativa = cooperativaSocioRepository.findByCooperativaId(cooperativa).stream()
+                .map(cs -> cs.getSocioId().getId())
+                .collect(Collectors.toSet());
+
+        List<AsignacionCamion> enRuta = asignacionesActivas.stream()
+                .filter(asig -> sociosCooperativa.contains(asig.getLotesId().getMinasId().getSocioId().getId()))
                 .limit(10) // Máximo 10
+                .toList();
+        cargadorPersonas.precargar(enRuta.stream()
+                .map(asig -> asig.getTransportistaId().getUsuariosId())
+                .toList());
+        Map<Integer, AsignacionEvento> ubicaciones = eventosViajeBl.ultimasUbicaciones(enRuta);
+
+        return enRuta.stream()
+                .map(asig -> mapearTransportistaEnRuta(asig, ubicaciones.get(asig.getId())))
                 .collect(Collectors.toList());
     }
 
-    private TransportistaEnRutaDto mapearTransportistaEnRuta(AsignacionCamion asignacion) {
+    private TransportistaEnRutaDto mapearTransportistaEnRuta(AsignacionCamion asignacion, AsignacionEvento ultimoEvento) {
         Transportista transportista = asignacion.getTransportistaId();
-        Persona persona = personaRepository.findByUsuariosId(transportista.getUsuariosId()).orElse(null);
+        Persona persona = cargadorPersonas.obtener(transportista.getUsuariosId()).orElse(null);
 
         String nombreCompleto = persona != null
                 ? persona.getNombres() + " " + persona.getPrimerApellido()
@@ -509,7 +453,7 @@ public class DashboardCooperativaBl {
 
         Integer progreso = PROGRESO_ESTADOS_VIAJE.getOrDefault(asignacion.getEstado(), 50);
 
-        UbicacionDto ubicacion = extraerUltimaUbicacion(asignacion);
+        UbicacionDto ubicacion = extraerUltimaUbicacion(asignacion, ultimoEvento);
 
         return new TransportistaEnRutaDto(
                 asignacion.getId(),
@@ -542,20 +486,9 @@ public class DashboardCooperativaBl {
             LocalDateTime finHoy,
             Cooperativa cooperativa
     ) {
-        // Contar pesajes de hoy (asignaciones con pesaje_origen hoy)
-        List<AsignacionCamion> asignacionesHoy = asignacionCamionRepository
-                .findByFechaInicioAfter(inicioHoy).stream()
-                .filter(asig -> {
-                    Lotes lote = asig.getLotesId();
-                    Socio socio = lote.getMinasId().getSocioId();
-                    return cooperativaSocioRepository
-                            .findByCooperativaIdAndSocioId(cooperativa, socio)
-                            .isPresent();
-                })
-                .filter(this::tienePesajeOrigen)
-                .toList();
-
-        int pesajesHoy = asignacionesHoy.size();
+        // Contar pesajes de hoy (viajes de la cooperativa con pesaje_origen hoy)
+        int pesajesHoy = (int) asignacionEventoRepository.contarViajesConEventoEntre(
+                cooperativa, EventosViajeBl.PESAJE_ORIGEN, inicioHoy, finHoy);
 
         // Estado de la balanza (simplificado)
         String estado = "disponible";
@@ -605,27 +538,15 @@ public class DashboardCooperativaBl {
     }
 
     // === APROBACIONES POR DÍA ===
-    private List<AprobacionPorDiaDto> obtenerAprobacionesPorDia(Cooperativa cooperativa) {
+    private List<AprobacionPorDiaDto> obtenerAprobacionesPorDia(ResumenDashboard resumen) {
         List<AprobacionPorDiaDto> resultado = new ArrayList<>();
 
         // Últimos 6 días
         for (int i = 5; i >= 0; i--) {
             LocalDate dia = LocalDate.now().minusDays(i);
-            LocalDateTime inicioDia = dia.atStartOfDay();
-            LocalDateTime finDia = dia.plusDays(1).atStartOfDay();
 
-            List<AuditoriaLotes> auditoriasDia = auditoriaLotesRepository
-                    .findByFechaRegistroBetween(inicioDia, finDia);
-
-            long aprobados = auditoriasDia.stream()
-                    .filter(a -> "APROBAR_COOPERATIVA".equals(a.getAccion()))
-                    .filter(a -> perteneceLoteACooperativa(a.getLoteId(), cooperativa))
-                    .count();
-
-            long rechazados = auditoriasDia.stream()
-                    .filter(a -> "RECHAZAR_COOPERATIVA".equals(a.getAccion()))
-                    .filter(a -> perteneceLoteACooperativa(a.getLoteId(), cooperativa))
-                    .count();
+            long aprobados = resumen.contarDiario(METRICA_LOTE_APROBADO, dia, dia);
+            long rechazados = resumen.contarDiario(METRICA_LOTE_RECHAZADO, dia, dia);
 
             BigDecimal tasaAprobacion = BigDecimal.ZERO;
             long total = aprobados + rechazados;
@@ -649,97 +570,28 @@ public class DashboardCooperativaBl {
         return resultado;
     }
 
-    private boolean perteneceLoteACooperativa(Lotes lote, Cooperativa cooperativa) {
-        if (lote == null) return false;
-        Socio socio = lote.getMinasId().getSocioId();
-        return cooperativaSocioRepository
-                .findByCooperativaIdAndSocioId(cooperativa, socio)
-                .isPresent();
-    }
-
     // === MINAS POR SECTOR ===
     private List<MinasPorSectorDto> obtenerMinasPorSector(Cooperativa cooperativa) {
-        List<Sectores> sectores = sectoresRepository.findByCooperativaId(cooperativa);
-
-        return sectores.stream()
-                .map(sector -> {
-                    int cantidadMinas = minasRepository.findBySectoresId(sector).size();
-                    return new MinasPorSectorDto(sector.getNombre(), cantidadMinas);
-                })
-                .filter(m -> m.getCantidad() > 0)
-                .sorted(Comparator.comparing(MinasPorSectorDto::getCantidad).reversed())
+        return minasRepository.contarMinasPorSector(cooperativa).stream()
+                .map(fila -> new MinasPorSectorDto((String) fila[0], ((Long) fila[1]).intValue()))
                 .collect(Collectors.toList());
     }
 
     // === MÉTODOS AUXILIARES ===
 
-    private BigDecimal extraerPesoNetoPesajeOrigen(AsignacionCamion asignacion) {
-        try {
-            if (asignacion.getObservaciones() == null) return BigDecimal.ZERO;
-
-            JsonNode observaciones = objectMapper.readTree(asignacion.getObservaciones());
-
-            if (observaciones.has("pesaje_origen")) {
-                JsonNode pesaje = observaciones.get("pesaje_origen");
-                if (pesaje.has("peso_neto_kg")) {
-                    return new BigDecimal(pesaje.get("peso_neto_kg").asText());
-                }
+    private UbicacionDto extraerUltimaUbicacion(AsignacionCamion asignacion, AsignacionEvento ultimoEvento) {
+        // Posición GPS en vivo si el viaje está activo en memoria
+        ViajeEnVivo viaje = flotaEnVivoService.buscar(asignacion.getId());
+        if (viaje != null) {
+            TrackingUbicacion.UbicacionActual actual = viaje.getUbicacionActual();
+            if (actual != null) {
+                return new UbicacionDto(actual.getLat(), actual.getLng());
             }
-
-            return BigDecimal.ZERO;
-
-        } catch (Exception e) {
-            log.warn("Error extrayendo peso de asignación {}: {}", asignacion.getId(), e.getMessage());
-            return BigDecimal.ZERO;
         }
-    }
-
-    private boolean tienePesajeOrigen(AsignacionCamion asignacion) {
-        try {
-            if (asignacion.getObservaciones() == null) return false;
-            JsonNode observaciones = objectMapper.readTree(asignacion.getObservaciones());
-            return observaciones.has("pesaje_origen");
-        } catch (Exception e) {
-            return false;
-        }
-    }
-
-    private UbicacionDto extraerUltimaUbicacion(AsignacionCamion asignacion) {
-        try {
-            if (asignacion.getObservaciones() == null) {
-                return new UbicacionDto(null, null);
-            }
-
-            JsonNode observaciones = objectMapper.readTree(asignacion.getObservaciones());
-            String estado = asignacion.getEstado();
-
-            Map<String, String> estadoAEvento = Map.of(
-                    "En camino a la mina", "inicio_viaje",
-                    "Esperando carguío", "llegada_mina",
-                    "En camino balanza cooperativa", "carguio_completo",
-                    "En camino balanza destino", "pesaje_origen",
-                    "En camino almacén destino", "pesaje_destino",
-                    "Descargando", "llegada_almacen"
-            );
-
-            String evento = estadoAEvento.getOrDefault(estado, "inicio_viaje");
-
-            if (observaciones.has(evento)) {
-                JsonNode eventoNode = observaciones.get(evento);
-                if (eventoNode.has("lat") && eventoNode.has("lng")) {
-                    return new UbicacionDto(
-                            eventoNode.get("lat").asDouble(),
-                            eventoNode.get("lng").asDouble()
-                    );
-                }
-            }
-
-            return new UbicacionDto(null, null);
 
-        } catch (Exception e) {
-            log.warn("Error extrayendo ubicación de asignación {}: {}",
-                    asignacion.getId(), e.getMessage());
+        if (ultimoEvento == null) {
             return new UbicacionDto(null, null);
         }
+        return new UbicacionDto(ultimoEvento.getLat(), ultimoEvento.getLng());
     }
 }
\ No newline at end of file
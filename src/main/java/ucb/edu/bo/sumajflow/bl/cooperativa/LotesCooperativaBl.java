@@ -9,6 +9,7 @@ import org.springframework.transaction.annotation.Transactional;
 import ucb.edu.bo.sumajflow.bl.LotesWebSocketBl;
 import ucb.edu.bo.sumajflow.bl.NotificacionBl;
 import ucb.edu.bo.sumajflow.bl.socio.VentaSocioBl;
+import ucb.edu.bo.sumajflow.bl.transporte.EventosViajeBl;
 import ucb.edu.bo.sumajflow.dto.cooperativa.*;
 import ucb.edu.bo.sumajflow.dto.socio.*;
 import ucb.edu.bo.sumajflow.entity.*;
@@ -46,6 +47,7 @@ public class LotesCooperativaBl {
     private final AuditoriaLotesRepository auditoriaLotesRepository;
     private final AsignacionCamionRepository asignacionCamionRepo;
     private final ObjectMapper objectMapper;
+    private final EventosViajeBl eventosViajeBl;
     private final LotesWebSocketBl lotesWebSocketBl;
     private final VentaSocioBl ventaSocioBl;
     private final LiquidacionLoteRepository liquidacionLoteRepository;
@@ -70,16 +72,37 @@ public class LotesCooperativaBl {
         // Obtener cooperativa del usuario
         Cooperativa cooperativa = obtenerCooperativaDelUsuario(usuarioId);
 
-        // Buscar lotes pendientes
-        List<Lotes> lotes = lotesRepository.findAll().stream()
-                .filter(l -> l.getEstado().equals(ESTADO_PENDIENTE_COOPERATIVA))
-                .filter(l -> perteneceACooperativa(l, cooperativa))
-                .toList();
+        // Buscar lotes pendientes (mina y socio en la misma consulta)
+        List<Lotes> lotes = lotesRepository.findByCooperativaAndEstadoConSocio(
+                cooperativa.getId(), ESTADO_PENDIENTE_COOPERATIVA);
 
         log.info("Se encontraron {} lotes pendientes", lotes.size());
 
+        if (lotes.isEmpty()) {
+            return new ArrayList<>();
+        }
+
+        // Personas, minerales y destinos de todos los lotes, una consulta por tabla
+        Set<Integer> usuarioIds = lotes.stream()
+                .map(l -> l.getMinasId().getSocioId().getUsuariosId().getId())
+                .collect(Collectors.toSet());
+        Map<Integer, Persona> personaPorUsuario = personaRepository.findByUsuarioIds(usuarioIds).stream()
+                .collect(Collectors.toMap(p -> p.getUsuariosId().getId(), p -> p, (a, b) -> a));
+        Map<Integer, List<String>> mineralesPorLote = loteMineralesRepository.findByLotesIdIn(lotes).stream()
+                .collect(Collectors.groupingBy(lm -> lm.getLotesId().getId(),
+                        Collectors.mapping(lm -> lm.getMineralesId().getNombre(), Collectors.toList())));
+        Map<Integer, LoteIngenio> ingenioPorLote = loteIngenioRepository.findByLotesIdIn(lotes).stream()
+                .collect(Collectors.toMap(li -> li.getLotesId().getId(), li -> li, (a, b) -> a));
+        Map<Integer, LoteComercializadora> comercializadoraPorLote = loteComercializadoraRepository.findByLotesIdIn(lotes).stream()
+                .collect(Collectors.toMap(lc -> lc.getLotesId().getId(), lc -> lc, (a, b) -> a));
+
         return lotes.stream()
-                .map(this::convertToPendienteDto)
+                .map(lote -> convertToPendienteDto(
+                        lote,
+                        personaPorUsuario.get(lote.getMinasId().getSocioId().getUsuariosId().getId()),
+                        mineralesPorLote.getOrDefault(lote.getId(), new ArrayList<>()),
+                        ingenioPorLote.get(lote.getId()),
+                        comercializadoraPorLote.get(lote.getId())))
                 .collect(Collectors.toList());
     }
 
@@ -566,48 +589,38 @@ public class LotesCooperativaBl {
 
     // ==================== MÉTODOS DE CONVERSIÓN DTO ====================
 
-    private void extraerYAsignarPesajes(AsignacionCamion asignacion, AsignacionCamionSimpleDto dto) {
-        String observacionesJson = asignacion.getObservaciones();
-
-        if (observacionesJson == null || observacionesJson.isBlank()) {
-            log.debug("No hay observaciones para la asignación ID: {}", asignacion.getId());
+    private void extraerYAsignarPesajes(
+            AsignacionCamion asignacion,
+            ObservacionesViajeDto observaciones,
+            AsignacionCamionSimpleDto dto
+    ) {
+        if (observaciones == null) {
+            log.debug("No hay pesajes registrados para la asignación ID: {}", asignacion.getId());
             return;
         }
 
-        try {
-            // Parsear el JSON de observaciones
-            ObservacionesViajeDto observaciones = objectMapper.readValue(
-                    observacionesJson,
-                    ObservacionesViajeDto.class
-            );
-
-            // Extraer pesaje origen
-            if (observaciones.getPesajeOrigen() != null) {
-                PesajeDto pesajeOrigen = observaciones.getPesajeOrigen();
-                dto.setPesajeOrigenTaraKg(pesajeOrigen.getPesoTaraKg());
-                dto.setPesajeOrigenBrutoKg(pesajeOrigen.getPesoBrutoKg());
-                dto.setPesajeOrigenNetoKg(pesajeOrigen.getPesoNetoKg());
-                dto.setPesajeOrigenFecha(pesajeOrigen.getTimestamp());
-
-                log.debug("Pesaje origen extraído - Asignación ID: {}, Neto: {} kg",
-                        asignacion.getId(), pesajeOrigen.getPesoNetoKg());
-            }
+        // Extraer pesaje origen
+        if (observaciones.getPesajeOrigen() != null) {
+            PesajeDto pesajeOrigen = observaciones.getPesajeOrigen();
+            dto.setPesajeOrigenTaraKg(pesajeOrigen.getPesoTaraKg());
+            dto.setPesajeOrigenBrutoKg(pesajeOrigen.getPesoBrutoKg());
+            dto.setPesajeOrigenNetoKg(pesajeOrigen.getPesoNetoKg());
+            dto.setPesajeOrigenFecha(pesajeOrigen.getTimestamp());
 
-            // Extraer pesaje destino
-            if (observaciones.getPesajeDestino() != null) {
-                PesajeDto pesajeDestino = observaciones.getPesajeDestino();
-                dto.setPesajeDestinoTaraKg(pesajeDestino.getPesoTaraKg());
-                dto.setPesajeDestinoBrutoKg(pesajeDestino.getPesoBrutoKg());
-                dto.setPesajeDestinoNetoKg(pesajeDestino.getPesoNetoKg());
-                dto.setPesajeDestinoFecha(pesajeDestino.getTimestamp());
+            log.debug("Pesaje origen extraído - Asignación ID: {}, Neto: {} kg",
+                    asignacion.getId(), pesajeOrigen.getPesoNetoKg());
+        }
 
-                log.debug("Pesaje destino extraído - Asignación ID: {}, Neto: {} kg",
-                        asignacion.getId(), pesajeDestino.getPesoNetoKg());
-            }
+        // Extraer pesaje destino
+        if (observaciones.getPesajeDestino() != null) {
+            PesajeDto pesajeDestino = observaciones.getPesajeDestino();
+            dto.setPesajeDestinoTaraKg(pesajeDestino.getPesoTaraKg());
+            dto.setPesajeDestinoBrutoKg(pesajeDestino.getPesoBrutoKg());
+            dto.setPesajeDestinoNetoKg(pesajeDestino.getPesoNetoKg());
+            dto.setPesajeDestinoFecha(pesajeDestino.getTimestamp());
 
-        } catch (Exception e) {
-            log.error("Error al parsear observaciones JSON para asignación ID: {} - JSON: {}",
-                    asignacion.getId(), observacionesJson, e);
+            log.debug("Pesaje destino extraído - Asignación ID: {}, Neto: {} kg",
+                    asignacion.getId(), pesajeDestino.getPesoNetoKg());
         }
     }
 
@@ -718,6 +731,12 @@ public class LotesCooperativaBl {
         List<AsignacionCamion> asignaciones = asignacionCamionRepository.findByLotesId(lote);
         dto.setCamioneAsignados(asignaciones.size());
 
+        // Pesajes de todos los camiones en una consulta, solo si el lote ya los muestra
+        boolean mostrarPesajes = List.of("Vendido a comercializadora", "Procesado").contains(lote.getEstado());
+        Map<Integer, ObservacionesViajeDto> pesajes = mostrarPesajes
+                ? eventosViajeBl.pesajesPorAsignacion(asignaciones)
+                : Map.of();
+
         List<AsignacionCamionSimpleDto> asignacionesDto = asignaciones.stream()
                 .map(a -> {
                     Persona personaTransportista = a.getTransportistaId().getUsuariosId().getPersona();
@@ -733,8 +752,8 @@ public class LotesCooperativaBl {
                     );
 
                     // Solo llenar cuando el estado del lote sea "Vendido a comercializadora" o "Procesado"
-                    if (List.of("Vendido a comercializadora", "Procesado").contains(a.getLotesId().getEstado())) {
-                        extraerYAsignarPesajes(a, as);
+                    if (mostrarPesajes) {
+                        extraerYAsignarPesajes(a, pesajes.get(a.getId()), as);
                     }
 
                     return as;
@@ -947,41 +966,39 @@ public class LotesCooperativaBl {
                 .collect(Collectors.toList());
     }
 
-    private LotePendienteDto convertToPendienteDto(Lotes lote) {
+    /**
+     * Convierte un lote pendiente; persona del socio, minerales y destino llegan precargados
+     */
+    private LotePendienteDto convertToPendienteDto(
+            Lotes lote,
+            Persona persona,
+            List<String> minerales,
+            LoteIngenio loteIngenio,
+            LoteComercializadora loteComercializadora) {
         LotePendienteDto dto = new LotePendienteDto();
 
         dto.setId(lote.getId());
         dto.setMinaNombre(lote.getMinasId().getNombre());
 
-        // Obtener nombre del socio
-        Persona persona = personaRepository.findByUsuariosId(lote.getMinasId().getSocioId().getUsuariosId())
-                .orElse(null);
+        // Nombre del socio
         if (persona != null) {
             dto.setSocioNombre(persona.getNombres() + " " + persona.getPrimerApellido());
             dto.setSocioCi(persona.getCi());
         }
 
-        // Obtener minerales
-        List<LoteMinerales> loteMinerales = loteMineralesRepository.findByLotesId(lote);
-        dto.setMinerales(
-                loteMinerales.stream()
-                        .map(lm -> lm.getMineralesId().getNombre())
-                        .collect(Collectors.toList())
-        );
+        dto.setMinerales(minerales);
 
         dto.setCamionlesSolicitados(lote.getCamionesSolicitados());
         dto.setTipoOperacion(lote.getTipoOperacion());
         dto.setTipoMineral(lote.getTipoMineral());
 
-        // Obtener destino
+        // Destino
         if (lote.getTipoOperacion().equals("procesamiento_planta")) {
-            LoteIngenio loteIngenio = loteIngenioRepository.findByLotesId(lote).orElse(null);
             if (loteIngenio != null) {
                 dto.setDestinoNombre(loteIngenio.getIngenioMineroId().getRazonSocial());
                 dto.setDestinoTipo("Ingenio Minero");
             }
         } else {
-            LoteComercializadora loteComercializadora = loteComercializadoraRepository.findByLotesId(lote).orElse(null);
             if (loteComercializadora != null) {
                 dto.setDestinoNombre(loteComercializadora.getComercializadoraId().getRazonSocial());
                 dto.setDestinoTipo("Comercializadora");
@@ -9,6 +9,7 @@ import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import ucb.edu.bo.sumajflow.bl.AuditoriaBl;
+import ucb.edu.bo.sumajflow.bl.CargadorPersonas;
 import ucb.edu.bo.sumajflow.bl.NotificacionBl;
 import ucb.edu.bo.sumajflow.bl.QRCodeService;
 import ucb.edu.bo.sumajflow.bl.WhatsAppService;
@@ -40,6 +41,7 @@ public class TransportistaBl {
     private final NotificacionBl notificacionBl;
     private final TipoUsuarioRepository tipoUsuarioRepository;
     private final PersonaRepository personaRepository;
+    private final CargadorPersonas cargadorPersonas;
     private final JwtUtil jwtUtil;
 
     private static final int MAX_INTENTOS_VERIFICACION = 3;
@@ -457,6 +459,10 @@ public class TransportistaBl {
                 limit
         );
 
+        cargadorPersonas.precargar(transportistas.stream()
+                .map(Transportista::getUsuariosId)
+                .toList());
+
         List<Map<String, Object>> transportistasDto = transportistas
                 .stream()
                 .map(this::convertirTransportistaADto)
@@ -670,7 +676,7 @@ public class TransportistaBl {
 
         if (t.getUsuariosId() != null) {
             dto.put("correo", t.getUsuariosId().getCorreo());
-            personaRepository.findByUsuariosId(t.getUsuariosId()).ifPresent(persona -> {
+            cargadorPersonas.obtener(t.getUsuariosId()).ifPresent(persona -> {
                 String nombreCompleto = construirNombreCompleto(
                         persona.getNombres(),
                         persona.getPrimerApellido(),
@@ -0,0 +1,18 @@
+package ucb.edu.bo.sumajflow.bl.dashboard;
+
+import java.util.Comparator;
+
+/**
+ * Dueño de un grupo de filas de resumen (socio, cooperativa, ingenio o comercializadora).
+ * El orden natural fija el orden de bloqueo al recalcular varios actores en una transacción.
+ */
+public record ActorResumen(String tipo, Integer id) implements Comparable<ActorResumen> {
+
+    private static final Comparator<ActorResumen> ORDEN =
+            Comparator.comparing(ActorResumen::tipo).thenComparing(ActorResumen::id);
+
+    @Override
+    public int compareTo(ActorResumen otro) {
+        return ORDEN.compare(this, otro);
+    }
+}
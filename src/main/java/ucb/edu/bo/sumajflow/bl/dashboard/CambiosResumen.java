@@ -0,0 +1,125 @@
+package ucb.edu.bo.sumajflow.bl.dashboard;
+
+import lombok.Getter;
+import ucb.edu.bo.sumajflow.entity.*;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.*;
+
+/**
+ * Cambios de una transacción que afectan a los resúmenes de dashboard, como diferencias por fila de resumen.
+ * Cada fila fuente (lote, concentrado o liquidación) aporta filas a los resúmenes (vistas v_aporte_*):
+ * su aporte se resta la primera vez que se toca y el aporte final se suma al confirmar.
+ */
+@Getter
+class CambiosResumen {
+
+    static final String FUENTE_LOTE = "lote";
+    static final String FUENTE_CONCENTRADO = "concentrado";
+    static final String FUENTE_LIQUIDACION = "liquidacion";
+
+    // Fuentes cuyo aporte anterior ya se restó (o que nacieron en esta transacción)
+    private final Map<String, Set<Integer>> fuentes = new TreeMap<>();
+    // Ordenadas por clave primaria: todas las transacciones bloquean las filas de resumen en el mismo orden
+    private final Map<ClaveEstado, Diferencia> estados = new TreeMap<>();
+    private final Map<ClaveDiaria, Diferencia> diarios = new TreeMap<>();
+    // Una captura falló: las diferencias quedarían incompletas y se deja todo a la reconciliación
+    private boolean fallido;
+
+    /**
+     * Fila fuente a la que pertenece el cambio de la entidad; null si no interviene en los resúmenes
+     */
+    static Fuente fuenteDe(Object entidad, Object id) {
+        return switch (entidad) {
+            case Lotes lote -> new Fuente(FUENTE_LOTE, (Integer) id);
+            case LoteIngenio li -> new Fuente(FUENTE_LOTE, li.getLotesId().getId());
+            case LoteComercializadora lc -> new Fuente(FUENTE_LOTE, lc.getLotesId().getId());
+            // Viajes y decisiones de auditoría cuentan en las métricas de la cooperativa del lote
+            case AsignacionCamion asignacion -> new Fuente(FUENTE_LOTE, asignacion.getLotesId().getId());
+            case AuditoriaLotes auditoria -> new Fuente(FUENTE_LOTE, auditoria.getLoteId().getId());
+            case Concentrado concentrado -> new Fuente(FUENTE_CONCENTRADO, (Integer) id);
+            case Liquidacion liquidacion -> new Fuente(FUENTE_LIQUIDACION, (Integer) id);
+            case LiquidacionLote ll -> new Fuente(FUENTE_LIQUIDACION, ll.getLiquidacionId().getId());
+            default -> null;
+        };
+    }
+
+    /**
+     * @return false si la fuente ya se había registrado en la transacción
+     */
+    boolean registrar(Fuente fuente) {
+        return fuentes.computeIfAbsent(fuente.tipo(), k -> new TreeSet<>()).add(fuente.id());
+    }
+
+    void sumarEstado(ClaveEstado clave, int signo, long cantidad, BigDecimal monto, BigDecimal peso) {
+        estados.computeIfAbsent(clave, k -> new Diferencia()).sumar(signo, cantidad, monto, peso, 0);
+    }
+
+    void sumarDiario(ClaveDiaria clave, int signo, long cantidad, BigDecimal monto, BigDecimal peso, long horasEspera) {
+        diarios.computeIfAbsent(clave, k -> new Diferencia()).sumar(signo, cantidad, monto, peso, horasEspera);
+    }
+
+    void marcarFallido() {
+        fallido = true;
+    }
+
+    boolean isVacio() {
+        return fuentes.isEmpty();
+    }
+
+    record Fuente(String tipo, Integer id) {
+    }
+
+    record ClaveEstado(String tipoActor, int actorId, String entidad, String categoria, String estado)
+            implements Comparable<ClaveEstado> {
+
+        private static final Comparator<ClaveEstado> ORDEN = Comparator.comparing(ClaveEstado::tipoActor)
+                .thenComparingInt(ClaveEstado::actorId)
+                .thenComparing(ClaveEstado::entidad)
+                .thenComparing(ClaveEstado::categoria)
+                .thenComparing(ClaveEstado::estado);
+
+        @Override
+        public int compareTo(ClaveEstado otra) {
+            return ORDEN.compare(this, otra);
+        }
+    }
+
+    record ClaveDiaria(String tipoActor, int actorId, String metrica, LocalDate fecha, String categoria)
+            implements Comparable<ClaveDiaria> {
+
+        private static final Comparator<ClaveDiaria> ORDEN = Comparator.comparing(ClaveDiaria::tipoActor)
+                .thenComparingInt(ClaveDiaria::actorId)
+                .thenComparing(ClaveDiaria::metrica)
+                .thenComparing(ClaveDiaria::fecha)
+                .thenComparing(ClaveDiaria::categoria);
+
+        @Override
+        public int compareTo(ClaveDiaria otra) {
+            return ORDEN.compare(this, otra);
+        }
+    }
+
+    /**
+     * Aporte nuevo menos aporte anterior de una fila de resumen
+     */
+    @Getter
+    static final class Diferencia {
+        private long cantidad;
+        private BigDecimal monto = BigDecimal.ZERO;
+        private BigDecimal peso = BigDecimal.ZERO;
+        private long horasEspera;
+
+        private void sumar(int signo, long cantidad, BigDecimal monto, BigDecimal peso, long horasEspera) {
+            this.cantidad += signo * cantidad;
+            this.monto = this.monto.add(monto.multiply(BigDecimal.valueOf(signo)));
+            this.peso = this.peso.add(peso.multiply(BigDecimal.valueOf(signo)));
+            this.horasEspera += signo * horasEspera;
+        }
+
+        boolean isNula() {
+            return cantidad == 0 && monto.signum() == 0 && peso.signum() == 0 && horasEspera == 0;
+        }
+    }
+}
@@ -0,0 +1,130 @@
+package ucb.edu.bo.sumajflow.bl.dashboard;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.function.Supplier;
+
+/**
+ * Respuestas de dashboard por usuario, invalidadas por los eventos de negocio que publican
+ * LotesWebSocketBl, LiquidacionesWebSocketBl y ConcentradoBl.
+ * Un acierto no abre transacción ni toma conexión; la carga corre en una transacción de solo lectura.
+ * Las secciones en vivo (camiones en ruta) no se guardan: se leen en cada consulta con {@link #leerEnVivo}.
+ * Métricas: cache.gets / cache.evictions / cache.size con tag cache=dashboard.{tablero}
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class DashboardCache {
+
+    public static final String TABLERO_SOCIO = "socio";
+    public static final String TABLERO_COOPERATIVA = "cooperativa";
+    public static final String TABLERO_INGENIO = "ingenio";
+    public static final String TABLERO_COMERCIALIZADORA = "comercializadora";
+
+    private static final List<String> TABLEROS = List.of(
+            TABLERO_SOCIO, TABLERO_COOPERATIVA, TABLERO_INGENIO, TABLERO_COMERCIALIZADORA);
+
+    private final MeterRegistry meterRegistry;
+    private final PlatformTransactionManager transactionManager;
+
+    @Value("${dashboard.cache.tamano-maximo:5000}")
+    private long tamanoMaximo;
+
+    @Value("${dashboard.cache.vigencia:PT2M}")
+    private Duration vigencia;
+
+    private final Map<String, Cache<Integer, Object>> caches = new HashMap<>();
+    private TransactionTemplate transaccionLectura;
+
+    @PostConstruct
+    public void iniciar() {
+        transaccionLectura = new TransactionTemplate(transactionManager);
+        transaccionLectura.setReadOnly(true);
+
+        for (String tablero : TABLEROS) {
+            Cache<Integer, Object> cache = Caffeine.newBuilder()
+                    .maximumSize(tamanoMaximo)
+                    .expireAfterWrite(vigencia)
+                    .recordStats()
+                    .build();
+            CaffeineCacheMetrics.monitor(meterRegistry, cache, "dashboard." + tablero);
+            caches.put(tablero, cache);
+        }
+
+        log.info("📊 Caché de dashboards - Máximo: {} por tablero, Vigencia: {}", tamanoMaximo, vigencia);
+    }
+
+    /**
+     * Devuelve el dashboard en caché o lo construye (una sola carga concurrente por usuario)
+     */
+    public <T> T obtener(String tablero, Integer usuarioId, Class<T> tipo, Supplier<T> cargar) {
+        Object dashboard = caches.get(tablero).get(usuarioId,
+                id -> transaccionLectura.execute(estado -> cargar.get()));
+        return tipo.cast(dashboard);
+    }
+
+    /**
+     * Lee una sección que cambia con el tracking y no debe servirse desde caché,
+     * en la misma transacción de solo lectura que usa una carga
+     */
+    public <T> T leerEnVivo(Supplier<T> leer) {
+        return transaccionLectura.execute(estado -> leer.get());
+    }
+
+    /**
+     * Invalida los dashboards de los usuarios al confirmar la transacción en curso.
+     * Una carga en vuelo que leyó datos previos al commit queda descartada por esta invalidación.
+     */
+    public void invalidar(Integer... usuarioIds) {
+        Set<Integer> ids = new HashSet<>();
+        for (Integer usuarioId : usuarioIds) {
+            if (usuarioId != null) {
+                ids.add(usuarioId);
+            }
+        }
+        if (ids.isEmpty()) {
+            return;
+        }
+
+        despuesDeConfirmar(() -> {
+            caches.values().forEach(cache -> cache.invalidateAll(ids));
+            log.debug("🧹 Dashboards invalidados - Usuarios: {}", ids);
+        });
+    }
+
+    /**
+     * Vacía todos los tableros (cambios masivos cuyos usuarios afectados no se conocen)
+     */
+    public void invalidarTodo() {
+        despuesDeConfirmar(() -> caches.values().forEach(Cache::invalidateAll));
+    }
+
+    // ==================== MÉTODOS PRIVADOS ====================
+
+    private void despuesDeConfirmar(Runnable accion) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            accion.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                accion.run();
+            }
+        });
+    }
+}
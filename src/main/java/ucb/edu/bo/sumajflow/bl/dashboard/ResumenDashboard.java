@@ -0,0 +1,92 @@
+package ucb.edu.bo.sumajflow.bl.dashboard;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Filas pre-agregadas de un actor, leídas una sola vez por carga de dashboard.
+ */
+public class ResumenDashboard {
+
+    private final List<FilaEstado> estados;
+    private final List<FilaDiaria> diario;
+
+    ResumenDashboard(List<FilaEstado> estados, List<FilaDiaria> diario) {
+        this.estados = estados;
+        this.diario = diario;
+    }
+
+    // ==================== FOTO POR ESTADO ====================
+
+    public Stream<FilaEstado> estados(String entidad) {
+        return estados.stream().filter(f -> f.entidad().equals(entidad));
+    }
+
+    public long contar(String entidad, String estado) {
+        return contar(entidad, List.of(estado));
+    }
+
+    public long contar(String entidad, Collection<String> estadosBuscados) {
+        return estados(entidad)
+                .filter(f -> estadosBuscados.contains(f.estado()))
+                .mapToLong(FilaEstado::cantidad)
+                .sum();
+    }
+
+    // ==================== MÉTRICAS DIARIAS ====================
+
+    /**
+     * Filas de la métrica entre dos fechas, ambas inclusive
+     */
+    public Stream<FilaDiaria> diario(String metrica, LocalDate desde, LocalDate hasta) {
+        return diario.stream()
+                .filter(f -> f.metrica().equals(metrica))
+                .filter(f -> !f.fecha().isBefore(desde) && !f.fecha().isAfter(hasta));
+    }
+
+    public long contarDiario(String metrica, LocalDate desde, LocalDate hasta) {
+        return diario(metrica, desde, hasta).mapToLong(FilaDiaria::cantidad).sum();
+    }
+
+    public BigDecimal montoDiario(String metrica, LocalDate desde, LocalDate hasta) {
+        return diario(metrica, desde, hasta)
+                .map(FilaDiaria::monto)
+                .reduce(BigDecimal.ZERO, BigDecimal::add);
+    }
+
+    public BigDecimal pesoDiario(String metrica, LocalDate desde, LocalDate hasta) {
+        return diario(metrica, desde, hasta)
+                .map(FilaDiaria::peso)
+                .reduce(BigDecimal.ZERO, BigDecimal::add);
+    }
+
+    /**
+     * Cantidad y montos por estado (categoria: mineral del concentrado o tipo de liquidación)
+     */
+    public record FilaEstado(
+            String entidad,
+            String categoria,
+            String estado,
+            long cantidad,
+            BigDecimal monto,
+            BigDecimal peso
+    ) {
+    }
+
+    /**
+     * Totales de una métrica en un día
+     */
+    public record FilaDiaria(
+            String metrica,
+            LocalDate fecha,
+            String categoria,
+            long cantidad,
+            BigDecimal monto,
+            BigDecimal peso,
+            long horasEspera
+    ) {
+    }
+}
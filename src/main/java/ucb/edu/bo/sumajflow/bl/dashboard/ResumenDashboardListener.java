@@ -0,0 +1,166 @@
+package ucb.edu.bo.sumajflow.bl.dashboard;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.persistence.EntityManagerFactory;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.action.spi.AfterTransactionCompletionProcess;
+import org.hibernate.action.spi.BeforeTransactionCompletionProcess;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.engine.spi.SessionImplementor;
+import org.hibernate.event.service.spi.EventListenerRegistry;
+import org.hibernate.event.spi.*;
+import org.hibernate.persister.entity.EntityPersister;
+import org.hibernate.type.Type;
+import org.springframework.stereotype.Component;
+import ucb.edu.bo.sumajflow.entity.AsignacionCamion;
+import ucb.edu.bo.sumajflow.entity.Concentrado;
+import ucb.edu.bo.sumajflow.entity.Liquidacion;
+import ucb.edu.bo.sumajflow.entity.Lotes;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Detecta en el flush de Hibernate los cambios que alteran los resúmenes de dashboard
+ * (estado de lotes, viajes, concentrados y liquidaciones; altas de auditoría y de destinos).
+ * Antes del primer cambio de cada fila fuente resta su aporte actual, leído de la base con el
+ * dueño anterior (mina, socio propietario, socio, comercializadora), y justo antes de confirmar
+ * suma el aporte final: el resumen del dueño anterior baja y el del nuevo sube, en la misma
+ * conexión. Las actualizaciones masivas por JPQL o SQL no pasan por aquí: las corrige
+ * {@link ResumenDashboardReconciliador}.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class ResumenDashboardListener implements PreInsertEventListener, PostInsertEventListener,
+        PreUpdateEventListener, PreDeleteEventListener {
+
+    // Propiedades que cambian alguna métrica; las demás actualizaciones no ajustan nada
+    private static final Map<Class<?>, Set<String>> PROPIEDADES_VIGILADAS = Map.of(
+            Lotes.class, Set.of("estado", "pesoTotalReal", "minasId"),
+            AsignacionCamion.class, Set.of("estado", "fechaFin"),
+            Concentrado.class, Set.of("estado", "pesoFinal", "mineralPrincipal",
+                    "socioPropietarioId", "ingenioMineroId"),
+            Liquidacion.class, Set.of("estado", "valorNetoBob", "fechaPago", "tipoLiquidacion",
+                    "comercializadoraId", "socioId")
+    );
+
+    private final EntityManagerFactory entityManagerFactory;
+    private final ResumenDashboardService resumenDashboardService;
+
+    private final Map<SessionImplementor, CambiosResumen> pendientes = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    public void registrar() {
+        EventListenerRegistry registro = entityManagerFactory.unwrap(SessionFactoryImplementor.class)
+                .getServiceRegistry()
+                .getService(EventListenerRegistry.class);
+
+        registro.appendListeners(EventType.PRE_INSERT, this);
+        registro.appendListeners(EventType.POST_INSERT, this);
+        registro.appendListeners(EventType.PRE_UPDATE, this);
+        registro.appendListeners(EventType.PRE_DELETE, this);
+
+        log.info("📊 Ajuste transaccional de resúmenes de dashboard registrado");
+    }
+
+    @Override
+    public boolean onPreInsert(PreInsertEvent event) {
+        // Altas que cuelgan de una fuente existente (destinos, viajes, auditoría, lotes de una liquidación)
+        CambiosResumen.Fuente fuente = CambiosResumen.fuenteDe(event.getEntity(), event.getId());
+        if (fuente != null && fuente.id() != null) {
+            capturar(event.getSession(), fuente);
+        }
+        return false;
+    }
+
+    @Override
+    public void onPostInsert(PostInsertEvent event) {
+        // Lote, concentrado o liquidación nuevos: no aportaban nada antes, solo falta sumar al confirmar
+        CambiosResumen.Fuente fuente = CambiosResumen.fuenteDe(event.getEntity(), event.getId());
+        if (fuente != null) {
+            cambiosDeSesion(event.getSession()).registrar(fuente);
+        }
+    }
+
+    @Override
+    public boolean onPreUpdate(PreUpdateEvent event) {
+        if (cambioPropiedadVigilada(event)) {
+            capturar(event.getSession(), CambiosResumen.fuenteDe(event.getEntity(), event.getId()));
+        }
+        return false;
+    }
+
+    @Override
+    public boolean onPreDelete(PreDeleteEvent event) {
+        // Tras el DELETE la fila ya no aporta nada: basta con restar lo que aportaba
+        CambiosResumen.Fuente fuente = CambiosResumen.fuenteDe(event.getEntity(), event.getId());
+        if (fuente != null) {
+            capturar(event.getSession(), fuente);
+        }
+        return false;
+    }
+
+    @Override
+    public boolean requiresPostCommitHandling(EntityPersister persister) {
+        return false;
+    }
+
+    // ==================== MÉTODOS PRIVADOS ====================
+
+    private boolean cambioPropiedadVigilada(PreUpdateEvent event) {
+        Set<String> vigiladas = PROPIEDADES_VIGILADAS.get(event.getEntity().getClass());
+        if (vigiladas == null) {
+            return false;
+        }
+        // Sin estado anterior (p. ej. update de una entidad separada) se asume que cambió
+        Object[] anterior = event.getOldState();
+        if (anterior == null) {
+            return true;
+        }
+        Object[] nuevo = event.getState();
+        String[] nombres = event.getPersister().getPropertyNames();
+        Type[] tipos = event.getPersister().getPropertyTypes();
+        for (int i = 0; i < nombres.length; i++) {
+            if (vigiladas.contains(nombres[i]) && !tipos[i].isEqual(anterior[i], nuevo[i])) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Resta el aporte actual de la fuente la primera vez que la transacción la toca
+     */
+    private void capturar(EventSource session, CambiosResumen.Fuente fuente) {
+        CambiosResumen cambios = cambiosDeSesion(session);
+        session.doWork(conexion -> resumenDashboardService.capturar(conexion, cambios, fuente));
+    }
+
+    private CambiosResumen cambiosDeSesion(EventSource session) {
+        CambiosResumen cambios = pendientes.get(session);
+        if (cambios == null) {
+            cambios = new CambiosResumen();
+            programar(session, cambios);
+        }
+        return cambios;
+    }
+
+    /**
+     * Primer cambio de la transacción: engancha el ajuste antes del commit y la limpieza al terminar
+     */
+    private void programar(EventSource session, CambiosResumen cambios) {
+        pendientes.put(session, cambios);
+
+        session.getActionQueue().registerProcess((BeforeTransactionCompletionProcess) sesion -> {
+            CambiosResumen aplicar = pendientes.get(sesion);
+            if (aplicar != null && !aplicar.isVacio()) {
+                sesion.doWork(conexion -> resumenDashboardService.aplicar(conexion, aplicar));
+            }
+        });
+        session.getActionQueue().registerProcess(
+                (AfterTransactionCompletionProcess) (exito, sesion) -> pendientes.remove(sesion));
+    }
+}
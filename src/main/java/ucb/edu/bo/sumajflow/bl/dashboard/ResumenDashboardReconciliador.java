@@ -0,0 +1,67 @@
+package ucb.edu.bo.sumajflow.bl.dashboard;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+
+/**
+ * Verifica periódicamente los resúmenes de dashboard contra un recálculo completo desde las vistas
+ * y recalcula solo los actores que difieren (cambios hechos fuera de Hibernate, recálculos fallidos).
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class ResumenDashboardReconciliador {
+
+    private final ResumenDashboardService resumenDashboardService;
+    private final DashboardCache dashboardCache;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${dashboard.resumen.reconciliacion-habilitada:true}")
+    private boolean habilitada;
+
+    private Counter actoresCorregidos;
+
+    @PostConstruct
+    public void iniciar() {
+        actoresCorregidos = Counter.builder("dashboard.resumen.divergencias")
+                .description("Actores con resúmenes desactualizados corregidos por la reconciliación")
+                .register(meterRegistry);
+    }
+
+    @Scheduled(cron = "${dashboard.resumen.cron-reconciliacion:0 30 3 * * *}")
+    public void reconciliar() {
+        if (!habilitada) {
+            return;
+        }
+
+        long inicio = System.currentTimeMillis();
+        try {
+            List<ActorResumen> actores = resumenDashboardService.buscarActoresConDiferencias();
+
+            if (actores.isEmpty()) {
+                log.info("✅ Resúmenes de dashboard consistentes ({} ms)", System.currentTimeMillis() - inicio);
+                return;
+            }
+
+            log.warn("⚠️ Resúmenes de dashboard desactualizados - {} actores: {}", actores.size(), actores);
+            resumenDashboardService.recalcularActores(actores);
+            actoresCorregidos.increment(actores.size());
+            // Los actores corregidos no publican eventos: sus dashboards en caché quedarían desfasados
+            dashboardCache.invalidarTodo();
+
+            log.info("🔄 Resúmenes de dashboard corregidos - Actores: {}, Tiempo: {} ms",
+                    actores.size(), System.currentTimeMillis() - inicio);
+
+        } catch (Exception e) {
+            log.error("❌ Error en la reconciliación de resúmenes de dashboard: {}", e.getMessage(), e);
+        }
+    }
+}
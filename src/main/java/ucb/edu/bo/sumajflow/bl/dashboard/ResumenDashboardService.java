@@ -0,0 +1,347 @@
+package ucb.edu.bo.sumajflow.bl.dashboard;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.Array;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Savepoint;
+import java.time.LocalDate;
+import java.util.*;
+
+/**
+ * Resúmenes pre-agregados de los dashboards (tablas resumen_estado_actor y resumen_diario_actor).
+ * Cada transacción ajusta solo las filas que cambian: resta el aporte de cada fila fuente
+ * (v_aporte_*, V5__resumen_dashboard_aportes.sql) antes de su primer cambio y suma el aporte final
+ * al confirmar con INSERT ... ON CONFLICT DO UPDATE. El recálculo completo de un actor desde
+ * v_resumen_* queda para la reconciliación, bajo un advisory lock exclusivo por actor que espera
+ * a las transacciones con diferencias del mismo actor en curso (que lo toman compartido).
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class ResumenDashboardService {
+
+    public static final String ACTOR_SOCIO = "socio";
+    public static final String ACTOR_COOPERATIVA = "cooperativa";
+    public static final String ACTOR_INGENIO = "ingenio";
+    public static final String ACTOR_COMERCIALIZADORA = "comercializadora";
+
+    public static final String ENTIDAD_LOTE = "lote";
+    public static final String ENTIDAD_CONCENTRADO = "concentrado";
+    public static final String ENTIDAD_LIQUIDACION = "liquidacion";
+
+    public static final String METRICA_LIQUIDACION_PAGADA = "liquidacion_pagada";
+    public static final String METRICA_VIAJE_COMPLETADO = "viaje_completado";
+    public static final String METRICA_LOTE_APROBADO = "lote_aprobado";
+    public static final String METRICA_LOTE_RECHAZADO = "lote_rechazado";
+    public static final String METRICA_CONCENTRADO_CREADO = "concentrado_creado";
+
+    // Fila que se bloquea antes de leer el aporte de cada fuente
+    private static final Map<String, String> TABLA_FUENTE = Map.of(
+            CambiosResumen.FUENTE_LOTE, "lotes",
+            CambiosResumen.FUENTE_CONCENTRADO, "concentrado",
+            CambiosResumen.FUENTE_LIQUIDACION, "liquidacion");
+
+    private static final String APORTES_ESTADO = """
+            SELECT tipo_actor, actor_id, entidad, categoria, estado, monto, peso
+            FROM v_aporte_estado_actor
+            WHERE fuente = ? AND fuente_id = ANY(?)
+            """;
+
+    private static final String APORTES_DIARIOS = """
+            SELECT tipo_actor, actor_id, metrica, fecha, categoria, monto, peso, horas_espera
+            FROM v_aporte_diario_actor
+            WHERE fuente = ? AND fuente_id = ANY(?)
+            """;
+
+    private static final String SUMAR_ESTADO = """
+            INSERT INTO resumen_estado_actor (tipo_actor, actor_id, entidad, categoria, estado, cantidad, monto, peso)
+            VALUES (?, ?, ?, ?, ?, ?, ?, ?)
+            ON CONFLICT (tipo_actor, actor_id, entidad, categoria, estado) DO UPDATE SET
+                cantidad = resumen_estado_actor.cantidad + EXCLUDED.cantidad,
+                monto = resumen_estado_actor.monto + EXCLUDED.monto,
+                peso = resumen_estado_actor.peso + EXCLUDED.peso
+            """;
+
+    private static final String SUMAR_DIARIO = """
+            INSERT INTO resumen_diario_actor (tipo_actor, actor_id, metrica, fecha, categoria, cantidad, monto, peso, horas_espera)
+            VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)
+            ON CONFLICT (tipo_actor, actor_id, metrica, fecha, categoria) DO UPDATE SET
+                cantidad = resumen_diario_actor.cantidad + EXCLUDED.cantidad,
+                monto = resumen_diario_actor.monto + EXCLUDED.monto,
+                peso = resumen_diario_actor.peso + EXCLUDED.peso,
+                horas_espera = resumen_diario_actor.horas_espera + EXCLUDED.horas_espera
+            """;
+
+    private static final String BORRAR_ESTADO_VACIO = """
+            DELETE FROM resumen_estado_actor
+            WHERE tipo_actor = ? AND actor_id = ? AND entidad = ? AND categoria = ? AND estado = ? AND cantidad <= 0
+            """;
+
+    private static final String BORRAR_DIARIO_VACIO = """
+            DELETE FROM resumen_diario_actor
+            WHERE tipo_actor = ? AND actor_id = ? AND metrica = ? AND fecha = ? AND categoria = ? AND cantidad <= 0
+            """;
+
+    private static final String ACTORES_CON_DIFERENCIAS = """
+            SELECT DISTINCT tipo_actor, actor_id FROM (
+                (SELECT tipo_actor, actor_id, entidad, categoria, estado, cantidad, monto, peso, 0 FROM v_resumen_estado_actor
+                 EXCEPT SELECT tipo_actor, actor_id, entidad, categoria, estado, cantidad, monto, peso, 0 FROM resumen_estado_actor)
+                UNION ALL
+                (SELECT tipo_actor, actor_id, entidad, categoria, estado, cantidad, monto, peso, 0 FROM resumen_estado_actor
+                 EXCEPT SELECT tipo_actor, actor_id, entidad, categoria, estado, cantidad, monto, peso, 0 FROM v_resumen_estado_actor)
+                UNION ALL
+                (SELECT tipo_actor, actor_id, metrica, categoria, CAST(fecha AS TEXT), cantidad, monto, peso, horas_espera FROM v_resumen_diario_actor
+                 EXCEPT SELECT tipo_actor, actor_id, metrica, categoria, CAST(fecha AS TEXT), cantidad, monto, peso, horas_espera FROM resumen_diario_actor)
+                UNION ALL
+                (SELECT tipo_actor, actor_id, metrica, categoria, CAST(fecha AS TEXT), cantidad, monto, peso, horas_espera FROM resumen_diario_actor
+                 EXCEPT SELECT tipo_actor, actor_id, metrica, categoria, CAST(fecha AS TEXT), cantidad, monto, peso, horas_espera FROM v_resumen_diario_actor)
+            ) d
+            ORDER BY tipo_actor, actor_id
+            """;
+
+    private static final RowMapper<ActorResumen> ACTOR_MAPPER =
+            (rs, i) -> new ActorResumen(rs.getString(1), rs.getInt(2));
+
+    private final JdbcTemplate jdbcTemplate;
+    private final MeterRegistry meterRegistry;
+
+    private Counter filasAjustadas;
+    private Counter erroresAjuste;
+
+    @PostConstruct
+    public void iniciar() {
+        filasAjustadas = Counter.builder("dashboard.resumen.filas")
+                .description("Filas de resumen ajustadas por diferencias al confirmar una transacción")
+                .register(meterRegistry);
+        erroresAjuste = Counter.builder("dashboard.resumen.errores")
+                .description("Ajustes fallidos (quedan pendientes para la reconciliación)")
+                .register(meterRegistry);
+    }
+
+    // ==================== LECTURA ====================
+
+    /**
+     * Foto por estado completa y métricas diarias desde la fecha indicada (dos consultas por clave primaria)
+     */
+    @Transactional(readOnly = true)
+    public ResumenDashboard obtenerResumen(String tipoActor, Integer actorId, LocalDate desde) {
+        List<ResumenDashboard.FilaEstado> estados = jdbcTemplate.query("""
+                        SELECT entidad, categoria, estado, cantidad, monto, peso
+                        FROM resumen_estado_actor
+                        WHERE tipo_actor = ? AND actor_id = ?
+                        """,
+                (rs, i) -> new ResumenDashboard.FilaEstado(
+                        rs.getString("entidad"),
+                        rs.getString("categoria"),
+                        rs.getString("estado"),
+                        rs.getLong("cantidad"),
+                        rs.getBigDecimal("monto"),
+                        rs.getBigDecimal("peso")),
+                tipoActor, actorId);
+
+        List<ResumenDashboard.FilaDiaria> diario = jdbcTemplate.query("""
+                        SELECT metrica, fecha, categoria, cantidad, monto, peso, horas_espera
+                        FROM resumen_diario_actor
+                        WHERE tipo_actor = ? AND actor_id = ? AND fecha >= ?
+                        """,
+                (rs, i) -> new ResumenDashboard.FilaDiaria(
+                        rs.getString("metrica"),
+                        rs.getObject("fecha", LocalDate.class),
+                        rs.getString("categoria"),
+                        rs.getLong("cantidad"),
+                        rs.getBigDecimal("monto"),
+                        rs.getBigDecimal("peso"),
+                        rs.getLong("horas_espera")),
+                tipoActor, actorId, desde);
+
+        return new ResumenDashboard(estados, diario);
+    }
+
+    // ==================== DIFERENCIAS TRANSACCIONALES ====================
+
+    /**
+     * Resta el aporte actual de una fila fuente antes de que la transacción la cambie por primera vez.
+     * Bloquea la fila (FOR UPDATE) para que otra transacción no cambie la misma fuente entre esta
+     * lectura y el commit: su captura esperará y leerá ya el estado confirmado, sin contar dos veces.
+     */
+    void capturar(Connection conexion, CambiosResumen cambios, CambiosResumen.Fuente fuente) throws SQLException {
+        if (!cambios.registrar(fuente) || cambios.isFallido()) {
+            return;
+        }
+        Savepoint savepoint = conexion.setSavepoint();
+
+        try {
+            JdbcTemplate jdbc = new JdbcTemplate(new SingleConnectionDataSource(conexion, true));
+            Array ids = arreglo(conexion, List.of(fuente.id()));
+
+            jdbc.queryForList("SELECT id FROM " + TABLA_FUENTE.get(fuente.tipo()) + " WHERE id = ANY(?) FOR UPDATE", ids);
+            sumarAportes(jdbc, cambios, fuente.tipo(), ids, -1);
+            conexion.releaseSavepoint(savepoint);
+
+        } catch (Exception e) {
+            conexion.rollback(savepoint);
+            cambios.marcarFallido();
+            erroresAjuste.increment();
+            log.error("❌ Error al capturar el aporte de {} a los resúmenes de dashboard: {}", fuente, e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Suma el aporte final de las fuentes cambiadas y aplica las diferencias por fila, sobre la misma
+     * conexión y antes de confirmar. Un fallo se revierte hasta el savepoint y no aborta la transacción
+     * del negocio; la reconciliación periódica corrige los actores después.
+     */
+    void aplicar(Connection conexion, CambiosResumen cambios) throws SQLException {
+        if (cambios.isFallido()) {
+            log.warn("⚠️ Diferencias de resúmenes incompletas, se dejan a la reconciliación - Fuentes: {}",
+                    cambios.getFuentes());
+            return;
+        }
+        Savepoint savepoint = conexion.setSavepoint();
+
+        try {
+            JdbcTemplate jdbc = new JdbcTemplate(new SingleConnectionDataSource(conexion, true));
+            for (Map.Entry<String, Set<Integer>> fuentes : cambios.getFuentes().entrySet()) {
+                sumarAportes(jdbc, cambios, fuentes.getKey(), arreglo(conexion, fuentes.getValue()), 1);
+            }
+            cambios.getEstados().values().removeIf(CambiosResumen.Diferencia::isNula);
+            cambios.getDiarios().values().removeIf(CambiosResumen.Diferencia::isNula);
+
+            bloquearActores(jdbc, cambios);
+            int filas = aplicarEstados(jdbc, cambios.getEstados()) + aplicarDiarios(jdbc, cambios.getDiarios());
+            conexion.releaseSavepoint(savepoint);
+            filasAjustadas.increment(filas);
+
+            log.debug("📊 Resúmenes de dashboard ajustados - Fuentes: {}, Filas: {}", cambios.getFuentes(), filas);
+
+        } catch (Exception e) {
+            conexion.rollback(savepoint);
+            erroresAjuste.increment();
+            log.error("❌ Error al ajustar resúmenes de dashboard {}: {}", cambios.getFuentes(), e.getMessage(), e);
+        }
+    }
+
+    private void sumarAportes(JdbcTemplate jdbc, CambiosResumen cambios, String fuente, Array ids, int signo) {
+        jdbc.query(APORTES_ESTADO, rs -> {
+            cambios.sumarEstado(new CambiosResumen.ClaveEstado(
+                            rs.getString("tipo_actor"),
+                            rs.getInt("actor_id"),
+                            rs.getString("entidad"),
+                            rs.getString("categoria"),
+                            rs.getString("estado")),
+                    signo, 1, rs.getBigDecimal("monto"), rs.getBigDecimal("peso"));
+        }, fuente, ids);
+
+        jdbc.query(APORTES_DIARIOS, rs -> {
+            cambios.sumarDiario(new CambiosResumen.ClaveDiaria(
+                            rs.getString("tipo_actor"),
+                            rs.getInt("actor_id"),
+                            rs.getString("metrica"),
+                            rs.getObject("fecha", LocalDate.class),
+                            rs.getString("categoria")),
+                    signo, 1, rs.getBigDecimal("monto"), rs.getBigDecimal("peso"), rs.getLong("horas_espera"));
+        }, fuente, ids);
+    }
+
+    /**
+     * Lock compartido por actor, en orden: las transacciones con diferencias no se bloquean entre sí
+     * (las filas ya las serializa ON CONFLICT) pero sí frente al recálculo de la reconciliación
+     */
+    private void bloquearActores(JdbcTemplate jdbc, CambiosResumen cambios) {
+        Set<ActorResumen> actores = new TreeSet<>();
+        cambios.getEstados().keySet().forEach(c -> actores.add(new ActorResumen(c.tipoActor(), c.actorId())));
+        cambios.getDiarios().keySet().forEach(c -> actores.add(new ActorResumen(c.tipoActor(), c.actorId())));
+
+        for (ActorResumen actor : actores) {
+            jdbc.queryForList("SELECT pg_advisory_xact_lock_shared(hashtext(?), ?)", actor.tipo(), actor.id());
+        }
+    }
+
+    private int aplicarEstados(JdbcTemplate jdbc, Map<CambiosResumen.ClaveEstado, CambiosResumen.Diferencia> estados) {
+        if (estados.isEmpty()) {
+            return 0;
+        }
+        List<Object[]> sumas = new ArrayList<>();
+        List<Object[]> vacias = new ArrayList<>();
+        estados.forEach((clave, diferencia) -> {
+            sumas.add(new Object[]{clave.tipoActor(), clave.actorId(), clave.entidad(), clave.categoria(), clave.estado(),
+                    diferencia.getCantidad(), diferencia.getMonto(), diferencia.getPeso()});
+            if (diferencia.getCantidad() < 0) {
+                vacias.add(new Object[]{clave.tipoActor(), clave.actorId(), clave.entidad(), clave.categoria(), clave.estado()});
+            }
+        });
+
+        jdbc.batchUpdate(SUMAR_ESTADO, sumas);
+        if (!vacias.isEmpty()) {
+            jdbc.batchUpdate(BORRAR_ESTADO_VACIO, vacias);
+        }
+        return sumas.size();
+    }
+
+    private int aplicarDiarios(JdbcTemplate jdbc, Map<CambiosResumen.ClaveDiaria, CambiosResumen.Diferencia> diarios) {
+        if (diarios.isEmpty()) {
+            return 0;
+        }
+        List<Object[]> sumas = new ArrayList<>();
+        List<Object[]> vacias = new ArrayList<>();
+        diarios.forEach((clave, diferencia) -> {
+            sumas.add(new Object[]{clave.tipoActor(), clave.actorId(), clave.metrica(), clave.fecha(), clave.categoria(),
+                    diferencia.getCantidad(), diferencia.getMonto(), diferencia.getPeso(), diferencia.getHorasEspera()});
+            if (diferencia.getCantidad() < 0) {
+                vacias.add(new Object[]{clave.tipoActor(), clave.actorId(), clave.metrica(), clave.fecha(), clave.categoria()});
+            }
+        });
+
+        jdbc.batchUpdate(SUMAR_DIARIO, sumas);
+        if (!vacias.isEmpty()) {
+            jdbc.batchUpdate(BORRAR_DIARIO_VACIO, vacias);
+        }
+        return sumas.size();
+    }
+
+    private Array arreglo(Connection conexion, Collection<Integer> ids) throws SQLException {
+        return conexion.createArrayOf("integer", ids.toArray());
+    }
+
+    // ==================== RECONCILIACIÓN ====================
+
+    /**
+     * Compara las tablas con un recálculo completo desde las vistas
+     * @return actores con al menos una fila distinta, faltante o sobrante
+     */
+    @Transactional(readOnly = true)
+    public List<ActorResumen> buscarActoresConDiferencias() {
+        return jdbcTemplate.query(ACTORES_CON_DIFERENCIAS, ACTOR_MAPPER);
+    }
+
+    @Transactional
+    public void recalcularActores(Collection<ActorResumen> actores) {
+        new TreeSet<>(actores).forEach(actor -> recalcularActor(jdbcTemplate, actor));
+    }
+
+    private void recalcularActor(JdbcTemplate jdbc, ActorResumen actor) {
+        // Exclusivo hasta el fin de la transacción: espera a las diferencias en curso del actor
+        jdbc.queryForList("SELECT pg_advisory_xact_lock(hashtext(?), ?)", actor.tipo(), actor.id());
+
+        jdbc.update("DELETE FROM resumen_estado_actor WHERE tipo_actor = ? AND actor_id = ?",
+                actor.tipo(), actor.id());
+        jdbc.update("INSERT INTO resumen_estado_actor SELECT * FROM v_resumen_estado_actor WHERE tipo_actor = ? AND actor_id = ?",
+                actor.tipo(), actor.id());
+
+        jdbc.update("DELETE FROM resumen_diario_actor WHERE tipo_actor = ? AND actor_id = ?",
+                actor.tipo(), actor.id());
+        jdbc.update("INSERT INTO resumen_diario_actor SELECT * FROM v_resumen_diario_actor WHERE tipo_actor = ? AND actor_id = ?",
+                actor.tipo(), actor.id());
+    }
+}
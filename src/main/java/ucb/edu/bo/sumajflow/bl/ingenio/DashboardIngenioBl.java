@@ -5,7 +5,10 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
+import ucb.edu.bo.sumajflow.bl.CargadorPersonas;
+import ucb.edu.bo.sumajflow.bl.dashboard.DashboardCache;
+import ucb.edu.bo.sumajflow.bl.dashboard.ResumenDashboard;
+import ucb.edu.bo.sumajflow.bl.dashboard.ResumenDashboardService;
 import ucb.edu.bo.sumajflow.dto.ingenio.*;
 import ucb.edu.bo.sumajflow.entity.*;
 import ucb.edu.bo.sumajflow.repository.*;
@@ -20,6 +23,9 @@ import java.time.temporal.ChronoUnit;
 import java.util.*;
 import java.util.stream.Collectors;
 
+import static ucb.edu.bo.sumajflow.bl.dashboard.DashboardCache.*;
+import static ucb.edu.bo.sumajflow.bl.dashboard.ResumenDashboardService.*;
+
 @Slf4j
 @Service
 @RequiredArgsConstructor
@@ -35,31 +41,44 @@ public class DashboardIngenioBl {
     private final ProcesosRepository procesosRepository;
     private final LoteProcesoPlantaRepository loteProcesoPlantaRepository;
     private final SocioRepository socioRepository;
-    private final PersonaRepository personaRepository;
+    private final CargadorPersonas cargadorPersonas;
     private final UsuariosRepository usuariosRepository;
+    private final ResumenDashboardService resumenDashboardService;
+    private final DashboardCache dashboardCache;
     private final ObjectMapper objectMapper;
 
-    @Transactional(readOnly = true)
+    /**
+     * Dashboard del usuario, servido desde caché mientras no llegue un evento que lo invalide
+     */
     public DashboardIngenioDto obtenerDashboard(Integer usuarioId) {
+        return dashboardCache.obtener(TABLERO_INGENIO, usuarioId, DashboardIngenioDto.class, () -> construirDashboard(usuarioId));
+    }
+
+    private DashboardIngenioDto construirDashboard(Integer usuarioId) {
         log.debug("Obteniendo dashboard para ingenio - Usuario: {}", usuarioId);
 
         IngenioMinero ingenio = obtenerIngenio(usuarioId);
 
+        // KPIs pre-agregados: foto por estado y métricas diarias del mes (y de los últimos 6 días)
+        LocalDate hoy = LocalDate.now();
+        LocalDate desde = hoy.minusDays(5).isBefore(hoy.withDayOfMonth(1)) ? hoy.minusDays(5) : hoy.withDayOfMonth(1);
+        ResumenDashboard resumen = resumenDashboardService.obtenerResumen(ACTOR_INGENIO, ingenio.getId(), desde);
+
         DashboardIngenioDto dashboard = new DashboardIngenioDto();
 
         // Cargar todos los datos
         dashboard.setOperacionesData(obtenerDatosOperaciones(ingenio));
-        dashboard.setKanbanData(obtenerDatosKanban(ingenio));
-        dashboard.setFinancieroData(obtenerDatosFinancieros(ingenio));
-        dashboard.setLotesPendientesData(obtenerDatosLotesPendientes(ingenio));
+        dashboard.setKanbanData(obtenerDatosKanban(resumen));
+        dashboard.setFinancieroData(obtenerDatosFinancieros(resumen));
+        dashboard.setLotesPendientesData(obtenerDatosLotesPendientes(resumen));
         dashboard.setKanbanColumnas(obtenerKanbanColumnas(ingenio));
         dashboard.setProcesosPlanta(obtenerProcesosPlanta(ingenio));
         dashboard.setCapacidadPlanta(obtenerCapacidadPlanta(ingenio));
         dashboard.setTurnoActual(obtenerTurnoActual());
         dashboard.setAlertasOperacionales(generarAlertasOperacionales(ingenio));
         dashboard.setLiquidacionesToll(obtenerLiquidacionesToll(ingenio));
-        dashboard.setProduccionDiaria(obtenerProduccionDiaria(ingenio));
-        dashboard.setProduccionPorMineral(obtenerProduccionPorMineral(ingenio));
+        dashboard.setProduccionDiaria(obtenerProduccionDiaria(ingenio, resumen));
+        dashboard.setProduccionPorMineral(obtenerProduccionPorMineral(resumen));
         dashboard.setLotesDisponibles(obtenerLotesDisponibles(ingenio));
 
         log.info("Dashboard generado exitosamente para ingenio {}", ingenio.getId());
@@ -145,24 +164,11 @@ public class DashboardIngenioBl {
     }
 
     // === DATOS DE KANBAN ===
-    private KanbanDataDto obtenerDatosKanban(IngenioMinero ingenio) {
-        List<Concentrado> concentrados = concentradoRepository.findByIngenioMineroId(ingenio);
-
-        long porIniciar = concentrados.stream()
-                .filter(c -> "en_camino_a_planta".equals(c.getEstado()))
-                .count();
-
-        long enProceso = concentrados.stream()
-                .filter(c -> "en_proceso".equals(c.getEstado()))
-                .count();
-
-        long esperandoReporte = concentrados.stream()
-                .filter(c -> "esperando_pago".equals(c.getEstado()))
-                .count();
-
-        long listoLiquidacion = concentrados.stream()
-                .filter(c -> "procesado".equals(c.getEstado()))
-                .count();
+    private KanbanDataDto obtenerDatosKanban(ResumenDashboard resumen) {
+        long porIniciar = resumen.contar(ENTIDAD_CONCENTRADO, "en_camino_a_planta");
+        long enProceso = resumen.contar(ENTIDAD_CONCENTRADO, "en_proceso");
+        long esperandoReporte = resumen.contar(ENTIDAD_CONCENTRADO, "esperando_pago");
+        long listoLiquidacion = resumen.contar(ENTIDAD_CONCENTRADO, "procesado");
 
         return new KanbanDataDto(
                 (int) porIniciar,
@@ -173,17 +179,12 @@ public class DashboardIngenioBl {
     }
 
     // === DATOS FINANCIEROS ===
-    private FinancieroDataDto obtenerDatosFinancieros(IngenioMinero ingenio) {
-        List<Liquidacion> liquidacionesToll = liquidacionRepository
-                .findByIngenioMineroId(ingenio).stream()
-                .filter(liq -> "toll".equals(liq.getTipoLiquidacion()))
-                .toList();
-
+    private FinancieroDataDto obtenerDatosFinancieros(ResumenDashboard resumen) {
         // Toll pendiente de cobro
-        BigDecimal tollPendiente = liquidacionesToll.stream()
-                .filter(liq -> "esperando_pago".equals(liq.getEstado()))
-                .map(Liquidacion::getValorNetoBob)
-                .filter(Objects::nonNull)
+        BigDecimal tollPendiente = resumen.estados(ENTIDAD_LIQUIDACION)
+                .filter(fila -> "toll".equals(fila.categoria()))
+                .filter(fila -> "esperando_pago".equals(fila.estado()))
+                .map(ResumenDashboard.FilaEstado::monto)
                 .reduce(BigDecimal.ZERO, BigDecimal::add);
 
         // Toll cobrado este mes
@@ -191,13 +192,9 @@ public class DashboardIngenioBl {
         LocalDate inicioMes = hoy.withDayOfMonth(1);
         LocalDate finMes = hoy.withDayOfMonth(hoy.lengthOfMonth());
 
-        BigDecimal tollCobradoMes = liquidacionesToll.stream()
-                .filter(liq -> "pagado".equals(liq.getEstado()))
-                .filter(liq -> liq.getFechaPago() != null &&
-                        !liq.getFechaPago().toLocalDate().isBefore(inicioMes) &&
-                        !liq.getFechaPago().toLocalDate().isAfter(finMes))
-                .map(Liquidacion::getValorNetoBob)
-                .filter(Objects::nonNull)
+        BigDecimal tollCobradoMes = resumen.diario(METRICA_LIQUIDACION_PAGADA, inicioMes, finMes)
+                .filter(fila -> "toll".equals(fila.categoria()))
+                .map(ResumenDashboard.FilaDiaria::monto)
                 .reduce(BigDecimal.ZERO, BigDecimal::add);
 
         // Ingreso proyectado mes (simplificado: cobrado + pendiente)
@@ -211,18 +208,9 @@ public class DashboardIngenioBl {
     }
 
     // === DATOS DE LOTES PENDIENTES ===
-    private LotesPendientesDataDto obtenerDatosLotesPendientes(IngenioMinero ingenio) {
-        List<LoteIngenio> lotes = loteIngenioRepository.findByIngenioMineroId(ingenio);
-
-        long pendienteAprobacion = lotes.stream()
-                .map(LoteIngenio::getLotesId)
-                .filter(lote -> "Pendiente de aprobación por Ingenio/Comercializadora".equals(lote.getEstado()))
-                .count();
-
-        long transporteCompleto = lotes.stream()
-                .map(LoteIngenio::getLotesId)
-                .filter(lote -> "Transporte completo".equals(lote.getEstado()))
-                .count();
+    private LotesPendientesDataDto obtenerDatosLotesPendientes(ResumenDashboard resumen) {
+        long pendienteAprobacion = resumen.contar(ENTIDAD_LOTE, "Pendiente de aprobación por Ingenio/Comercializadora");
+        long transporteCompleto = resumen.contar(ENTIDAD_LOTE, "Transporte completo");
 
         return new LotesPendientesDataDto(
                 (int) pendienteAprobacion,
@@ -233,6 +221,9 @@ public class DashboardIngenioBl {
     // === KANBAN COLUMNAS ===
     private List<KanbanColumnaDto> obtenerKanbanColumnas(IngenioMinero ingenio) {
         List<Concentrado> concentrados = concentradoRepository.findByIngenioMineroId(ingenio);
+        cargadorPersonas.precargar(concentrados.stream()
+                .map(c -> c.getSocioPropietarioId().getUsuariosId())
+                .toList());
 
         List<KanbanColumnaDto> columnas = new ArrayList<>();
 
@@ -293,7 +284,7 @@ public class DashboardIngenioBl {
 
     private ConcentradoKanbanDto mapearConcentradoKanban(Concentrado concentrado) {
         Socio socio = concentrado.getSocioPropietarioId();
-        Persona persona = personaRepository.findByUsuariosId(socio.getUsuariosId()).orElse(null);
+        Persona persona = cargadorPersonas.obtener(socio.getUsuariosId()).orElse(null);
 
         String nombreCompleto = persona != null
                 ? persona.getNombres() + " " + persona.getPrimerApellido()
@@ -575,6 +566,9 @@ public class DashboardIngenioBl {
                 .findByIngenioMineroId(ingenio).stream()
                 .filter(liq -> "toll".equals(liq.getTipoLiquidacion()))
                 .collect(Collectors.toList());
+        cargadorPersonas.precargar(liquidacionesToll.stream()
+                .map(liq -> liq.getSocioId().getUsuariosId())
+                .toList());
 
         // Pendientes
         List<LiquidacionTollPendienteDto> pendientes = liquidacionesToll.stream()
@@ -599,7 +593,7 @@ public class DashboardIngenioBl {
 
     private LiquidacionTollPendienteDto mapearLiquidacionTollPendiente(Liquidacion liquidacion) {
         Socio socio = liquidacion.getSocioId();
-        Persona persona = personaRepository.findByUsuariosId(socio.getUsuariosId()).orElse(null);
+        Persona persona = cargadorPersonas.obtener(socio.getUsuariosId()).orElse(null);
 
         String nombreCompleto = persona != null
                 ? persona.getNombres() + " " + persona.getPrimerApellido() + " " +
@@ -640,7 +634,7 @@ public class DashboardIngenioBl {
 
     private LiquidacionTollPagadaDto mapearLiquidacionTollPagada(Liquidacion liquidacion) {
         Socio socio = liquidacion.getSocioId();
-        Persona persona = personaRepository.findByUsuariosId(socio.getUsuariosId()).orElse(null);
+        Persona persona = cargadorPersonas.obtener(socio.getUsuariosId()).orElse(null);
 
         String nombreCompleto = persona != null
                 ? persona.getNombres() + " " + persona.getPrimerApellido()
@@ -709,37 +703,30 @@ public class DashboardIngenioBl {
     }
 
     // === PRODUCCIÓN DIARIA ===
-    private List<ProduccionDiariaDto> obtenerProduccionDiaria(IngenioMinero ingenio) {
+    private List<ProduccionDiariaDto> obtenerProduccionDiaria(IngenioMinero ingenio, ResumenDashboard resumen) {
         List<ProduccionDiariaDto> resultado = new ArrayList<>();
 
+        // Finalizados: depende de la fecha de última actualización, no está pre-agregado
+        LocalDateTime inicioPeriodo = LocalDate.now().minusDays(5).atStartOfDay();
+        List<Concentrado> actualizadosPeriodo = concentradoRepository.findByIngenioMineroId(ingenio).stream()
+                .filter(c -> c.getUpdatedAt() != null && !c.getUpdatedAt().isBefore(inicioPeriodo))
+                .filter(c -> Arrays.asList("vendido_a_comercializadora", "esperando_pago", "en_venta")
+                        .contains(c.getEstado()))
+                .toList();
+
         // Últimos 6 días
         for (int i = 5; i >= 0; i--) {
             LocalDate dia = LocalDate.now().minusDays(i);
             LocalDateTime inicioDia = dia.atStartOfDay();
             LocalDateTime finDia = dia.plusDays(1).atStartOfDay();
 
-            List<Concentrado> concentradosDia = concentradoRepository
-                    .findByIngenioMineroId(ingenio).stream()
-                    .filter(c -> c.getCreatedAt() != null &&
-                            !c.getCreatedAt().isBefore(inicioDia) &&
-                            c.getCreatedAt().isBefore(finDia))
-                    .toList();
-
-            int concentradosCreados = concentradosDia.size();
-
-            int concentradosFinalizados = (int) concentradoRepository
-                    .findByIngenioMineroId(ingenio).stream()
-                    .filter(c -> c.getUpdatedAt() != null &&
-                            !c.getUpdatedAt().isBefore(inicioDia) &&
-                            c.getUpdatedAt().isBefore(finDia))
-                    .filter(c -> Arrays.asList("vendido_a_comercializadora", "esperando_pago", "en_venta")
-                            .contains(c.getEstado()))
+            int concentradosCreados = (int) resumen.contarDiario(METRICA_CONCENTRADO_CREADO, dia, dia);
+
+            int concentradosFinalizados = (int) actualizadosPeriodo.stream()
+                    .filter(c -> !c.getUpdatedAt().isBefore(inicioDia) && c.getUpdatedAt().isBefore(finDia))
                     .count();
 
-            BigDecimal pesoTotal = concentradosDia.stream()
-                    .map(Concentrado::getPesoFinal)
-                    .filter(Objects::nonNull)
-                    .reduce(BigDecimal.ZERO, BigDecimal::add)
+            BigDecimal pesoTotal = resumen.pesoDiario(METRICA_CONCENTRADO_CREADO, dia, dia)
                     .divide(new BigDecimal("1000"), 2, RoundingMode.HALF_UP);
 
             String fechaStr = dia.getDayOfMonth() + " " +
@@ -757,25 +744,26 @@ public class DashboardIngenioBl {
     }
 
     // === PRODUCCIÓN POR MINERAL ===
-    private List<ProduccionPorMineralDto> obtenerProduccionPorMineral(IngenioMinero ingenio) {
-        List<Concentrado> concentrados = concentradoRepository.findByIngenioMineroId(ingenio);
+    private List<ProduccionPorMineralDto> obtenerProduccionPorMineral(ResumenDashboard resumen) {
+        // Filas del resumen agrupadas por mineral principal (sumando todos los estados)
+        Map<String, List<ResumenDashboard.FilaEstado>> porMineral = resumen.estados(ENTIDAD_CONCENTRADO)
+                .collect(Collectors.groupingBy(ResumenDashboard.FilaEstado::categoria));
 
-        Map<String, List<Concentrado>> porMineral = concentrados.stream()
-                .collect(Collectors.groupingBy(Concentrado::getMineralPrincipal));
-
-        int totalConcentrados = concentrados.size();
+        long totalConcentrados = resumen.estados(ENTIDAD_CONCENTRADO)
+                .mapToLong(ResumenDashboard.FilaEstado::cantidad)
+                .sum();
 
         List<ProduccionPorMineralDto> resultado = new ArrayList<>();
 
-        for (Map.Entry<String, List<Concentrado>> entry : porMineral.entrySet()) {
+        for (Map.Entry<String, List<ResumenDashboard.FilaEstado>> entry : porMineral.entrySet()) {
             String mineral = entry.getKey();
-            List<Concentrado> concentradosMineral = entry.getValue();
 
-            int cantidad = concentradosMineral.size();
+            int cantidad = (int) entry.getValue().stream()
+                    .mapToLong(ResumenDashboard.FilaEstado::cantidad)
+                    .sum();
 
-            BigDecimal pesoTotal = concentradosMineral.stream()
-                    .map(Concentrado::getPesoFinal)
-                    .filter(Objects::nonNull)
+            BigDecimal pesoTotal = entry.getValue().stream()
+                    .map(ResumenDashboard.FilaEstado::peso)
                     .reduce(BigDecimal.ZERO, BigDecimal::add);
 
             int porcentaje = totalConcentrados > 0
@@ -798,11 +786,15 @@ public class DashboardIngenioBl {
     // === LOTES DISPONIBLES ===
     private List<LoteDisponibleDto> obtenerLotesDisponibles(IngenioMinero ingenio) {
         // Obtener lotes en "Transporte completo"
-        List<LoteIngenio> lotesIngenio = loteIngenioRepository.findByIngenioMineroId(ingenio);
-
-        return lotesIngenio.stream()
+        List<Lotes> lotes = loteIngenioRepository.findByIngenioMineroId(ingenio).stream()
                 .map(LoteIngenio::getLotesId)
                 .filter(lote -> "Transporte completo".equals(lote.getEstado()))
+                .toList();
+        cargadorPersonas.precargar(lotes.stream()
+                .map(lote -> lote.getMinasId().getSocioId().getUsuariosId())
+                .toList());
+
+        return lotes.stream()
                 .map(this::mapearLoteDisponible)
                 .sorted(Comparator.comparing(LoteDisponibleDto::getDiasEspera).reversed())
                 .limit(5)
@@ -811,7 +803,7 @@ public class DashboardIngenioBl {
 
     private LoteDisponibleDto mapearLoteDisponible(Lotes lote) {
         Socio socio = lote.getMinasId().getSocioId();
-        Persona persona = personaRepository.findByUsuariosId(socio.getUsuariosId()).orElse(null);
+        Persona persona = cargadorPersonas.obtener(socio.getUsuariosId()).orElse(null);
 
         String nombreCompleto = persona != null
                 ? persona.getNombres() + " " + persona.getPrimerApellido()
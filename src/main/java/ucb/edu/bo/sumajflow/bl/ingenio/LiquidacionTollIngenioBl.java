@@ -218,22 +218,19 @@ public class LiquidacionTollIngenioBl {
             LocalDateTime fechaDesde,
             LocalDateTime fechaHasta,
             int page,
-            int size
+            int size,
+            boolean incluirTotal,
+            LocalDateTime cursorFecha,
+            Integer cursorId
     ) {
         log.debug("Listando liquidaciones de Toll para ingenio - Usuario ID: {}", usuarioId);
 
         IngenioMinero ingenio = obtenerIngenioDelUsuario(usuarioId);
 
-        // Obtener liquidaciones relacionadas con el ingenio (a través de los lotes)
-        List<Liquidacion> liquidacionesIngenio = liquidacionRepository
-                .findByTipoLiquidacionOrderByCreatedAtDesc("toll")
-                .stream()
-                .filter(l -> perteneceAlIngenio(l, ingenio))
-                .toList();
-
-        // Llamar al servicio general para filtrar y paginar
+        // Liquidaciones relacionadas con el ingenio (a través de los lotes), filtradas en la base de datos
         return liquidacionTollBl.listarLiquidaciones(
-                liquidacionesIngenio, estado, fechaDesde, fechaHasta, page, size
+                LiquidacionSpecifications.conTipo("toll").and(LiquidacionSpecifications.deIngenio(ingenio)),
+                estado, fechaDesde, fechaHasta, page, size, incluirTotal, cursorFecha, cursorId
         );
     }
 
@@ -10,10 +10,12 @@ import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import ucb.edu.bo.sumajflow.bl.CargadorPersonas;
 import ucb.edu.bo.sumajflow.bl.LiquidacionTollBl;
 import ucb.edu.bo.sumajflow.bl.LotesWebSocketBl;
 import ucb.edu.bo.sumajflow.bl.NotificacionBl;
 import ucb.edu.bo.sumajflow.bl.cooperativa.AuditoriaLotesBl;
+import ucb.edu.bo.sumajflow.bl.transporte.EventosViajeBl;
 import ucb.edu.bo.sumajflow.dto.ingenio.*;
 import ucb.edu.bo.sumajflow.dto.socio.*;
 import ucb.edu.bo.sumajflow.entity.*;
@@ -35,11 +37,12 @@ public class LotesIngenioBl {
     private final AsignacionCamionRepository asignacionCamionRepository;
     private final IngenioMineroRepository ingenioMineroRepository;
     private final UsuariosRepository usuariosRepository;
-    private final PersonaRepository personaRepository;
+    private final CargadorPersonas cargadorPersonas;
     private final AuditoriaLotesRepository auditoriaLotesRepository;
     private final NotificacionBl notificacionBl;
     private final AuditoriaLotesBl auditoriaLotesBl;
     private final ObjectMapper objectMapper;
+    private final EventosViajeBl eventosViajeBl;
     private final LotesWebSocketBl lotesWebSocketBl;
     private final TransportistaRepository transportistaRepository;
     private final LiquidacionTollBl liquidacionTollBl;
@@ -88,7 +91,10 @@ public class LotesIngenioBl {
                 pageable
         );
 
-        // Convertir a DTOs
+        // Convertir a DTOs (personas de los socios de la página en una consulta)
+        cargadorPersonas.precargar(lotesPage.getContent().stream()
+                .map(li -> li.getLotesId().getMinasId().getSocioId().getUsuariosId())
+                .toList());
         List<LoteIngenioResponseDto> lotesDto = lotesPage.getContent().stream()
                 .map(this::convertToIngenioResponseDto)
                 .collect(Collectors.toList());
@@ -536,6 +542,12 @@ public class LotesIngenioBl {
         List<AsignacionCamion> asignaciones = asignacionCamionRepository.findByLotesId(lote);
         dto.setCamioneAsignados(asignaciones.size());
 
+        // Pesajes de todos los camiones en una consulta, solo si el lote ya los muestra
+        boolean mostrarPesajes = List.of("Vendido a comercializadora", "Procesado").contains(lote.getEstado());
+        Map<Integer, ObservacionesViajeDto> pesajes = mostrarPesajes
+                ? eventosViajeBl.pesajesPorAsignacion(asignaciones)
+                : Map.of();
+
         List<AsignacionCamionSimpleDto> asignacionesDto = asignaciones.stream()
                 .map(a -> {
                     Persona personaTransportista = a.getTransportistaId().getUsuariosId().getPersona();
@@ -551,8 +563,8 @@ public class LotesIngenioBl {
                     );
 
                     // Solo llenar cuando el estado del lote sea "Vendido a comercializadora" o "Procesado"
-                    if (List.of("Vendido a comercializadora", "Procesado").contains(a.getLotesId().getEstado())) {
-                        extraerYAsignarPesajes(a, as);
+                    if (mostrarPesajes) {
+                        extraerYAsignarPesajes(a, pesajes.get(a.getId()), as);
                     }
 
                     return as;
@@ -585,48 +597,38 @@ public class LotesIngenioBl {
 
         return dto;
     }
-    private void extraerYAsignarPesajes(AsignacionCamion asignacion, AsignacionCamionSimpleDto dto) {
-        String observacionesJson = asignacion.getObservaciones();
-
-        if (observacionesJson == null || observacionesJson.isBlank()) {
-            log.debug("No hay observaciones para la asignación ID: {}", asignacion.getId());
+    private void extraerYAsignarPesajes(
+            AsignacionCamion asignacion,
+            ObservacionesViajeDto observaciones,
+            AsignacionCamionSimpleDto dto
+    ) {
+        if (observaciones == null) {
+            log.debug("No hay pesajes registrados para la asignación ID: {}", asignacion.getId());
             return;
         }
 
-        try {
-            // Parsear el JSON de observaciones
-            ObservacionesViajeDto observaciones = objectMapper.readValue(
-                    observacionesJson,
-                    ObservacionesViajeDto.class
-            );
+        // Extraer pesaje origen
+        if (observaciones.getPesajeOrigen() != null) {
+            PesajeDto pesajeOrigen = observaciones.getPesajeOrigen();
+            dto.setPesajeOrigenTaraKg(pesajeOrigen.getPesoTaraKg());
+            dto.setPesajeOrigenBrutoKg(pesajeOrigen.getPesoBrutoKg());
+            dto.setPesajeOrigenNetoKg(pesajeOrigen.getPesoNetoKg());
+            dto.setPesajeOrigenFecha(pesajeOrigen.getTimestamp());
+
+            log.debug("Pesaje origen extraído - Asignación ID: {}, Neto: {} kg",
+                    asignacion.getId(), pesajeOrigen.getPesoNetoKg());
+        }
 
-            // Extraer pesaje origen
-            if (observaciones.getPesajeOrigen() != null) {
-                PesajeDto pesajeOrigen = observaciones.getPesajeOrigen();
-                dto.setPesajeOrigenTaraKg(pesajeOrigen.getPesoTaraKg());
-                dto.setPesajeOrigenBrutoKg(pesajeOrigen.getPesoBrutoKg());
-                dto.setPesajeOrigenNetoKg(pesajeOrigen.getPesoNetoKg());
-                dto.setPesajeOrigenFecha(pesajeOrigen.getTimestamp());
-
-                log.debug("Pesaje origen extraído - Asignación ID: {}, Neto: {} kg",
-                        asignacion.getId(), pesajeOrigen.getPesoNetoKg());
-            }
-
-            // Extraer pesaje destino
-            if (observaciones.getPesajeDestino() != null) {
-                PesajeDto pesajeDestino = observaciones.getPesajeDestino();
-                dto.setPesajeDestinoTaraKg(pesajeDestino.getPesoTaraKg());
-                dto.setPesajeDestinoBrutoKg(pesajeDestino.getPesoBrutoKg());
-                dto.setPesajeDestinoNetoKg(pesajeDestino.getPesoNetoKg());
-                dto.setPesajeDestinoFecha(pesajeDestino.getTimestamp());
-
-                log.debug("Pesaje destino extraído - Asignación ID: {}, Neto: {} kg",
-                        asignacion.getId(), pesajeDestino.getPesoNetoKg());
-            }
+        // Extraer pesaje destino
+        if (observaciones.getPesajeDestino() != null) {
+            PesajeDto pesajeDestino = observaciones.getPesajeDestino();
+            dto.setPesajeDestinoTaraKg(pesajeDestino.getPesoTaraKg());
+            dto.setPesajeDestinoBrutoKg(pesajeDestino.getPesoBrutoKg());
+            dto.setPesajeDestinoNetoKg(pesajeDestino.getPesoNetoKg());
+            dto.setPesajeDestinoFecha(pesajeDestino.getTimestamp());
 
-        } catch (Exception e) {
-            log.error("Error al parsear observaciones JSON para asignación ID: {} - JSON: {}",
-                    asignacion.getId(), observacionesJson, e);
+            log.debug("Pesaje destino extraído - Asignación ID: {}, Neto: {} kg",
+                    asignacion.getId(), pesajeDestino.getPesoNetoKg());
         }
     }
 
@@ -662,7 +664,7 @@ public class LotesIngenioBl {
         Socio socio = mina.getSocioId();
         dto.setSocioId(socio.getId());
 
-        Persona persona = personaRepository.findByUsuariosId(socio.getUsuariosId()).orElse(null);
+        Persona persona = cargadorPersonas.obtener(socio.getUsuariosId()).orElse(null);
         if (persona != null) {
             dto.setSocioNombres(persona.getNombres());
             dto.setSocioApellidos(persona.getPrimerApellido() +
@@ -1,11 +1,16 @@
 package ucb.edu.bo.sumajflow.bl.socio;
 
-import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
+import ucb.edu.bo.sumajflow.bl.CargadorPersonas;
+import ucb.edu.bo.sumajflow.bl.dashboard.DashboardCache;
+import ucb.edu.bo.sumajflow.bl.dashboard.ResumenDashboard;
+import ucb.edu.bo.sumajflow.bl.dashboard.ResumenDashboardService;
+import ucb.edu.bo.sumajflow.bl.tracking.FlotaEnVivoService;
+import ucb.edu.bo.sumajflow.bl.tracking.ViajeEnVivo;
+import ucb.edu.bo.sumajflow.bl.transporte.EventosViajeBl;
+import ucb.edu.bo.sumajflow.document.TrackingUbicacion;
 import ucb.edu.bo.sumajflow.dto.socio.*;
 import ucb.edu.bo.sumajflow.entity.*;
 import ucb.edu.bo.sumajflow.repository.*;
@@ -20,6 +25,9 @@ import java.time.temporal.ChronoUnit;
 import java.util.*;
 import java.util.stream.Collectors;
 
+import static ucb.edu.bo.sumajflow.bl.dashboard.DashboardCache.*;
+import static ucb.edu.bo.sumajflow.bl.dashboard.ResumenDashboardService.*;
+
 @Slf4j
 @Service
 @RequiredArgsConstructor
@@ -32,9 +40,12 @@ public class DashboardSocioBl {
     private final LiquidacionRepository liquidacionRepository;
     private final LiquidacionConcentradoRepository liquidacionConcentradoRepository;
     private final UsuariosRepository usuariosRepository;
-    private final PersonaRepository personaRepository;
+    private final CargadorPersonas cargadorPersonas;
     private final TransportistaRepository transportistaRepository;
-    private final ObjectMapper objectMapper;
+    private final FlotaEnVivoService flotaEnVivoService;
+    private final ResumenDashboardService resumenDashboardService;
+    private final DashboardCache dashboardCache;
+    private final EventosViajeBl eventosViajeBl;
 
     // Mapeo de estados a porcentajes
     private static final Map<String, Integer> PROGRESO_ESTADOS_VIAJE = Map.of(
@@ -58,27 +69,57 @@ public class DashboardSocioBl {
             "vendido_a_comercializadora", 100
     );
 
-    @Transactional(readOnly = true)
+    /**
+     * Dashboard del usuario, servido desde caché mientras no llegue un evento que lo invalide.
+     * Los camiones en ruta (estado del viaje y posición GPS) no se guardan: se leen en cada consulta.
+     */
     public DashboardSocioDto obtenerDashboard(Integer usuarioId) {
+        DashboardBase base = dashboardCache.obtener(TABLERO_SOCIO, usuarioId, DashboardBase.class, () -> construirDashboard(usuarioId));
+        List<CamionEnRutaDto> enRuta = dashboardCache.leerEnVivo(() ->
+                obtenerCamionesEnRuta(socioRepository.getReferenceById(base.socioId())));
+
+        // Copia: el valor en caché lo comparten todas las consultas
+        DashboardSocioDto guardado = base.dashboard();
+        return new DashboardSocioDto(
+                guardado.getFinancialData(),
+                guardado.getOperationsData(),
+                enRuta,
+                guardado.getAlertas(),
+                guardado.getConcentrados(),
+                guardado.getLiquidacionesPendientes(),
+                guardado.getIngresosMensuales(),
+                guardado.getIngresosPorMineral());
+    }
+
+    /**
+     * Parte cacheable del dashboard, sin camiones en ruta
+     */
+    private record DashboardBase(Integer socioId, DashboardSocioDto dashboard) {
+    }
+
+    private DashboardBase construirDashboard(Integer usuarioId) {
         log.debug("Obteniendo dashboard para usuario: {}", usuarioId);
 
         // Obtener socio
         Socio socio = obtenerSocio(usuarioId);
 
+        // KPIs pre-agregados: foto por estado y pagos de los últimos 6 meses
+        ResumenDashboard resumen = resumenDashboardService.obtenerResumen(
+                ACTOR_SOCIO, socio.getId(), YearMonth.now().minusMonths(5).atDay(1));
+
         DashboardSocioDto dashboard = new DashboardSocioDto();
 
         // Cargar todos los datos
-        dashboard.setFinancialData(obtenerDatosFinancieros(socio));
-        dashboard.setOperationsData(obtenerDatosOperacionales(socio));
-        dashboard.setCamionesEnRuta(obtenerCamionesEnRuta(socio));
-        dashboard.setAlertas(generarAlertas(socio));
+        dashboard.setFinancialData(obtenerDatosFinancieros(resumen));
+        dashboard.setOperationsData(obtenerDatosOperacionales(resumen));
+        dashboard.setAlertas(generarAlertas(socio, resumen));
         dashboard.setConcentrados(obtenerConcentradosResumen(socio));
-        dashboard.setLiquidacionesPendientes(obtenerLiquidacionesPendientes(socio));
-        dashboard.setIngresosMensuales(obtenerIngresosMensuales(socio));
+        dashboard.setLiquidacionesPendientes(obtenerLiquidacionesPendientes(resumen));
+        dashboard.setIngresosMensuales(obtenerIngresosMensuales(resumen));
         dashboard.setIngresosPorMineral(obtenerIngresosPorMineral(socio));
 
         log.info("Dashboard generado exitosamente para socio {}", socio.getId());
-        return dashboard;
+        return new DashboardBase(socio.getId(), dashboard);
     }
 
     // ==================== MÉTODOS PRIVADOS ====================
@@ -92,7 +133,7 @@ public class DashboardSocioBl {
     }
 
     // === DATOS FINANCIEROS ===
-    private FinancialDataDto obtenerDatosFinancieros(Socio socio) {
+    private FinancialDataDto obtenerDatosFinancieros(ResumenDashboard resumen) {
         LocalDate hoy = LocalDate.now();
         LocalDate inicioMes = hoy.withDayOfMonth(1);
         LocalDate finMes = hoy.withDayOfMonth(hoy.lengthOfMonth());
@@ -101,33 +142,16 @@ public class DashboardSocioBl {
         LocalDate finMesAnterior = inicioMesAnterior.withDayOfMonth(inicioMesAnterior.lengthOfMonth());
 
         // Total pendiente de cobro
-        BigDecimal pendienteCobro = liquidacionRepository.findBySocioId(socio).stream()
-                .filter(liq -> Arrays.asList("esperando_pago", "pendiente_aprobacion", "aprobado",
-                                "esperando_reportes", "esperando_cierre_venta", "cerrado")
-                        .contains(liq.getEstado()))
-                .map(Liquidacion::getValorNetoBob)
-                .filter(Objects::nonNull)
+        List<String> estadosPendientes = Arrays.asList("esperando_pago", "pendiente_aprobacion", "aprobado",
+                "esperando_reportes", "esperando_cierre_venta", "cerrado");
+        BigDecimal pendienteCobro = resumen.estados(ENTIDAD_LIQUIDACION)
+                .filter(fila -> estadosPendientes.contains(fila.estado()))
+                .map(ResumenDashboard.FilaEstado::monto)
                 .reduce(BigDecimal.ZERO, BigDecimal::add);
 
-        // Total cobrado mes actual
-        BigDecimal cobradoMesActual = liquidacionRepository.findBySocioId(socio).stream()
-                .filter(liq -> "pagado".equals(liq.getEstado()))
-                .filter(liq -> liq.getFechaPago() != null &&
-                        !liq.getFechaPago().toLocalDate().isBefore(inicioMes) &&
-                        !liq.getFechaPago().toLocalDate().isAfter(finMes))
-                .map(Liquidacion::getValorNetoBob)
-                .filter(Objects::nonNull)
-                .reduce(BigDecimal.ZERO, BigDecimal::add);
-
-        // Total cobrado mes anterior
-        BigDecimal cobradoMesAnterior = liquidacionRepository.findBySocioId(socio).stream()
-                .filter(liq -> "pagado".equals(liq.getEstado()))
-                .filter(liq -> liq.getFechaPago() != null &&
-                        !liq.getFechaPago().toLocalDate().isBefore(inicioMesAnterior) &&
-                        !liq.getFechaPago().toLocalDate().isAfter(finMesAnterior))
-                .map(Liquidacion::getValorNetoBob)
-                .filter(Objects::nonNull)
-                .reduce(BigDecimal.ZERO, BigDecimal::add);
+        // Total cobrado mes actual y mes anterior
+        BigDecimal cobradoMesActual = resumen.montoDiario(METRICA_LIQUIDACION_PAGADA, inicioMes, finMes);
+        BigDecimal cobradoMesAnterior = resumen.montoDiario(METRICA_LIQUIDACION_PAGADA, inicioMesAnterior, finMesAnterior);
 
         // Comparativo con mes anterior
         BigDecimal comparativo = BigDecimal.ZERO;
@@ -149,37 +173,23 @@ public class DashboardSocioBl {
     }
 
     // === DATOS OPERACIONALES ===
-    private OperationsDataDto obtenerDatosOperacionales(Socio socio) {
-        // Obtener todos los lotes del socio
-        List<Lotes> todosLotes = lotesRepository.findByMinasSocioId(socio);
-
+    private OperationsDataDto obtenerDatosOperacionales(ResumenDashboard resumen) {
         // Lotes activos (no finalizados)
-        long lotesActivos = todosLotes.stream()
-                .filter(lote -> !Arrays.asList("Rechazado", "Vendido a comercializadora",
-                        "Procesado").contains(lote.getEstado()))
-                .count();
+        List<String> estadosFinales = Arrays.asList("Rechazado", "Vendido a comercializadora", "Procesado");
+        long lotesActivos = resumen.estados(ENTIDAD_LOTE)
+                .filter(fila -> !estadosFinales.contains(fila.estado()))
+                .mapToLong(ResumenDashboard.FilaEstado::cantidad)
+                .sum();
 
         // Lotes en transporte
-        long lotesEnTransporte = todosLotes.stream()
-                .filter(lote -> "En transporte".equals(lote.getEstado()) ||
-                        "Transporte completo".equals(lote.getEstado()))
-                .count();
+        long lotesEnTransporte = resumen.contar(ENTIDAD_LOTE, Arrays.asList("En transporte", "Transporte completo"));
 
         // Lotes en proceso
-        long lotesEnProceso = todosLotes.stream()
-                .filter(lote -> "En planta".equals(lote.getEstado()))
-                .count();
+        long lotesEnProceso = resumen.contar(ENTIDAD_LOTE, "En planta");
 
         // Concentrados del socio
-        List<Concentrado> concentrados = concentradoRepository.findBySocioPropietarioId(socio);
-
-        long concentradosListos = concentrados.stream()
-                .filter(c -> "listo_para_venta".equals(c.getEstado()))
-                .count();
-
-        long concentradosEnVenta = concentrados.stream()
-                .filter(c -> "en_venta".equals(c.getEstado()))
-                .count();
+        long concentradosListos = resumen.contar(ENTIDAD_CONCENTRADO, "listo_para_venta");
+        long concentradosEnVenta = resumen.contar(ENTIDAD_CONCENTRADO, "en_venta");
 
         return new OperationsDataDto(
                 (int) lotesActivos,
@@ -200,16 +210,20 @@ public class DashboardSocioBl {
                                 "En camino balanza cooperativa", "En camino balanza destino",
                                 "En camino almacén destino", "Descargando")
                 );
+        cargadorPersonas.precargar(asignaciones.stream()
+                .map(asig -> asig.getTransportistaId().getUsuariosId())
+                .toList());
+        Map<Integer, AsignacionEvento> ubicaciones = eventosViajeBl.ultimasUbicaciones(asignaciones);
 
         return asignaciones.stream()
-                .map(this::mapearCamionEnRuta)
+                .map(asig -> mapearCamionEnRuta(asig, ubicaciones.get(asig.getId())))
                 .collect(Collectors.toList());
     }
 
-    private CamionEnRutaDto mapearCamionEnRuta(AsignacionCamion asignacion) {
+    private CamionEnRutaDto mapearCamionEnRuta(AsignacionCamion asignacion, AsignacionEvento ultimoEvento) {
         Lotes lote = asignacion.getLotesId();
         Transportista transportista = asignacion.getTransportistaId();
-        Persona persona = personaRepository.findByUsuariosId(transportista.getUsuariosId())
+        Persona persona = cargadorPersonas.obtener(transportista.getUsuariosId())
                 .orElse(null);
 
         String nombreCompleto = persona != null
@@ -224,8 +238,8 @@ public class DashboardSocioBl {
         // Progreso basado en estado
         Integer progreso = PROGRESO_ESTADOS_VIAJE.getOrDefault(asignacion.getEstado(), 50);
 
-        // Extraer última ubicación del JSONB
-        String ubicacionTexto = extraerUltimaUbicacion(asignacion);
+        // Última ubicación: GPS en vivo o último evento con coordenadas
+        String ubicacionTexto = extraerUltimaUbicacion(asignacion, ultimoEvento);
 
         // Calcular minutos transcurridos
         Integer minutosTranscurridos = calcularMinutosTranscurridos(asignacion);
@@ -244,43 +258,20 @@ public class DashboardSocioBl {
         );
     }
 
-    private String extraerUltimaUbicacion(AsignacionCamion asignacion) {
-        try {
-            if (asignacion.getObservaciones() == null) {
-                return "Ubicación desconocida";
+    private String extraerUltimaUbicacion(AsignacionCamion asignacion, AsignacionEvento ultimoEvento) {
+        // Posición GPS en vivo si el viaje está activo en memoria
+        ViajeEnVivo viaje = flotaEnVivoService.buscar(asignacion.getId());
+        if (viaje != null) {
+            TrackingUbicacion.UbicacionActual actual = viaje.getUbicacionActual();
+            if (actual != null) {
+                return String.format("%.5f, %.5f", actual.getLat(), actual.getLng());
             }
+        }
 
-            JsonNode observaciones = objectMapper.readTree(asignacion.getObservaciones());
-            String estado = asignacion.getEstado();
-
-            // Mapear estado a evento en el JSONB
-            Map<String, String> estadoAEvento = Map.of(
-                    "En camino a la mina", "inicio_viaje",
-                    "Esperando carguío", "llegada_mina",
-                    "En camino balanza cooperativa", "carguio_completo",
-                    "En camino balanza destino", "pesaje_origen",
-                    "En camino almacén destino", "pesaje_destino",
-                    "Descargando", "llegada_almacen"
-            );
-
-            String evento = estadoAEvento.getOrDefault(estado, "inicio_viaje");
-
-            if (observaciones.has(evento)) {
-                JsonNode eventoNode = observaciones.get(evento);
-                if (eventoNode.has("lat") && eventoNode.has("lng")) {
-                    double lat = eventoNode.get("lat").asDouble();
-                    double lng = eventoNode.get("lng").asDouble();
-                    return String.format("%.5f, %.5f", lat, lng);
-                }
-            }
-
-            return "Ubicación no disponible";
-
-        } catch (Exception e) {
-            log.warn("Error extrayendo ubicación de asignación {}: {}",
-                    asignacion.getId(), e.getMessage());
-            return "Error en ubicación";
+        if (ultimoEvento == null) {
+            return "Ubicación desconocida";
         }
+        return String.format("%.5f, %.5f", ultimoEvento.getLat(), ultimoEvento.getLng());
     }
 
     private Integer calcularMinutosTranscurridos(AsignacionCamion asignacion) {
@@ -292,7 +283,7 @@ public class DashboardSocioBl {
     }
 
     // === ALERTAS ===
-    private List<AlertaDto> generarAlertas(Socio socio) {
+    private List<AlertaDto> generarAlertas(Socio socio, ResumenDashboard resumen) {
         List<AlertaDto> alertas = new ArrayList<>();
         int alertaId = 1;
 
@@ -328,9 +319,7 @@ public class DashboardSocioBl {
         }
 
         // 2. Concentrados listos para venta
-        long concentradosListos = concentradoRepository.findBySocioPropietarioId(socio).stream()
-                .filter(c -> "listo_para_venta".equals(c.getEstado()))
-                .count();
+        long concentradosListos = resumen.contar(ENTIDAD_CONCENTRADO, "listo_para_venta");
 
         if (concentradosListos > 0) {
             alertas.add(new AlertaDto(
@@ -442,36 +431,37 @@ public class DashboardSocioBl {
     }
 
     // === LIQUIDACIONES PENDIENTES ===
-    private LiquidacionesPendientesDto obtenerLiquidacionesPendientes(Socio socio) {
-        List<Liquidacion> liquidaciones = liquidacionRepository.findBySocioId(socio);
+    private LiquidacionesPendientesDto obtenerLiquidacionesPendientes(ResumenDashboard resumen) {
+        List<String> tiposVenta = Arrays.asList("venta_concentrado", "venta_lote_complejo");
 
         // Toll pendiente de pago
-        long tollPendiente = liquidaciones.stream()
-                .filter(liq -> "toll".equals(liq.getTipoLiquidacion()))
-                .filter(liq -> "esperando_pago".equals(liq.getEstado()))
-                .count();
+        List<ResumenDashboard.FilaEstado> tollPendientes = resumen.estados(ENTIDAD_LIQUIDACION)
+                .filter(fila -> "toll".equals(fila.categoria()))
+                .filter(fila -> "esperando_pago".equals(fila.estado()))
+                .toList();
 
-        BigDecimal tollMonto = liquidaciones.stream()
-                .filter(liq -> "toll".equals(liq.getTipoLiquidacion()))
-                .filter(liq -> "esperando_pago".equals(liq.getEstado()))
-                .map(Liquidacion::getValorNetoBob)
-                .filter(Objects::nonNull)
+        long tollPendiente = tollPendientes.stream()
+                .mapToLong(ResumenDashboard.FilaEstado::cantidad)
+                .sum();
+
+        BigDecimal tollMonto = tollPendientes.stream()
+                .map(ResumenDashboard.FilaEstado::monto)
                 .reduce(BigDecimal.ZERO, BigDecimal::add);
 
         // Ventas pendientes de cierre
-        long ventasPendientesCierre = liquidaciones.stream()
-                .filter(liq -> Arrays.asList("venta_concentrado", "venta_lote_complejo")
-                        .contains(liq.getTipoLiquidacion()))
-                .filter(liq -> Arrays.asList("esperando_reportes", "esperando_cierre_venta")
-                        .contains(liq.getEstado()))
-                .count();
+        long ventasPendientesCierre = resumen.estados(ENTIDAD_LIQUIDACION)
+                .filter(fila -> tiposVenta.contains(fila.categoria()))
+                .filter(fila -> Arrays.asList("esperando_reportes", "esperando_cierre_venta")
+                        .contains(fila.estado()))
+                .mapToLong(ResumenDashboard.FilaEstado::cantidad)
+                .sum();
 
         // Ventas esperando pago
-        long ventasEsperandoPago = liquidaciones.stream()
-                .filter(liq -> Arrays.asList("venta_concentrado", "venta_lote_complejo")
-                        .contains(liq.getTipoLiquidacion()))
-                .filter(liq -> "cerrado".equals(liq.getEstado()))
-                .count();
+        long ventasEsperandoPago = resumen.estados(ENTIDAD_LIQUIDACION)
+                .filter(fila -> tiposVenta.contains(fila.categoria()))
+                .filter(fila -> "cerrado".equals(fila.estado()))
+                .mapToLong(ResumenDashboard.FilaEstado::cantidad)
+                .sum();
 
         return new LiquidacionesPendientesDto(
                 (int) tollPendiente,
@@ -482,50 +472,27 @@ public class DashboardSocioBl {
     }
 
     // === INGRESOS MENSUALES ===
-    private List<IngresoMensualDto> obtenerIngresosMensuales(Socio socio) {
+    private List<IngresoMensualDto> obtenerIngresosMensuales(ResumenDashboard resumen) {
         List<IngresoMensualDto> resultado = new ArrayList<>();
 
         // Últimos 6 meses
         for (int i = 5; i >= 0; i--) {
             YearMonth mes = YearMonth.now().minusMonths(i);
-            LocalDate inicio = mes.atDay(1);
-            LocalDate fin = mes.atEndOfMonth();
-
-            List<Liquidacion> liquidacionesMes = liquidacionRepository.findBySocioId(socio).stream()
-                    .filter(liq -> "pagado".equals(liq.getEstado()))
-                    .filter(liq -> liq.getFechaPago() != null)
-                    .filter(liq -> {
-                        LocalDate fechaPago = liq.getFechaPago().toLocalDate();
-                        return !fechaPago.isBefore(inicio) && !fechaPago.isAfter(fin);
-                    })
-                    .toList();
-
-            BigDecimal ingresoToll = liquidacionesMes.stream()
-                    .filter(liq -> "toll".equals(liq.getTipoLiquidacion()))
-                    .map(Liquidacion::getValorNetoBob)
-                    .filter(Objects::nonNull)
-                    .reduce(BigDecimal.ZERO, BigDecimal::add);
-
-            BigDecimal ingresoVentaConcentrado = liquidacionesMes.stream()
-                    .filter(liq -> Objects.equals("venta_concentrado", liq.getTipoLiquidacion()))
-                    .map(Liquidacion::getValorNetoBob)
-                    .filter(Objects::nonNull)
-                    .reduce(BigDecimal.ZERO, BigDecimal::add);
-
-            BigDecimal ingresoVentaComplejo = liquidacionesMes.stream()
-                    .filter(liq -> Objects.equals("venta_lote_complejo", liq.getTipoLiquidacion()))
-                    .map(Liquidacion::getValorNetoBob)
-                    .filter(Objects::nonNull)
-                    .reduce(BigDecimal.ZERO, BigDecimal::add);
+
+            // Pagos del mes por tipo de liquidación
+            Map<String, BigDecimal> ingresoPorTipo = resumen
+                    .diario(METRICA_LIQUIDACION_PAGADA, mes.atDay(1), mes.atEndOfMonth())
+                    .collect(Collectors.groupingBy(ResumenDashboard.FilaDiaria::categoria,
+                            Collectors.reducing(BigDecimal.ZERO, ResumenDashboard.FilaDiaria::monto, BigDecimal::add)));
 
             String nombreMes = mes.getMonth().getDisplayName(TextStyle.SHORT, new Locale("es", "ES"));
             nombreMes = nombreMes.substring(0, 1).toUpperCase() + nombreMes.substring(1).toLowerCase();
 
             resultado.add(new IngresoMensualDto(
                     nombreMes,
-                    ingresoToll,
-                    ingresoVentaConcentrado,
-                    ingresoVentaComplejo
+                    ingresoPorTipo.getOrDefault("toll", BigDecimal.ZERO),
+                    ingresoPorTipo.getOrDefault("venta_concentrado", BigDecimal.ZERO),
+                    ingresoPorTipo.getOrDefault("venta_lote_complejo", BigDecimal.ZERO)
             ));
         }
 
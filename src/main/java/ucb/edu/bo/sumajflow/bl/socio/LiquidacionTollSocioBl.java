@@ -49,19 +49,19 @@ public class LiquidacionTollSocioBl {
             LocalDateTime fechaDesde,
             LocalDateTime fechaHasta,
             int page,
-            int size
+            int size,
+            boolean incluirTotal,
+            LocalDateTime cursorFecha,
+            Integer cursorId
     ) {
         log.debug("Listando liquidaciones de Toll para socio - Usuario ID: {}", usuarioId);
 
         Socio socio = obtenerSocioDelUsuario(usuarioId);
 
-        // Obtener liquidaciones del socio
-        List<Liquidacion> liquidacionesSocio = liquidacionRepository
-                .findBySocioIdAndTipoLiquidacionOrderByCreatedAtDesc(socio, "toll");
-
-        // Llamar al servicio general para filtrar y paginar
+        // Liquidaciones del socio; el servicio general filtra y pagina en la base de datos
         return liquidacionTollBl.listarLiquidaciones(
-                liquidacionesSocio, estado, fechaDesde, fechaHasta, page, size
+                LiquidacionSpecifications.deSocio(socio).and(LiquidacionSpecifications.conTipo("toll")),
+                estado, fechaDesde, fechaHasta, page, size, incluirTotal, cursorFecha, cursorId
         );
     }
 
@@ -238,20 +238,20 @@ public class LiquidacionTollSocioBl {
     }
 
     private void actualizarEstadoConcentrados(Liquidacion liquidacion) {
-        liquidacion.getLiquidacionLoteList().forEach(ll -> {
-            Lotes lote = ll.getLotesId();
-
-            List<Concentrado> concentrados = concentradoRepository.findAll().stream()
-                    .filter(c -> c.getLoteConcentradoRelacionList().stream()
-                            .anyMatch(rel -> rel.getLoteComplejoId().getId().equals(lote.getId())))
-                    .filter(c -> "esperando_pago".equals(c.getEstado()))
-                    .toList();
-
-            concentrados.forEach(c -> {
-                c.setEstado("listo_para_venta");
-                concentradoRepository.save(c);
-                log.info("✅ Concentrado ID: {} actualizado a 'listo_para_venta'", c.getId());
-            });
+        List<Lotes> lotes = liquidacion.getLiquidacionLoteList().stream()
+                .map(LiquidacionLote::getLotesId)
+                .toList();
+        if (lotes.isEmpty()) {
+            return;
+        }
+
+        // Una sola consulta para los concentrados de todos los lotes liquidados
+        List<Concentrado> concentrados = concentradoRepository.findByLotesComplejoAndEstado(lotes, "esperando_pago");
+
+        concentrados.forEach(c -> {
+            c.setEstado("listo_para_venta");
+            concentradoRepository.save(c);
+            log.info("✅ Concentrado ID: {} actualizado a 'listo_para_venta'", c.getId());
         });
     }
 
@@ -11,6 +11,7 @@ import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import ucb.edu.bo.sumajflow.bl.*;
+import ucb.edu.bo.sumajflow.bl.transporte.EventosViajeBl;
 import ucb.edu.bo.sumajflow.dto.ingenio.LiquidacionTollResponseDto;
 import ucb.edu.bo.sumajflow.dto.socio.*;
 import ucb.edu.bo.sumajflow.dto.venta.VentaLiquidacionDetalleDto;
@@ -42,6 +43,7 @@ public class LotesSocioBl {
     private final AuditoriaLotesRepository auditoriaLotesRepository;
     private final AsignacionCamionRepository asignacionCamionRepository;
     private final ObjectMapper objectMapper;
+    private final EventosViajeBl eventosViajeBl;
     private final LiquidacionTollBl liquidacionTollBl;
     private final LotesWebSocketBl lotesWebSocketBl;
     private final LiquidacionRepository liquidacionRepository;
@@ -156,7 +158,7 @@ public class LotesSocioBl {
         Usuarios usuario = obtenerUsuario(usuarioId);
         Socio socio = obtenerSocioDelUsuario(usuario);
 
-        Lotes lote = lotesRepository.findById(loteId)
+        Lotes lote = lotesRepository.findDetalleById(loteId)
                 .orElseThrow(() -> new IllegalArgumentException("Lote no encontrado"));
 
         if (!lote.getMinasId().getSocioId().getId().equals(socio.getId())) {
@@ -191,7 +193,7 @@ public class LotesSocioBl {
         dto.setMinaLongitud(mina.getLongitud() != null ? mina.getLongitud().doubleValue() : null);
         dto.setSectorNombre(mina.getSectoresId().getNombre());
 
-        List<LoteMinerales> loteMinerales = loteMineralesRepository.findByLotesId(lote);
+        List<LoteMinerales> loteMinerales = loteMineralesRepository.findWithMineralesByLotesId(lote);
         List<MineralInfoDto> mineralesDto = loteMinerales.stream()
                 .map(lm -> new MineralInfoDto(
                         lm.getMineralesId().getId(),
@@ -252,9 +254,15 @@ public class LotesSocioBl {
         dto.setSocioNombres(persona.getNombres());
         dto.setSocioApellidos(persona.getPrimerApellido() + " " + (persona.getSegundoApellido() != null ? persona.getSegundoApellido() : ""));
 
-        List<AsignacionCamion> asignaciones = asignacionCamionRepository.findByLotesId(lote);
+        List<AsignacionCamion> asignaciones = asignacionCamionRepository.findWithTransportistaByLotesId(lote);
         dto.setCamioneAsignados(asignaciones.size());
 
+        // Pesajes de todos los camiones en una consulta, solo si el lote ya los muestra
+        boolean mostrarPesajes = List.of("Vendido a comercializadora", "Procesado").contains(lote.getEstado());
+        Map<Integer, ObservacionesViajeDto> pesajes = mostrarPesajes
+                ? eventosViajeBl.pesajesPorAsignacion(asignaciones)
+                : Map.of();
+
         List<AsignacionCamionSimpleDto> asignacionesDto = asignaciones.stream()
                 .map(a -> {
                     Persona personaTransportista = a.getTransportistaId().getUsuariosId().getPersona();
@@ -270,8 +278,8 @@ public class LotesSocioBl {
                     );
 
                     // Solo llenar cuando el estado del lote sea "Vendido a comercializadora" o "Procesado"
-                    if (List.of("Vendido a comercializadora", "Procesado").contains(a.getLotesId().getEstado())) {
-                        extraerYAsignarPesajes(a, as);
+                    if (mostrarPesajes) {
+                        extraerYAsignarPesajes(a, pesajes.get(a.getId()), as);
                     }
 
                     return as;
@@ -329,50 +337,40 @@ public class LotesSocioBl {
         return dto;
     }
     /**
-     * Extrae los datos de pesaje desde el JSON de observaciones y los asigna al DTO
+     * Asigna al DTO los pesajes de origen y destino registrados como eventos del viaje
      */
-    private void extraerYAsignarPesajes(AsignacionCamion asignacion, AsignacionCamionSimpleDto dto) {
-        String observacionesJson = asignacion.getObservaciones();
-
-        if (observacionesJson == null || observacionesJson.isBlank()) {
-            log.debug("No hay observaciones para la asignación ID: {}", asignacion.getId());
+    private void extraerYAsignarPesajes(
+            AsignacionCamion asignacion,
+            ObservacionesViajeDto observaciones,
+            AsignacionCamionSimpleDto dto
+    ) {
+        if (observaciones == null) {
+            log.debug("No hay pesajes registrados para la asignación ID: {}", asignacion.getId());
             return;
         }
 
-        try {
-            // Parsear el JSON de observaciones
-            ObservacionesViajeDto observaciones = objectMapper.readValue(
-                    observacionesJson,
-                    ObservacionesViajeDto.class
-            );
-
-            // Extraer pesaje origen
-            if (observaciones.getPesajeOrigen() != null) {
-                PesajeDto pesajeOrigen = observaciones.getPesajeOrigen();
-                dto.setPesajeOrigenTaraKg(pesajeOrigen.getPesoTaraKg());
-                dto.setPesajeOrigenBrutoKg(pesajeOrigen.getPesoBrutoKg());
-                dto.setPesajeOrigenNetoKg(pesajeOrigen.getPesoNetoKg());
-                dto.setPesajeOrigenFecha(pesajeOrigen.getTimestamp());
+        // Extraer pesaje origen
+        if (observaciones.getPesajeOrigen() != null) {
+            PesajeDto pesajeOrigen = observaciones.getPesajeOrigen();
+            dto.setPesajeOrigenTaraKg(pesajeOrigen.getPesoTaraKg());
+            dto.setPesajeOrigenBrutoKg(pesajeOrigen.getPesoBrutoKg());
+            dto.setPesajeOrigenNetoKg(pesajeOrigen.getPesoNetoKg());
+            dto.setPesajeOrigenFecha(pesajeOrigen.getTimestamp());
 
-                log.debug("Pesaje origen extraído - Asignación ID: {}, Neto: {} kg",
-                        asignacion.getId(), pesajeOrigen.getPesoNetoKg());
-            }
+            log.debug("Pesaje origen extraído - Asignación ID: {}, Neto: {} kg",
+                    asignacion.getId(), pesajeOrigen.getPesoNetoKg());
+        }
 
-            // Extraer pesaje destino
-            if (observaciones.getPesajeDestino() != null) {
-                PesajeDto pesajeDestino = observaciones.getPesajeDestino();
-                dto.setPesajeDestinoTaraKg(pesajeDestino.getPesoTaraKg());
-                dto.setPesajeDestinoBrutoKg(pesajeDestino.getPesoBrutoKg());
-                dto.setPesajeDestinoNetoKg(pesajeDestino.getPesoNetoKg());
-                dto.setPesajeDestinoFecha(pesajeDestino.getTimestamp());
+        // Extraer pesaje destino
+        if (observaciones.getPesajeDestino() != null) {
+            PesajeDto pesajeDestino = observaciones.getPesajeDestino();
+            dto.setPesajeDestinoTaraKg(pesajeDestino.getPesoTaraKg());
+            dto.setPesajeDestinoBrutoKg(pesajeDestino.getPesoBrutoKg());
+            dto.setPesajeDestinoNetoKg(pesajeDestino.getPesoNetoKg());
+            dto.setPesajeDestinoFecha(pesajeDestino.getTimestamp());
 
-                log.debug("Pesaje destino extraído - Asignación ID: {}, Neto: {} kg",
-                        asignacion.getId(), pesajeDestino.getPesoNetoKg());
-            }
-
-        } catch (Exception e) {
-            log.error("Error al parsear observaciones JSON para asignación ID: {} - JSON: {}",
-                    asignacion.getId(), observacionesJson, e);
+            log.debug("Pesaje destino extraído - Asignación ID: {}, Neto: {} kg",
+                    asignacion.getId(), pesajeDestino.getPesoNetoKg());
         }
     }
 
@@ -689,7 +687,7 @@ public class LotesSocioBl {
         dto.setMinaNombre(lote.getMinasId().getNombre());
 
         // Obtener minerales del lote
-        List<LoteMinerales> loteMinerales = loteMineralesRepository.findByLotesId(lote);
+        List<LoteMinerales> loteMinerales = loteMineralesRepository.findWithMineralesByLotesId(lote);
         List<MineralInfoDto> mineralesDto = loteMinerales.stream()
                 .map(lm -> new MineralInfoDto(
                         lm.getMineralesId().getId(),
@@ -1378,13 +1378,16 @@ public class VentaSocioBl {
             LocalDateTime fechaDesde,
             LocalDateTime fechaHasta,
             int page,
-            int size
+            int size,
+            boolean incluirTotal,
+            LocalDateTime cursorFecha,
+            Integer cursorId
     ) {
         Socio socio = obtenerSocioDelUsuario(usuarioId);
-        List<Liquidacion> ventas = liquidacionRepository
-                .findBySocioIdAndTipoLiquidacionInOrderByCreatedAtDesc(socio, LiquidacionVentaBl.TIPOS_VENTA);
         return liquidacionVentaBl.listarLiquidaciones(
-                ventas, estado, tipoLiquidacion, fechaDesde, fechaHasta, page, size);
+                LiquidacionSpecifications.deSocio(socio)
+                        .and(LiquidacionSpecifications.conTipos(LiquidacionVentaBl.TIPOS_VENTA)),
+                estado, tipoLiquidacion, fechaDesde, fechaHasta, page, size, incluirTotal, cursorFecha, cursorId);
     }
 
 
@@ -1446,10 +1449,8 @@ public class VentaSocioBl {
         try{
         Socio socio = obtenerSocioDelUsuario(usuarioId);
         log.info("Obteniendo lotes para venta del socio ID: {}", socio.getId());
-        return lotesRepository.findAll().stream()
-                .filter(l -> l.getMinasId().getSocioId().getId().equals(socio.getId()))
-                .filter(l -> "Transporte completo".equals(l.getEstado()))
-                .filter(l -> "venta_directa".equals(l.getTipoOperacion()))
+        // Filtros y joins (mina, comercializadora destino) resueltos en la consulta
+        return lotesRepository.findBySocioConDestino(socio, "Transporte completo", "venta_directa").stream()
                 .map(l -> {
                     log.info("Lote ID: {}, Mina: {}, Estado: {}, Tipo mineral: {}, Peso real: {}",
                             l.getId(), l.getMinasId().getNombre(), l.getEstado(), l.getTipoMineral(), l.getPesoTotalReal());
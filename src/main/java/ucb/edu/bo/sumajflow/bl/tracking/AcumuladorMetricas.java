@@ -0,0 +1,160 @@
+package ucb.edu.bo.sumajflow.bl.tracking;
+
+import ucb.edu.bo.sumajflow.document.HistorialUbicacion;
+import ucb.edu.bo.sumajflow.document.TrackingUbicacion;
+import ucb.edu.bo.sumajflow.utils.GeometryUtils;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Agregados incrementales de las métricas de un viaje: totales y segmentos por estadoViaje.
+ * Cada punto o tramo se suma en O(1) sobre un {@link TrackingUbicacion.MetricasViaje}, que puede
+ * ser el acumulado del viaje o un delta a persistir con $inc/$max/$min.
+ */
+public final class AcumuladorMetricas {
+
+    static final String SIN_ESTADO = "Sin estado";
+
+    // Por encima de esta velocidad (km/h) el tramo cuenta como tiempo en movimiento
+    private static final double VELOCIDAD_MOVIMIENTO = 1.0;
+
+    private AcumuladorMetricas() {
+    }
+
+    public static TrackingUbicacion.MetricasViaje nuevoDelta() {
+        return TrackingUbicacion.MetricasViaje.builder().build();
+    }
+
+    /**
+     * Suma un punto del historial a su segmento (conteo, puntos offline, inicio y fin)
+     */
+    public static void registrarPunto(TrackingUbicacion.MetricasViaje metricas, HistorialUbicacion punto) {
+        TrackingUbicacion.MetricasSegmento segmento = segmento(metricas, punto.getEstadoViaje());
+
+        segmento.setTotalUbicaciones(segmento.getTotalUbicaciones() + 1);
+        if (Boolean.TRUE.equals(punto.getEsOffline())) {
+            segmento.setUbicacionesOffline(segmento.getUbicacionesOffline() + 1);
+        }
+        extenderIntervalo(segmento, punto.getTimestamp(), punto.getTimestamp());
+    }
+
+    /**
+     * Suma el tramo entre dos posiciones consecutivas al total y al segmento del estado
+     */
+    public static void registrarTramo(
+            TrackingUbicacion.MetricasViaje metricas,
+            String estadoViaje,
+            double latAnterior, double lngAnterior, LocalDateTime timestampAnterior,
+            double lat, double lng, LocalDateTime timestamp,
+            Double velocidad) {
+
+        double distanciaKm = GeometryUtils.calcularDistancia(latAnterior, lngAnterior, lat, lng);
+        long segundos = timestampAnterior != null && timestamp != null
+                ? ChronoUnit.SECONDS.between(timestampAnterior, timestamp)
+                : 0;
+        boolean enMovimiento = velocidad != null && velocidad > VELOCIDAD_MOVIMIENTO;
+        double velocidadTramo = velocidad != null ? velocidad : 0.0;
+
+        TrackingUbicacion.MetricasSegmento segmento = segmento(metricas, estadoViaje);
+
+        metricas.setDistanciaRecorrida(metricas.getDistanciaRecorrida() + distanciaKm);
+        segmento.setDistanciaRecorrida(segmento.getDistanciaRecorrida() + distanciaKm);
+        if (enMovimiento) {
+            metricas.setTiempoEnMovimiento(metricas.getTiempoEnMovimiento() + segundos);
+            segmento.setTiempoEnMovimiento(segmento.getTiempoEnMovimiento() + segundos);
+        } else {
+            metricas.setTiempoDetenido(metricas.getTiempoDetenido() + segundos);
+            segmento.setTiempoDetenido(segmento.getTiempoDetenido() + segundos);
+        }
+        metricas.setVelocidadMaxima(Math.max(metricas.getVelocidadMaxima(), velocidadTramo));
+        segmento.setVelocidadMaxima(Math.max(segmento.getVelocidadMaxima(), velocidadTramo));
+    }
+
+    /**
+     * Suma un delta sobre otro acumulado (mismas reglas que el $inc/$max/$min en MongoDB)
+     */
+    public static void sumar(TrackingUbicacion.MetricasViaje destino, TrackingUbicacion.MetricasViaje delta) {
+        destino.setDistanciaRecorrida(destino.getDistanciaRecorrida() + delta.getDistanciaRecorrida());
+        destino.setTiempoEnMovimiento(destino.getTiempoEnMovimiento() + delta.getTiempoEnMovimiento());
+        destino.setTiempoDetenido(destino.getTiempoDetenido() + delta.getTiempoDetenido());
+        destino.setVelocidadMaxima(Math.max(destino.getVelocidadMaxima(), delta.getVelocidadMaxima()));
+
+        delta.getSegmentos().forEach((estado, d) -> {
+            TrackingUbicacion.MetricasSegmento segmento = segmento(destino, estado);
+            segmento.setDistanciaRecorrida(segmento.getDistanciaRecorrida() + d.getDistanciaRecorrida());
+            segmento.setTiempoEnMovimiento(segmento.getTiempoEnMovimiento() + d.getTiempoEnMovimiento());
+            segmento.setTiempoDetenido(segmento.getTiempoDetenido() + d.getTiempoDetenido());
+            segmento.setVelocidadMaxima(Math.max(segmento.getVelocidadMaxima(), d.getVelocidadMaxima()));
+            segmento.setTotalUbicaciones(segmento.getTotalUbicaciones() + d.getTotalUbicaciones());
+            segmento.setUbicacionesOffline(segmento.getUbicacionesOffline() + d.getUbicacionesOffline());
+            extenderIntervalo(segmento, d.getInicio(), d.getFin());
+        });
+    }
+
+    /**
+     * Copia profunda de los segmentos (los MetricasSegmento son mutables)
+     */
+    public static Map<String, TrackingUbicacion.MetricasSegmento> copiarSegmentos(
+            Map<String, TrackingUbicacion.MetricasSegmento> segmentos) {
+
+        Map<String, TrackingUbicacion.MetricasSegmento> copia = new LinkedHashMap<>();
+        if (segmentos != null) {
+            segmentos.forEach((estado, s) -> copia.put(estado, TrackingUbicacion.MetricasSegmento.builder()
+                    .distanciaRecorrida(s.getDistanciaRecorrida())
+                    .tiempoEnMovimiento(s.getTiempoEnMovimiento())
+                    .tiempoDetenido(s.getTiempoDetenido())
+                    .velocidadMaxima(s.getVelocidadMaxima())
+                    .totalUbicaciones(s.getTotalUbicaciones())
+                    .ubicacionesOffline(s.getUbicacionesOffline())
+                    .inicio(s.getInicio())
+                    .fin(s.getFin())
+                    .build()));
+        }
+        return copia;
+    }
+
+    /**
+     * Reconstruye los acumulados a partir del historial completo. Solo para viajes registrados
+     * antes de que existieran los segmentos; los tramos entre estados distintos no se cuentan.
+     */
+    public static TrackingUbicacion.MetricasViaje desdeHistorial(List<HistorialUbicacion> historial) {
+        TrackingUbicacion.MetricasViaje metricas = nuevoDelta();
+        HistorialUbicacion anterior = null;
+
+        for (HistorialUbicacion punto : historial) {
+            registrarPunto(metricas, punto);
+            if (anterior != null && clave(anterior.getEstadoViaje()).equals(clave(punto.getEstadoViaje()))) {
+                registrarTramo(metricas, punto.getEstadoViaje(),
+                        anterior.getLat(), anterior.getLng(), anterior.getTimestamp(),
+                        punto.getLat(), punto.getLng(), punto.getTimestamp(),
+                        punto.getVelocidad());
+            }
+            anterior = punto;
+        }
+        return metricas;
+    }
+
+    public static String clave(String estadoViaje) {
+        return estadoViaje != null ? estadoViaje : SIN_ESTADO;
+    }
+
+    private static TrackingUbicacion.MetricasSegmento segmento(TrackingUbicacion.MetricasViaje metricas, String estadoViaje) {
+        if (metricas.getSegmentos() == null) {
+            metricas.setSegmentos(new LinkedHashMap<>());
+        }
+        return metricas.getSegmentos().computeIfAbsent(clave(estadoViaje), e -> TrackingUbicacion.MetricasSegmento.builder().build());
+    }
+
+    private static void extenderIntervalo(TrackingUbicacion.MetricasSegmento segmento, LocalDateTime inicio, LocalDateTime fin) {
+        if (inicio != null && (segmento.getInicio() == null || inicio.isBefore(segmento.getInicio()))) {
+            segmento.setInicio(inicio);
+        }
+        if (fin != null && (segmento.getFin() == null || fin.isAfter(segmento.getFin()))) {
+            segmento.setFin(fin);
+        }
+    }
+}
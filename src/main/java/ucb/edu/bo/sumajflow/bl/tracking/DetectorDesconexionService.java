@@ -0,0 +1,161 @@
+package ucb.edu.bo.sumajflow.bl.tracking;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import ucb.edu.bo.sumajflow.document.TrackingUbicacion;
+import ucb.edu.bo.sumajflow.repository.mongodb.TrackingUbicacionRepository;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Detecta camiones sin señal con una rueda de tiempo (hashed timing wheel) en memoria.
+ * Cada ping reprograma el vencimiento del viaje a ahora + OFFLINE_THRESHOLD_SECONDS; en cada tick
+ * solo se revisa la ranura actual, sin consultar MongoDB. Las entradas de pings anteriores quedan
+ * obsoletas y se descartan al pasar su ranura.
+ * <p>
+ * La rueda es de cada instancia; el aviso de CAMION_OFFLINE solo se envía si el documento en MongoDB
+ * también está vencido, así una instancia que dejó de recibir los pings de un camión no lo da por perdido.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class DetectorDesconexionService {
+
+    private static final long TICK_MS = 1000;
+    private static final int RANURAS = 64;
+
+    private final FlotaEnVivoService flotaEnVivoService;
+    private final TrackingUbicacionRepository trackingRepository;
+    private final TrackingWebSocketService trackingWebSocketService;
+    private final MeterRegistry meterRegistry;
+
+    private final List<Queue<Programacion>> rueda = new ArrayList<>(RANURAS);
+    private final Map<Integer, Long> vencimientos = new ConcurrentHashMap<>();
+    private long ultimoTick;
+
+    private Counter transicionesOffline;
+
+    @PostConstruct
+    public void iniciar() {
+        for (int i = 0; i < RANURAS; i++) {
+            rueda.add(new ConcurrentLinkedQueue<>());
+        }
+        ultimoTick = System.currentTimeMillis() / TICK_MS;
+
+        transicionesOffline = Counter.builder("tracking.conexion.offline")
+                .description("Transiciones online → offline detectadas")
+                .register(meterRegistry);
+
+        // Viajes rehidratados en memoria
+        flotaEnVivoService.activos().forEach(viaje -> programar(viaje.getAsignacionCamionId()));
+
+        // Documentos que quedaron online tras un reinicio sin haber sincronizado (consulta única, usa el índice)
+        LocalDateTime limite = LocalDateTime.now().minusSeconds(TrackingBl.OFFLINE_THRESHOLD_SECONDS);
+        try {
+            List<TrackingUbicacion> desconectados = trackingRepository.findOfflineTrackings(limite);
+            desconectados.forEach(t -> trackingRepository.marcarOffline(t.getAsignacionCamionId(), limite));
+            log.info("📡 Detector de desconexión iniciado - {} viajes programados, {} marcados offline al iniciar",
+                    vencimientos.size(), desconectados.size());
+        } catch (Exception e) {
+            log.error("❌ Error al reconciliar viajes offline: {}", e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Reprograma el vencimiento del viaje tras recibir un ping
+     */
+    public void programar(Integer asignacionCamionId) {
+        long vence = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(TrackingBl.OFFLINE_THRESHOLD_SECONDS);
+
+        vencimientos.compute(asignacionCamionId, (id, anterior) -> {
+            // Si el vencimiento anterior cae en el mismo tick, la entrada existente ya sirve
+            if (anterior != null && anterior / TICK_MS == vence / TICK_MS) {
+                return anterior;
+            }
+            rueda.get(ranura(vence / TICK_MS)).add(new Programacion(id, vence));
+            return vence;
+        });
+    }
+
+    public void cancelar(Integer asignacionCamionId) {
+        vencimientos.remove(asignacionCamionId);
+    }
+
+    @Scheduled(fixedRate = TICK_MS)
+    public void avanzar() {
+        long tickActual = System.currentTimeMillis() / TICK_MS;
+        // Recuperar ticks perdidos, como máximo una vuelta completa
+        long desde = Math.max(ultimoTick + 1, tickActual - RANURAS + 1);
+
+        for (long tick = desde; tick <= tickActual; tick++) {
+            procesarRanura(rueda.get(ranura(tick)), tick);
+        }
+        ultimoTick = tickActual;
+    }
+
+    private void procesarRanura(Queue<Programacion> ranura, long tick) {
+        List<Programacion> pendientes = new ArrayList<>();
+
+        Programacion p;
+        while ((p = ranura.poll()) != null) {
+            if (p.vence() / TICK_MS > tick) {
+                // Vence en una vuelta posterior de la rueda
+                pendientes.add(p);
+                continue;
+            }
+            // Obsoleta: hubo un ping posterior que reprogramó el viaje
+            if (!vencimientos.remove(p.asignacionCamionId(), p.vence())) {
+                continue;
+            }
+            vencer(p.asignacionCamionId());
+        }
+        ranura.addAll(pendientes);
+    }
+
+    private void vencer(Integer asignacionCamionId) {
+        ViajeEnVivo viaje = flotaEnVivoService.buscar(asignacionCamionId);
+        if (viaje == null) {
+            return;
+        }
+
+        LocalDateTime limite = LocalDateTime.now().minusSeconds(TrackingBl.OFFLINE_THRESHOLD_SECONDS);
+        if (!viaje.marcarOffline(limite)) {
+            return;
+        }
+
+        try {
+            // El documento es compartido: si otra instancia recibió pings recientes no está vencido
+            if (!trackingRepository.marcarOffline(asignacionCamionId, limite)) {
+                log.debug("Viaje sin pings en esta instancia pero vigente en MongoDB - Asignación: {}", asignacionCamionId);
+                return;
+            }
+        } catch (Exception e) {
+            log.error("❌ Error al persistir estado offline - Asignación: {}: {}", asignacionCamionId, e.getMessage());
+        }
+
+        transicionesOffline.increment();
+        log.info("📴 Camión sin señal - Asignación: {}", asignacionCamionId);
+
+        trackingWebSocketService.enviarCamionOffline(
+                viaje.getLoteId(), asignacionCamionId, TrackingBl.OFFLINE_THRESHOLD_SECONDS);
+    }
+
+    private static int ranura(long tick) {
+        return (int) Math.floorMod(tick, (long) RANURAS);
+    }
+
+    private record Programacion(Integer asignacionCamionId, long vence) {
+    }
+}
@@ -0,0 +1,114 @@
+package ucb.edu.bo.sumajflow.bl.tracking;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import ucb.edu.bo.sumajflow.document.TrackingUbicacion;
+import ucb.edu.bo.sumajflow.repository.mongodb.TrackingUbicacionRepository;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * Registro en memoria de los viajes activos de la flota.
+ * Se alimenta con las escrituras de TrackingBl y sirve las lecturas del mapa en vivo;
+ * MongoDB sigue siendo el almacenamiento durable y se usa para rehidratar al iniciar.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class FlotaEnVivoService {
+
+    private static final Set<String> ESTADOS_FINALES = Set.of("Completado", "Cancelado por rechazo");
+
+    private final TrackingUbicacionRepository trackingRepository;
+    private final MeterRegistry meterRegistry;
+
+    private final Map<Integer, ViajeEnVivo> viajes = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    public void rehidratar() {
+        Gauge.builder("tracking.flota.viajes", viajes, Map::size)
+                .description("Viajes activos en memoria")
+                .register(meterRegistry);
+
+        try {
+            List<TrackingUbicacion> activos = trackingRepository.findAllActive();
+            activos.forEach(this::registrar);
+            log.info("🚚 Flota en vivo rehidratada - {} viajes activos", viajes.size());
+        } catch (Exception e) {
+            log.error("❌ Error al rehidratar flota en vivo: {}", e.getMessage(), e);
+        }
+    }
+
+    public ViajeEnVivo buscar(Integer asignacionCamionId) {
+        return viajes.get(asignacionCamionId);
+    }
+
+    /**
+     * Obtiene el viaje en memoria, cargándolo con el cargador si todavía no está registrado
+     */
+    public ViajeEnVivo obtener(Integer asignacionCamionId, Function<Integer, TrackingUbicacion> cargador) {
+        ViajeEnVivo viaje = viajes.get(asignacionCamionId);
+        if (viaje != null) {
+            return viaje;
+        }
+        ViajeEnVivo cargado = ViajeEnVivo.desde(cargador.apply(asignacionCamionId));
+        ViajeEnVivo existente = viajes.putIfAbsent(asignacionCamionId, cargado);
+        return existente != null ? existente : cargado;
+    }
+
+    /**
+     * Registra o reemplaza el viaje con el estado completo del documento persistido
+     */
+    public void registrar(TrackingUbicacion tracking) {
+        if (tracking == null) {
+            return;
+        }
+        if (ESTADOS_FINALES.contains(tracking.getEstadoViaje())) {
+            viajes.remove(tracking.getAsignacionCamionId());
+            return;
+        }
+        viajes.compute(tracking.getAsignacionCamionId(), (id, viaje) -> {
+            if (viaje == null) {
+                return ViajeEnVivo.desde(tracking);
+            }
+            viaje.reemplazarCon(tracking);
+            return viaje;
+        });
+    }
+
+    /**
+     * Actualiza estado, puntos de control y eventos sin tocar la posición ni las métricas en memoria
+     */
+    public void actualizarEstado(TrackingUbicacion tracking) {
+        if (tracking == null) {
+            return;
+        }
+        if (ESTADOS_FINALES.contains(tracking.getEstadoViaje())) {
+            viajes.remove(tracking.getAsignacionCamionId());
+            return;
+        }
+        viajes.computeIfPresent(tracking.getAsignacionCamionId(), (id, viaje) -> {
+            viaje.actualizarEstado(tracking);
+            return viaje;
+        });
+    }
+
+    public Collection<ViajeEnVivo> activos() {
+        return viajes.values();
+    }
+
+    public List<ViajeEnVivo> porLote(Integer loteId) {
+        return viajes.values().stream()
+                .filter(v -> v.getLoteId() == loteId)
+                .toList();
+    }
+}
@@ -0,0 +1,233 @@
+package ucb.edu.bo.sumajflow.bl.tracking;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import ucb.edu.bo.sumajflow.document.TrackingUbicacion;
+import ucb.edu.bo.sumajflow.dto.tracking.GeofencingStatusDto;
+import ucb.edu.bo.sumajflow.utils.GeometryUtils;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Motor de geocercas para los puntos de control de un viaje.
+ * La geometría de los puntos (centro, radio, polígono y bounding box en grados) se compila una vez
+ * por viaje y se cachea; en cada ping solo las zonas cuya caja contiene al camión pasan al cálculo
+ * exacto (haversine para círculos, ray casting para polígonos).
+ */
+@Slf4j
+@Service
+public class GeocercaService {
+
+    private final Map<Integer, ZonasViaje> zonasPorViaje = new ConcurrentHashMap<>();
+
+    public GeofencingStatusDto evaluar(
+            Integer asignacionCamionId,
+            List<TrackingUbicacion.PuntoControl> puntosControl,
+            double lat,
+            double lng) {
+
+        GeofencingStatusDto.GeofencingStatusDtoBuilder builder = GeofencingStatusDto.builder()
+                .dentroDeZona(false)
+                .puedeRegistrarLlegada(false)
+                .puedeRegistrarSalida(false);
+
+        if (puntosControl == null || puntosControl.isEmpty()) {
+            return builder.build();
+        }
+
+        ZonasViaje zonas = obtenerZonas(asignacionCamionId, puntosControl);
+
+        for (int i = 0; i < zonas.size(); i++) {
+            if (!zonas.enCaja(i, lat, lng)) {
+                continue;
+            }
+
+            double distancia = GeometryUtils.calcularDistanciaMetros(lat, lng, zonas.centroLat[i], zonas.centroLng[i]);
+            boolean dentro = distancia <= zonas.radio[i]
+                    || (zonas.poligonoLat[i] != null
+                        && GeometryUtils.puntoEnPoligono(lat, lng, zonas.poligonoLat[i], zonas.poligonoLng[i]));
+
+            if (dentro) {
+                TrackingUbicacion.PuntoControl punto = puntosControl.get(i);
+                builder.dentroDeZona(true)
+                        .zonaNombre(punto.getNombre())
+                        .zonaTipo(punto.getTipo())
+                        .distanciaAZona(distancia);
+
+                if ("pendiente".equals(punto.getEstado()) || punto.getLlegada() == null) {
+                    builder.puedeRegistrarLlegada(true);
+                } else if (punto.getSalida() == null) {
+                    builder.puedeRegistrarSalida(true);
+                }
+                break;
+            }
+        }
+
+        int proximo = indiceProximoPendiente(puntosControl);
+        if (proximo != -1) {
+            builder.proximoPuntoControl(puntosControl.get(proximo).getNombre())
+                    .distanciaProximoPunto(GeometryUtils.calcularDistanciaEquirectangularMetros(
+                            lat, lng, zonas.centroLat[proximo], zonas.centroLng[proximo], zonas.cosLat[proximo]));
+        }
+
+        return builder.build();
+    }
+
+    /**
+     * Indica si la ubicación está dentro del polígono del punto de control (si lo tiene)
+     */
+    public boolean dentroDePoligono(TrackingUbicacion.PuntoControl punto, double lat, double lng) {
+        if (punto.getPoligono() == null || punto.getPoligono().size() < 3) {
+            return false;
+        }
+        double[][] vertices = verticesEnArreglos(punto.getPoligono());
+        return GeometryUtils.puntoEnPoligono(lat, lng, vertices[0], vertices[1]);
+    }
+
+    /**
+     * Descarta la geometría cacheada de un viaje finalizado
+     */
+    public void descartar(Integer asignacionCamionId) {
+        zonasPorViaje.remove(asignacionCamionId);
+    }
+
+    private ZonasViaje obtenerZonas(Integer asignacionCamionId, List<TrackingUbicacion.PuntoControl> puntosControl) {
+        if (asignacionCamionId == null) {
+            return ZonasViaje.compilar(puntosControl);
+        }
+
+        ZonasViaje zonas = zonasPorViaje.get(asignacionCamionId);
+        if (zonas == null || !zonas.coincideCon(puntosControl)) {
+            zonas = ZonasViaje.compilar(puntosControl);
+            zonasPorViaje.put(asignacionCamionId, zonas);
+            log.debug("Geocercas compiladas - Asignación: {}, Zonas: {}", asignacionCamionId, zonas.size());
+        }
+        return zonas;
+    }
+
+    /**
+     * Mismo criterio que GeometryUtils.encontrarProximoPuntoControlPendiente, pero devuelve el índice
+     */
+    private int indiceProximoPendiente(List<TrackingUbicacion.PuntoControl> puntosControl) {
+        int indice = -1;
+        for (int i = 0; i < puntosControl.size(); i++) {
+            TrackingUbicacion.PuntoControl punto = puntosControl.get(i);
+            if (!"pendiente".equals(punto.getEstado()) && !"en_punto".equals(punto.getEstado())) {
+                continue;
+            }
+            if (indice == -1 || punto.getOrden() < puntosControl.get(indice).getOrden()) {
+                indice = i;
+            }
+        }
+        return indice;
+    }
+
+    private static double[][] verticesEnArreglos(List<TrackingUbicacion.Vertice> poligono) {
+        double[] lats = new double[poligono.size()];
+        double[] lngs = new double[poligono.size()];
+        for (int i = 0; i < poligono.size(); i++) {
+            lats[i] = poligono.get(i).getLat();
+            lngs[i] = poligono.get(i).getLng();
+        }
+        return new double[][]{lats, lngs};
+    }
+
+    /**
+     * Geometría inmutable de los puntos de control de un viaje, en arreglos paralelos por índice
+     */
+    private static final class ZonasViaje {
+        private final String[] tipos;
+        private final double[] centroLat;
+        private final double[] centroLng;
+        private final double[] radio;
+        private final double[] cosLat;
+        private final double[] minLat;
+        private final double[] maxLat;
+        private final double[] minLng;
+        private final double[] maxLng;
+        private final double[][] poligonoLat;
+        private final double[][] poligonoLng;
+
+        private ZonasViaje(int n) {
+            tipos = new String[n];
+            centroLat = new double[n];
+            centroLng = new double[n];
+            radio = new double[n];
+            cosLat = new double[n];
+            minLat = new double[n];
+            maxLat = new double[n];
+            minLng = new double[n];
+            maxLng = new double[n];
+            poligonoLat = new double[n][];
+            poligonoLng = new double[n][];
+        }
+
+        static ZonasViaje compilar(List<TrackingUbicacion.PuntoControl> puntosControl) {
+            ZonasViaje zonas = new ZonasViaje(puntosControl.size());
+            double metrosPorGrado = GeometryUtils.metrosPorGrado();
+
+            for (int i = 0; i < puntosControl.size(); i++) {
+                TrackingUbicacion.PuntoControl punto = puntosControl.get(i);
+                double lat = punto.getLat();
+                double lng = punto.getLng();
+                double r = punto.getRadio() != null ? punto.getRadio() : 0;
+                double cos = Math.cos(Math.toRadians(lat));
+
+                zonas.tipos[i] = punto.getTipo();
+                zonas.centroLat[i] = lat;
+                zonas.centroLng[i] = lng;
+                zonas.radio[i] = r;
+                zonas.cosLat[i] = cos;
+
+                double dLat = r / metrosPorGrado;
+                double dLng = r / (metrosPorGrado * Math.max(cos, 1e-6));
+                zonas.minLat[i] = lat - dLat;
+                zonas.maxLat[i] = lat + dLat;
+                zonas.minLng[i] = lng - dLng;
+                zonas.maxLng[i] = lng + dLng;
+
+                if (punto.getPoligono() != null && punto.getPoligono().size() >= 3) {
+                    double[][] vertices = verticesEnArreglos(punto.getPoligono());
+                    zonas.poligonoLat[i] = vertices[0];
+                    zonas.poligonoLng[i] = vertices[1];
+                    for (int v = 0; v < vertices[0].length; v++) {
+                        zonas.minLat[i] = Math.min(zonas.minLat[i], vertices[0][v]);
+                        zonas.maxLat[i] = Math.max(zonas.maxLat[i], vertices[0][v]);
+                        zonas.minLng[i] = Math.min(zonas.minLng[i], vertices[1][v]);
+                        zonas.maxLng[i] = Math.max(zonas.maxLng[i], vertices[1][v]);
+                    }
+                }
+            }
+            return zonas;
+        }
+
+        int size() {
+            return tipos.length;
+        }
+
+        boolean enCaja(int i, double lat, double lng) {
+            return lat >= minLat[i] && lat <= maxLat[i] && lng >= minLng[i] && lng <= maxLng[i];
+        }
+
+        /**
+         * La geometría no cambia durante el viaje (solo estado, llegada y salida), así que basta
+         * comparar tipo y centro de cada punto para validar la caché
+         */
+        boolean coincideCon(List<TrackingUbicacion.PuntoControl> puntosControl) {
+            if (puntosControl.size() != tipos.length) {
+                return false;
+            }
+            for (int i = 0; i < tipos.length; i++) {
+                TrackingUbicacion.PuntoControl punto = puntosControl.get(i);
+                if (!tipos[i].equals(punto.getTipo())
+                        || centroLat[i] != punto.getLat()
+                        || centroLng[i] != punto.getLng()) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
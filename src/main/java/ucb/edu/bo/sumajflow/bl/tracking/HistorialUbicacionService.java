@@ -0,0 +1,256 @@
+package ucb.edu.bo.sumajflow.bl.tracking;
+
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+import ucb.edu.bo.sumajflow.document.HistorialUbicacion;
+import ucb.edu.bo.sumajflow.document.TrackingUbicacion;
+import ucb.edu.bo.sumajflow.repository.mongodb.HistorialUbicacionRepository;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.*;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Servicio de almacenamiento del historial GPS de los viajes (colección time-series append-only)
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class HistorialUbicacionService {
+
+    private static final String CAMPO_HISTORIAL_LEGACY = "historialUbicaciones";
+    // Marca del documento que un proceso está migrando; caduca si ese proceso murió a mitad
+    private static final String CAMPO_MIGRACION = "historialMigracion";
+    private static final int CERROJOS = 64;
+
+    private final HistorialUbicacionRepository historialRepository;
+    private final MongoTemplate mongoTemplate;
+
+    // Serializa inserciones idempotentes de una misma asignación (reintentos concurrentes, flush de la ingesta)
+    private final ReentrantLock[] cerrojos = crearCerrojos();
+
+    /**
+     * Crea la colección time-series si no existe. La migración del historial embebido
+     * la ejecuta aparte {@link MigracionHistorialEmbebidoRunner}.
+     */
+    @PostConstruct
+    public void inicializar() {
+        try {
+            if (!mongoTemplate.collectionExists(HistorialUbicacion.class)) {
+                mongoTemplate.createCollection(HistorialUbicacion.class);
+                log.info("📦 Colección time-series de historial GPS creada");
+            }
+        } catch (Exception e) {
+            log.error("❌ Error al inicializar historial GPS: {}", e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Registra un punto de historial (insert append-only)
+     */
+    public void registrarPunto(HistorialUbicacion punto) {
+        historialRepository.insert(punto);
+    }
+
+    /**
+     * Registra varios puntos de historial en una sola operación
+     */
+    public void registrarPuntos(List<HistorialUbicacion> puntos) {
+        if (puntos.isEmpty()) {
+            return;
+        }
+        historialRepository.insert(puntos);
+    }
+
+    /**
+     * Inserta solo los puntos cuyo timestamp todavía no existe para la asignación, de modo que
+     * reintentos de una sincronización no dupliquen puntos. La colección time-series no admite
+     * índices únicos: se consultan los timestamps existentes en el rango del lote (índice meta + tiempo).
+     * @return puntos efectivamente insertados, ordenados por timestamp
+     */
+    public List<HistorialUbicacion> registrarPuntosNuevos(Integer asignacionCamionId, List<HistorialUbicacion> puntos) {
+        if (puntos.isEmpty()) {
+            return List.of();
+        }
+
+        TreeMap<LocalDateTime, HistorialUbicacion> porTimestamp = new TreeMap<>();
+        puntos.forEach(p -> porTimestamp.putIfAbsent(p.getTimestamp(), p));
+
+        ReentrantLock cerrojo = cerrojos[Math.floorMod(asignacionCamionId, CERROJOS)];
+        cerrojo.lock();
+        try {
+            Query query = Query.query(Criteria.where("asignacionCamionId").is(asignacionCamionId)
+                    .and("timestamp").gte(porTimestamp.firstKey()).lte(porTimestamp.lastKey()));
+            query.fields().include("timestamp");
+
+            for (HistorialUbicacion existente : mongoTemplate.find(query, HistorialUbicacion.class)) {
+                porTimestamp.remove(existente.getTimestamp());
+            }
+
+            List<HistorialUbicacion> nuevos = new ArrayList<>(porTimestamp.values());
+            registrarPuntos(nuevos);
+            return nuevos;
+        } finally {
+            cerrojo.unlock();
+        }
+    }
+
+    /**
+     * Igual que {@link #registrarPuntosNuevos(Integer, List)} para puntos de varias asignaciones
+     * (flush de la ingesta): una sola consulta con los timestamps candidatos y un solo insert.
+     * @return puntos efectivamente insertados
+     */
+    public List<HistorialUbicacion> registrarPuntosNuevos(List<HistorialUbicacion> puntos) {
+        if (puntos.isEmpty()) {
+            return List.of();
+        }
+
+        // MongoDB guarda milisegundos: se compara con el timestamp truncado
+        Map<Integer, Map<LocalDateTime, HistorialUbicacion>> porAsignacion = new TreeMap<>();
+        for (HistorialUbicacion punto : puntos) {
+            porAsignacion.computeIfAbsent(punto.getAsignacionCamionId(), k -> new LinkedHashMap<>())
+                    .putIfAbsent(punto.getTimestamp().truncatedTo(ChronoUnit.MILLIS), punto);
+        }
+
+        List<ReentrantLock> tomados = bloquear(porAsignacion.keySet());
+        try {
+            List<Criteria> filtros = porAsignacion.entrySet().stream()
+                    .map(e -> Criteria.where("asignacionCamionId").is(e.getKey())
+                            .and("timestamp").in(e.getValue().keySet()))
+                    .toList();
+            Query query = Query.query(new Criteria().orOperator(filtros));
+            query.fields().include("asignacionCamionId", "timestamp");
+
+            for (HistorialUbicacion existente : mongoTemplate.find(query, HistorialUbicacion.class)) {
+                Map<LocalDateTime, HistorialUbicacion> candidatos = porAsignacion.get(existente.getAsignacionCamionId());
+                if (candidatos != null) {
+                    candidatos.remove(existente.getTimestamp());
+                }
+            }
+
+            List<HistorialUbicacion> nuevos = porAsignacion.values().stream()
+                    .flatMap(candidatos -> candidatos.values().stream())
+                    .toList();
+            registrarPuntos(nuevos);
+            return nuevos;
+        } finally {
+            tomados.forEach(ReentrantLock::unlock);
+        }
+    }
+
+    public List<HistorialUbicacion> obtenerHistorial(Integer asignacionCamionId) {
+        return historialRepository.findByAsignacionCamionIdOrderByTimestampAsc(asignacionCamionId);
+    }
+
+    public Optional<HistorialUbicacion> obtenerUltimoPunto(Integer asignacionCamionId) {
+        return historialRepository.findFirstByAsignacionCamionIdOrderByTimestampDesc(asignacionCamionId);
+    }
+
+    public Optional<HistorialUbicacion> obtenerPuntoAnterior(Integer asignacionCamionId, LocalDateTime timestamp) {
+        return historialRepository.findFirstByAsignacionCamionIdAndTimestampLessThanOrderByTimestampDesc(
+                asignacionCamionId, timestamp);
+    }
+
+    public long contarPuntos(Integer asignacionCamionId) {
+        return historialRepository.countByAsignacionCamionId(asignacionCamionId);
+    }
+
+    /**
+     * Migra los historiales embebidos en tracking_ubicaciones (formato anterior) a la colección time-series.
+     * Cada documento se reclama antes con un findAndModify que lo marca con la hora de inicio, así que
+     * dos procesos no migran el mismo documento; una marca más antigua que {@code caducidadMarca} se
+     * considera abandonada y se vuelve a reclamar. Los puntos se insertan con
+     * {@link #registrarPuntosNuevos(Integer, List)}, de modo que retomar un documento a medio migrar
+     * no duplica los que ya se copiaron.
+     * @return documentos migrados
+     */
+    public int migrarHistorialEmbebido(Duration caducidadMarca) {
+        String coleccionTracking = mongoTemplate.getCollectionName(TrackingUbicacion.class);
+        int migrados = 0;
+
+        Document documento;
+        while ((documento = reclamarDocumentoLegacy(coleccionTracking, caducidadMarca)) != null) {
+            if (migrados == 0) {
+                log.info("🔄 Migrando historial embebido a la colección time-series");
+            }
+
+            Integer asignacionCamionId = documento.getInteger("asignacionCamionId");
+            Integer loteId = documento.getInteger("loteId");
+            List<Document> puntosLegacy = documento.getList(CAMPO_HISTORIAL_LEGACY, Document.class, List.of());
+
+            List<HistorialUbicacion> puntos = new ArrayList<>(puntosLegacy.size());
+            for (Document puntoLegacy : puntosLegacy) {
+                HistorialUbicacion punto = mongoTemplate.getConverter().read(HistorialUbicacion.class, puntoLegacy);
+                punto.setId(null);
+                punto.setAsignacionCamionId(asignacionCamionId);
+                punto.setLoteId(loteId);
+                if (punto.getTimestamp() != null) {
+                    punto.setTimestamp(punto.getTimestamp().truncatedTo(ChronoUnit.MILLIS));
+                    puntos.add(punto);
+                }
+            }
+
+            registrarPuntosNuevos(asignacionCamionId, puntos);
+            mongoTemplate.updateFirst(
+                    Query.query(Criteria.where("_id").is(documento.get("_id"))),
+                    new Update().unset(CAMPO_HISTORIAL_LEGACY).unset(CAMPO_MIGRACION),
+                    coleccionTracking);
+            migrados++;
+        }
+
+        if (migrados > 0) {
+            log.info("✅ Migración de historial embebido completada: {} trackings", migrados);
+        }
+        return migrados;
+    }
+
+    // ==================== MÉTODOS PRIVADOS ====================
+
+    /**
+     * Marca un documento con historial embebido que nadie esté migrando (o cuya marca caducó)
+     * @return el documento con su historial, o null si no quedan
+     */
+    private Document reclamarDocumentoLegacy(String coleccionTracking, Duration caducidadMarca) {
+        Date ahora = new Date();
+        Query query = Query.query(Criteria.where(CAMPO_HISTORIAL_LEGACY).exists(true)
+                .orOperator(
+                        Criteria.where(CAMPO_MIGRACION).exists(false),
+                        Criteria.where(CAMPO_MIGRACION).lt(new Date(ahora.getTime() - caducidadMarca.toMillis()))));
+        query.fields().include("asignacionCamionId", "loteId", CAMPO_HISTORIAL_LEGACY);
+
+        return mongoTemplate.findAndModify(query, new Update().set(CAMPO_MIGRACION, ahora),
+                Document.class, coleccionTracking);
+    }
+
+    /**
+     * Toma los cerrojos de las asignaciones en orden de índice, para no bloquearse con otro flush
+     */
+    private List<ReentrantLock> bloquear(Set<Integer> asignaciones) {
+        SortedSet<Integer> indices = new TreeSet<>();
+        asignaciones.forEach(id -> indices.add(Math.floorMod(id, CERROJOS)));
+
+        List<ReentrantLock> tomados = new ArrayList<>(indices.size());
+        for (Integer indice : indices) {
+            cerrojos[indice].lock();
+            tomados.add(cerrojos[indice]);
+        }
+        return tomados;
+    }
+
+    private static ReentrantLock[] crearCerrojos() {
+        ReentrantLock[] cerrojos = new ReentrantLock[CERROJOS];
+        for (int i = 0; i < CERROJOS; i++) {
+            cerrojos[i] = new ReentrantLock();
+        }
+        return cerrojos;
+    }
+}
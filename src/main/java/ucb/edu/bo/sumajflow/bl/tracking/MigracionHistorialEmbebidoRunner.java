@@ -0,0 +1,41 @@
+package ucb.edu.bo.sumajflow.bl.tracking;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * Migración única del historial embebido en tracking_ubicaciones a la colección time-series.
+ * Solo se registra con tracking.historial.migrar-embebido=true: se arranca una instancia con la
+ * propiedad activa (o un proceso aparte) en lugar de repetir la migración en cada nodo al iniciar.
+ * Es reanudable: si el proceso se detiene a mitad, basta con volver a ejecutarla.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "tracking.historial.migrar-embebido", havingValue = "true")
+@RequiredArgsConstructor
+public class MigracionHistorialEmbebidoRunner implements ApplicationRunner {
+
+    private final HistorialUbicacionService historialUbicacionService;
+
+    @Value("${tracking.historial.caducidad-marca-migracion:PT10M}")
+    private Duration caducidadMarca;
+
+    @Override
+    public void run(ApplicationArguments args) {
+        try {
+            int migrados = historialUbicacionService.migrarHistorialEmbebido(caducidadMarca);
+            if (migrados == 0) {
+                log.info("✅ No queda historial embebido por migrar");
+            }
+        } catch (Exception e) {
+            log.error("❌ Error al migrar historial embebido: {}", e.getMessage(), e);
+        }
+    }
+}
@@ -2,15 +2,20 @@ package ucb.edu.bo.sumajflow.bl.tracking;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DuplicateKeyException;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import ucb.edu.bo.sumajflow.bl.transporte.EventosViajeBl;
+import ucb.edu.bo.sumajflow.document.HistorialUbicacion;
 import ucb.edu.bo.sumajflow.document.TrackingUbicacion;
 import ucb.edu.bo.sumajflow.dto.tracking.*;
 import ucb.edu.bo.sumajflow.entity.*;
 import ucb.edu.bo.sumajflow.repository.*;
 import ucb.edu.bo.sumajflow.repository.mongodb.TrackingUbicacionRepository;
+import ucb.edu.bo.sumajflow.repository.mongodb.TrackingUbicacionRepositoryCustom.CambioPuntoControl;
 import ucb.edu.bo.sumajflow.utils.GeometryUtils;
-import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.JsonNode;
 
 import java.time.LocalDateTime;
@@ -28,9 +33,21 @@ public class TrackingBl {
     private final LotesRepository lotesRepository;
     private final PersonaRepository personaRepository;
     private final TrackingWebSocketService trackingWebSocketService;
-    private final ObjectMapper objectMapper;
+    private final HistorialUbicacionService historialUbicacionService;
+    private final TrackingIngestaService trackingIngestaService;
+    private final FlotaEnVivoService flotaEnVivoService;
+    private final GeocercaService geocercaService;
+    private final DetectorDesconexionService detectorDesconexionService;
+    private final EventosViajeBl eventosViajeBl;
+
+    static final long OFFLINE_THRESHOLD_SECONDS = 40;
+
+    // Espera máxima a que se persistan los pings encolados antes de una sincronización offline
+    private static final long ESPERA_INGESTA_SINCRONIZACION_MS = 5000;
+
+    @Value("${tracking.sincronizacion.tamanio-lote:1000}")
+    private int tamanioLoteSincronizacion;
 
-    private static final long OFFLINE_THRESHOLD_SECONDS = 40;
     private static final int RADIO_MINA = 1000;
     private static final int RADIO_BALANZA_COOPERATIVA = 1000;
     private static final int RADIO_BALANZA_DESTINO = 1000;
@@ -85,12 +102,13 @@ public class TrackingBl {
                         .velocidadPromedio(0.0)
                         .velocidadMaxima(0.0)
                         .build())
-                .historialUbicaciones(new ArrayList<>())
                 .createdAt(LocalDateTime.now())
                 .updatedAt(LocalDateTime.now())
                 .build();
 
         tracking = trackingRepository.save(tracking);
+        flotaEnVivoService.registrar(tracking);
+        detectorDesconexionService.programar(tracking.getAsignacionCamionId());
         log.info("Tracking iniciado exitosamente - ID: {}", tracking.getId());
 
         return convertToResponseDto(tracking);
@@ -105,59 +123,6 @@ public class TrackingBl {
             throw new IllegalArgumentException("Ubicación inválida");
         }
 
-        TrackingUbicacion tracking = trackingRepository.findByAsignacionCamionId(dto.getAsignacionCamionId())
-                .orElseGet(() -> {
-                    log.info("Tracking no encontrado, creando nuevo...");
-                    TrackingResponseDto nuevoTracking = iniciarTracking(
-                            dto.getAsignacionCamionId(), dto.getLat(), dto.getLng());
-                    return trackingRepository.findByAsignacionCamionId(dto.getAsignacionCamionId())
-                            .orElseThrow(() -> new IllegalStateException("Error al crear tracking"));
-                });
-
-        boolean esActualizacionOffline = dto.getEsOffline() != null ? dto.getEsOffline() : false;
-
-        boolean huboCorteComunicacion = false;
-        if (!esActualizacionOffline && tracking.getUbicacionActual() != null
-                && tracking.getUbicacionActual().getTimestamp() != null) {
-
-            LocalDateTime ahora = dto.getTimestampCaptura() != null
-                    ? dto.getTimestampCaptura()
-                    : LocalDateTime.now();
-
-            long segundosDesdeUltima = ChronoUnit.SECONDS.between(
-                    tracking.getUbicacionActual().getTimestamp(),
-                    ahora
-            );
-
-            if (segundosDesdeUltima > OFFLINE_THRESHOLD_SECONDS) {
-                huboCorteComunicacion = true;
-                log.warn("⚠️ Detectado corte de comunicación de {} segundos (>{} seg), " +
-                                "las ubicaciones intermedias se perdieron",
-                        segundosDesdeUltima, OFFLINE_THRESHOLD_SECONDS);
-            }
-        }
-
-        if (tracking.getUbicacionActual() != null) {
-            TrackingUbicacion.PuntoUbicacion puntoHistorial = TrackingUbicacion.PuntoUbicacion.builder()
-                    .lat(tracking.getUbicacionActual().getLat())
-                    .lng(tracking.getUbicacionActual().getLng())
-                    .timestamp(tracking.getUbicacionActual().getTimestamp())
-                    .precision(tracking.getUbicacionActual().getPrecision())
-                    .velocidad(tracking.getUbicacionActual().getVelocidad())
-                    .rumbo(tracking.getUbicacionActual().getRumbo())
-                    .altitud(tracking.getUbicacionActual().getAltitud())
-                    .sincronizado(true)
-                    .esOffline(huboCorteComunicacion || esActualizacionOffline)
-                    .estadoViaje(tracking.getEstadoViaje())
-                    .build();
-
-            tracking.getHistorialUbicaciones().add(puntoHistorial);
-
-            if (!huboCorteComunicacion) {
-                actualizarMetricas(tracking, dto);
-            }
-        }
-
         LocalDateTime timestamp = dto.getTimestampCaptura() != null
                 ? dto.getTimestampCaptura()
                 : LocalDateTime.now();
@@ -173,21 +138,270 @@ public class TrackingBl {
                 .altitud(dto.getAltitud())
                 .build();
 
-        tracking.setUbicacionActual(nuevaUbicacion);
-        tracking.setEstadoConexion("online");
-        tracking.setUltimaSincronizacion(LocalDateTime.now());
-        tracking.setUpdatedAt(LocalDateTime.now());
+        if (trackingIngestaService.isHabilitada()) {
+            return actualizarUbicacionEnLote(dto, timestamp, nuevaUbicacion);
+        }
+
+        boolean esActualizacionOffline = dto.getEsOffline() != null ? dto.getEsOffline() : false;
+
+        // Viaje en memoria: se conoce la ubicación previa, ubicación y métricas van en un solo findAndModify
+        PingAplicado ping = reemplazarUbicacionEnVivo(dto, timestamp, nuevaUbicacion, esActualizacionOffline);
+        if (ping == null) {
+            ping = registrarUbicacionLeyendoAnterior(dto, timestamp, nuevaUbicacion, esActualizacionOffline);
+        }
+        TrackingUbicacion tracking = ping.tracking();
+        boolean huboCorteComunicacion = ping.huboCorteComunicacion();
+
+        flotaEnVivoService.registrar(tracking);
+        detectorDesconexionService.programar(dto.getAsignacionCamionId());
 
         GeofencingStatusDto geofencingStatus = verificarGeofencing(tracking, dto.getLat(), dto.getLng());
 
-        trackingRepository.save(tracking);
+        trackingWebSocketService.enviarDeltaPosicion(tracking);
 
-        TrackingResponseDto responseDto = convertToResponseDto(tracking);
-        trackingWebSocketService.enviarActualizacionCompleta(
-                tracking.getLoteId(),
-                tracking.getAsignacionCamionId(),
-                responseDto
-        );
+        return construirRespuestaUbicacion(dto, timestamp, huboCorteComunicacion, geofencingStatus, tracking.getEstadoViaje());
+    }
+
+    /**
+     * Ping con el viaje en memoria: el delta se calcula sobre su ubicación y se persiste junto con la nueva
+     * ubicación en un findAndModify condicionado a que la guardada siga siendo esa.
+     * @return null si no hay viaje en memoria o la ubicación guardada ya cambió (otro ping, otra instancia)
+     */
+    private PingAplicado reemplazarUbicacionEnVivo(
+            ActualizarUbicacionDto dto,
+            LocalDateTime timestamp,
+            TrackingUbicacion.UbicacionActual nuevaUbicacion,
+            boolean esActualizacionOffline) {
+
+        ViajeEnVivo viaje = flotaEnVivoService.buscar(dto.getAsignacionCamionId());
+        if (viaje == null) {
+            return null;
+        }
+
+        TrackingUbicacion.UbicacionActual ubicacionAnterior = viaje.getUbicacionActual();
+        boolean huboCorteComunicacion = detectarCorteComunicacion(ubicacionAnterior, timestamp, esActualizacionOffline);
+
+        HistorialUbicacion puntoHistorial = null;
+        TrackingUbicacion.MetricasViaje delta = AcumuladorMetricas.nuevoDelta();
+        if (ubicacionAnterior != null) {
+            puntoHistorial = construirPuntoHistorial(
+                    viaje.getAsignacionCamionId(),
+                    viaje.getLoteId(),
+                    viaje.getEstadoViaje(),
+                    ubicacionAnterior,
+                    huboCorteComunicacion || esActualizacionOffline);
+            delta = calcularDeltaMetricas(puntoHistorial, !huboCorteComunicacion, dto, timestamp);
+        }
+
+        TrackingUbicacion tracking = trackingRepository.reemplazarUbicacionActual(
+                dto.getAsignacionCamionId(),
+                ubicacionAnterior != null ? ubicacionAnterior.getTimestamp() : null,
+                nuevaUbicacion,
+                delta,
+                LocalDateTime.now());
+        if (tracking == null) {
+            return null;
+        }
+
+        if (puntoHistorial != null) {
+            historialUbicacionService.registrarPunto(puntoHistorial);
+        }
+        return new PingAplicado(tracking, huboCorteComunicacion);
+    }
+
+    /**
+     * Ping sin viaje en memoria (o con la ubicación desactualizada): el findAndModify devuelve el documento
+     * previo, así cada ping conoce exactamente la ubicación a la que reemplazó y ningún punto se pierde
+     */
+    private PingAplicado registrarUbicacionLeyendoAnterior(
+            ActualizarUbicacionDto dto,
+            LocalDateTime timestamp,
+            TrackingUbicacion.UbicacionActual nuevaUbicacion,
+            boolean esActualizacionOffline) {
+
+        TrackingUbicacion anterior = trackingRepository.registrarUbicacionActual(
+                dto.getAsignacionCamionId(), nuevaUbicacion, LocalDateTime.now());
+
+        if (anterior == null) {
+            crearTrackingSiNoExiste(dto);
+            anterior = trackingRepository.registrarUbicacionActual(
+                    dto.getAsignacionCamionId(), nuevaUbicacion, LocalDateTime.now());
+            if (anterior == null) {
+                throw new IllegalStateException("Error al crear tracking");
+            }
+        }
+
+        TrackingUbicacion.UbicacionActual ubicacionAnterior = anterior.getUbicacionActual();
+        boolean huboCorteComunicacion = detectarCorteComunicacion(ubicacionAnterior, timestamp, esActualizacionOffline);
+
+        TrackingUbicacion tracking = null;
+
+        if (ubicacionAnterior != null) {
+            HistorialUbicacion puntoHistorial = construirPuntoHistorial(
+                    anterior.getAsignacionCamionId(),
+                    anterior.getLoteId(),
+                    anterior.getEstadoViaje(),
+                    ubicacionAnterior,
+                    huboCorteComunicacion || esActualizacionOffline);
+            historialUbicacionService.registrarPunto(puntoHistorial);
+
+            tracking = trackingRepository.acumularMetricas(
+                    dto.getAsignacionCamionId(),
+                    calcularDeltaMetricas(puntoHistorial, !huboCorteComunicacion, dto, timestamp));
+        }
+
+        if (tracking == null) {
+            // Reflejar en memoria el $set ya aplicado sobre el documento previo
+            tracking = anterior;
+            tracking.setUbicacionActual(nuevaUbicacion);
+            tracking.setEstadoConexion("online");
+            tracking.setUltimaSincronizacion(LocalDateTime.now());
+            tracking.setUpdatedAt(LocalDateTime.now());
+        }
+        return new PingAplicado(tracking, huboCorteComunicacion);
+    }
+
+    private record PingAplicado(TrackingUbicacion tracking, boolean huboCorteComunicacion) {
+    }
+
+    /**
+     * Ruta de ingesta por lotes: el ping se aplica sobre el viaje en memoria (geofencing síncrono)
+     * y se encola para persistirse con bulkWrite. El websocket se envía tras el flush.
+     */
+    private ActualizacionUbicacionResponseDto actualizarUbicacionEnLote(
+            ActualizarUbicacionDto dto,
+            LocalDateTime timestamp,
+            TrackingUbicacion.UbicacionActual nuevaUbicacion) {
+
+        ViajeEnVivo viaje = flotaEnVivoService.obtener(dto.getAsignacionCamionId(), id -> cargarTracking(dto));
+
+        boolean esActualizacionOffline = dto.getEsOffline() != null ? dto.getEsOffline() : false;
+        boolean huboCorteComunicacion;
+        GeofencingStatusDto geofencingStatus;
+        String estadoViaje;
+
+        synchronized (viaje) {
+            TrackingUbicacion.UbicacionActual ubicacionAnterior = viaje.getUbicacionActual();
+            huboCorteComunicacion = detectarCorteComunicacion(ubicacionAnterior, timestamp, esActualizacionOffline);
+
+            HistorialUbicacion puntoHistorial = null;
+            TrackingUbicacion.MetricasViaje delta = AcumuladorMetricas.nuevoDelta();
+
+            if (ubicacionAnterior != null) {
+                puntoHistorial = construirPuntoHistorial(
+                        viaje.getAsignacionCamionId(),
+                        viaje.getLoteId(),
+                        viaje.getEstadoViaje(),
+                        ubicacionAnterior,
+                        huboCorteComunicacion || esActualizacionOffline);
+                delta = calcularDeltaMetricas(puntoHistorial, !huboCorteComunicacion, dto, timestamp);
+            }
+
+            LocalDateTime sincronizacion = LocalDateTime.now();
+
+            // Se encola antes de tocar el viaje en memoria: si la cola está llena queda intacto
+            trackingIngestaService.encolar(new TrackingIngestaService.PingPendiente(
+                    dto.getAsignacionCamionId(),
+                    nuevaUbicacion,
+                    puntoHistorial,
+                    delta,
+                    sincronizacion));
+
+            viaje.acumularMetricas(delta);
+            viaje.registrarPing(nuevaUbicacion, sincronizacion);
+            detectorDesconexionService.programar(dto.getAsignacionCamionId());
+
+            geofencingStatus = geocercaService.evaluar(
+                    viaje.getAsignacionCamionId(), viaje.getPuntosControl(), dto.getLat(), dto.getLng());
+            estadoViaje = viaje.getEstadoViaje();
+        }
+
+        return construirRespuestaUbicacion(dto, timestamp, huboCorteComunicacion, geofencingStatus, estadoViaje);
+    }
+
+    /**
+     * Envía por websocket el delta de posición de los camiones cuyo lote de ubicaciones acaba
+     * de persistirse (un solo mensaje por camión y flush)
+     */
+    @EventListener
+    public void onUbicacionesIngeridas(UbicacionesIngeridasEvent event) {
+        for (Integer asignacionCamionId : event.asignacionCamionIds()) {
+            ViajeEnVivo viaje = flotaEnVivoService.buscar(asignacionCamionId);
+            if (viaje == null) {
+                continue;
+            }
+
+            trackingWebSocketService.enviarDeltaPosicion(viaje.aDocumento());
+        }
+    }
+
+    private TrackingUbicacion cargarTracking(ActualizarUbicacionDto dto) {
+        return trackingRepository.findByAsignacionCamionId(dto.getAsignacionCamionId())
+                .orElseGet(() -> {
+                    crearTrackingSiNoExiste(dto);
+                    return trackingRepository.findByAsignacionCamionId(dto.getAsignacionCamionId())
+                            .orElseThrow(() -> new IllegalStateException("Error al crear tracking"));
+                });
+    }
+
+    private void crearTrackingSiNoExiste(ActualizarUbicacionDto dto) {
+        log.info("Tracking no encontrado, creando nuevo...");
+        try {
+            iniciarTracking(dto.getAsignacionCamionId(), dto.getLat(), dto.getLng());
+        } catch (DuplicateKeyException e) {
+            log.debug("Tracking creado por otro ping concurrente - Asignación ID: {}", dto.getAsignacionCamionId());
+        }
+    }
+
+    private boolean detectarCorteComunicacion(
+            TrackingUbicacion.UbicacionActual ubicacionAnterior,
+            LocalDateTime timestamp,
+            boolean esActualizacionOffline) {
+
+        if (esActualizacionOffline || ubicacionAnterior == null || ubicacionAnterior.getTimestamp() == null) {
+            return false;
+        }
+
+        long segundosDesdeUltima = ChronoUnit.SECONDS.between(ubicacionAnterior.getTimestamp(), timestamp);
+
+        if (segundosDesdeUltima > OFFLINE_THRESHOLD_SECONDS) {
+            log.warn("⚠️ Detectado corte de comunicación de {} segundos (>{} seg), " +
+                            "las ubicaciones intermedias se perdieron",
+                    segundosDesdeUltima, OFFLINE_THRESHOLD_SECONDS);
+            return true;
+        }
+        return false;
+    }
+
+    private HistorialUbicacion construirPuntoHistorial(
+            Integer asignacionCamionId,
+            Integer loteId,
+            String estadoViaje,
+            TrackingUbicacion.UbicacionActual ubicacion,
+            boolean esOffline) {
+
+        return HistorialUbicacion.builder()
+                .asignacionCamionId(asignacionCamionId)
+                .loteId(loteId)
+                .lat(ubicacion.getLat())
+                .lng(ubicacion.getLng())
+                .timestamp(ubicacion.getTimestamp())
+                .precision(ubicacion.getPrecision())
+                .velocidad(ubicacion.getVelocidad())
+                .rumbo(ubicacion.getRumbo())
+                .altitud(ubicacion.getAltitud())
+                .sincronizado(true)
+                .esOffline(esOffline)
+                .estadoViaje(estadoViaje)
+                .build();
+    }
+
+    private ActualizacionUbicacionResponseDto construirRespuestaUbicacion(
+            ActualizarUbicacionDto dto,
+            LocalDateTime timestamp,
+            boolean huboCorteComunicacion,
+            GeofencingStatusDto geofencingStatus,
+            String estadoViaje) {
 
         return ActualizacionUbicacionResponseDto.builder()
                 .success(true)
@@ -201,12 +415,12 @@ public class TrackingBl {
                         .velocidad(dto.getVelocidad())
                         .build())
                 .geofencingStatus(geofencingStatus)
-                .nuevoEstadoViaje(tracking.getEstadoViaje())
+                .nuevoEstadoViaje(estadoViaje)
                 .requiereAccion(geofencingStatus.getPuedeRegistrarLlegada() || geofencingStatus.getPuedeRegistrarSalida())
                 .accionRequerida(determinarAccionRequerida(geofencingStatus))
                 .build();
     }
-    @Transactional
+
     public SincronizacionResponseDto sincronizarUbicacionesOffline(
             Integer asignacionCamionId,
             List<UbicacionOfflineDto> ubicaciones) {
@@ -214,66 +428,75 @@ public class TrackingBl {
         log.info("🔄 Sincronizando {} ubicaciones offline para asignación ID: {}",
                 ubicaciones.size(), asignacionCamionId);
 
+        ubicaciones.sort(Comparator.comparing(UbicacionOfflineDto::getTimestamp,
+                Comparator.nullsFirst(Comparator.naturalOrder())));
+
+        return sincronizarUbicacionesOffline(asignacionCamionId, ubicaciones.iterator());
+    }
+
+    /**
+     * Sincroniza ubicaciones offline a medida que se leen (p. ej. NDJSON en streaming), persistiendo
+     * en lotes de tamaño acotado. Es idempotente por (asignación, timestamp): un reintento solo inserta
+     * los puntos que faltan, y las métricas se acumulan ($inc) únicamente con esos puntos nuevos.
+     * <p>
+     * Solo escribe en MongoDB: no abre transacción JPA, así una subida lenta no retiene una conexión
+     * del pool mientras se lee el cuerpo.
+     */
+    public SincronizacionResponseDto sincronizarUbicacionesOffline(
+            Integer asignacionCamionId,
+            Iterator<UbicacionOfflineDto> ubicaciones) {
+
+        boolean enVivo = trackingIngestaService.isHabilitada();
+        if (enVivo) {
+            esperarPingsEncolados(asignacionCamionId);
+        }
+
         TrackingUbicacion tracking = trackingRepository.findByAsignacionCamionId(asignacionCamionId)
                 .orElseThrow(() -> new IllegalArgumentException("Tracking no encontrado"));
 
-        int sincronizadas = 0;
-        int fallidas = 0;
-        List<String> errores = new ArrayList<>();
+        // Con ingesta por lotes el viaje en memoria se fija antes de acumular métricas en MongoDB,
+        // para sumarle al final el mismo delta sin contarlo dos veces
+        TrackingUbicacion documentoInicial = tracking;
+        ViajeEnVivo viaje = enVivo ? flotaEnVivoService.obtener(asignacionCamionId, id -> documentoInicial) : null;
 
-        ubicaciones.sort(Comparator.comparing(UbicacionOfflineDto::getTimestamp));
+        SincronizacionEnCurso sincronizacion = new SincronizacionEnCurso();
+        List<HistorialUbicacion> lote = new ArrayList<>(tamanioLoteSincronizacion);
 
-        for (UbicacionOfflineDto ubicacion : ubicaciones) {
-            try {
-                if (!GeometryUtils.esUbicacionValida(ubicacion.getLat(), ubicacion.getLng())) {
-                    errores.add("Ubicación inválida: " + ubicacion.getTimestamp());
-                    fallidas++;
-                    continue;
-                }
+        while (ubicaciones.hasNext()) {
+            UbicacionOfflineDto ubicacion = ubicaciones.next();
 
-                TrackingUbicacion.PuntoUbicacion punto = TrackingUbicacion.PuntoUbicacion.builder()
-                        .lat(ubicacion.getLat())
-                        .lng(ubicacion.getLng())
-                        .timestamp(ubicacion.getTimestamp())
-                        .precision(ubicacion.getPrecision())
-                        .velocidad(ubicacion.getVelocidad())
-                        .rumbo(ubicacion.getRumbo())
-                        .altitud(ubicacion.getAltitud())
-                        .sincronizado(true)
-                        .esOffline(true)
-                        .estadoViaje(tracking.getEstadoViaje())
-                        .build();
-
-                tracking.getHistorialUbicaciones().add(punto);
-                sincronizadas++;
-
-            } catch (Exception e) {
-                errores.add("Error en ubicación " + ubicacion.getTimestamp() + ": " + e.getMessage());
-                fallidas++;
+            if (ubicacion.getTimestamp() == null || !GeometryUtils.esUbicacionValida(ubicacion.getLat(), ubicacion.getLng())) {
+                sincronizacion.registrarError("Ubicación inválida: " + ubicacion.getTimestamp());
+                continue;
             }
-        }
 
-        if (!ubicaciones.isEmpty()) {
-            UbicacionOfflineDto ultima = ubicaciones.getLast();
-            tracking.setUbicacionActual(TrackingUbicacion.UbicacionActual.builder()
-                    .lat(ultima.getLat())
-                    .lng(ultima.getLng())
-                    .location(TrackingUbicacion.GeoJsonPoint.of(ultima.getLat(), ultima.getLng()))
-                    .timestamp(ultima.getTimestamp())
-                    .precision(ultima.getPrecision())
-                    .velocidad(ultima.getVelocidad())
-                    .rumbo(ultima.getRumbo())
-                    .altitud(ultima.getAltitud())
+            lote.add(HistorialUbicacion.builder()
+                    .asignacionCamionId(tracking.getAsignacionCamionId())
+                    .loteId(tracking.getLoteId())
+                    .lat(ubicacion.getLat())
+                    .lng(ubicacion.getLng())
+                    // MongoDB guarda milisegundos: se trunca para que la deduplicación compare igual
+                    .timestamp(ubicacion.getTimestamp().truncatedTo(ChronoUnit.MILLIS))
+                    .precision(ubicacion.getPrecision())
+                    .velocidad(ubicacion.getVelocidad())
+                    .rumbo(ubicacion.getRumbo())
+                    .altitud(ubicacion.getAltitud())
+                    .sincronizado(true)
+                    .esOffline(true)
+                    .estadoViaje(tracking.getEstadoViaje())
                     .build());
 
-            recalcularMetricas(tracking);
+            if (lote.size() >= tamanioLoteSincronizacion) {
+                persistirLoteOffline(tracking, lote, sincronizacion);
+                lote.clear();
+            }
         }
+        persistirLoteOffline(tracking, lote, sincronizacion);
 
-        tracking.setEstadoConexion("online");
-        tracking.setUltimaSincronizacion(LocalDateTime.now());
-        tracking.setUpdatedAt(LocalDateTime.now());
-
-        trackingRepository.save(tracking);
+        tracking = enVivo
+                ? cerrarSincronizacionEnVivo(viaje, sincronizacion)
+                : cerrarSincronizacionEnMongo(asignacionCamionId, tracking, sincronizacion);
+        detectorDesconexionService.programar(asignacionCamionId);
 
         TrackingResponseDto responseDto = convertToResponseDto(tracking);
         trackingWebSocketService.enviarActualizacionCompleta(
@@ -282,53 +505,203 @@ public class TrackingBl {
                 responseDto
         );
 
-        log.info("✅ Sincronización completada - Éxito: {}, Fallidas: {}, VOLVIÓ A ONLINE",
-                sincronizadas, fallidas);
+        log.info("✅ Sincronización completada - Nuevas: {}, Duplicadas: {}, Fallidas: {}, VOLVIÓ A ONLINE",
+                sincronizacion.sincronizadas, sincronizacion.duplicadas, sincronizacion.fallidas);
 
         return SincronizacionResponseDto.builder()
-                .success(fallidas == 0)
-                .ubicacionesSincronizadas(sincronizadas)
-                .ubicacionesFallidas(fallidas)
-                .errores(errores)
+                .success(sincronizacion.fallidas == 0)
+                .ubicacionesSincronizadas(sincronizacion.sincronizadas)
+                .ubicacionesDuplicadas(sincronizacion.duplicadas)
+                .ubicacionesFallidas(sincronizacion.fallidas)
+                .errores(sincronizacion.errores)
                 .ultimaSincronizacion(LocalDateTime.now())
                 .build();
     }
-    public GeofencingStatusDto verificarGeofencing(TrackingUbicacion tracking, double lat, double lng) {
-        GeofencingStatusDto.GeofencingStatusDtoBuilder builder = GeofencingStatusDto.builder()
-                .dentroDeZona(false)
-                .puedeRegistrarLlegada(false)
-                .puedeRegistrarSalida(false);
 
-        if (tracking.getPuntosControl() == null || tracking.getPuntosControl().isEmpty()) {
-            return builder.build();
+    /**
+     * Inserta los puntos nuevos del lote y acumula sus métricas respecto al punto previo conocido
+     */
+    private void persistirLoteOffline(
+            TrackingUbicacion tracking,
+            List<HistorialUbicacion> lote,
+            SincronizacionEnCurso sincronizacion) {
+
+        if (lote.isEmpty()) {
+            return;
         }
 
-        for (TrackingUbicacion.PuntoControl punto : tracking.getPuntosControl()) {
-            double distancia = GeometryUtils.calcularDistanciaMetros(lat, lng, punto.getLat(), punto.getLng());
+        List<HistorialUbicacion> nuevos = historialUbicacionService.registrarPuntosNuevos(
+                tracking.getAsignacionCamionId(), lote);
+        sincronizacion.sincronizadas += nuevos.size();
+        sincronizacion.duplicadas += lote.size() - nuevos.size();
+
+        TrackingUbicacion.MetricasViaje delta = AcumuladorMetricas.nuevoDelta();
+
+        for (HistorialUbicacion punto : nuevos) {
+            HistorialUbicacion previo = sincronizacion.cursor;
+            if (previo == null || !punto.getTimestamp().isAfter(previo.getTimestamp())) {
+                previo = buscarPuntoPrevio(tracking, punto.getTimestamp());
+            }
+
+            AcumuladorMetricas.registrarPunto(delta, punto);
+            if (previo != null) {
+                AcumuladorMetricas.registrarTramo(delta, punto.getEstadoViaje(),
+                        previo.getLat(), previo.getLng(), previo.getTimestamp(),
+                        punto.getLat(), punto.getLng(), punto.getTimestamp(),
+                        punto.getVelocidad());
+            }
+
+            sincronizacion.cursor = punto;
+            if (sincronizacion.ultimo == null || punto.getTimestamp().isAfter(sincronizacion.ultimo.getTimestamp())) {
+                sincronizacion.ultimo = punto;
+            }
+        }
 
-            if (distancia <= punto.getRadio()) {
-                builder.dentroDeZona(true)
-                        .zonaNombre(punto.getNombre())
-                        .zonaTipo(punto.getTipo())
-                        .distanciaAZona(distancia);
+        if (!nuevos.isEmpty()) {
+            trackingRepository.acumularMetricas(tracking.getAsignacionCamionId(), delta);
+            AcumuladorMetricas.sumar(sincronizacion.delta, delta);
+        }
+    }
 
-                if ("pendiente".equals(punto.getEstado()) || punto.getLlegada() == null) {
-                    builder.puedeRegistrarLlegada(true);
-                } else if (punto.getSalida() == null) {
-                    builder.puedeRegistrarSalida(true);
+    /**
+     * Espera a que se persistan los pings en vivo ya encolados, para leer el documento y el historial
+     * al día. Se llama sin tener tomado el viaje: el flush lo necesita para publicar.
+     */
+    private void esperarPingsEncolados(Integer asignacionCamionId) {
+        try {
+            if (!trackingIngestaService.esperarPersistidos(asignacionCamionId, ESPERA_INGESTA_SINCRONIZACION_MS)) {
+                log.warn("⚠️ Pings en cola sin persistir al sincronizar - Asignación: {}", asignacionCamionId);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Sincronización interrumpida", e);
+        }
+    }
+
+    /**
+     * Cierre con ingesta por lotes: las métricas de los puntos offline se suman al viaje en memoria
+     * (sin reemplazarlo, así no se pierden los deltas de pings aún en cola) y, si el último punto offline
+     * es más reciente, entra como un ping más por la cola.
+     */
+    private TrackingUbicacion cerrarSincronizacionEnVivo(ViajeEnVivo viaje, SincronizacionEnCurso sincronizacion) {
+        synchronized (viaje) {
+            viaje.acumularMetricas(sincronizacion.delta);
+
+            HistorialUbicacion ultimo = sincronizacion.ultimo;
+            TrackingUbicacion.UbicacionActual actual = viaje.getUbicacionActual();
+            if (ultimo != null && (actual == null || actual.getTimestamp() == null || ultimo.getTimestamp().isAfter(actual.getTimestamp()))) {
+                HistorialUbicacion desplazada = null;
+                TrackingUbicacion.MetricasViaje delta = AcumuladorMetricas.nuevoDelta();
+                if (actual != null && actual.getTimestamp() != null) {
+                    desplazada = construirPuntoHistorial(
+                            viaje.getAsignacionCamionId(), viaje.getLoteId(), viaje.getEstadoViaje(), actual, false);
+                    AcumuladorMetricas.registrarPunto(delta, desplazada);
                 }
-                break;
+
+                TrackingUbicacion.UbicacionActual nueva = aUbicacionActual(ultimo);
+                LocalDateTime ahora = LocalDateTime.now();
+                trackingIngestaService.encolar(new TrackingIngestaService.PingPendiente(
+                        viaje.getAsignacionCamionId(), nueva, desplazada, delta, ahora));
+
+                viaje.acumularMetricas(delta);
+                viaje.registrarPing(nueva, ahora);
             }
+            return viaje.aDocumento();
         }
+    }
 
-        TrackingUbicacion.PuntoControl proximoPunto = GeometryUtils.encontrarProximoPuntoControlPendiente(tracking.getPuntosControl());
-        if (proximoPunto != null) {
-            double distanciaProximo = GeometryUtils.calcularDistanciaMetros(lat, lng, proximoPunto.getLat(), proximoPunto.getLng());
-            builder.proximoPuntoControl(proximoPunto.getNombre())
-                    .distanciaProximoPunto(distanciaProximo);
+    /**
+     * Cierre sin ingesta por lotes: MongoDB es la fuente de verdad y el viaje en memoria se recarga
+     * desde el documento, igual que en un ping en vivo.
+     */
+    private TrackingUbicacion cerrarSincronizacionEnMongo(
+            Integer asignacionCamionId,
+            TrackingUbicacion tracking,
+            SincronizacionEnCurso sincronizacion) {
+
+        HistorialUbicacion ultimo = sincronizacion.ultimo;
+        TrackingUbicacion.UbicacionActual actual = tracking.getUbicacionActual();
+        if (ultimo != null && (actual == null || actual.getTimestamp() == null || ultimo.getTimestamp().isAfter(actual.getTimestamp()))) {
+            TrackingUbicacion anterior = trackingRepository.registrarUbicacionActual(
+                    asignacionCamionId, aUbicacionActual(ultimo), LocalDateTime.now());
+
+            // La ubicación desplazada pasa al historial, igual que en un ping en vivo
+            if (anterior != null && anterior.getUbicacionActual() != null && anterior.getUbicacionActual().getTimestamp() != null) {
+                List<HistorialUbicacion> desplazada = historialUbicacionService.registrarPuntosNuevos(
+                        asignacionCamionId, List.of(construirPuntoHistorial(
+                                anterior.getAsignacionCamionId(),
+                                anterior.getLoteId(),
+                                anterior.getEstadoViaje(),
+                                anterior.getUbicacionActual(),
+                                false)));
+                if (!desplazada.isEmpty()) {
+                    TrackingUbicacion.MetricasViaje delta = AcumuladorMetricas.nuevoDelta();
+                    AcumuladorMetricas.registrarPunto(delta, desplazada.getFirst());
+                    trackingRepository.acumularMetricas(asignacionCamionId, delta);
+                }
+            }
         }
 
-        return builder.build();
+        tracking = trackingRepository.findByAsignacionCamionId(asignacionCamionId)
+                .orElseThrow(() -> new IllegalStateException("Tracking no encontrado tras sincronizar"));
+        flotaEnVivoService.registrar(tracking);
+        return tracking;
+    }
+
+    private TrackingUbicacion.UbicacionActual aUbicacionActual(HistorialUbicacion punto) {
+        return TrackingUbicacion.UbicacionActual.builder()
+                .lat(punto.getLat())
+                .lng(punto.getLng())
+                .location(TrackingUbicacion.GeoJsonPoint.of(punto.getLat(), punto.getLng()))
+                .timestamp(punto.getTimestamp())
+                .precision(punto.getPrecision())
+                .velocidad(punto.getVelocidad())
+                .rumbo(punto.getRumbo())
+                .altitud(punto.getAltitud())
+                .build();
+    }
+
+    /**
+     * Último punto conocido antes del timestamp: en el historial o la ubicación actual del tracking
+     */
+    private HistorialUbicacion buscarPuntoPrevio(TrackingUbicacion tracking, LocalDateTime timestamp) {
+        HistorialUbicacion previo = historialUbicacionService
+                .obtenerPuntoAnterior(tracking.getAsignacionCamionId(), timestamp)
+                .orElse(null);
+
+        TrackingUbicacion.UbicacionActual actual = tracking.getUbicacionActual();
+        if (actual != null && actual.getTimestamp() != null && actual.getTimestamp().isBefore(timestamp)
+                && (previo == null || actual.getTimestamp().isAfter(previo.getTimestamp()))) {
+            return construirPuntoHistorial(
+                    tracking.getAsignacionCamionId(), tracking.getLoteId(), tracking.getEstadoViaje(), actual, false);
+        }
+        return previo;
+    }
+
+    /**
+     * Progreso de una sincronización offline; los errores se acotan para no crecer con el backlog
+     */
+    private static final class SincronizacionEnCurso {
+        private static final int MAX_ERRORES = 100;
+
+        private int sincronizadas;
+        private int duplicadas;
+        private int fallidas;
+        private final List<String> errores = new ArrayList<>();
+        private HistorialUbicacion cursor;
+        private HistorialUbicacion ultimo;
+        private final TrackingUbicacion.MetricasViaje delta = AcumuladorMetricas.nuevoDelta();
+
+        void registrarError(String error) {
+            fallidas++;
+            if (errores.size() < MAX_ERRORES) {
+                errores.add(error);
+            }
+        }
+    }
+
+    public GeofencingStatusDto verificarGeofencing(TrackingUbicacion tracking, double lat, double lng) {
+        return geocercaService.evaluar(tracking.getAsignacionCamionId(), tracking.getPuntosControl(), lat, lng);
     }
 
     @Transactional
@@ -351,18 +724,16 @@ public class TrackingBl {
 
         if (lat != null && lng != null) {
             double distancia = GeometryUtils.calcularDistanciaMetros(lat, lng, punto.getLat(), punto.getLng());
-            if (distancia > punto.getRadio() * 1.5) {
+            if (distancia > punto.getRadio() * 1.5 && !geocercaService.dentroDePoligono(punto, lat, lng)) {
                 throw new IllegalArgumentException(
                         "Estás demasiado lejos del punto de control (" + (int) distancia + "m). " +
                                 "Debes estar a menos de " + punto.getRadio() + "m");
             }
         }
 
-        punto.setLlegada(LocalDateTime.now());
-        punto.setEstado("en_punto");
-
-        tracking.setUpdatedAt(LocalDateTime.now());
-        trackingRepository.save(tracking);
+        tracking = trackingRepository.actualizarPuntoControl(asignacionCamionId,
+                new CambioPuntoControl(punto.getOrden(), "en_punto", true, false));
+        flotaEnVivoService.actualizarEstado(tracking);
 
         TrackingResponseDto responseDto = convertToResponseDto(tracking);
         trackingWebSocketService.enviarActualizacionCompleta(
@@ -403,11 +774,9 @@ public class TrackingBl {
             throw new IllegalArgumentException("Debe registrar llegada antes de la salida");
         }
 
-        punto.setSalida(LocalDateTime.now());
-        punto.setEstado("completado");
-
-        tracking.setUpdatedAt(LocalDateTime.now());
-        trackingRepository.save(tracking);
+        tracking = trackingRepository.actualizarPuntoControl(asignacionCamionId,
+                new CambioPuntoControl(punto.getOrden(), "completado", false, true));
+        flotaEnVivoService.actualizarEstado(tracking);
 
         TrackingResponseDto responseDto = convertToResponseDto(tracking);
         trackingWebSocketService.enviarActualizacionCompleta(
@@ -430,8 +799,11 @@ public class TrackingBl {
 
     @Transactional(readOnly = true)
     public TrackingResponseDto getTrackingByAsignacion(Integer asignacionCamionId) {
-        TrackingUbicacion tracking = trackingRepository.findByAsignacionCamionId(asignacionCamionId)
-                .orElseThrow(() -> new IllegalArgumentException("Tracking no encontrado para esta asignación"));
+        ViajeEnVivo viaje = flotaEnVivoService.buscar(asignacionCamionId);
+        TrackingUbicacion tracking = viaje != null
+                ? viaje.aDocumento()
+                : trackingRepository.findByAsignacionCamionId(asignacionCamionId)
+                        .orElseThrow(() -> new IllegalArgumentException("Tracking no encontrado para esta asignación"));
         verificarYActualizarEstadoConexion(tracking);
 
         return convertToResponseDto(tracking);
@@ -464,7 +836,10 @@ public class TrackingBl {
         Lotes lote = lotesRepository.findById(loteId)
                 .orElseThrow(() -> new IllegalArgumentException("Lote no encontrado"));
 
-        List<TrackingUbicacion> trackings = trackingRepository.findByLoteId(loteId);
+        // Viajes activos desde memoria; solo los finalizados se leen de MongoDB
+        List<TrackingUbicacion> trackings = new ArrayList<>();
+        flotaEnVivoService.porLote(loteId).forEach(viaje -> trackings.add(viaje.aDocumento()));
+        trackings.addAll(trackingRepository.findFinalizadosByLoteId(loteId));
 
         trackings.forEach(this::verificarYActualizarEstadoConexion);
 
@@ -489,12 +864,23 @@ public class TrackingBl {
                 .camiones(camiones)
                 .build();
     }
+    /**
+     * @param tolerancia Tolerancia de simplificación en metros (null = sin simplificar)
+     * @param algoritmo "douglas-peucker" (por defecto) o "visvalingam"
+     * @param formato "puntos" (por defecto) o "polyline"
+     */
     @Transactional(readOnly = true)
-    public HistorialUbicacionesDto getHistorialUbicaciones(Integer asignacionCamionId) {
+    public HistorialUbicacionesDto getHistorialUbicaciones(
+            Integer asignacionCamionId,
+            Double tolerancia,
+            String algoritmo,
+            String formato) {
+        boolean comoPolyline = esFormatoPolyline(formato);
+
         TrackingUbicacion tracking = trackingRepository.findByAsignacionCamionId(asignacionCamionId)
                 .orElseThrow(() -> new IllegalArgumentException("Tracking no encontrado"));
 
-        List<UbicacionDto> ubicaciones = tracking.getHistorialUbicaciones().stream()
+        List<UbicacionDto> ubicaciones = historialUbicacionService.obtenerHistorial(asignacionCamionId).stream()
                 .map(p -> UbicacionDto.builder()
                         .lat(p.getLat())
                         .lng(p.getLng())
@@ -515,15 +901,22 @@ public class TrackingBl {
                     .build());
         }
 
+        List<UbicacionDto> simplificadas = simplificarTrayectoria(ubicaciones, tolerancia, algoritmo);
+
         return HistorialUbicacionesDto.builder()
                 .asignacionCamionId(asignacionCamionId)
-                .totalPuntos(ubicaciones.size())
-                .ubicaciones(ubicaciones)
+                .totalPuntos(simplificadas.size())
+                .puntosOriginales(ubicaciones.size())
+                .ubicaciones(comoPolyline ? null : simplificadas)
+                .polyline(comoPolyline ? GeometryUtils.codificarPolyline(simplificadas) : null)
                 .resumen(construirResumenRuta(tracking, ubicaciones))
                 .build();
     }
 
-    @Transactional
+    /**
+     * Registra el cambio de estado y su evento en el tracking del viaje. Lo llama el outbox de
+     * transporte: los errores de MongoDB se propagan para que el efecto se reintente.
+     */
     public void actualizarEstadoYRegistrarEvento(
             Integer asignacionCamionId,
             String estadoAnterior,
@@ -535,145 +928,95 @@ public class TrackingBl {
         log.info("📊 Actualizando estado MongoDB - Asignación: {}, {} -> {}, Evento: {}",
                 asignacionCamionId, estadoAnterior, estadoNuevo, tipoEvento);
 
-        try {
-            TrackingUbicacion tracking = trackingRepository
-                    .findByAsignacionCamionId(asignacionCamionId)
-                    .orElseThrow(() -> new IllegalStateException(
-                            "Tracking no encontrado para asignación: " + asignacionCamionId));
-
-            tracking.setEstadoViaje(estadoNuevo);
-
-            TrackingUbicacion.EventoEstado evento = TrackingUbicacion.EventoEstado.builder()
-                    .timestamp(LocalDateTime.now())
-                    .estadoAnterior(estadoAnterior)
-                    .estadoNuevo(estadoNuevo)
-                    .lat(lat)
-                    .lng(lng)
-                    .tipoEvento(tipoEvento)
-                    .build();
-
-            tracking.getEventosEstado().add(evento);
-            actualizarEstadoPuntosDeControl(tracking, tipoEvento);
-            tracking.setUpdatedAt(LocalDateTime.now());
+        TrackingUbicacion tracking = trackingRepository.findByAsignacionCamionId(asignacionCamionId).orElse(null);
+        if (tracking == null) {
+            // Sin documento no hay nada que reintentar (el viaje nunca inició tracking)
+            log.warn("⚠️ Tracking no encontrado para asignación: {}, evento {} no registrado",
+                    asignacionCamionId, tipoEvento);
+            return;
+        }
 
-            trackingRepository.save(tracking);
+        TrackingUbicacion.EventoEstado evento = TrackingUbicacion.EventoEstado.builder()
+                .timestamp(LocalDateTime.now())
+                .estadoAnterior(estadoAnterior)
+                .estadoNuevo(estadoNuevo)
+                .lat(lat)
+                .lng(lng)
+                .tipoEvento(tipoEvento)
+                .build();
 
-            TrackingResponseDto responseDto = convertToResponseDto(tracking);
-            trackingWebSocketService.enviarActualizacionCompleta(
-                    tracking.getLoteId(),
-                    tracking.getAsignacionCamionId(),
-                    responseDto
-            );
+        tracking = trackingRepository.registrarCambioEstado(
+                asignacionCamionId, estadoNuevo, evento, cambioPuntoDeControl(tracking, tipoEvento));
+        flotaEnVivoService.actualizarEstado(tracking);
+        if ("Completado".equals(estadoNuevo) || "Cancelado por rechazo".equals(estadoNuevo)) {
+            geocercaService.descartar(asignacionCamionId);
+            detectorDesconexionService.cancelar(asignacionCamionId);
+        }
 
-            trackingWebSocketService.enviarEventoTracking(
-                    tracking.getLoteId(),
-                    tracking.getAsignacionCamionId(),
-                    tipoEvento,
-                    String.format("Cambio de estado: %s → %s", estadoAnterior, estadoNuevo)
-            );
+        TrackingResponseDto responseDto = convertToResponseDto(tracking);
+        trackingWebSocketService.enviarActualizacionCompleta(
+                tracking.getLoteId(),
+                tracking.getAsignacionCamionId(),
+                responseDto
+        );
 
-            log.info("✅ MongoDB actualizado - Estado: {}, Evento: {} registrado, Puntos actualizados",
-                    estadoNuevo, tipoEvento);
+        trackingWebSocketService.enviarEventoTracking(
+                tracking.getLoteId(),
+                tracking.getAsignacionCamionId(),
+                tipoEvento,
+                String.format("Cambio de estado: %s → %s", estadoAnterior, estadoNuevo)
+        );
 
-        } catch (Exception e) {
-            log.error("❌ Error al actualizar estado en MongoDB: {}", e.getMessage(), e);
-        }
+        log.info("✅ MongoDB actualizado - Estado: {}, Evento: {} registrado, Puntos actualizados",
+                estadoNuevo, tipoEvento);
     }
 
     /**
      * Actualizar estado de puntos de control basado en eventos de estado
      */
-    private void actualizarEstadoPuntosDeControl(TrackingUbicacion tracking, String tipoEvento) {
+    /**
+     * Cambio del punto de control que corresponde al evento de la transición (null si no toca ninguno).
+     * Se aplica con un $set posicional: llegada y salida solo se marcan si el punto aún no las tiene.
+     */
+    private CambioPuntoControl cambioPuntoDeControl(TrackingUbicacion tracking, String tipoEvento) {
         if (tracking.getPuntosControl() == null || tracking.getPuntosControl().isEmpty()) {
-            return;
+            return null;
         }
 
         log.info("🔄 Actualizando estados de puntos de control para evento: {}", tipoEvento);
 
-        switch (tipoEvento) {
-            case "LLEGADA_MINA":
-                tracking.getPuntosControl().stream()
-                        .filter(p -> "mina".equals(p.getTipo()))
-                        .findFirst()
-                        .ifPresent(p -> {
-                            p.setEstado("en_punto");
-                            if (p.getLlegada() == null) {
-                                p.setLlegada(LocalDateTime.now());
-                            }
-                            log.info("✅ Mina marcada como 'en_punto'");
-                        });
-                break;
-
-            case "FIN_CARGUIO":
-                tracking.getPuntosControl().stream()
-                        .filter(p -> "mina".equals(p.getTipo()))
-                        .findFirst()
-                        .ifPresent(p -> {
-                            p.setEstado("completado");
-                            if (p.getSalida() == null) {
-                                p.setSalida(LocalDateTime.now());
-                            }
-                            log.info("✅ Mina marcada como 'completado'");
-                        });
-                break;
-
-            case "PESAJE_COOPERATIVA":
-                tracking.getPuntosControl().stream()
-                        .filter(p -> "balanza_cooperativa".equals(p.getTipo()))
-                        .findFirst()
-                        .ifPresent(p -> {
-                            if (p.getLlegada() == null) {
-                                p.setLlegada(LocalDateTime.now());
-                            }
-                            p.setSalida(LocalDateTime.now());
-                            p.setEstado("completado");
-                            log.info("✅ Balanza cooperativa marcada como 'completado'");
-                        });
-                break;
-
-            case "PESAJE_DESTINO":
-                tracking.getPuntosControl().stream()
-                        .filter(p -> "balanza_ingenio".equals(p.getTipo()) || "balanza_comercializadora".equals(p.getTipo()))
-                        .findFirst()
-                        .ifPresent(p -> {
-                            if (p.getLlegada() == null) {
-                                p.setLlegada(LocalDateTime.now());
-                            }
-                            p.setSalida(LocalDateTime.now());
-                            p.setEstado("completado");
-                            log.info("✅ Balanza destino marcada como 'completado'");
-                        });
-                break;
-
-            case "LLEGADA_ALMACEN":
-                tracking.getPuntosControl().stream()
-                        .filter(p -> "almacen_ingenio".equals(p.getTipo()) || "almacen_comercializadora".equals(p.getTipo()))
-                        .findFirst()
-                        .ifPresent(p -> {
-                            p.setEstado("en_punto");
-                            if (p.getLlegada() == null) {
-                                p.setLlegada(LocalDateTime.now());
-                            }
-                            log.info("✅ Almacén marcado como 'en_punto'");
-                        });
-                break;
-
-            case "FIN_DESCARGA":
-                tracking.getPuntosControl().stream()
-                        .filter(p -> "almacen_ingenio".equals(p.getTipo()) || "almacen_comercializadora".equals(p.getTipo()))
-                        .findFirst()
-                        .ifPresent(p -> {
-                            p.setEstado("completado");
-                            if (p.getSalida() == null) {
-                                p.setSalida(LocalDateTime.now());
-                            }
-                            log.info("✅ Almacén marcado como 'completado'");
-                        });
-                break;
-
-            default:
+        return switch (tipoEvento) {
+            case "LLEGADA_MINA" -> cambioPunto(tracking, Set.of("mina"), "en_punto", true, false);
+            case "FIN_CARGUIO" -> cambioPunto(tracking, Set.of("mina"), "completado", false, true);
+            case "PESAJE_COOPERATIVA" -> cambioPunto(tracking, Set.of("balanza_cooperativa"), "completado", true, true);
+            case "PESAJE_DESTINO" -> cambioPunto(tracking,
+                    Set.of("balanza_ingenio", "balanza_comercializadora"), "completado", true, true);
+            case "LLEGADA_ALMACEN" -> cambioPunto(tracking,
+                    Set.of("almacen_ingenio", "almacen_comercializadora"), "en_punto", true, false);
+            case "FIN_DESCARGA" -> cambioPunto(tracking,
+                    Set.of("almacen_ingenio", "almacen_comercializadora"), "completado", false, true);
+            default -> {
                 log.debug("Tipo de evento sin actualización de puntos: {}", tipoEvento);
-        }
+                yield null;
+            }
+        };
+    }
+
+    private CambioPuntoControl cambioPunto(
+            TrackingUbicacion tracking,
+            Set<String> tipos,
+            String estado,
+            boolean marcarLlegada,
+            boolean marcarSalida) {
+
+        return tracking.getPuntosControl().stream()
+                .filter(p -> tipos.contains(p.getTipo()))
+                .findFirst()
+                .map(p -> {
+                    log.info("✅ Punto {} marcado como '{}'", p.getTipo(), estado);
+                    return new CambioPuntoControl(p.getOrden(), estado, marcarLlegada, marcarSalida);
+                })
+                .orElse(null);
     }
 
     private List<TrackingUbicacion.PuntoControl> construirPuntosControl(Lotes lote, AsignacionCamion asignacion) {
@@ -681,6 +1024,17 @@ public class TrackingBl {
         int orden = 1;
 
         Minas mina = lote.getMinasId();
+        Sectores sector = mina.getSectoresId();
+
+        // El sector de la cooperativa se usa como zona poligonal de la mina, además del radio
+        List<TrackingUbicacion.Vertice> poligonoSector = sector.getCoordenadasList().stream()
+                .sorted(Comparator.comparing(SectoresCoordenadas::getOrden))
+                .map(c -> TrackingUbicacion.Vertice.builder()
+                        .lat(c.getLatitud().doubleValue())
+                        .lng(c.getLongitud().doubleValue())
+                        .build())
+                .collect(Collectors.toList());
+
         puntos.add(TrackingUbicacion.PuntoControl.builder()
                 .tipo("mina")
                 .nombre(mina.getNombre())
@@ -690,9 +1044,9 @@ public class TrackingBl {
                 .orden(orden++)
                 .requerido(true)
                 .estado("pendiente")
+                .poligono(poligonoSector.size() >= 3 ? poligonoSector : null)
                 .build());
 
-        Sectores sector = mina.getSectoresId();
         Cooperativa cooperativa = sector.getCooperativaId();
         if (!cooperativa.getBalanzaCooperativaList().isEmpty()) {
             var balanza = cooperativa.getBalanzaCooperativaList().getFirst();
@@ -774,86 +1128,26 @@ public class TrackingBl {
         return puntos;
     }
 
-    private void actualizarMetricas(TrackingUbicacion tracking, ActualizarUbicacionDto dto) {
-        TrackingUbicacion.MetricasViaje metricas = tracking.getMetricas();
-        TrackingUbicacion.UbicacionActual ubicacionAnterior = tracking.getUbicacionActual();
-
-        if (ubicacionAnterior == null || metricas == null) {
-            return;
-        }
-
-        double distancia = GeometryUtils.calcularDistancia(
-                ubicacionAnterior.getLat(), ubicacionAnterior.getLng(),
-                dto.getLat(), dto.getLng());
-
-        metricas.setDistanciaRecorrida(metricas.getDistanciaRecorrida() + distancia);
-
-        if (ubicacionAnterior.getTimestamp() != null) {
-            long segundosTranscurridos = ChronoUnit.SECONDS.between(
-                    ubicacionAnterior.getTimestamp(),
-                    dto.getTimestampCaptura() != null ? dto.getTimestampCaptura() : LocalDateTime.now());
-
-            if (dto.getVelocidad() != null && dto.getVelocidad() > 1.0) {
-                metricas.setTiempoEnMovimiento(metricas.getTiempoEnMovimiento() + segundosTranscurridos);
-            } else {
-                metricas.setTiempoDetenido(metricas.getTiempoDetenido() + segundosTranscurridos);
-            }
-        }
-
-        if (dto.getVelocidad() != null && dto.getVelocidad() > metricas.getVelocidadMaxima()) {
-            metricas.setVelocidadMaxima(dto.getVelocidad());
-        }
-
-        long tiempoTotal = metricas.getTiempoEnMovimiento();
-        if (tiempoTotal > 0) {
-            double velocidadPromedio = (metricas.getDistanciaRecorrida() / tiempoTotal) * 3600;
-            metricas.setVelocidadPromedio(velocidadPromedio);
-        }
-    }
-
-    private void recalcularMetricas(TrackingUbicacion tracking) {
-        List<TrackingUbicacion.PuntoUbicacion> historial = tracking.getHistorialUbicaciones();
-        if (historial.isEmpty()) {
-            return;
-        }
-
-        historial.sort(Comparator.comparing(TrackingUbicacion.PuntoUbicacion::getTimestamp));
-
-        double distanciaTotal = 0;
-        long tiempoMovimiento = 0;
-        long tiempoDetenido = 0;
-        double velocidadMaxima = 0;
-
-        for (int i = 1; i < historial.size(); i++) {
-            TrackingUbicacion.PuntoUbicacion anterior = historial.get(i - 1);
-            TrackingUbicacion.PuntoUbicacion actual = historial.get(i);
-
-            double distancia = GeometryUtils.calcularDistancia(
-                    anterior.getLat(), anterior.getLng(),
-                    actual.getLat(), actual.getLng());
-            distanciaTotal += distancia;
-
-            long segundos = ChronoUnit.SECONDS.between(anterior.getTimestamp(), actual.getTimestamp());
-            if (actual.getVelocidad() != null && actual.getVelocidad() > 1.0) {
-                tiempoMovimiento += segundos;
-            } else {
-                tiempoDetenido += segundos;
-            }
-
-            if (actual.getVelocidad() != null && actual.getVelocidad() > velocidadMaxima) {
-                velocidadMaxima = actual.getVelocidad();
-            }
-        }
-
-        TrackingUbicacion.MetricasViaje metricas = tracking.getMetricas();
-        metricas.setDistanciaRecorrida(distanciaTotal);
-        metricas.setTiempoEnMovimiento(tiempoMovimiento);
-        metricas.setTiempoDetenido(tiempoDetenido);
-        metricas.setVelocidadMaxima(velocidadMaxima);
-
-        if (tiempoMovimiento > 0) {
-            metricas.setVelocidadPromedio((distanciaTotal / tiempoMovimiento) * 3600);
+    /**
+     * Delta de métricas de un ping: el punto que pasa al historial y, si no hubo corte
+     * de comunicación, el tramo desde ese punto hasta la nueva ubicación
+     */
+    private TrackingUbicacion.MetricasViaje calcularDeltaMetricas(
+            HistorialUbicacion puntoAnterior,
+            boolean contarTramo,
+            ActualizarUbicacionDto dto,
+            LocalDateTime timestamp) {
+
+        TrackingUbicacion.MetricasViaje delta = AcumuladorMetricas.nuevoDelta();
+        AcumuladorMetricas.registrarPunto(delta, puntoAnterior);
+
+        if (contarTramo) {
+            AcumuladorMetricas.registrarTramo(delta, puntoAnterior.getEstadoViaje(),
+                    puntoAnterior.getLat(), puntoAnterior.getLng(), puntoAnterior.getTimestamp(),
+                    dto.getLat(), dto.getLng(), timestamp,
+                    dto.getVelocidad());
         }
+        return delta;
     }
 
     private String determinarAccionRequerida(GeofencingStatusDto geofencing) {
@@ -944,11 +1238,18 @@ public class TrackingBl {
         long tiempoTotal = (metricas.getTiempoEnMovimiento() != null ? metricas.getTiempoEnMovimiento() : 0)
                 + (metricas.getTiempoDetenido() != null ? metricas.getTiempoDetenido() : 0);
 
+        // La velocidad promedio se deriva de los acumulados ($inc) en lugar de guardarse en cada ping
+        Double velocidadPromedio = metricas.getVelocidadPromedio();
+        if (metricas.getTiempoEnMovimiento() != null && metricas.getTiempoEnMovimiento() > 0
+                && metricas.getDistanciaRecorrida() != null) {
+            velocidadPromedio = (metricas.getDistanciaRecorrida() / metricas.getTiempoEnMovimiento()) * 3600;
+        }
+
         return MetricasViajeDto.builder()
                 .distanciaRecorrida(metricas.getDistanciaRecorrida())
                 .tiempoEnMovimiento(metricas.getTiempoEnMovimiento())
                 .tiempoDetenido(metricas.getTiempoDetenido())
-                .velocidadPromedio(metricas.getVelocidadPromedio())
+                .velocidadPromedio(velocidadPromedio)
                 .velocidadMaxima(metricas.getVelocidadMaxima())
                 .inicioViaje(metricas.getInicioViaje())
                 .finViaje(metricas.getFinViaje())
@@ -1015,27 +1316,40 @@ public class TrackingBl {
     }
 
     @Transactional(readOnly = true)
-    public HistorialPorEstadoDto getHistorialPorEstado(Integer asignacionCamionId) {
+    public HistorialPorEstadoDto getHistorialPorEstado(
+            Integer asignacionCamionId,
+            Double tolerancia,
+            String algoritmo,
+            String formato) {
+        boolean comoPolyline = esFormatoPolyline(formato);
         log.info("📊 Obteniendo historial agrupado por estado - Asignación: {}", asignacionCamionId);
 
         TrackingUbicacion tracking = trackingRepository.findByAsignacionCamionId(asignacionCamionId)
                 .orElseThrow(() -> new IllegalArgumentException("Tracking no encontrado"));
 
-        List<TrackingUbicacion.PuntoUbicacion> historial = tracking.getHistorialUbicaciones();
+        List<HistorialUbicacion> historial = historialUbicacionService.obtenerHistorial(asignacionCamionId);
 
         if (historial.isEmpty()) {
             return construirHistorialVacio(tracking);
         }
 
-        Map<String, List<TrackingUbicacion.PuntoUbicacion>> historialPorEstado = historial.stream()
+        // Las métricas por estado se leen de los acumulados; el historial solo aporta la trayectoria
+        Map<String, TrackingUbicacion.MetricasSegmento> segmentos = tracking.getMetricas() != null
+                && tracking.getMetricas().getSegmentos() != null
+                && !tracking.getMetricas().getSegmentos().isEmpty()
+                ? tracking.getMetricas().getSegmentos()
+                : AcumuladorMetricas.desdeHistorial(historial).getSegmentos();
+
+        Map<String, List<HistorialUbicacion>> historialPorEstado = historial.stream()
                 .collect(Collectors.groupingBy(
-                        punto -> punto.getEstadoViaje() != null ? punto.getEstadoViaje() : "Sin estado",
+                        punto -> AcumuladorMetricas.clave(punto.getEstadoViaje()),
                         LinkedHashMap::new,
                         Collectors.toList()
                 ));
 
         List<EstadoHistorialDto> estadosHistorial = historialPorEstado.entrySet().stream()
-                .map(entry -> construirEstadoHistorial(entry.getKey(), entry.getValue()))
+                .map(entry -> construirEstadoHistorial(
+                        entry.getKey(), segmentos.get(entry.getKey()), entry.getValue(), tolerancia, algoritmo, comoPolyline))
                 .collect(Collectors.toList());
 
         return HistorialPorEstadoDto.builder()
@@ -1049,54 +1363,19 @@ public class TrackingBl {
                 .build();
     }
 
-    private EstadoHistorialDto construirEstadoHistorial(String estadoViaje, List<TrackingUbicacion.PuntoUbicacion> ubicaciones) {
-        if (ubicaciones.isEmpty()) {
-            return EstadoHistorialDto.builder()
-                    .estadoViaje(estadoViaje)
-                    .totalUbicaciones(0)
-                    .ubicaciones(List.of())
-                    .build();
+    private EstadoHistorialDto construirEstadoHistorial(
+            String estadoViaje,
+            TrackingUbicacion.MetricasSegmento segmento,
+            List<HistorialUbicacion> ubicaciones,
+            Double tolerancia,
+            String algoritmo,
+            boolean comoPolyline) {
+
+        if (segmento == null) {
+            // Estado sin acumulado (viaje en curso al introducirse los segmentos)
+            segmento = AcumuladorMetricas.desdeHistorial(ubicaciones).getSegmentos().get(estadoViaje);
         }
 
-        ubicaciones.sort(Comparator.comparing(TrackingUbicacion.PuntoUbicacion::getTimestamp));
-
-        LocalDateTime inicioEstado = ubicaciones.getFirst().getTimestamp();
-        LocalDateTime finEstado = ubicaciones.getLast().getTimestamp();
-        long duracionSegundos = ChronoUnit.SECONDS.between(inicioEstado, finEstado);
-
-        double distanciaTotal = 0.0;
-        double velocidadMaxima = 0.0;
-        long tiempoMovimiento = 0;
-        int ubicacionesOffline = 0;
-
-        for (int i = 1; i < ubicaciones.size(); i++) {
-            TrackingUbicacion.PuntoUbicacion anterior = ubicaciones.get(i - 1);
-            TrackingUbicacion.PuntoUbicacion actual = ubicaciones.get(i);
-
-            double distancia = GeometryUtils.calcularDistancia(
-                    anterior.getLat(), anterior.getLng(),
-                    actual.getLat(), actual.getLng()
-            );
-            distanciaTotal += distancia;
-
-            if (actual.getVelocidad() != null) {
-                if (actual.getVelocidad() > velocidadMaxima) {
-                    velocidadMaxima = actual.getVelocidad();
-                }
-                if (actual.getVelocidad() > 1.0) {
-                    tiempoMovimiento += ChronoUnit.SECONDS.between(anterior.getTimestamp(), actual.getTimestamp());
-                }
-            }
-
-            if (Boolean.TRUE.equals(actual.getEsOffline())) {
-                ubicacionesOffline++;
-            }
-        }
-
-        double velocidadPromedio = tiempoMovimiento > 0
-                ? (distanciaTotal / tiempoMovimiento) * 3600
-                : 0.0;
-
         List<UbicacionDto> ubicacionesDto = ubicaciones.stream()
                 .map(p -> UbicacionDto.builder()
                         .lat(p.getLat())
@@ -1109,21 +1388,63 @@ public class TrackingBl {
                         .esOffline(p.getEsOffline())
                         .build())
                 .collect(Collectors.toList());
+        ubicacionesDto = simplificarTrayectoria(ubicacionesDto, tolerancia, algoritmo);
+
+        EstadoHistorialDto estadoHistorial = convertToEstadoHistorialDto(estadoViaje, segmento);
+        estadoHistorial.setUbicaciones(comoPolyline ? null : ubicacionesDto);
+        estadoHistorial.setPolyline(comoPolyline ? GeometryUtils.codificarPolyline(ubicacionesDto) : null);
+        return estadoHistorial;
+    }
+
+    private EstadoHistorialDto convertToEstadoHistorialDto(String estadoViaje, TrackingUbicacion.MetricasSegmento segmento) {
+        long duracionSegundos = segmento.getInicio() != null && segmento.getFin() != null
+                ? ChronoUnit.SECONDS.between(segmento.getInicio(), segmento.getFin())
+                : 0;
+
+        double velocidadPromedio = segmento.getTiempoEnMovimiento() > 0
+                ? (segmento.getDistanciaRecorrida() / segmento.getTiempoEnMovimiento()) * 3600
+                : 0.0;
 
         return EstadoHistorialDto.builder()
                 .estadoViaje(estadoViaje)
-                .inicioEstado(inicioEstado)
-                .finEstado(finEstado)
+                .inicioEstado(segmento.getInicio())
+                .finEstado(segmento.getFin())
                 .duracionSegundos(duracionSegundos)
-                .totalUbicaciones(ubicaciones.size())
-                .distanciaRecorridaKm(distanciaTotal)
+                .totalUbicaciones(segmento.getTotalUbicaciones())
+                .distanciaRecorridaKm(segmento.getDistanciaRecorrida())
                 .velocidadPromedioKmH(velocidadPromedio)
-                .velocidadMaximaKmH(velocidadMaxima)
-                .ubicacionesOffline(ubicacionesOffline)
-                .ubicaciones(ubicacionesDto)
+                .velocidadMaximaKmH(segmento.getVelocidadMaxima())
+                .ubicacionesOffline(segmento.getUbicacionesOffline())
                 .build();
     }
 
+    /**
+     * Reduce la trayectoria según la tolerancia en metros; las métricas se calculan siempre
+     * sobre los puntos originales
+     */
+    private List<UbicacionDto> simplificarTrayectoria(List<UbicacionDto> ubicaciones, Double tolerancia, String algoritmo) {
+        if (tolerancia == null || tolerancia <= 0) {
+            return ubicaciones;
+        }
+        if (algoritmo == null || "douglas-peucker".equals(algoritmo)) {
+            return GeometryUtils.simplificarDouglasPeucker(ubicaciones, tolerancia);
+        }
+        if ("visvalingam".equals(algoritmo)) {
+            return GeometryUtils.simplificarVisvalingam(ubicaciones, tolerancia);
+        }
+        throw new IllegalArgumentException("Algoritmo de simplificación no soportado: " + algoritmo);
+    }
+
+    private boolean esFormatoPolyline(String formato) {
+        if (formato == null || "puntos".equals(formato)) {
+            return false;
+        }
+        if ("polyline".equals(formato)) {
+            return true;
+        }
+        throw new IllegalArgumentException("Formato de historial no soportado: " + formato);
+    }
+
     private HistorialPorEstadoDto construirHistorialVacio(TrackingUbicacion tracking) {
         return HistorialPorEstadoDto.builder()
                 .asignacionCamionId(tracking.getAsignacionCamionId())
@@ -1145,11 +1466,9 @@ public class TrackingBl {
 
         // Obtener última ubicación registrada
         UbicacionDto ubicacionFinal = null;
-        if (!tracking.getHistorialUbicaciones().isEmpty()) {
-            TrackingUbicacion.PuntoUbicacion ultimoPunto = tracking.getHistorialUbicaciones()
-                    .stream()
-                    .max(Comparator.comparing(TrackingUbicacion.PuntoUbicacion::getTimestamp))
-                    .orElse(null);
+        Optional<HistorialUbicacion> ultimoPuntoHistorial = historialUbicacionService.obtenerUltimoPunto(asignacionCamionId);
+        if (ultimoPuntoHistorial.isPresent()) {
+            HistorialUbicacion ultimoPunto = ultimoPuntoHistorial.get();
 
             ubicacionFinal = UbicacionDto.builder()
                     .lat(ultimoPunto.getLat())
@@ -1179,6 +1498,11 @@ public class TrackingBl {
                 .estadoViaje(tracking.getEstadoViaje())
                 .ubicacionFinal(ubicacionFinal)
                 .metricas(convertToMetricasDto(tracking.getMetricas()))
+                .metricasPorEstado(tracking.getMetricas() == null || tracking.getMetricas().getSegmentos() == null
+                        ? List.of()
+                        : tracking.getMetricas().getSegmentos().entrySet().stream()
+                                .map(entry -> convertToEstadoHistorialDto(entry.getKey(), entry.getValue()))
+                                .collect(Collectors.toList()))
                 .puntosControl(tracking.getPuntosControl().stream()
                         .map(this::convertToPuntoControlDto)
                         .collect(Collectors.toList()))
@@ -1215,88 +1539,53 @@ public class TrackingBl {
                 .nombreTransportista(persona != null ?
                         persona.getNombres() + " " + persona.getPrimerApellido() : "N/A");
 
-        // Parsear las observaciones JSONB
-        String observacionesJson = asignacion.getObservaciones();
-
-        if (observacionesJson != null && !observacionesJson.isEmpty()) {
-            try {
-                JsonNode root = objectMapper.readTree(observacionesJson);
-
-                // Inicio de viaje
-                if (root.has("inicio_viaje")) {
-                    builder.inicioViaje(parseInicioViaje(root.get("inicio_viaje")));
-                }
-
-                // Llegada a mina
-                if (root.has("llegada_mina")) {
-                    builder.llegadaMina(parseLlegadaMina(root.get("llegada_mina")));
-                }
-
-                // Carguío completo
-                if (root.has("carguio_completo")) {
-                    builder.carguioCompleto(parseCarguioCompleto(root.get("carguio_completo")));
-                }
-
-                // Pesaje origen
-                if (root.has("pesaje_origen")) {
-                    builder.pesajeOrigen(parsePesaje(root.get("pesaje_origen")));
-                }
-
-                // Pesaje destino
-                if (root.has("pesaje_destino")) {
-                    builder.pesajeDestino(parsePesaje(root.get("pesaje_destino")));
-                }
-
-                // Llegada almacén
-                if (root.has("llegada_almacen")) {
-                    builder.llegadaAlmacen(parseLlegadaAlmacen(root.get("llegada_almacen")));
-                }
-
-                // Descarga iniciada
-                if (root.has("descarga_iniciada")) {
-                    builder.descargaIniciada(parseDescargaIniciada(root.get("descarga_iniciada")));
-                }
-
-                // Ruta finalizada
-                if (root.has("ruta_finalizada")) {
-                    builder.rutaFinalizada(parseRutaFinalizada(root.get("ruta_finalizada")));
-                }
-
-            } catch (Exception e) {
-                log.error("❌ Error al parsear observaciones JSON: {}", e.getMessage(), e);
+        // Eventos del viaje en orden; si un tipo se repite queda el último
+        for (AsignacionEvento evento : eventosViajeBl.eventosDelViaje(asignacion)) {
+            JsonNode datos = eventosViajeBl.leerDatos(evento);
+
+            switch (evento.getTipoEvento()) {
+                case "inicio_viaje" -> builder.inicioViaje(parseInicioViaje(evento, datos));
+                case "llegada_mina" -> builder.llegadaMina(parseLlegadaMina(evento, datos));
+                case "carguio_completo" -> builder.carguioCompleto(parseCarguioCompleto(evento, datos));
+                case EventosViajeBl.PESAJE_ORIGEN -> builder.pesajeOrigen(parsePesaje(evento, datos));
+                case EventosViajeBl.PESAJE_DESTINO -> builder.pesajeDestino(parsePesaje(evento, datos));
+                case "llegada_almacen" -> builder.llegadaAlmacen(parseLlegadaAlmacen(evento, datos));
+                case "descarga_iniciada" -> builder.descargaIniciada(parseDescargaIniciada(evento, datos));
+                case "ruta_finalizada" -> builder.rutaFinalizada(parseRutaFinalizada(evento, datos));
+                default -> log.debug("Evento sin evidencia asociada: {}", evento.getTipoEvento());
             }
         }
 
         return builder.build();
     }
 
-    private EvidenciasViajeDto.EvidenciaInicioViaje parseInicioViaje(JsonNode node) {
+    private EvidenciasViajeDto.EvidenciaInicioViaje parseInicioViaje(AsignacionEvento evento, JsonNode node) {
         return EvidenciasViajeDto.EvidenciaInicioViaje.builder()
-                .lat(node.has("lat") ? node.get("lat").asDouble() : null)
-                .lng(node.has("lng") ? node.get("lng").asDouble() : null)
-                .timestamp(node.has("timestamp") ? LocalDateTime.parse(node.get("timestamp").asText()) : null)
+                .lat(evento.getLat())
+                .lng(evento.getLng())
+                .timestamp(evento.getFechaRegistro())
                 .usuarioId(node.has("usuario_id") ? node.get("usuario_id").asInt() : null)
                 .dispositivo(node.has("dispositivo") ? node.get("dispositivo").asText() : null)
                 .build();
     }
 
-    private EvidenciasViajeDto.EvidenciaLlegadaMina parseLlegadaMina(JsonNode node) {
+    private EvidenciasViajeDto.EvidenciaLlegadaMina parseLlegadaMina(AsignacionEvento evento, JsonNode node) {
         return EvidenciasViajeDto.EvidenciaLlegadaMina.builder()
-                .lat(node.has("lat") ? node.get("lat").asDouble() : null)
-                .lng(node.has("lng") ? node.get("lng").asDouble() : null)
-                .timestamp(node.has("timestamp") ? LocalDateTime.parse(node.get("timestamp").asText()) : null)
+                .lat(evento.getLat())
+                .lng(evento.getLng())
+                .timestamp(evento.getFechaRegistro())
                 .observaciones(node.has("observaciones") ? node.get("observaciones").asText() : null)
                 .palaOperativa(node.has("pala_operativa") ? node.get("pala_operativa").asBoolean() : null)
                 .mineralVisible(node.has("mineral_visible") ? node.get("mineral_visible").asBoolean() : null)
-                .fotoReferenciaUrl(node.has("foto_referencia_url") ? node.get("foto_referencia_url").asText() : null) // ⭐ AGREGAR ESTA LÍNEA
+                .fotoReferenciaUrl(node.has("foto_referencia_url") ? node.get("foto_referencia_url").asText() : null)
                 .build();
     }
 
-    private EvidenciasViajeDto.EvidenciaCarguioCompleto parseCarguioCompleto(JsonNode node) {
+    private EvidenciasViajeDto.EvidenciaCarguioCompleto parseCarguioCompleto(AsignacionEvento evento, JsonNode node) {
         return EvidenciasViajeDto.EvidenciaCarguioCompleto.builder()
-                .lat(node.has("lat") ? node.get("lat").asDouble() : null)
-                .lng(node.has("lng") ? node.get("lng").asDouble() : null)
-                .timestamp(node.has("timestamp") ? LocalDateTime.parse(node.get("timestamp").asText()) : null)
+                .lat(evento.getLat())
+                .lng(evento.getLng())
+                .timestamp(evento.getFechaRegistro())
                 .fotoCamionCargadoUrl(node.has("foto_camion_cargado_url") ?
                         node.get("foto_camion_cargado_url").asText() : null)
                 .mineralCargadoCompletamente(node.has("mineral_cargado_completamente") ?
@@ -1304,11 +1593,11 @@ public class TrackingBl {
                 .build();
     }
 
-    private EvidenciasViajeDto.EvidenciaPesaje parsePesaje(JsonNode node) {
+    private EvidenciasViajeDto.EvidenciaPesaje parsePesaje(AsignacionEvento evento, JsonNode node) {
         return EvidenciasViajeDto.EvidenciaPesaje.builder()
-                .lat(node.has("lat") ? node.get("lat").asDouble() : null)
-                .lng(node.has("lng") ? node.get("lng").asDouble() : null)
-                .timestamp(node.has("timestamp") ? LocalDateTime.parse(node.get("timestamp").asText()) : null)
+                .lat(evento.getLat())
+                .lng(evento.getLng())
+                .timestamp(evento.getFechaRegistro())
                 .pesoBrutoKg(node.has("peso_bruto_kg") ? node.get("peso_bruto_kg").asDouble() : null)
                 .pesoTaraKg(node.has("peso_tara_kg") ? node.get("peso_tara_kg").asDouble() : null)
                 .pesoNetoKg(node.has("peso_neto_kg") ? node.get("peso_neto_kg").asDouble() : null)
@@ -1317,31 +1606,31 @@ public class TrackingBl {
                 .build();
     }
 
-    private EvidenciasViajeDto.EvidenciaLlegadaAlmacen parseLlegadaAlmacen(JsonNode node) {
+    private EvidenciasViajeDto.EvidenciaLlegadaAlmacen parseLlegadaAlmacen(AsignacionEvento evento, JsonNode node) {
         return EvidenciasViajeDto.EvidenciaLlegadaAlmacen.builder()
-                .lat(node.has("lat") ? node.get("lat").asDouble() : null)
-                .lng(node.has("lng") ? node.get("lng").asDouble() : null)
-                .timestamp(node.has("timestamp") ? LocalDateTime.parse(node.get("timestamp").asText()) : null)
+                .lat(evento.getLat())
+                .lng(evento.getLng())
+                .timestamp(evento.getFechaRegistro())
                 .observaciones(node.has("observaciones") ? node.get("observaciones").asText() : null)
                 .confirmacionLlegada(node.has("confirmacion_llegada") ?
                         node.get("confirmacion_llegada").asBoolean() : null)
                 .build();
     }
 
-    private EvidenciasViajeDto.EvidenciaDescargaIniciada parseDescargaIniciada(JsonNode node) {
+    private EvidenciasViajeDto.EvidenciaDescargaIniciada parseDescargaIniciada(AsignacionEvento evento, JsonNode node) {
         return EvidenciasViajeDto.EvidenciaDescargaIniciada.builder()
-                .lat(node.has("lat") ? node.get("lat").asDouble() : null)
-                .lng(node.has("lng") ? node.get("lng").asDouble() : null)
-                .timestamp(node.has("timestamp") ? LocalDateTime.parse(node.get("timestamp").asText()) : null)
+                .lat(evento.getLat())
+                .lng(evento.getLng())
+                .timestamp(evento.getFechaRegistro())
                 .observaciones(node.has("observaciones") ? node.get("observaciones").asText() : null)
                 .build();
     }
 
-    private EvidenciasViajeDto.EvidenciaRutaFinalizada parseRutaFinalizada(JsonNode node) {
+    private EvidenciasViajeDto.EvidenciaRutaFinalizada parseRutaFinalizada(AsignacionEvento evento, JsonNode node) {
         return EvidenciasViajeDto.EvidenciaRutaFinalizada.builder()
-                .lat(node.has("lat") ? node.get("lat").asDouble() : null)
-                .lng(node.has("lng") ? node.get("lng").asDouble() : null)
-                .timestamp(node.has("timestamp") ? LocalDateTime.parse(node.get("timestamp").asText()) : null)
+                .lat(evento.getLat())
+                .lng(evento.getLng())
+                .timestamp(evento.getFechaRegistro())
                 .observacionesFinales(node.has("observaciones_finales") ?
                         node.get("observaciones_finales").asText() : null)
                 .build();
@@ -0,0 +1,372 @@
+package ucb.edu.bo.sumajflow.bl.tracking;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+import ucb.edu.bo.sumajflow.document.HistorialUbicacion;
+import ucb.edu.bo.sumajflow.document.TrackingUbicacion;
+import ucb.edu.bo.sumajflow.repository.mongodb.TrackingUbicacionRepositoryCustomImpl;
+
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Etapa de ingesta de ubicaciones GPS.
+ * Los pings se encolan en una cola acotada y un hilo dedicado los agrupa por asignación
+ * y los persiste con bulkWrite cada N ms o cada M pings. El geofencing se responde de forma
+ * síncrona desde {@link FlotaEnVivoService}.
+ * <p>
+ * Un ping aceptado ya está aplicado al viaje en memoria, así que un flush fallido no se descarta:
+ * se reintenta con espera creciente (mientras tanto la cola se llena y {@link #encolar} rechaza, que es
+ * la señal para que el cliente guarde sus puntos offline). Cada lote lleva una marca creciente que se
+ * guarda en el documento; el reintento solo actualiza documentos con una marca menor, así que las
+ * métricas incrementales no se suman dos veces, y el historial ya deduplica por timestamp.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class TrackingIngestaService {
+
+    private final MongoTemplate mongoTemplate;
+    private final HistorialUbicacionService historialUbicacionService;
+    private final MeterRegistry meterRegistry;
+    private final ApplicationEventPublisher eventPublisher;
+
+    @Value("${tracking.ingesta.habilitada:true}")
+    private boolean habilitada;
+
+    @Value("${tracking.ingesta.capacidad-cola:10000}")
+    private int capacidadCola;
+
+    @Value("${tracking.ingesta.intervalo-flush-ms:500}")
+    private long intervaloFlushMs;
+
+    @Value("${tracking.ingesta.max-lote:500}")
+    private int maxLote;
+
+    @Value("${tracking.ingesta.timeout-encolar-ms:200}")
+    private long timeoutEncolarMs;
+
+    @Value("${tracking.ingesta.espera-max-reintento-ms:5000}")
+    private long esperaMaxReintentoMs;
+
+    @Value("${tracking.ingesta.intentos-al-detener:3}")
+    private int intentosAlDetener;
+
+    private BlockingQueue<PingPendiente> cola;
+
+    // Pings encolados y aún no persistidos por asignación; se notifica sobre el mapa tras cada flush
+    private final Map<Integer, Integer> pendientes = new ConcurrentHashMap<>();
+    private final AtomicLong ultimaMarca = new AtomicLong();
+    private Thread hiloFlush;
+    private volatile boolean activo;
+
+    private Timer latenciaFlush;
+    private DistributionSummary tamanioLote;
+    private Counter pingsRechazados;
+    private Counter erroresFlush;
+    private Counter pingsPerdidos;
+
+    @PostConstruct
+    public void iniciar() {
+        cola = new ArrayBlockingQueue<>(capacidadCola);
+
+        Gauge.builder("tracking.ingesta.cola", cola, Collection::size)
+                .description("Pings pendientes de persistir")
+                .register(meterRegistry);
+        latenciaFlush = Timer.builder("tracking.ingesta.flush")
+                .description("Latencia de cada bulkWrite de ubicaciones")
+                .publishPercentiles(0.5, 0.95, 0.99)
+                .register(meterRegistry);
+        tamanioLote = DistributionSummary.builder("tracking.ingesta.lote")
+                .description("Pings por flush")
+                .register(meterRegistry);
+        pingsRechazados = Counter.builder("tracking.ingesta.rechazados")
+                .description("Pings rechazados por cola llena")
+                .register(meterRegistry);
+        erroresFlush = Counter.builder("tracking.ingesta.errores")
+                .description("Flushes fallidos (se reintentan)")
+                .register(meterRegistry);
+        pingsPerdidos = Counter.builder("tracking.ingesta.perdidos")
+                .description("Pings sin persistir al agotar los reintentos durante el apagado")
+                .register(meterRegistry);
+
+        if (!habilitada) {
+            log.info("Ingesta por lotes de ubicaciones deshabilitada");
+            return;
+        }
+
+        activo = true;
+        hiloFlush = new Thread(this::procesarCola, "tracking-ingesta");
+        hiloFlush.setDaemon(true);
+        hiloFlush.start();
+
+        log.info("🚚 Ingesta de ubicaciones iniciada - Cola: {}, Flush: {} ms / {} pings",
+                capacidadCola, intervaloFlushMs, maxLote);
+    }
+
+    @PreDestroy
+    public void detener() {
+        activo = false;
+        if (hiloFlush == null) {
+            return;
+        }
+        try {
+            hiloFlush.join(TimeUnit.SECONDS.toMillis(10));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        log.info("Ingesta de ubicaciones detenida - Pendientes: {}", cola.size());
+    }
+
+    public boolean isHabilitada() {
+        return habilitada;
+    }
+
+    // ==================== COLA ====================
+
+    /**
+     * Encola un ping para persistirlo en el próximo flush.
+     * @throws RejectedExecutionException si la cola sigue llena tras el timeout (backpressure)
+     */
+    public void encolar(PingPendiente ping) {
+        // Se cuenta antes de encolar: el flush puede descontarlo en cuanto entra a la cola
+        pendientes.merge(ping.asignacionCamionId(), 1, Integer::sum);
+
+        boolean aceptado;
+        try {
+            aceptado = cola.offer(ping, timeoutEncolarMs, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            aceptado = false;
+        }
+
+        if (!aceptado) {
+            liberar(List.of(ping));
+            pingsRechazados.increment();
+            throw new RejectedExecutionException("Servicio de tracking saturado, reintente en unos segundos");
+        }
+    }
+
+    /**
+     * Espera a que los pings ya encolados de la asignación estén en MongoDB (o a que venza la espera),
+     * para que quien lea el documento o el historial vea el mismo estado que el viaje en memoria.
+     * @return false si al vencer la espera seguían quedando pings pendientes
+     */
+    public boolean esperarPersistidos(Integer asignacionCamionId, long esperaMaximaMs) throws InterruptedException {
+        long limite = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(esperaMaximaMs);
+        synchronized (pendientes) {
+            while (pendientesDe(asignacionCamionId) > 0) {
+                long restanteMs = TimeUnit.NANOSECONDS.toMillis(limite - System.nanoTime());
+                if (restanteMs <= 0) {
+                    return false;
+                }
+                pendientes.wait(restanteMs);
+            }
+        }
+        return true;
+    }
+
+    private int pendientesDe(Integer asignacionCamionId) {
+        return pendientes.getOrDefault(asignacionCamionId, 0);
+    }
+
+    /**
+     * Descuenta los pings del lote (persistidos o descartados por error) y despierta a quien espera
+     */
+    private void liberar(List<PingPendiente> lote) {
+        if (lote.isEmpty()) {
+            return;
+        }
+        for (PingPendiente ping : lote) {
+            pendientes.computeIfPresent(ping.asignacionCamionId(), (id, total) -> total > 1 ? total - 1 : null);
+        }
+        synchronized (pendientes) {
+            pendientes.notifyAll();
+        }
+    }
+
+    private void procesarCola() {
+        List<PingPendiente> lote = new ArrayList<>(maxLote);
+
+        while (activo || !cola.isEmpty()) {
+            try {
+                PingPendiente primero = cola.poll(intervaloFlushMs, TimeUnit.MILLISECONDS);
+                if (primero == null) {
+                    continue;
+                }
+                lote.add(primero);
+
+                long limite = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(intervaloFlushMs);
+                while (lote.size() < maxLote) {
+                    cola.drainTo(lote, maxLote - lote.size());
+                    long restante = limite - System.nanoTime();
+                    if (lote.size() >= maxLote || restante <= 0) {
+                        break;
+                    }
+                    PingPendiente siguiente = cola.poll(restante, TimeUnit.NANOSECONDS);
+                    if (siguiente == null) {
+                        break;
+                    }
+                    lote.add(siguiente);
+                }
+
+            } catch (InterruptedException e) {
+                // Interrumpir equivale a detener: lo ya drenado y lo que queda en la cola se persiste igual
+                activo = false;
+            }
+
+            persistir(lote);
+            liberar(lote);
+            lote.clear();
+        }
+    }
+
+    /**
+     * Persiste el lote reintentando lo que falle, con espera creciente; solo se rinde durante el apagado
+     */
+    private void persistir(List<PingPendiente> lote) {
+        if (lote.isEmpty()) {
+            return;
+        }
+
+        // La misma marca en todos los intentos: lo que ya se aplicó no se vuelve a aplicar
+        long marca = ultimaMarca.updateAndGet(anterior -> Math.max(anterior + 1, System.currentTimeMillis() * 1000));
+        List<PingPendiente> restantes = lote;
+        long espera = Math.min(intervaloFlushMs, esperaMaxReintentoMs);
+        int intentosFallidos = 0;
+
+        while (true) {
+            try {
+                restantes = flush(restantes, marca);
+            } catch (Exception e) {
+                log.error("❌ Error al persistir lote de {} ubicaciones: {}", restantes.size(), e.getMessage(), e);
+            }
+            if (restantes.isEmpty()) {
+                return;
+            }
+
+            erroresFlush.increment();
+            intentosFallidos++;
+            if (!activo && intentosFallidos >= intentosAlDetener) {
+                pingsPerdidos.increment(restantes.size());
+                log.error("❌ Ingesta detenida con {} ubicaciones sin persistir tras {} intentos",
+                        restantes.size(), intentosFallidos);
+                return;
+            }
+
+            log.warn("🔁 Reintentando {} ubicaciones en {} ms (intento {})", restantes.size(), espera, intentosFallidos + 1);
+            try {
+                Thread.sleep(espera);
+            } catch (InterruptedException e) {
+                activo = false;
+            }
+            espera = Math.min(espera * 2, esperaMaxReintentoMs);
+        }
+    }
+
+    /**
+     * Un intento de persistir el lote
+     * @return pings cuyas escrituras fallaron y deben reintentarse (vacío si todo quedó persistido)
+     */
+    private List<PingPendiente> flush(List<PingPendiente> lote, long marca) {
+        long inicio = System.nanoTime();
+
+        // Agrupar por asignación manteniendo el orden de llegada
+        Map<Integer, List<PingPendiente>> porAsignacion = new LinkedHashMap<>();
+        for (PingPendiente ping : lote) {
+            porAsignacion.computeIfAbsent(ping.asignacionCamionId(), k -> new ArrayList<>()).add(ping);
+        }
+
+        List<HistorialUbicacion> puntosHistorial = new ArrayList<>();
+        BulkOperations bulkTracking = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, TrackingUbicacion.class);
+        List<Integer> ordenBulk = new ArrayList<>(porAsignacion.size());
+
+        for (Map.Entry<Integer, List<PingPendiente>> entry : porAsignacion.entrySet()) {
+            List<PingPendiente> pings = entry.getValue();
+            PingPendiente ultimo = pings.getLast();
+
+            TrackingUbicacion.MetricasViaje delta = AcumuladorMetricas.nuevoDelta();
+
+            for (PingPendiente ping : pings) {
+                if (ping.puntoHistorial() != null) {
+                    puntosHistorial.add(ping.puntoHistorial());
+                }
+                AcumuladorMetricas.sumar(delta, ping.delta());
+            }
+
+            Update update = TrackingUbicacionRepositoryCustomImpl.incrementoMetricas(delta)
+                    .set("ubicacionActual", ultimo.ubicacion())
+                    .set("estadoConexion", "online")
+                    .set("ultimaSincronizacion", ultimo.sincronizacion())
+                    .set("marcaIngesta", marca)
+                    .set("updatedAt", LocalDateTime.now());
+
+            // Si un intento anterior ya aplicó este lote al documento, la marca no es menor y no coincide
+            Query query = Query.query(Criteria.where("asignacionCamionId").is(entry.getKey())
+                    .orOperator(Criteria.where("marcaIngesta").exists(false), Criteria.where("marcaIngesta").lt(marca)));
+            bulkTracking.updateOne(query, update);
+            ordenBulk.add(entry.getKey());
+        }
+
+        // Sin duplicar puntos que una sincronización offline (o un intento anterior) ya haya insertado
+        historialUbicacionService.registrarPuntosNuevos(puntosHistorial);
+
+        Set<Integer> fallidas = new HashSet<>();
+        try {
+            bulkTracking.execute();
+        } catch (BulkOperationException e) {
+            // UNORDERED: el resto de las escrituras sí se aplicó; se reintentan solo las que fallaron
+            e.getErrors().forEach(error -> fallidas.add(ordenBulk.get(error.getIndex())));
+            log.warn("⚠️ {} de {} actualizaciones de tracking fallaron: {}",
+                    fallidas.size(), ordenBulk.size(), e.getMessage());
+        }
+
+        latenciaFlush.record(System.nanoTime() - inicio, TimeUnit.NANOSECONDS);
+        tamanioLote.record(lote.size());
+
+        log.debug("💾 Flush de ubicaciones - Pings: {}, Camiones: {}, Historial: {}, Fallidos: {}",
+                lote.size(), porAsignacion.size(), puntosHistorial.size(), fallidas.size());
+
+        List<Integer> persistidas = ordenBulk.stream().filter(id -> !fallidas.contains(id)).toList();
+        if (!persistidas.isEmpty()) {
+            eventPublisher.publishEvent(new UbicacionesIngeridasEvent(persistidas));
+        }
+
+        return lote.stream().filter(ping -> fallidas.contains(ping.asignacionCamionId())).toList();
+    }
+
+    /**
+     * Ping aceptado y pendiente de persistir, con el delta de métricas ya calculado
+     * contra el estado en memoria del viaje.
+     */
+    public record PingPendiente(
+            Integer asignacionCamionId,
+            TrackingUbicacion.UbicacionActual ubicacion,
+            HistorialUbicacion puntoHistorial,
+            TrackingUbicacion.MetricasViaje delta,
+            LocalDateTime sincronizacion
+    ) {
+    }
+}
@@ -3,21 +3,45 @@ package ucb.edu.bo.sumajflow.bl.tracking;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
 import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.messaging.support.MessageBuilder;
 import org.springframework.stereotype.Service;
+import org.springframework.util.MimeTypeUtils;
+import ucb.edu.bo.sumajflow.bl.PresenciaWebSocketService;
 import ucb.edu.bo.sumajflow.document.TrackingUbicacion;
+import ucb.edu.bo.sumajflow.dto.tracking.MetricasViajeDto;
+import ucb.edu.bo.sumajflow.dto.tracking.PosicionDeltaDto;
 import ucb.edu.bo.sumajflow.dto.tracking.TrackingResponseDto;
 
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
 /**
- * Servicio para enviar actualizaciones de tracking por WebSocket
+ * Servicio para enviar actualizaciones de tracking por WebSocket.
+ * En cada ping se envía un delta de posición; el snapshot completo solo en cambios de estado
+ * (y al suscribirse, vía TrackingWebSocketController). Cada mensaje se serializa una sola vez
+ * y los mismos bytes se publican en el topic del lote y en el del camión; si ninguno tiene suscriptores
+ * no se serializa.
  */
 @Slf4j
 @Service
 @RequiredArgsConstructor
 public class TrackingWebSocketService {
 
+    private static final Set<String> ESTADOS_FINALES = Set.of("Completado", "Cancelado por rechazo");
+
     private final SimpMessagingTemplate messagingTemplate;
     private final ObjectMapper objectMapper;
+    private final PresenciaWebSocketService presencia;
+
+    // Último valor enviado por camión, para incluir en el delta solo lo que cambió
+    private final Map<Integer, UltimoEnvio> ultimosEnvios = new ConcurrentHashMap<>();
 
     /**
      * Enviar actualización de tracking a todos los suscriptores de un lote
@@ -28,6 +52,9 @@ public class TrackingWebSocketService {
     public void enviarActualizacionLote(Integer loteId, TrackingResponseDto trackingDto) {
         try {
             String destination = "/topic/tracking/lote/" + loteId;
+            if (!presencia.hayAudiencia(destination)) {
+                return;
+            }
 
             log.debug("📤 Enviando actualización de tracking a lote {} - Destino: {}", loteId, destination);
 
@@ -49,6 +76,9 @@ public class TrackingWebSocketService {
     public void enviarActualizacionCamion(Integer asignacionCamionId, TrackingResponseDto trackingDto) {
         try {
             String destination = "/topic/tracking/camion/" + asignacionCamionId;
+            if (!presencia.hayAudiencia(destination)) {
+                return;
+            }
 
             log.debug("📤 Enviando actualización de tracking a camión {} - Destino: {}",
                     asignacionCamionId, destination);
@@ -73,11 +103,112 @@ public class TrackingWebSocketService {
     public void enviarActualizacionCompleta(Integer loteId, Integer asignacionCamionId, TrackingResponseDto trackingDto) {
         log.info("📡 Enviando actualización completa - Lote: {}, Camión: {}", loteId, asignacionCamionId);
 
-        // Enviar al topic del lote (para vista general)
-        enviarActualizacionLote(loteId, trackingDto);
+        if (ESTADOS_FINALES.contains(trackingDto.getEstadoViaje())) {
+            ultimosEnvios.remove(asignacionCamionId);
+        } else {
+            MetricasViajeDto metricas = trackingDto.getMetricas();
+            ultimosEnvios.put(asignacionCamionId, new UltimoEnvio(
+                    trackingDto.getEstadoConexion(),
+                    metricas != null ? metricas.getDistanciaRecorrida() : null,
+                    metricas != null ? metricas.getVelocidadMaxima() : null));
+        }
+
+        // Mismo payload al topic del lote (vista general) y al del camión (vista detallada)
+        enviarSerializado(trackingDto,
+                "/topic/tracking/lote/" + loteId,
+                "/topic/tracking/camion/" + asignacionCamionId);
+    }
+
+    /**
+     * Enviar solo la posición y los campos que cambiaron desde el último envío del camión
+     *
+     * @param tracking Estado de tracking tras aplicar el ping
+     */
+    public void enviarDeltaPosicion(TrackingUbicacion tracking) {
+        TrackingUbicacion.UbicacionActual ubicacion = tracking.getUbicacionActual();
+        if (ubicacion == null) {
+            return;
+        }
+
+        TrackingUbicacion.MetricasViaje metricas = tracking.getMetricas();
+        UltimoEnvio actual = new UltimoEnvio(
+                tracking.getEstadoConexion(),
+                metricas != null ? metricas.getDistanciaRecorrida() : null,
+                metricas != null ? metricas.getVelocidadMaxima() : null);
+
+        PosicionDeltaDto.PosicionDeltaDtoBuilder delta = PosicionDeltaDto.builder()
+                .asignacionCamionId(tracking.getAsignacionCamionId())
+                .loteId(tracking.getLoteId())
+                .lat(ubicacion.getLat())
+                .lng(ubicacion.getLng())
+                .velocidad(ubicacion.getVelocidad())
+                .rumbo(ubicacion.getRumbo())
+                .timestamp(ubicacion.getTimestamp());
+
+        UltimoEnvio anterior = ultimosEnvios.put(tracking.getAsignacionCamionId(), actual);
+        if (anterior == null || !Objects.equals(anterior.estadoConexion(), actual.estadoConexion())) {
+            delta.estadoConexion(actual.estadoConexion());
+        }
+        if (anterior == null || !Objects.equals(anterior.distanciaRecorrida(), actual.distanciaRecorrida())) {
+            delta.distanciaRecorrida(actual.distanciaRecorrida());
+        }
+        if (anterior == null || !Objects.equals(anterior.velocidadMaxima(), actual.velocidadMaxima())) {
+            delta.velocidadMaxima(actual.velocidadMaxima());
+        }
+
+        log.debug("📡 Enviando delta de posición - Lote: {}, Camión: {}",
+                tracking.getLoteId(), tracking.getAsignacionCamionId());
+
+        enviarSerializado(delta.build(),
+                "/topic/tracking/lote/" + tracking.getLoteId(),
+                "/topic/tracking/camion/" + tracking.getAsignacionCamionId());
+    }
+
+    /**
+     * Notifica que un camión pasó a offline (un solo evento por transición)
+     *
+     * @param loteId ID del lote
+     * @param asignacionCamionId ID de la asignación
+     * @param segundosSinSenal Segundos desde la última sincronización
+     */
+    public void enviarCamionOffline(Integer loteId, Integer asignacionCamionId, long segundosSinSenal) {
+        // El próximo delta debe volver a incluir estadoConexion = online
+        ultimosEnvios.computeIfPresent(asignacionCamionId, (id, ultimo) ->
+                new UltimoEnvio("offline", ultimo.distanciaRecorrida(), ultimo.velocidadMaxima()));
+
+        enviarEventoTracking(loteId, asignacionCamionId, "CAMION_OFFLINE",
+                "Sin señal GPS desde hace " + segundosSinSenal + " segundos");
+    }
+
+    /**
+     * Serializa el payload una vez y publica los mismos bytes en cada destino
+     */
+    private void enviarSerializado(Object payload, String... destinos) {
+        String[] conAudiencia = Arrays.stream(destinos).filter(presencia::hayAudiencia).toArray(String[]::new);
+        if (conAudiencia.length == 0) {
+            return;
+        }
+
+        byte[] json;
+        try {
+            json = objectMapper.writeValueAsBytes(payload);
+        } catch (Exception e) {
+            log.error("❌ Error al serializar actualización de tracking: {}", e.getMessage(), e);
+            return;
+        }
+
+        for (String destino : conAudiencia) {
+            try {
+                SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+                accessor.setContentType(MimeTypeUtils.APPLICATION_JSON);
+                accessor.setLeaveMutable(true);
+                Message<byte[]> mensaje = MessageBuilder.createMessage(json, accessor.getMessageHeaders());
 
-        // Enviar al topic del camión (para vista detallada)
-        enviarActualizacionCamion(asignacionCamionId, trackingDto);
+                messagingTemplate.send(destino, mensaje);
+            } catch (Exception e) {
+                log.error("❌ Error al enviar actualización de tracking a {}: {}", destino, e.getMessage(), e);
+            }
+        }
     }
 
     /**
@@ -101,8 +232,12 @@ public class TrackingWebSocketService {
             String destinationLote = "/topic/tracking/lote/" + loteId + "/eventos";
             String destinationCamion = "/topic/tracking/camion/" + asignacionCamionId + "/eventos";
 
-            messagingTemplate.convertAndSend(destinationLote, evento);
-            messagingTemplate.convertAndSend(destinationCamion, evento);
+            if (presencia.hayAudiencia(destinationLote)) {
+                messagingTemplate.convertAndSend(destinationLote, evento);
+            }
+            if (presencia.hayAudiencia(destinationCamion)) {
+                messagingTemplate.convertAndSend(destinationCamion, evento);
+            }
 
             log.info("📢 Evento de tracking enviado - Tipo: {}, Lote: {}, Camión: {}",
                     tipoEvento, loteId, asignacionCamionId);
@@ -112,6 +247,9 @@ public class TrackingWebSocketService {
         }
     }
 
+    private record UltimoEnvio(String estadoConexion, Double distanciaRecorrida, Double velocidadMaxima) {
+    }
+
     // DTO interno para eventos
     @lombok.Data
     @lombok.Builder
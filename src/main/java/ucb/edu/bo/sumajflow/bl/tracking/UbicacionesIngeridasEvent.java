@@ -0,0 +1,9 @@
+package ucb.edu.bo.sumajflow.bl.tracking;
+
+import java.util.List;
+
+/**
+ * Evento publicado tras persistir un lote de ubicaciones, con las asignaciones afectadas
+ */
+public record UbicacionesIngeridasEvent(List<Integer> asignacionCamionIds) {
+}
@@ -0,0 +1,248 @@
+package ucb.edu.bo.sumajflow.bl.tracking;
+
+import ucb.edu.bo.sumajflow.document.TrackingUbicacion;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Estado en memoria de un viaje activo.
+ * Los campos que cambian en cada ping (posición, conexión, métricas) se guardan como primitivos;
+ * puntos de control y eventos, que solo cambian en transiciones de estado, como listas inmutables.
+ * Todas las lecturas y escrituras se sincronizan sobre la instancia.
+ */
+public final class ViajeEnVivo {
+
+    private static final long SIN_FECHA = Long.MIN_VALUE;
+
+    // Identidad (no cambia durante el viaje)
+    private final String id;
+    private final int asignacionCamionId;
+    private final int loteId;
+    private final int transportistaId;
+    private final String codigoLote;
+    private final String placaVehiculo;
+    private final String nombreTransportista;
+    private final long createdAt;
+
+    // Posición actual (NaN = sin dato)
+    private boolean tieneUbicacion;
+    private double lat;
+    private double lng;
+    private long timestamp;
+    private double precision;
+    private double velocidad;
+    private double rumbo;
+    private double altitud;
+
+    private String estadoViaje;
+    private boolean online;
+    private long ultimaSincronizacion;
+    private long updatedAt;
+
+    // Métricas acumuladas
+    private double distanciaRecorrida;
+    private long tiempoEnMovimiento;
+    private long tiempoDetenido;
+    private double velocidadMaxima;
+    private double velocidadPromedio;
+    private long inicioViaje;
+    private long finViaje;
+    private Map<String, TrackingUbicacion.MetricasSegmento> segmentos = new LinkedHashMap<>();
+
+    private List<TrackingUbicacion.PuntoControl> puntosControl;
+    private List<TrackingUbicacion.EventoEstado> eventosEstado;
+
+    private ViajeEnVivo(TrackingUbicacion tracking) {
+        this.id = tracking.getId();
+        this.asignacionCamionId = tracking.getAsignacionCamionId();
+        this.loteId = tracking.getLoteId() != null ? tracking.getLoteId() : 0;
+        this.transportistaId = tracking.getTransportistaId() != null ? tracking.getTransportistaId() : 0;
+        this.codigoLote = tracking.getCodigoLote();
+        this.placaVehiculo = tracking.getPlacaVehiculo();
+        this.nombreTransportista = tracking.getNombreTransportista();
+        this.createdAt = aMillis(tracking.getCreatedAt());
+        reemplazarCon(tracking);
+    }
+
+    public static ViajeEnVivo desde(TrackingUbicacion tracking) {
+        return new ViajeEnVivo(tracking);
+    }
+
+    public int getAsignacionCamionId() {
+        return asignacionCamionId;
+    }
+
+    public int getLoteId() {
+        return loteId;
+    }
+
+    public int getTransportistaId() {
+        return transportistaId;
+    }
+
+    // ==================== ESCRITURAS ====================
+
+    /**
+     * Reemplaza todo el estado mutable con el del documento persistido
+     */
+    public synchronized void reemplazarCon(TrackingUbicacion tracking) {
+        aplicarUbicacion(tracking.getUbicacionActual());
+        this.estadoViaje = tracking.getEstadoViaje();
+        this.online = !"offline".equals(tracking.getEstadoConexion());
+        this.ultimaSincronizacion = aMillis(tracking.getUltimaSincronizacion());
+        this.updatedAt = aMillis(tracking.getUpdatedAt());
+
+        TrackingUbicacion.MetricasViaje metricas = tracking.getMetricas();
+        if (metricas != null) {
+            this.distanciaRecorrida = valor(metricas.getDistanciaRecorrida());
+            this.tiempoEnMovimiento = metricas.getTiempoEnMovimiento() != null ? metricas.getTiempoEnMovimiento() : 0L;
+            this.tiempoDetenido = metricas.getTiempoDetenido() != null ? metricas.getTiempoDetenido() : 0L;
+            this.velocidadMaxima = valor(metricas.getVelocidadMaxima());
+            this.velocidadPromedio = valor(metricas.getVelocidadPromedio());
+            this.inicioViaje = aMillis(metricas.getInicioViaje());
+            this.finViaje = aMillis(metricas.getFinViaje());
+            this.segmentos = AcumuladorMetricas.copiarSegmentos(metricas.getSegmentos());
+        }
+
+        actualizarEstado(tracking);
+    }
+
+    /**
+     * Copia estado de viaje, puntos de control y eventos (campos que no vienen de pings)
+     */
+    public synchronized void actualizarEstado(TrackingUbicacion tracking) {
+        this.estadoViaje = tracking.getEstadoViaje();
+        this.puntosControl = tracking.getPuntosControl() != null ? List.copyOf(tracking.getPuntosControl()) : List.of();
+        this.eventosEstado = tracking.getEventosEstado() != null ? List.copyOf(tracking.getEventosEstado()) : List.of();
+        this.updatedAt = aMillis(tracking.getUpdatedAt());
+    }
+
+    public synchronized void registrarPing(TrackingUbicacion.UbicacionActual ubicacion, LocalDateTime sincronizacion) {
+        aplicarUbicacion(ubicacion);
+        this.online = true;
+        this.ultimaSincronizacion = aMillis(sincronizacion);
+        this.updatedAt = this.ultimaSincronizacion;
+    }
+
+    /**
+     * Marca el viaje como offline si sigue online y su última sincronización es anterior al límite
+     * @return true si hubo transición online → offline
+     */
+    public synchronized boolean marcarOffline(LocalDateTime limiteSincronizacion) {
+        if (!online || ultimaSincronizacion == SIN_FECHA || ultimaSincronizacion >= aMillis(limiteSincronizacion)) {
+            return false;
+        }
+        this.online = false;
+        return true;
+    }
+
+    public synchronized void acumularMetricas(TrackingUbicacion.MetricasViaje delta) {
+        this.distanciaRecorrida += delta.getDistanciaRecorrida();
+        this.tiempoEnMovimiento += delta.getTiempoEnMovimiento();
+        this.tiempoDetenido += delta.getTiempoDetenido();
+        this.velocidadMaxima = Math.max(this.velocidadMaxima, delta.getVelocidadMaxima());
+
+        // Los segmentos son una copia privada: se suman en sitio y se copian al exponerlos
+        AcumuladorMetricas.sumar(TrackingUbicacion.MetricasViaje.builder().segmentos(segmentos).build(), delta);
+    }
+
+    private void aplicarUbicacion(TrackingUbicacion.UbicacionActual ubicacion) {
+        this.tieneUbicacion = ubicacion != null && ubicacion.getLat() != null && ubicacion.getLng() != null;
+        if (!tieneUbicacion) {
+            return;
+        }
+        this.lat = ubicacion.getLat();
+        this.lng = ubicacion.getLng();
+        this.timestamp = aMillis(ubicacion.getTimestamp());
+        this.precision = opcional(ubicacion.getPrecision());
+        this.velocidad = opcional(ubicacion.getVelocidad());
+        this.rumbo = opcional(ubicacion.getRumbo());
+        this.altitud = opcional(ubicacion.getAltitud());
+    }
+
+    // ==================== LECTURAS ====================
+
+    public synchronized String getEstadoViaje() {
+        return estadoViaje;
+    }
+
+    public synchronized List<TrackingUbicacion.PuntoControl> getPuntosControl() {
+        return puntosControl;
+    }
+
+    public synchronized TrackingUbicacion.UbicacionActual getUbicacionActual() {
+        if (!tieneUbicacion) {
+            return null;
+        }
+        return TrackingUbicacion.UbicacionActual.builder()
+                .lat(lat)
+                .lng(lng)
+                .location(TrackingUbicacion.GeoJsonPoint.of(lat, lng))
+                .timestamp(aFecha(timestamp))
+                .precision(nulo(precision))
+                .velocidad(nulo(velocidad))
+                .rumbo(nulo(rumbo))
+                .altitud(nulo(altitud))
+                .build();
+    }
+
+    /**
+     * Reconstruye el documento de tracking a partir del estado en memoria
+     */
+    public synchronized TrackingUbicacion aDocumento() {
+        return TrackingUbicacion.builder()
+                .id(id)
+                .asignacionCamionId(asignacionCamionId)
+                .loteId(loteId)
+                .transportistaId(transportistaId)
+                .codigoLote(codigoLote)
+                .placaVehiculo(placaVehiculo)
+                .nombreTransportista(nombreTransportista)
+                .ubicacionActual(getUbicacionActual())
+                .estadoViaje(estadoViaje)
+                .estadoConexion(online ? "online" : "offline")
+                .ultimaSincronizacion(aFecha(ultimaSincronizacion))
+                .puntosControl(puntosControl)
+                .metricas(TrackingUbicacion.MetricasViaje.builder()
+                        .distanciaRecorrida(distanciaRecorrida)
+                        .tiempoEnMovimiento(tiempoEnMovimiento)
+                        .tiempoDetenido(tiempoDetenido)
+                        .velocidadMaxima(velocidadMaxima)
+                        .velocidadPromedio(velocidadPromedio)
+                        .inicioViaje(aFecha(inicioViaje))
+                        .finViaje(aFecha(finViaje))
+                        .segmentos(AcumuladorMetricas.copiarSegmentos(segmentos))
+                        .build())
+                .eventosEstado(eventosEstado)
+                .createdAt(aFecha(createdAt))
+                .updatedAt(aFecha(updatedAt))
+                .build();
+    }
+
+    // ==================== CONVERSIONES ====================
+
+    private static long aMillis(LocalDateTime fecha) {
+        return fecha != null ? fecha.toInstant(ZoneOffset.UTC).toEpochMilli() : SIN_FECHA;
+    }
+
+    private static LocalDateTime aFecha(long millis) {
+        return millis != SIN_FECHA ? LocalDateTime.ofInstant(Instant.ofEpochMilli(millis), ZoneOffset.UTC) : null;
+    }
+
+    private static double valor(Double valor) {
+        return valor != null ? valor : 0.0;
+    }
+
+    private static double opcional(Double valor) {
+        return valor != null ? valor : Double.NaN;
+    }
+
+    private static Double nulo(double valor) {
+        return Double.isNaN(valor) ? null : valor;
+    }
+}
@@ -0,0 +1,18 @@
+package ucb.edu.bo.sumajflow.bl.transporte;
+
+/**
+ * Efectos pendientes de una transición de viaje, guardados en transporte_outbox junto con el cambio de estado.
+ * tipoEvento es el evento de tracking (INICIO_VIAJE, LLEGADA_MINA, ...); sin accionAuditoria no se audita.
+ */
+public record EfectoTransicion(
+        Integer asignacionId,
+        String tipoEvento,
+        String estadoAnterior,
+        String estadoNuevo,
+        Double lat,
+        Double lng,
+        String observaciones,
+        String accionAuditoria,
+        String descripcionAuditoria
+) {
+}
@@ -0,0 +1,356 @@
+package ucb.edu.bo.sumajflow.bl.transporte;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import ucb.edu.bo.sumajflow.bl.LotesWebSocketBl;
+import ucb.edu.bo.sumajflow.bl.NotificacionBl;
+import ucb.edu.bo.sumajflow.bl.cooperativa.AuditoriaLotesBl;
+import ucb.edu.bo.sumajflow.bl.tracking.TrackingBl;
+import ucb.edu.bo.sumajflow.dto.socio.ObservacionesViajeDto;
+import ucb.edu.bo.sumajflow.entity.*;
+import ucb.edu.bo.sumajflow.repository.*;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.*;
+
+/**
+ * Efectos secundarios de las transiciones de viaje: tracking en MongoDB, estado del lote,
+ * publicaciones WebSocket, auditoría y notificaciones. {@link TransporteOutbox} los aplica
+ * después de confirmada la transición, una fila de transporte_outbox a la vez y en orden por asignación.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class EfectosTransicionBl {
+
+    private final AsignacionCamionRepository asignacionCamionRepository;
+    private final LotesRepository lotesRepository;
+    private final LoteIngenioRepository loteIngenioRepository;
+    private final LoteComercializadoraRepository loteComercializadoraRepository;
+    private final PersonaRepository personaRepository;
+    private final AuditoriaLotesBl auditoriaLotesBl;
+    private final NotificacionBl notificacionBl;
+    private final TrackingBl trackingBl;
+    private final EventosViajeBl eventosViajeBl;
+    private final LotesWebSocketBl lotesWebSocketBl;
+
+    // Transiciones que mueven el estado del lote (primer camión en salir, carguío, último en llegar)
+    private static final Set<String> TRANSICIONES_QUE_ACTUALIZAN_LOTE =
+            Set.of("INICIO_VIAJE", "FIN_CARGUIO", "FIN_DESCARGA");
+
+    /**
+     * Efectos en MongoDB: punto de control de la transición y evento de estado del tracking.
+     * Corre fuera de la transacción del outbox (cada método de TrackingBl abre la suya), así que
+     * un reintento puede repetirlos. Un punto rechazado (p. ej. fuera del radio) no se reintenta;
+     * un fallo de MongoDB se propaga y el outbox reintenta el efecto.
+     */
+    public void registrarTracking(EfectoTransicion efecto) {
+        Integer asignacionId = efecto.asignacionId();
+        try {
+            switch (efecto.tipoEvento()) {
+                case "INICIO_VIAJE" -> trackingBl.iniciarTracking(asignacionId, efecto.lat(), efecto.lng());
+                case "LLEGADA_MINA" -> trackingBl.registrarLlegadaPuntoControl(
+                        asignacionId, "mina", efecto.lat(), efecto.lng(), efecto.observaciones());
+                case "FIN_CARGUIO" -> trackingBl.registrarSalidaPuntoControl(
+                        asignacionId, "mina", efecto.observaciones());
+                default -> { }
+            }
+        } catch (IllegalArgumentException e) {
+            log.warn("⚠️ Tracking no actualizado para asignación {} ({}): {}",
+                    asignacionId, efecto.tipoEvento(), e.getMessage());
+        }
+
+        trackingBl.actualizarEstadoYRegistrarEvento(
+                asignacionId, efecto.estadoAnterior(), efecto.estadoNuevo(),
+                efecto.tipoEvento(), efecto.lat(), efecto.lng()
+        );
+    }
+
+    /**
+     * Efectos en PostgreSQL: estado del lote, auditoría y notificaciones. Se confirman junto con la
+     * fila del outbox; las publicaciones WebSocket salen después del commit.
+     */
+    @Transactional
+    public void aplicar(EfectoTransicion efecto) {
+        Integer asignacionId = efecto.asignacionId();
+        AsignacionCamion asignacion = asignacionCamionRepository.findById(asignacionId)
+                .orElseThrow(() -> new IllegalArgumentException("Asignación no encontrada: " + asignacionId));
+
+        if (TRANSICIONES_QUE_ACTUALIZAN_LOTE.contains(efecto.tipoEvento())) {
+            Lotes lote = bloquearLote(asignacion);
+            String estadoLoteAnterior = lote.getEstado();
+            actualizarEstadoLote(lote);
+
+            if (!estadoLoteAnterior.equals(lote.getEstado())) {
+                if ("INICIO_VIAJE".equals(efecto.tipoEvento())) {
+                    log.info("🔔 Estado del lote cambió: {} -> {}", estadoLoteAnterior, lote.getEstado());
+                    despuesDeConfirmar(() -> lotesWebSocketBl.publicarInicioTransporte(lote, asignacion.getNumeroCamion()));
+                } else if ("FIN_DESCARGA".equals(efecto.tipoEvento()) && "Transporte completo".equals(lote.getEstado())) {
+                    log.info("🔔 Lote completado: {} -> {}", estadoLoteAnterior, lote.getEstado());
+                    despuesDeConfirmar(() -> lotesWebSocketBl.publicarFinTransporte(lote, asignacion.getNumeroCamion()));
+                }
+            }
+        }
+
+        if (efecto.accionAuditoria() != null) {
+            registrarAuditoria(asignacion.getLotesId(), efecto.estadoAnterior(), efecto.estadoNuevo(),
+                    efecto.accionAuditoria(), efecto.descripcionAuditoria(), asignacion);
+        }
+
+        if ("INICIO_VIAJE".equals(efecto.tipoEvento())) {
+            notificarInicioViaje(asignacion);
+        } else if ("FIN_DESCARGA".equals(efecto.tipoEvento())) {
+            notificarFinalizacionViaje(asignacion);
+        }
+    }
+
+    // ==================== MÉTODOS PRIVADOS ====================
+
+    /**
+     * Lote de la asignación con su fila bloqueada (SELECT ... FOR UPDATE) hasta el commit,
+     * para que dos camiones que cambian a la vez no recalculen su estado sobre datos viejos
+     */
+    private Lotes bloquearLote(AsignacionCamion asignacion) {
+        Integer loteId = asignacion.getLotesId().getId();
+        return lotesRepository.findByIdParaActualizar(loteId)
+                .orElseThrow(() -> new IllegalArgumentException("Lote no encontrado: " + loteId));
+    }
+
+    /**
+     * Actualizar estado del lote basado en camiones
+     */
+    private void actualizarEstadoLote(Lotes lote) {
+        List<AsignacionCamion> asignaciones = asignacionCamionRepository.findByLotesId(lote);
+        List<AsignacionCamion> asignacionesActivas = asignaciones.stream()
+                .filter(a -> !a.getEstado().equals("Cancelado por rechazo"))
+                .toList();
+
+        if (asignacionesActivas.isEmpty()) return;
+
+        // Definir jerarquía de estados
+        List<String> ordenEstados = List.of(
+                "Esperando iniciar", "En camino a la mina", "Esperando carguío",
+                "En camino balanza cooperativa", "En camino balanza destino",
+                "En camino almacén destino", "Descargando", "Completado"
+        );
+
+        // Encontrar estado más atrasado
+        String estadoMasAtrasado = asignacionesActivas.stream()
+                .map(AsignacionCamion::getEstado)
+                .min(Comparator.comparingInt(estado -> {
+                    int index = ordenEstados.indexOf(estado);
+                    return index == -1 ? Integer.MAX_VALUE : index;
+                }))
+                .orElse("Esperando iniciar");
+
+        // Mapear a estado del lote
+        String nuevoEstadoLote;
+        if (estadoMasAtrasado.equals("Esperando iniciar")) {
+            nuevoEstadoLote = "Aprobado - Pendiente de iniciar";
+        } else if (estadoMasAtrasado.equals("Completado")) {
+            nuevoEstadoLote = "Transporte completo";
+        } else {
+            nuevoEstadoLote = "En Transporte";
+        }
+
+        // Actualizar solo si cambió
+        if (!nuevoEstadoLote.equals(lote.getEstado())) {
+            String estadoAnterior = lote.getEstado();
+            lote.setEstado(nuevoEstadoLote);
+
+            if ("En Transporte".equals(nuevoEstadoLote) && lote.getFechaInicioTransporte() == null) {
+                lote.setFechaInicioTransporte(LocalDateTime.now());
+            } else if ("Transporte completo".equals(nuevoEstadoLote)) {
+                lote.setFechaFinTransporte(LocalDateTime.now());
+
+                // Calcular y actualizar peso real total
+                BigDecimal pesoRealTotal = calcularPesoRealTotal(asignacionesActivas);
+                lote.setPesoTotalReal(pesoRealTotal);
+
+                log.info("Peso real total del lote {}: {} kg", lote.getId(), pesoRealTotal);
+            }
+
+            lotesRepository.save(lote);
+            log.info("Estado del lote {} actualizado: {} -> {}", lote.getId(), estadoAnterior, nuevoEstadoLote);
+        }
+    }
+
+    /**
+     * Calcular peso real total sumando los pesos netos de destino de todas las asignaciones
+     */
+    private BigDecimal calcularPesoRealTotal(List<AsignacionCamion> asignaciones) {
+        Map<Integer, ObservacionesViajeDto> pesajes = eventosViajeBl.pesajesPorAsignacion(asignaciones);
+
+        return asignaciones.stream()
+                .map(asignacion -> extraerPesoNetoDestino(asignacion, pesajes.get(asignacion.getId())))
+                .filter(peso -> peso != null && peso.compareTo(BigDecimal.ZERO) > 0)
+                .reduce(BigDecimal.ZERO, BigDecimal::add);
+    }
+
+    /**
+     * Extraer peso_neto_kg del evento pesaje_destino
+     */
+    private BigDecimal extraerPesoNetoDestino(AsignacionCamion asignacion, ObservacionesViajeDto pesajes) {
+        if (pesajes == null || pesajes.getPesajeDestino() == null) {
+            log.warn("No se encontró pesaje_destino para asignación {}", asignacion.getId());
+            return BigDecimal.ZERO;
+        }
+
+        BigDecimal pesoNeto = pesajes.getPesajeDestino().getPesoNetoKg();
+        if (pesoNeto == null) {
+            log.warn("No se encontró peso_neto_kg en pesaje_destino para asignación {}", asignacion.getId());
+            return BigDecimal.ZERO;
+        }
+        return pesoNeto;
+    }
+
+    /**
+     * Registrar auditoría
+     */
+    private void registrarAuditoria(
+            Lotes lote,
+            String estadoAnterior,
+            String estadoNuevo,
+            String accion,
+            String descripcion,
+            AsignacionCamion asignacion
+    ) {
+        try {
+            Map<String, Object> metadata = new HashMap<>();
+            metadata.put("asignacion_camion_id", asignacion.getId());
+            metadata.put("transportista_id", asignacion.getTransportistaId().getId());
+            metadata.put("numero_camion", asignacion.getNumeroCamion());
+            metadata.put("placa_vehiculo", asignacion.getTransportistaId().getPlacaVehiculo());
+
+            auditoriaLotesBl.registrarAuditoria(
+                    lote.getId(),
+                    "transportista",
+                    estadoAnterior,
+                    estadoNuevo,
+                    accion,
+                    descripcion,
+                    null,
+                    metadata,
+                    null
+            );
+        } catch (Exception e) {
+            log.error("Error al registrar auditoría: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Notificar inicio de viaje al socio
+     */
+    private void notificarInicioViaje(AsignacionCamion asignacion) {
+        try {
+            Lotes lote = asignacion.getLotesId();
+            Socio socio = lote.getMinasId().getSocioId();
+            Integer socioUsuarioId = socio.getUsuariosId().getId();
+
+            Persona personaTransportista = personaRepository.findByUsuariosId(asignacion.getTransportistaId().getUsuariosId()).orElse(null);
+            String nombreTransportista = personaTransportista != null
+                    ? personaTransportista.getNombres() + " " + personaTransportista.getPrimerApellido()
+                    : "Transportista";
+
+            Map<String, Object> metadata = new HashMap<>();
+            metadata.put("lote_id", lote.getId());
+            metadata.put("asignacion_camion_id", asignacion.getId());
+            metadata.put("numero_camion", asignacion.getNumeroCamion());
+            metadata.put("transportista_nombre", nombreTransportista);
+
+            String titulo = String.format("Viaje iniciado - Camión #%d", asignacion.getNumeroCamion());
+            String mensaje = String.format("%s ha iniciado el transporte del lote %s", nombreTransportista, lote.getId().toString());
+
+            notificacionBl.crearNotificacion(socioUsuarioId, "info", titulo, mensaje, metadata);
+
+            // Notificar a la cooperativa que el camión está en camino a la mina
+            Integer cooperativaUsuarioId = lote.getMinasId().getSectoresId().getCooperativaId().getUsuariosId().getId();
+            String tituloCoop = String.format("Camión #%d en camino a la mina", asignacion.getNumeroCamion());
+            String mensajeCoop = String.format("El camión #%d ha iniciado su viaje hacia la mina para el lote %s", asignacion.getNumeroCamion(), lote.getId().toString());
+            notificacionBl.crearNotificacion(cooperativaUsuarioId, "info", tituloCoop, mensajeCoop, metadata);
+
+            //Notificar al destino (ingenio o comercializadora) que el camión está en camino
+            Integer destinoUsuarioId = null;
+
+            if("procesamiento_planta".equals(lote.getTipoOperacion())) {
+                LoteIngenio loteIngenio = loteIngenioRepository.findByLotesId(lote)
+                        .orElseThrow(() -> new IllegalArgumentException("Relación lote-ingenio no encontrada"));
+                destinoUsuarioId = loteIngenio.getIngenioMineroId().getUsuariosId().getId();
+
+            } else {
+                LoteComercializadora loteComercializadora = loteComercializadoraRepository.findByLotesId(lote)
+                        .orElseThrow(() -> new IllegalArgumentException("Relación lote-comercializadora no encontrada"));
+                destinoUsuarioId = loteComercializadora.getComercializadoraId().getUsuariosId().getId();
+            }
+            String tituloDestino = String.format("Camión #%d en camino al destino", asignacion.getNumeroCamion());
+            String mensajeDestino = String.format("El camión #%d ha iniciado su viaje hacia el destino para el lote %s", asignacion.getNumeroCamion(), lote.getId().toString());
+            notificacionBl.crearNotificacion(destinoUsuarioId, "info", tituloDestino, mensajeDestino, metadata);
+
+        } catch (Exception e) {
+            log.error("Error al enviar notificación: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Notificar finalización de viaje
+     */
+    private void notificarFinalizacionViaje(AsignacionCamion asignacion) {
+        try {
+            Lotes lote = asignacion.getLotesId();
+            Socio socio = lote.getMinasId().getSocioId();
+            Integer socioUsuarioId = socio.getUsuariosId().getId();
+
+            Map<String, Object> metadata = new HashMap<>();
+            metadata.put("lote_id", lote.getId());
+            metadata.put("asignacion_camion_id", asignacion.getId());
+            metadata.put("numero_camion", asignacion.getNumeroCamion());
+
+            String titulo = "Viaje completado";
+            String mensaje = String.format("El transporte del lote %s ha sido completado exitosamente", lote.getId().toString());
+
+            notificacionBl.crearNotificacion(socioUsuarioId, "success", titulo, mensaje, metadata);
+
+            // Notificar a la cooperativa que el camión ha completado el viaje
+            Integer cooperativaUsuarioId = lote.getMinasId().getSectoresId().getCooperativaId().getUsuariosId().getId();
+            String tituloCoop = String.format("Camión #%d ha completado el viaje", asignacion.getNumeroCamion());
+            String mensajeCoop = String.format("El camión #%d ha completado su viaje para el lote %s", asignacion.getNumeroCamion(), lote.getId().toString());
+            notificacionBl.crearNotificacion(cooperativaUsuarioId, "success", tituloCoop, mensajeCoop, metadata);
+            //Notificar al destino (ingenio o comercializadora) que el camión ha completado el viaje
+            Integer destinoUsuarioId = null;
+            if("procesamiento_planta".equals(lote.getTipoOperacion())) {
+                LoteIngenio loteIngenio = loteIngenioRepository.findByLotesId(lote)
+                        .orElseThrow(() -> new IllegalArgumentException("Relación lote-ingenio no encontrada"));
+                destinoUsuarioId = loteIngenio.getIngenioMineroId().getUsuariosId().getId();
+
+            } else {
+                LoteComercializadora loteComercializadora = loteComercializadoraRepository.findByLotesId(lote)
+                        .orElseThrow(() -> new IllegalArgumentException("Relación lote-comercializadora no encontrada"));
+                destinoUsuarioId = loteComercializadora.getComercializadoraId().getUsuariosId().getId();
+            }
+            String tituloDestino = String.format("Camión #%d ha completado el viaje", asignacion.getNumeroCamion());
+            String mensajeDestino = String.format("El camión #%d ha completado su viaje para el lote %s", asignacion.getNumeroCamion(), lote.getId().toString());
+            notificacionBl.crearNotificacion(destinoUsuarioId, "success", tituloDestino, mensajeDestino, metadata);
+
+        } catch (Exception e) {
+            log.error("Error al enviar notificación: {}", e.getMessage());
+        }
+    }
+
+    private void despuesDeConfirmar(Runnable accion) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            accion.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                accion.run();
+            }
+        });
+    }
+}
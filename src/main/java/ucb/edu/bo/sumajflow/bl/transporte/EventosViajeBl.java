@@ -0,0 +1,130 @@
+package ucb.edu.bo.sumajflow.bl.transporte;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import ucb.edu.bo.sumajflow.dto.socio.ObservacionesViajeDto;
+import ucb.edu.bo.sumajflow.dto.socio.PesajeDto;
+import ucb.edu.bo.sumajflow.entity.AsignacionCamion;
+import ucb.edu.bo.sumajflow.entity.AsignacionEvento;
+import ucb.edu.bo.sumajflow.repository.AsignacionEventoRepository;
+
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.stream.Collectors;
+
+/**
+ * Eventos de los viajes (tabla asignacion_evento). Registrar un evento es un INSERT;
+ * las lecturas traen solo los eventos que necesitan, por asignación y tipo.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class EventosViajeBl {
+
+    public static final String PESAJE_ORIGEN = "pesaje_origen";
+    public static final String PESAJE_DESTINO = "pesaje_destino";
+
+    private final AsignacionEventoRepository asignacionEventoRepository;
+    private final ObjectMapper objectMapper;
+
+    /**
+     * Registrar un evento del viaje; timestamp, lat y lng van en columnas y el resto en datos
+     */
+    public AsignacionEvento registrar(
+            AsignacionCamion asignacion,
+            String tipoEvento,
+            LocalDateTime fecha,
+            Double lat,
+            Double lng,
+            Map<String, Object> datos
+    ) {
+        String datosJson;
+        try {
+            datosJson = objectMapper.writeValueAsString(datos);
+        } catch (JsonProcessingException e) {
+            log.error("Error al serializar evento {} de asignación {}: {}",
+                    tipoEvento, asignacion.getId(), e.getMessage());
+            datosJson = "{}";
+        }
+
+        return asignacionEventoRepository.save(AsignacionEvento.builder()
+                .asignacionCamionId(asignacion)
+                .tipoEvento(tipoEvento)
+                .fechaRegistro(fecha)
+                .lat(lat)
+                .lng(lng)
+                .datos(datosJson)
+                .build());
+    }
+
+    /**
+     * Todos los eventos de un viaje en orden cronológico
+     */
+    public List<AsignacionEvento> eventosDelViaje(AsignacionCamion asignacion) {
+        return asignacionEventoRepository.findByAsignacionCamionIdOrderByFechaRegistroAscIdAsc(asignacion);
+    }
+
+    /**
+     * Pesajes de origen y destino de cada viaje en una consulta (si se repite un tipo, gana el último)
+     */
+    public Map<Integer, ObservacionesViajeDto> pesajesPorAsignacion(Collection<AsignacionCamion> asignaciones) {
+        if (asignaciones.isEmpty()) {
+            return Map.of();
+        }
+
+        Map<Integer, ObservacionesViajeDto> pesajes = new HashMap<>();
+        List<AsignacionEvento> eventos = asignacionEventoRepository.findByAsignacionesAndTipos(
+                asignaciones, List.of(PESAJE_ORIGEN, PESAJE_DESTINO));
+
+        for (AsignacionEvento evento : eventos) {
+            PesajeDto pesaje;
+            try {
+                pesaje = objectMapper.readValue(evento.getDatos(), PesajeDto.class);
+            } catch (JsonProcessingException e) {
+                log.error("Error al leer pesaje del evento {}: {}", evento.getId(), e.getMessage());
+                continue;
+            }
+            pesaje.setTimestamp(evento.getFechaRegistro());
+
+            ObservacionesViajeDto viaje = pesajes.computeIfAbsent(
+                    evento.getAsignacionCamionId().getId(), id -> new ObservacionesViajeDto());
+            if (PESAJE_ORIGEN.equals(evento.getTipoEvento())) {
+                viaje.setPesajeOrigen(pesaje);
+            } else {
+                viaje.setPesajeDestino(pesaje);
+            }
+        }
+        return pesajes;
+    }
+
+    /**
+     * Último evento con coordenadas de cada viaje, por id de asignación
+     */
+    public Map<Integer, AsignacionEvento> ultimasUbicaciones(Collection<AsignacionCamion> asignaciones) {
+        if (asignaciones.isEmpty()) {
+            return Map.of();
+        }
+
+        Set<Integer> ids = asignaciones.stream()
+                .map(AsignacionCamion::getId)
+                .collect(Collectors.toSet());
+        return asignacionEventoRepository.findUltimaUbicacionByAsignacionIds(ids).stream()
+                .collect(Collectors.toMap(e -> e.getAsignacionCamionId().getId(), e -> e));
+    }
+
+    /**
+     * Datos propios del evento; un JSON ilegible se lee como objeto vacío
+     */
+    public JsonNode leerDatos(AsignacionEvento evento) {
+        try {
+            return objectMapper.readTree(evento.getDatos());
+        } catch (JsonProcessingException e) {
+            log.error("Error al leer datos del evento {}: {}", evento.getId(), e.getMessage());
+            return objectMapper.createObjectNode();
+        }
+    }
+}
@@ -1,22 +1,15 @@
 package ucb.edu.bo.sumajflow.bl.transporte;
 
-import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
-import ucb.edu.bo.sumajflow.bl.LotesWebSocketBl;
-import ucb.edu.bo.sumajflow.bl.NotificacionBl;
-import ucb.edu.bo.sumajflow.bl.cooperativa.AuditoriaLotesBl;
 import ucb.edu.bo.sumajflow.bl.routing.RoutingService;
-import ucb.edu.bo.sumajflow.bl.tracking.TrackingBl;
 import ucb.edu.bo.sumajflow.dto.routing.RutaCalculadaDto;
 import ucb.edu.bo.sumajflow.dto.tracking.LoteDetalleViajeDto;
 import ucb.edu.bo.sumajflow.dto.transporte.*;
 import ucb.edu.bo.sumajflow.entity.*;
 import ucb.edu.bo.sumajflow.repository.*;
-import com.fasterxml.jackson.databind.JsonNode;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
@@ -29,16 +22,12 @@ import java.util.stream.Collectors;
 public class TransporteBl {
 
     private final AsignacionCamionRepository asignacionCamionRepository;
-    private final LotesRepository lotesRepository;
     private final PesajesRepository pesajesRepository;
     private final TransportistaRepository transportistaRepository;
-    private final AuditoriaLotesBl auditoriaLotesBl;
-    private final NotificacionBl notificacionBl;
     private final RoutingService routingService;
-    private final TrackingBl trackingBl;
-    private final ObjectMapper objectMapper;
+    private final EventosViajeBl eventosViajeBl;
+    private final TransporteOutbox transporteOutbox;
     private final PersonaRepository personaRepository;
-    private final LotesWebSocketBl lotesWebSocketBl;
 
     // Flujo de estados del viaje
     private static final Map<String, EstadoTransicion> FLUJO_ESTADOS = Map.ofEntries(
@@ -50,8 +39,6 @@ public class TransporteBl {
             Map.entry("En camino almacén destino", new EstadoTransicion("Descargando", "LLEGADA_ALMACEN")),
             Map.entry("Descargando", new EstadoTransicion("Completado", "FIN_DESCARGA"))
     );
-    private final LoteIngenioRepository loteIngenioRepository;
-    private final LoteComercializadoraRepository loteComercializadoraRepository;
 
     // Clase interna para transiciones
     private static class EstadoTransicion {
@@ -103,6 +90,7 @@ public class TransporteBl {
     /**
      * 1. Iniciar viaje: Esperando iniciar → En camino a la mina
      */
+    @Transactional
     public TransicionEstadoResponseDto iniciarViaje(
             Integer asignacionId,
             IniciarViajeDto dto,
@@ -123,49 +111,27 @@ public class TransporteBl {
         LocalDateTime ahora = LocalDateTime.now();
         String estadoAnterior = asignacion.getEstado();
 
-        // Registrar evento en observaciones
+        // Registrar evento del viaje
         Map<String, Object> eventoData = new HashMap<>();
-        eventoData.put("timestamp", ahora.toString());
-        eventoData.put("lat", dto.getLat());
-        eventoData.put("lng", dto.getLng());
         eventoData.put("usuario_id", usuarioId);
         eventoData.put("dispositivo", "app_movil");
         if (dto.getObservaciones() != null && !dto.getObservaciones().trim().isEmpty()) {
             eventoData.put("observaciones", dto.getObservaciones().trim());
         }
 
-        registrarEvento(asignacion, "inicio_viaje", eventoData);
+        registrarEvento(asignacion, "inicio_viaje", ahora, dto.getLat(), dto.getLng(), eventoData);
 
         // Actualizar estado
         asignacion.setEstado("En camino a la mina");
         asignacion.setFechaInicio(ahora);
         asignacionCamionRepository.save(asignacion);
 
-        Lotes lote = asignacion.getLotesId();
-        String estadoLoteAnterior = lote.getEstado();
-
-        // Operaciones asíncronas
-        ejecutarOperacionesAsync(() -> {
-            trackingBl.iniciarTracking(asignacionId, dto.getLat(), dto.getLng());
-            trackingBl.actualizarEstadoYRegistrarEvento(
-                    asignacionId, estadoAnterior, "En camino a la mina",
-                    "INICIO_VIAJE", dto.getLat(), dto.getLng()
-            );
-
-            actualizarEstadoLote(lote);
-
-            Lotes loteActualizado = lotesRepository.findById(lote.getId())
-                    .orElseThrow(() -> new RuntimeException("Lote no encontrado"));
-
-            if (!estadoLoteAnterior.equals(loteActualizado.getEstado())) {
-                log.info("🔔 Estado del lote cambió: {} -> {}", estadoLoteAnterior, loteActualizado.getEstado());
-                lotesWebSocketBl.publicarInicioTransporte(loteActualizado, asignacion.getNumeroCamion());
-            }
-
-            registrarAuditoria(lote, estadoAnterior, "En camino a la mina",
-                    "INICIAR_VIAJE", "Transportista inició el viaje", asignacion);
-            notificarInicioViaje(asignacion);
-        });
+        // Tracking, estado del lote, auditoría y notificaciones: se aplican después del commit
+        transporteOutbox.registrar(new EfectoTransicion(
+                asignacionId, "INICIO_VIAJE", estadoAnterior, "En camino a la mina",
+                dto.getLat(), dto.getLng(), null,
+                "INICIAR_VIAJE", "Transportista inició el viaje"
+        ));
 
         log.info("=== FIN: iniciarViaje exitoso ===");
 
@@ -197,9 +163,6 @@ public class TransporteBl {
 
         // Registrar evento
         Map<String, Object> eventoData = new HashMap<>();
-        eventoData.put("timestamp", ahora.toString());
-        eventoData.put("lat", dto.getLat());
-        eventoData.put("lng", dto.getLng());
         eventoData.put("pala_operativa", dto.getPalaOperativa());
         eventoData.put("mineral_visible", dto.getMineralVisible());
         if (dto.getFotoReferenciaUrl() != null) {
@@ -209,22 +172,18 @@ public class TransporteBl {
             eventoData.put("observaciones", dto.getObservaciones().trim());
         }
 
-        registrarEvento(asignacion, "llegada_mina", eventoData);
+        registrarEvento(asignacion, "llegada_mina", ahora, dto.getLat(), dto.getLng(), eventoData);
 
         // Actualizar estado
         asignacion.setEstado("Esperando carguío");
         asignacionCamionRepository.save(asignacion);
 
-        // Operaciones asíncronas
-        ejecutarOperacionesAsync(() -> {
-            trackingBl.registrarLlegadaPuntoControl(asignacionId, "mina", dto.getLat(), dto.getLng(), dto.getObservaciones());
-            trackingBl.actualizarEstadoYRegistrarEvento(
-                    asignacionId, estadoAnterior, "Esperando carguío",
-                    "LLEGADA_MINA", dto.getLat(), dto.getLng()
-            );
-            registrarAuditoria(asignacion.getLotesId(), estadoAnterior, "Esperando carguío",
-                    "LLEGADA_MINA", "Transportista llegó a la mina", asignacion);
-        });
+        // Efectos posteriores (outbox)
+        transporteOutbox.registrar(new EfectoTransicion(
+                asignacionId, "LLEGADA_MINA", estadoAnterior, "Esperando carguío",
+                dto.getLat(), dto.getLng(), dto.getObservaciones(),
+                "LLEGADA_MINA", "Transportista llegó a la mina"
+        ));
 
         return construirRespuestaTransicion(
                 asignacion,
@@ -254,9 +213,6 @@ public class TransporteBl {
 
         // Registrar evento
         Map<String, Object> eventoData = new HashMap<>();
-        eventoData.put("timestamp", ahora.toString());
-        eventoData.put("lat", dto.getLat());
-        eventoData.put("lng", dto.getLng());
         eventoData.put("mineral_cargado_completamente", dto.getMineralCargadoCompletamente());
         if (dto.getFotoCamionCargadoUrl() != null) {
             eventoData.put("foto_camion_cargado_url", dto.getFotoCamionCargadoUrl());
@@ -265,23 +221,18 @@ public class TransporteBl {
             eventoData.put("observaciones", dto.getObservaciones().trim());
         }
 
-        registrarEvento(asignacion, "carguio_completo", eventoData);
+        registrarEvento(asignacion, "carguio_completo", ahora, dto.getLat(), dto.getLng(), eventoData);
 
         // Actualizar estado
         asignacion.setEstado("En camino balanza cooperativa");
         asignacionCamionRepository.save(asignacion);
 
-        // Operaciones asíncronas
-        ejecutarOperacionesAsync(() -> {
-            trackingBl.registrarSalidaPuntoControl(asignacionId, "mina", dto.getObservaciones());
-            trackingBl.actualizarEstadoYRegistrarEvento(
-                    asignacionId, estadoAnterior, "En camino balanza cooperativa",
-                    "FIN_CARGUIO", dto.getLat(), dto.getLng()
-            );
-            actualizarEstadoLote(asignacion.getLotesId());
-            registrarAuditoria(asignacion.getLotesId(), estadoAnterior, "En camino balanza cooperativa",
-                    "FIN_CARGUIO", "Carguío completado", asignacion);
-        });
+        // Efectos posteriores (outbox)
+        transporteOutbox.registrar(new EfectoTransicion(
+                asignacionId, "FIN_CARGUIO", estadoAnterior, "En camino balanza cooperativa",
+                dto.getLat(), dto.getLng(), dto.getObservaciones(),
+                "FIN_CARGUIO", "Carguío completado"
+        ));
 
         return construirRespuestaTransicion(
                 asignacion,
@@ -351,29 +302,23 @@ public class TransporteBl {
 
         // Registrar evento
         Map<String, Object> eventoData = new HashMap<>();
-        eventoData.put("timestamp", ahora.toString());
-        eventoData.put("lat", dto.getLat());
-        eventoData.put("lng", dto.getLng());
         eventoData.put("confirmacion_llegada", dto.getConfirmacionLlegada());
         if (dto.getObservaciones() != null && !dto.getObservaciones().trim().isEmpty()) {
             eventoData.put("observaciones", dto.getObservaciones().trim());
         }
 
-        registrarEvento(asignacion, "llegada_almacen", eventoData);
+        registrarEvento(asignacion, "llegada_almacen", ahora, dto.getLat(), dto.getLng(), eventoData);
 
         // Actualizar estado
         asignacion.setEstado("Descargando");
         asignacionCamionRepository.save(asignacion);
 
-        // Operaciones asíncronas
-        ejecutarOperacionesAsync(() -> {
-            trackingBl.actualizarEstadoYRegistrarEvento(
-                    asignacionId, estadoAnterior, "Descargando",
-                    "LLEGADA_ALMACEN", dto.getLat(), dto.getLng()
-            );
-            registrarAuditoria(asignacion.getLotesId(), estadoAnterior, "Descargando",
-                    "LLEGADA_ALMACEN", "Llegada a almacén confirmada", asignacion);
-        });
+        // Efectos posteriores (outbox)
+        transporteOutbox.registrar(new EfectoTransicion(
+                asignacionId, "LLEGADA_ALMACEN", estadoAnterior, "Descargando",
+                dto.getLat(), dto.getLng(), dto.getObservaciones(),
+                "LLEGADA_ALMACEN", "Llegada a almacén confirmada"
+        ));
 
         return construirRespuestaTransicion(
                 asignacion,
@@ -403,25 +348,21 @@ public class TransporteBl {
 
         // Registrar evento
         Map<String, Object> eventoData = new HashMap<>();
-        eventoData.put("timestamp", ahora.toString());
-        eventoData.put("lat", dto.getLat());
-        eventoData.put("lng", dto.getLng());
         if (dto.getObservaciones() != null && !dto.getObservaciones().trim().isEmpty()) {
             eventoData.put("observaciones", dto.getObservaciones().trim());
         }
 
-        registrarEvento(asignacion, "descarga_iniciada", eventoData);
+        registrarEvento(asignacion, "descarga_iniciada", ahora, dto.getLat(), dto.getLng(), eventoData);
 
         // Mantener estado "Descargando" hasta finalizar ruta
         asignacionCamionRepository.save(asignacion);
 
-        // Operaciones asíncronas
-        ejecutarOperacionesAsync(() -> {
-            trackingBl.actualizarEstadoYRegistrarEvento(
-                    asignacionId, estadoAnterior, "Descargando",
-                    "INICIO_DESCARGA", dto.getLat(), dto.getLng()
-            );
-        });
+        // Efectos posteriores (outbox); sin auditoría, el estado no cambia
+        transporteOutbox.registrar(new EfectoTransicion(
+                asignacionId, "INICIO_DESCARGA", estadoAnterior, "Descargando",
+                dto.getLat(), dto.getLng(), dto.getObservaciones(),
+                null, null
+        ));
 
         return construirRespuestaTransicion(
                 asignacion,
@@ -435,6 +376,7 @@ public class TransporteBl {
     /**
      * 8. Finalizar ruta: Descargando → Completado
      */
+    @Transactional
     public TransicionEstadoResponseDto finalizarRuta(
             Integer asignacionId,
             FinalizarRutaDto dto,
@@ -450,14 +392,11 @@ public class TransporteBl {
 
         // Registrar evento
         Map<String, Object> eventoData = new HashMap<>();
-        eventoData.put("timestamp", ahora.toString());
-        eventoData.put("lat", dto.getLat());
-        eventoData.put("lng", dto.getLng());
         if (dto.getObservacionesFinales() != null && !dto.getObservacionesFinales().trim().isEmpty()) {
             eventoData.put("observaciones_finales", dto.getObservacionesFinales().trim());
         }
 
-        registrarEvento(asignacion, "ruta_finalizada", eventoData);
+        registrarEvento(asignacion, "ruta_finalizada", ahora, dto.getLat(), dto.getLng(), eventoData);
 
         // Actualizar estado
         asignacion.setEstado("Completado");
@@ -470,31 +409,12 @@ public class TransporteBl {
         transportista.setViajesCompletados(transportista.getViajesCompletados() + 1);
         transportistaRepository.save(transportista);
 
-        Lotes lote = asignacion.getLotesId();
-        String estadoLoteAnterior = lote.getEstado();
-
-        // Operaciones asíncronas
-        ejecutarOperacionesAsync(() -> {
-            trackingBl.actualizarEstadoYRegistrarEvento(
-                    asignacionId, estadoAnterior, "Completado",
-                    "FIN_DESCARGA", dto.getLat(), dto.getLng()
-            );
-
-            actualizarEstadoLote(lote);
-
-            Lotes loteActualizado = lotesRepository.findById(lote.getId())
-                    .orElseThrow(() -> new RuntimeException("Lote no encontrado"));
-
-            if (!estadoLoteAnterior.equals(loteActualizado.getEstado()) &&
-                    "Transporte completo".equals(loteActualizado.getEstado())) {
-                log.info("🔔 Lote completado: {} -> {}", estadoLoteAnterior, loteActualizado.getEstado());
-                lotesWebSocketBl.publicarFinTransporte(loteActualizado, asignacion.getNumeroCamion());
-            }
-
-            registrarAuditoria(lote, estadoAnterior, "Completado",
-                    "FIN_RUTA", "Viaje completado exitosamente", asignacion);
-            notificarFinalizacionViaje(asignacion);
-        });
+        // Tracking, estado del lote, auditoría y notificaciones: se aplican después del commit
+        transporteOutbox.registrar(new EfectoTransicion(
+                asignacionId, "FIN_DESCARGA", estadoAnterior, "Completado",
+                dto.getLat(), dto.getLng(), dto.getObservacionesFinales(),
+                "FIN_RUTA", "Viaje completado exitosamente"
+        ));
 
         return construirRespuestaTransicion(
                 asignacion,
@@ -536,11 +456,8 @@ public class TransporteBl {
         pesaje.setObservaciones(dto.getObservaciones());
         pesajesRepository.save(pesaje);
 
-        // Registrar evento en observaciones
+        // Registrar evento del viaje
         Map<String, Object> eventoData = new HashMap<>();
-        eventoData.put("timestamp", ahora.toString());
-        eventoData.put("lat", dto.getLat());
-        eventoData.put("lng", dto.getLng());
         eventoData.put("peso_bruto_kg", dto.getPesoBrutoKg());
         eventoData.put("peso_tara_kg", dto.getPesoTaraKg());
         eventoData.put("peso_neto_kg", pesoNeto);
@@ -551,22 +468,19 @@ public class TransporteBl {
             eventoData.put("observaciones", dto.getObservaciones().trim());
         }
 
-        registrarEvento(asignacion, nombreEvento, eventoData);
+        registrarEvento(asignacion, nombreEvento, ahora, dto.getLat(), dto.getLng(), eventoData);
 
         // Actualizar estado
         asignacion.setEstado(nuevoEstado);
         asignacionCamionRepository.save(asignacion);
 
-        // Operaciones asíncronas
+        // Efectos posteriores (outbox)
         String tipoEventoPesaje = "cooperativa".equals(tipoPesaje) ? "PESAJE_COOPERATIVA" : "PESAJE_DESTINO";
-        ejecutarOperacionesAsync(() -> {
-            trackingBl.actualizarEstadoYRegistrarEvento(
-                    asignacion.getId(), estadoAnterior, nuevoEstado,
-                    tipoEventoPesaje, dto.getLat(), dto.getLng()
-            );
-            registrarAuditoria(asignacion.getLotesId(), estadoAnterior, nuevoEstado,
-                    tipoEventoPesaje, "Pesaje " + tipoPesaje + " registrado: " + pesoNeto + " kg netos", asignacion);
-        });
+        transporteOutbox.registrar(new EfectoTransicion(
+                asignacion.getId(), tipoEventoPesaje, estadoAnterior, nuevoEstado,
+                dto.getLat(), dto.getLng(), dto.getObservaciones(),
+                tipoEventoPesaje, "Pesaje " + tipoPesaje + " registrado: " + pesoNeto + " kg netos"
+        ));
 
         log.info("Pesaje {} registrado - Peso neto: {} kg", tipoPesaje, pesoNeto);
 
@@ -614,276 +528,17 @@ public class TransporteBl {
     }
 
     /**
-     * Registrar evento en observaciones (JSONB)
-     */
-    private void registrarEvento(AsignacionCamion asignacion, String nombreEvento, Map<String, Object> eventoData) {
-        try {
-            Map<String, Object> observaciones = obtenerObservaciones(asignacion);
-            observaciones.put(nombreEvento, eventoData);
-            asignacion.setObservaciones(objectMapper.writeValueAsString(observaciones));
-        } catch (JsonProcessingException e) {
-            log.error("Error al registrar evento: {}", e.getMessage());
-        }
-    }
-
-    /**
-     * Obtener observaciones desde JSONB
-     */
-    private Map<String, Object> obtenerObservaciones(AsignacionCamion asignacion) {
-        if (asignacion.getObservaciones() == null || asignacion.getObservaciones().isEmpty()) {
-            return new HashMap<>();
-        }
-        try {
-            return objectMapper.readValue(asignacion.getObservaciones(), Map.class);
-        } catch (JsonProcessingException e) {
-            return new HashMap<>();
-        }
-    }
-
-    /**
-     * Ejecutar operaciones asíncronas sin bloquear respuesta
-     */
-    private void ejecutarOperacionesAsync(Runnable operaciones) {
-        try {
-            operaciones.run();
-        } catch (Exception e) {
-            log.error("Error en operaciones asíncronas (no crítico): {}", e.getMessage());
-        }
-    }
-
-    /**
-     * Actualizar estado del lote basado en camiones
-     */
-    private void actualizarEstadoLote(Lotes lote) {
-        List<AsignacionCamion> asignaciones = asignacionCamionRepository.findByLotesId(lote);
-        List<AsignacionCamion> asignacionesActivas = asignaciones.stream()
-                .filter(a -> !a.getEstado().equals("Cancelado por rechazo"))
-                .toList();
-
-        if (asignacionesActivas.isEmpty()) return;
-
-        // Definir jerarquía de estados
-        List<String> ordenEstados = List.of(
-                "Esperando iniciar", "En camino a la mina", "Esperando carguío",
-                "En camino balanza cooperativa", "En camino balanza destino",
-                "En camino almacén destino", "Descargando", "Completado"
-        );
-
-        // Encontrar estado más atrasado
-        String estadoMasAtrasado = asignacionesActivas.stream()
-                .map(AsignacionCamion::getEstado)
-                .min(Comparator.comparingInt(estado -> {
-                    int index = ordenEstados.indexOf(estado);
-                    return index == -1 ? Integer.MAX_VALUE : index;
-                }))
-                .orElse("Esperando iniciar");
-
-        // Mapear a estado del lote
-        String nuevoEstadoLote;
-        if (estadoMasAtrasado.equals("Esperando iniciar")) {
-            nuevoEstadoLote = "Aprobado - Pendiente de iniciar";
-        } else if (estadoMasAtrasado.equals("Completado")) {
-            nuevoEstadoLote = "Transporte completo";
-        } else {
-            nuevoEstadoLote = "En Transporte";
-        }
-
-        // Actualizar solo si cambió
-        if (!nuevoEstadoLote.equals(lote.getEstado())) {
-            String estadoAnterior = lote.getEstado();
-            lote.setEstado(nuevoEstadoLote);
-
-            if ("En Transporte".equals(nuevoEstadoLote) && lote.getFechaInicioTransporte() == null) {
-                lote.setFechaInicioTransporte(LocalDateTime.now());
-            } else if ("Transporte completo".equals(nuevoEstadoLote)) {
-                lote.setFechaFinTransporte(LocalDateTime.now());
-
-                // Calcular y actualizar peso real total
-                BigDecimal pesoRealTotal = calcularPesoRealTotal(asignacionesActivas);
-                lote.setPesoTotalReal(pesoRealTotal);
-
-                log.info("Peso real total del lote {}: {} kg", lote.getId(), pesoRealTotal);
-            }
-
-            lotesRepository.save(lote);
-            log.info("Estado del lote {} actualizado: {} -> {}", lote.getId(), estadoAnterior, nuevoEstadoLote);
-        }
-    }
-
-    /**
-     * Calcular peso real total sumando los pesos netos de destino de todas las asignaciones
+     * Registrar evento del viaje (una fila nueva en asignacion_evento)
      */
-    private BigDecimal calcularPesoRealTotal(List<AsignacionCamion> asignaciones) {
-        return asignaciones.stream()
-                .map(this::extraerPesoNetoDestino)
-                .filter(peso -> peso != null && peso.compareTo(BigDecimal.ZERO) > 0)
-                .reduce(BigDecimal.ZERO, BigDecimal::add);
-    }
-
-    /**
-     * Extraer peso_neto_kg del pesaje_destino desde el JSON de observaciones
-     */
-    private BigDecimal extraerPesoNetoDestino(AsignacionCamion asignacion) {
-        try {
-            if (asignacion.getObservaciones() == null || asignacion.getObservaciones().isEmpty()) {
-                return BigDecimal.ZERO;
-            }
-
-            // Parsear el JSON
-            ObjectMapper objectMapper = new ObjectMapper();
-            JsonNode rootNode = objectMapper.readTree(asignacion.getObservaciones());
-
-            // Navegar a pesaje_destino.peso_neto_kg
-            JsonNode pesajeDestino = rootNode.path("pesaje_destino");
-            if (pesajeDestino.isMissingNode()) {
-                log.warn("No se encontró pesaje_destino para asignación {}", asignacion.getId());
-                return BigDecimal.ZERO;
-            }
-
-            JsonNode pesoNetoNode = pesajeDestino.path("peso_neto_kg");
-            if (pesoNetoNode.isMissingNode() || pesoNetoNode.isNull()) {
-                log.warn("No se encontró peso_neto_kg en pesaje_destino para asignación {}", asignacion.getId());
-                return BigDecimal.ZERO;
-            }
-
-            return BigDecimal.valueOf(pesoNetoNode.asDouble());
-
-        } catch (Exception e) {
-            log.error("Error al extraer peso neto de destino para asignación {}: {}",
-                    asignacion.getId(), e.getMessage());
-            return BigDecimal.ZERO;
-        }
-    }
-    /**
-     * Registrar auditoría
-     */
-    private void registrarAuditoria(
-            Lotes lote,
-            String estadoAnterior,
-            String estadoNuevo,
-            String accion,
-            String descripcion,
-            AsignacionCamion asignacion
+    private void registrarEvento(
+            AsignacionCamion asignacion,
+            String nombreEvento,
+            LocalDateTime fecha,
+            Double lat,
+            Double lng,
+            Map<String, Object> eventoData
     ) {
-        try {
-            Map<String, Object> metadata = new HashMap<>();
-            metadata.put("asignacion_camion_id", asignacion.getId());
-            metadata.put("transportista_id", asignacion.getTransportistaId().getId());
-            metadata.put("numero_camion", asignacion.getNumeroCamion());
-            metadata.put("placa_vehiculo", asignacion.getTransportistaId().getPlacaVehiculo());
-
-            auditoriaLotesBl.registrarAuditoria(
-                    lote.getId(),
-                    "transportista",
-                    estadoAnterior,
-                    estadoNuevo,
-                    accion,
-                    descripcion,
-                    null,
-                    metadata,
-                    null
-            );
-        } catch (Exception e) {
-            log.error("Error al registrar auditoría: {}", e.getMessage());
-        }
-    }
-
-    /**
-     * Notificar inicio de viaje al socio
-     */
-    private void notificarInicioViaje(AsignacionCamion asignacion) {
-        try {
-            Lotes lote = asignacion.getLotesId();
-            Socio socio = lote.getMinasId().getSocioId();
-            Integer socioUsuarioId = socio.getUsuariosId().getId();
-
-            Persona personaTransportista = personaRepository.findByUsuariosId(asignacion.getTransportistaId().getUsuariosId()).orElse(null);
-            String nombreTransportista = personaTransportista != null
-                    ? personaTransportista.getNombres() + " " + personaTransportista.getPrimerApellido()
-                    : "Transportista";
-
-            Map<String, Object> metadata = new HashMap<>();
-            metadata.put("lote_id", lote.getId());
-            metadata.put("asignacion_camion_id", asignacion.getId());
-            metadata.put("numero_camion", asignacion.getNumeroCamion());
-            metadata.put("transportista_nombre", nombreTransportista);
-
-            String titulo = String.format("Viaje iniciado - Camión #%d", asignacion.getNumeroCamion());
-            String mensaje = String.format("%s ha iniciado el transporte del lote %s", nombreTransportista, lote.getId().toString());
-
-            notificacionBl.crearNotificacion(socioUsuarioId, "info", titulo, mensaje, metadata);
-
-            // Notificar a la cooperativa que el camión está en camino a la mina
-            Integer cooperativaUsuarioId = lote.getMinasId().getSectoresId().getCooperativaId().getUsuariosId().getId();
-            String tituloCoop = String.format("Camión #%d en camino a la mina", asignacion.getNumeroCamion());
-            String mensajeCoop = String.format("El camión #%d ha iniciado su viaje hacia la mina para el lote %s", asignacion.getNumeroCamion(), lote.getId().toString());
-            notificacionBl.crearNotificacion(cooperativaUsuarioId, "info", tituloCoop, mensajeCoop, metadata);
-
-            //Notificar al destino (ingenio o comercializadora) que el camión está en camino
-            Integer destinoUsuarioId = null;
-
-            if("procesamiento_planta".equals(lote.getTipoOperacion())) {
-                LoteIngenio loteIngenio = loteIngenioRepository.findByLotesId(lote)
-                        .orElseThrow(() -> new IllegalArgumentException("Relación lote-ingenio no encontrada"));
-                destinoUsuarioId = loteIngenio.getIngenioMineroId().getUsuariosId().getId();
-
-            } else {
-                LoteComercializadora loteComercializadora = loteComercializadoraRepository.findByLotesId(lote)
-                        .orElseThrow(() -> new IllegalArgumentException("Relación lote-comercializadora no encontrada"));
-                destinoUsuarioId = loteComercializadora.getComercializadoraId().getUsuariosId().getId();
-            }
-            String tituloDestino = String.format("Camión #%d en camino al destino", asignacion.getNumeroCamion());
-            String mensajeDestino = String.format("El camión #%d ha iniciado su viaje hacia el destino para el lote %s", asignacion.getNumeroCamion(), lote.getId().toString());
-            notificacionBl.crearNotificacion(destinoUsuarioId, "info", tituloDestino, mensajeDestino, metadata);
-
-        } catch (Exception e) {
-            log.error("Error al enviar notificación: {}", e.getMessage());
-        }
-    }
-
-    /**
-     * Notificar finalización de viaje
-     */
-    private void notificarFinalizacionViaje(AsignacionCamion asignacion) {
-        try {
-            Lotes lote = asignacion.getLotesId();
-            Socio socio = lote.getMinasId().getSocioId();
-            Integer socioUsuarioId = socio.getUsuariosId().getId();
-
-            Map<String, Object> metadata = new HashMap<>();
-            metadata.put("lote_id", lote.getId());
-            metadata.put("asignacion_camion_id", asignacion.getId());
-            metadata.put("numero_camion", asignacion.getNumeroCamion());
-
-            String titulo = "Viaje completado";
-            String mensaje = String.format("El transporte del lote %s ha sido completado exitosamente", lote.getId().toString());
-
-            notificacionBl.crearNotificacion(socioUsuarioId, "success", titulo, mensaje, metadata);
-
-            // Notificar a la cooperativa que el camión ha completado el viaje
-            Integer cooperativaUsuarioId = lote.getMinasId().getSectoresId().getCooperativaId().getUsuariosId().getId();
-            String tituloCoop = String.format("Camión #%d ha completado el viaje", asignacion.getNumeroCamion());
-            String mensajeCoop = String.format("El camión #%d ha completado su viaje para el lote %s", asignacion.getNumeroCamion(), lote.getId().toString());
-            notificacionBl.crearNotificacion(cooperativaUsuarioId, "success", tituloCoop, mensajeCoop, metadata);
-            //Notificar al destino (ingenio o comercializadora) que el camión ha completado el viaje
-            Integer destinoUsuarioId = null;
-            if("procesamiento_planta".equals(lote.getTipoOperacion())) {
-                LoteIngenio loteIngenio = loteIngenioRepository.findByLotesId(lote)
-                        .orElseThrow(() -> new IllegalArgumentException("Relación lote-ingenio no encontrada"));
-                destinoUsuarioId = loteIngenio.getIngenioMineroId().getUsuariosId().getId();
-
-            } else {
-                LoteComercializadora loteComercializadora = loteComercializadoraRepository.findByLotesId(lote)
-                        .orElseThrow(() -> new IllegalArgumentException("Relación lote-comercializadora no encontrada"));
-                destinoUsuarioId = loteComercializadora.getComercializadoraId().getUsuariosId().getId();
-            }
-            String tituloDestino = String.format("Camión #%d ha completado el viaje", asignacion.getNumeroCamion());
-            String mensajeDestino = String.format("El camión #%d ha completado su viaje para el lote %s", asignacion.getNumeroCamion(), lote.getId().toString());
-            notificacionBl.crearNotificacion(destinoUsuarioId, "success", tituloDestino, mensajeDestino, metadata);
-
-        } catch (Exception e) {
-            log.error("Error al enviar notificación: {}", e.getMessage());
-        }
+        eventosViajeBl.registrar(asignacion, nombreEvento, fecha, lat, lng, eventoData);
     }
 
     /**
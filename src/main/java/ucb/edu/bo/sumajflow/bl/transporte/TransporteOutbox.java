@@ -0,0 +1,396 @@
+package ucb.edu.bo.sumajflow.bl.transporte;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Outbox de los efectos de las transiciones de viaje (tabla transporte_outbox, V4__transporte_outbox.sql).
+ * TransporteBl guarda cada {@link EfectoTransicion} en la misma transacción que el cambio de estado, así
+ * la respuesta al transportista no espera el fan-out y una caída no pierde efectos. Un planificador reclama
+ * la fila más antigua pendiente de cada asignación (FOR UPDATE SKIP LOCKED + arrendamiento) y la procesa en
+ * un hilo virtual; ese hilo sigue con las siguientes de la misma asignación, de modo que el orden se respeta.
+ * Los errores se reintentan con espera exponencial; al agotar los intentos la fila queda como fallida y la
+ * asignación se detiene: sus efectos siguientes no se aplican (quedarían fuera de orden) y se alerta con la
+ * métrica transporte.outbox.asignaciones.detenidas. Para reanudarla, tras corregir la causa, se vuelve la fila
+ * a pendiente: {@code UPDATE transporte_outbox SET estado = 'pendiente', intentos = 0 WHERE id = ...}.
+ * <p>
+ * Cada fila guarda la instancia que registró la transición (la dueña del viaje en modo relay, ver
+ * EnrutamientoTrackingFilter) y solo esa instancia la reclama: los efectos en memoria del tracking
+ * (viaje en vivo, geocercas, detector de desconexión) se aplican donde vive el viaje. Si la dueña no la
+ * reclama en {@code transporte.outbox.espera-nodo} desde que le tocaba (instancia caída), la toma otra.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class TransporteOutbox {
+
+    private static final String ESTADO_PENDIENTE = "pendiente";
+    private static final String ESTADO_PROCESADO = "procesado";
+    private static final String ESTADO_FALLIDO = "fallido";
+
+    private static final long ESPERA_MAXIMA_SEGUNDOS = 300;
+    private static final int LARGO_MAXIMO_ERROR = 2000;
+
+    private static final String COLUMNAS_RECLAMADAS = "id, asignacion_camion_id, payload::text AS payload, intentos, fecha_creacion";
+
+    // Cabezas de cola listas: la pendiente más antigua de cada asignación, sin arrendamiento vigente,
+    // de esta instancia o de una que no la reclamó a tiempo. Una fallida anterior detiene la asignación:
+    // aplicar los efectos siguientes sin ella los dejaría fuera de orden
+    private static final String RECLAMAR_CABEZAS = """
+            UPDATE transporte_outbox SET bloqueado_hasta = now() + make_interval(secs => ?)
+            WHERE id IN (
+                SELECT o.id FROM transporte_outbox o
+                WHERE o.estado = 'pendiente' AND o.proximo_intento <= now()
+                  AND (o.bloqueado_hasta IS NULL OR o.bloqueado_hasta < now())
+                  AND (o.nodo IS NULL OR o.nodo = ? OR o.proximo_intento < now() - make_interval(secs => ?))
+                  AND NOT EXISTS (
+                      SELECT 1 FROM transporte_outbox p
+                      WHERE p.asignacion_camion_id = o.asignacion_camion_id
+                        AND p.estado IN ('pendiente', 'fallido') AND p.id < o.id)
+                ORDER BY o.id
+                LIMIT ?
+                FOR UPDATE SKIP LOCKED)
+            RETURNING\s""" + COLUMNAS_RECLAMADAS;
+
+    // Siguiente de la misma asignación, solo si es la cabeza (ninguna anterior pendiente ni fallida) y ya le toca
+    private static final String RECLAMAR_SIGUIENTE = """
+            UPDATE transporte_outbox SET bloqueado_hasta = now() + make_interval(secs => ?)
+            WHERE id = (
+                SELECT id FROM transporte_outbox
+                WHERE asignacion_camion_id = ? AND estado IN ('pendiente', 'fallido')
+                ORDER BY id
+                LIMIT 1)
+              AND estado = 'pendiente'
+              AND proximo_intento <= now()
+              AND (bloqueado_hasta IS NULL OR bloqueado_hasta < now())
+              AND (nodo IS NULL OR nodo = ? OR proximo_intento < now() - make_interval(secs => ?))
+            RETURNING\s""" + COLUMNAS_RECLAMADAS;
+
+    // Asignaciones con un efecto fallido: no avanzan hasta que se reanuden
+    private static final String ASIGNACIONES_DETENIDAS = """
+            SELECT asignacion_camion_id FROM transporte_outbox
+            WHERE estado = 'fallido'
+            GROUP BY asignacion_camion_id
+            ORDER BY asignacion_camion_id
+            """;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final PlatformTransactionManager transactionManager;
+    private final EfectosTransicionBl efectosTransicionBl;
+    private final ObjectMapper objectMapper;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${transporte.outbox.habilitado:true}")
+    private boolean habilitado;
+
+    @Value("${transporte.outbox.max-lote:100}")
+    private int maxLote;
+
+    @Value("${transporte.outbox.concurrencia:4}")
+    private int concurrencia;
+
+    @Value("${transporte.outbox.max-intentos:8}")
+    private int maxIntentos;
+
+    @Value("${transporte.outbox.bloqueo:PT2M}")
+    private Duration bloqueo;
+
+    @Value("${transporte.outbox.retencion:P7D}")
+    private Duration retencion;
+
+    // Identifica a esta instancia en las filas que registra
+    @Value("${transporte.outbox.nodo:${random.uuid}}")
+    private String nodo;
+
+    @Value("${transporte.outbox.espera-nodo:PT30S}")
+    private Duration esperaNodo;
+
+    private final ReentrantLock drenando = new ReentrantLock();
+    private TransactionTemplate transactionTemplate;
+    private ExecutorService ejecutor;
+    private Semaphore permisos;
+    private volatile boolean activo;
+
+    private Counter procesados;
+    private Counter reintentos;
+    private Counter fallidos;
+    private Timer demora;
+    private final AtomicInteger asignacionesDetenidas = new AtomicInteger();
+
+    @PostConstruct
+    public void iniciar() {
+        transactionTemplate = new TransactionTemplate(transactionManager);
+        permisos = new Semaphore(concurrencia);
+
+        procesados = Counter.builder("transporte.outbox.procesados")
+                .description("Efectos de transición aplicados")
+                .register(meterRegistry);
+        reintentos = Counter.builder("transporte.outbox.reintentos")
+                .description("Efectos de transición que fallaron y se reintentarán")
+                .register(meterRegistry);
+        fallidos = Counter.builder("transporte.outbox.fallidos")
+                .description("Efectos de transición descartados tras agotar los reintentos")
+                .register(meterRegistry);
+        demora = Timer.builder("transporte.outbox.demora")
+                .description("Tiempo desde la transición hasta que sus efectos quedan aplicados")
+                .publishPercentiles(0.5, 0.95, 0.99)
+                .register(meterRegistry);
+        Gauge.builder("transporte.outbox.asignaciones.detenidas", asignacionesDetenidas, AtomicInteger::get)
+                .description("Asignaciones con un efecto fallido cuyos efectos siguientes no se aplican")
+                .register(meterRegistry);
+
+        if (!habilitado) {
+            log.info("Outbox de transporte deshabilitado");
+            return;
+        }
+
+        ejecutor = Executors.newVirtualThreadPerTaskExecutor();
+        activo = true;
+        log.info("📮 Outbox de transporte iniciado - Nodo: {}, Concurrencia: {}, Lote: {}, Intentos: {}",
+                nodo, concurrencia, maxLote, maxIntentos);
+    }
+
+    @PreDestroy
+    public void detener() {
+        activo = false;
+        if (ejecutor == null) {
+            return;
+        }
+        // Las filas en curso que no terminen se retoman al vencer su arrendamiento
+        ejecutor.shutdown();
+        try {
+            ejecutor.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        log.info("Outbox de transporte detenido");
+    }
+
+    /**
+     * Guardar los efectos de una transición en la transacción actual; al confirmarse se procesan sin
+     * esperar al próximo ciclo del planificador. Si la transacción se revierte, los efectos también.
+     */
+    public void registrar(EfectoTransicion efecto) {
+        String payload;
+        try {
+            payload = objectMapper.writeValueAsString(efecto);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("No se pudo serializar el efecto " + efecto.tipoEvento(), e);
+        }
+
+        jdbcTemplate.update(
+                "INSERT INTO transporte_outbox (asignacion_camion_id, tipo_efecto, payload, nodo) VALUES (?, ?, ?::jsonb, ?)",
+                efecto.asignacionId(), efecto.tipoEvento(), payload, nodo);
+
+        despuesDeConfirmar(this::despertar);
+    }
+
+    // ==================== PROCESAMIENTO ====================
+
+    /**
+     * Reclamar las cabezas de cola listas y repartirlas entre los hilos libres
+     */
+    @Scheduled(fixedDelayString = "${transporte.outbox.intervalo-ms:1000}")
+    public void drenar() {
+        if (!activo || !drenando.tryLock()) {
+            return;
+        }
+        try {
+            int libres = Math.min(permisos.availablePermits(), maxLote);
+            if (libres == 0) {
+                return;
+            }
+
+            List<Reclamado> reclamados = jdbcTemplate.query(
+                    RECLAMAR_CABEZAS, MAPEO_RECLAMADO, bloqueo.toSeconds(), nodo, esperaNodo.toSeconds(), libres);
+            for (Reclamado reclamado : reclamados) {
+                permisos.acquireUninterruptibly();
+                try {
+                    ejecutor.execute(() -> procesarAsignacion(reclamado));
+                } catch (RejectedExecutionException e) {
+                    // Apagando: la fila se retoma al vencer el arrendamiento
+                    permisos.release();
+                }
+            }
+        } catch (Exception e) {
+            log.error("❌ Error al reclamar efectos del outbox de transporte: {}", e.getMessage());
+        } finally {
+            drenando.unlock();
+        }
+    }
+
+    /**
+     * Borrar los efectos procesados más antiguos que la retención
+     */
+    @Scheduled(cron = "${transporte.outbox.cron-limpieza:0 15 4 * * *}")
+    public void limpiar() {
+        if (!habilitado) {
+            return;
+        }
+        try {
+            int borrados = jdbcTemplate.update(
+                    "DELETE FROM transporte_outbox WHERE estado = ? AND fecha_procesado < now() - make_interval(secs => ?)",
+                    ESTADO_PROCESADO, retencion.toSeconds());
+            log.info("🧹 Outbox de transporte - {} efectos procesados eliminados", borrados);
+        } catch (Exception e) {
+            log.error("❌ Error al limpiar el outbox de transporte: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Revisar las asignaciones detenidas por un efecto fallido: actualiza la métrica y alerta en el log
+     */
+    @Scheduled(fixedDelayString = "${transporte.outbox.intervalo-detenidas-ms:60000}")
+    public void vigilarDetenidas() {
+        if (!habilitado) {
+            return;
+        }
+        try {
+            List<Integer> detenidas = jdbcTemplate.queryForList(ASIGNACIONES_DETENIDAS, Integer.class);
+            asignacionesDetenidas.set(detenidas.size());
+            if (!detenidas.isEmpty()) {
+                log.error("🚨 Outbox de transporte - {} asignaciones detenidas por efectos fallidos: {}",
+                        detenidas.size(), detenidas);
+            }
+        } catch (Exception e) {
+            log.error("❌ Error al revisar asignaciones detenidas del outbox de transporte: {}", e.getMessage());
+        }
+    }
+
+    // ==================== MÉTODOS PRIVADOS ====================
+
+    private void despertar() {
+        if (!activo) {
+            return;
+        }
+        try {
+            ejecutor.execute(this::drenar);
+        } catch (RejectedExecutionException e) {
+            log.debug("Outbox de transporte apagándose, el efecto queda para el próximo arranque");
+        }
+    }
+
+    /**
+     * Procesar en orden los efectos de una asignación mientras haya y no falle ninguno
+     */
+    private void procesarAsignacion(Reclamado primero) {
+        try {
+            Reclamado actual = primero;
+            while (actual != null && activo && procesar(actual)) {
+                actual = jdbcTemplate.query(RECLAMAR_SIGUIENTE, MAPEO_RECLAMADO,
+                                bloqueo.toSeconds(), actual.asignacionId(), nodo, esperaNodo.toSeconds()).stream()
+                        .findFirst()
+                        .orElse(null);
+            }
+        } catch (Exception e) {
+            log.error("❌ Error en el outbox de transporte - Asignación {}: {}", primero.asignacionId(), e.getMessage());
+        } finally {
+            permisos.release();
+        }
+    }
+
+    /**
+     * Aplicar un efecto. Los cambios en PostgreSQL y la marca de procesado se confirman juntos.
+     * @return false si falló y la asignación debe esperar al reintento
+     */
+    private boolean procesar(Reclamado reclamado) {
+        try {
+            EfectoTransicion efecto = objectMapper.readValue(reclamado.payload(), EfectoTransicion.class);
+
+            efectosTransicionBl.registrarTracking(efecto);
+            transactionTemplate.executeWithoutResult(status -> {
+                efectosTransicionBl.aplicar(efecto);
+                jdbcTemplate.update(
+                        "UPDATE transporte_outbox SET estado = ?, fecha_procesado = now(), bloqueado_hasta = NULL WHERE id = ?",
+                        ESTADO_PROCESADO, reclamado.id());
+            });
+
+            procesados.increment();
+            demora.record(Duration.between(reclamado.fechaCreacion(), LocalDateTime.now()));
+            return true;
+
+        } catch (Exception e) {
+            registrarFallo(reclamado, e);
+            return false;
+        }
+    }
+
+    private void registrarFallo(Reclamado reclamado, Exception error) {
+        int intentos = reclamado.intentos() + 1;
+        boolean agotado = intentos >= maxIntentos;
+        long espera = Math.min(1L << Math.min(intentos, 20), ESPERA_MAXIMA_SEGUNDOS);
+
+        String mensaje = String.valueOf(error.getMessage());
+        if (mensaje.length() > LARGO_MAXIMO_ERROR) {
+            mensaje = mensaje.substring(0, LARGO_MAXIMO_ERROR);
+        }
+
+        jdbcTemplate.update(
+                "UPDATE transporte_outbox SET estado = ?, intentos = ?, ultimo_error = ?, bloqueado_hasta = NULL, " +
+                        "proximo_intento = now() + make_interval(secs => ?) WHERE id = ?",
+                agotado ? ESTADO_FALLIDO : ESTADO_PENDIENTE, intentos, mensaje, espera, reclamado.id());
+
+        if (agotado) {
+            fallidos.increment();
+            asignacionesDetenidas.incrementAndGet();
+            log.error("🚨 Efecto {} de asignación {} fallido tras {} intentos, la asignación queda detenida: {}",
+                    reclamado.id(), reclamado.asignacionId(), intentos, mensaje);
+        } else {
+            reintentos.increment();
+            log.warn("⚠️ Efecto {} de asignación {} falló (intento {}), reintento en {} s: {}",
+                    reclamado.id(), reclamado.asignacionId(), intentos, espera, mensaje);
+        }
+    }
+
+    private void despuesDeConfirmar(Runnable accion) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            accion.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                accion.run();
+            }
+        });
+    }
+
+    private static final RowMapper<Reclamado> MAPEO_RECLAMADO = (rs, rowNum) -> new Reclamado(
+            rs.getLong("id"),
+            rs.getInt("asignacion_camion_id"),
+            rs.getString("payload"),
+            rs.getInt("intentos"),
+            rs.getTimestamp("fecha_creacion").toLocalDateTime()
+    );
+
+    private record Reclamado(long id, Integer asignacionId, String payload, int intentos, LocalDateTime fechaCreacion) {
+    }
+}
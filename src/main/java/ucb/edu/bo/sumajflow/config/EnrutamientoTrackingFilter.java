@@ -0,0 +1,95 @@
+package ucb.edu.bo.sumajflow.config;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Enrutamiento fijo por asignación para el modo de varias instancias (websocket.broker.modo=relay).
+ * El broker relay solo reparte los mensajes STOMP; el estado del tracking sigue siendo de cada instancia
+ * (viaje en memoria, cola de ingesta, detector de desconexión, último envío para los deltas). Si los pings
+ * de un camión llegaran a dos instancias, cada una mediría la distancia contra su propia posición previa.
+ * <p>
+ * Por eso todas las escrituras de tracking de una asignación deben ir a la misma instancia: el cliente envía
+ * {@value #CABECERA_ASIGNACION} y el balanceador la usa como clave de afinidad
+ * (p. ej. nginx: {@code hash $http_x_asignacion_camion_id consistent;}). Vale para los pings (POST /tracking/**)
+ * y para las transiciones del viaje (POST /transportista/viaje/{asignacionId}/...): la instancia que registra
+ * la transición es la que aplica después sus efectos en memoria desde el outbox (ver TransporteOutbox).
+ * Aquí se rechaza con 400 la escritura que no trae la cabecera o que, en una transición, la trae con otra
+ * asignación, para que un cliente no reparta su viaje entre instancias.
+ */
+@Slf4j
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE + 1)
+@ConditionalOnProperty(name = "websocket.broker.modo", havingValue = "relay")
+public class EnrutamientoTrackingFilter extends OncePerRequestFilter {
+
+    public static final String CABECERA_ASIGNACION = "X-Asignacion-Camion-Id";
+
+    private static final String RUTA_TRACKING = "/tracking/";
+    private static final Pattern RUTA_TRANSICION = Pattern.compile("^/transportista/viaje/(\\d+)/.+");
+
+    @PostConstruct
+    public void iniciar() {
+        log.info("🧭 Enrutamiento fijo por asignación - Escrituras de /tracking y transiciones de viaje requieren {}",
+                CABECERA_ASIGNACION);
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        String ruta = ruta(request);
+        return !HttpMethod.POST.matches(request.getMethod())
+                || !(ruta.startsWith(RUTA_TRACKING) || RUTA_TRANSICION.matcher(ruta).matches());
+    }
+
+    @Override
+    protected void doFilterInternal(
+            HttpServletRequest request,
+            HttpServletResponse response,
+            FilterChain filterChain
+    ) throws ServletException, IOException {
+        String asignacion = request.getHeader(CABECERA_ASIGNACION);
+        if (asignacion == null || !asignacion.strip().matches("\\d+")) {
+            log.warn("⚠️ Escritura de tracking sin clave de enrutamiento: {} {}", request.getMethod(), request.getRequestURI());
+            rechazar(response, "Falta la cabecera " + CABECERA_ASIGNACION);
+            return;
+        }
+
+        // Transiciones: la asignación va en la ruta, la clave debe ser la misma (los pings los valida el controlador)
+        Matcher transicion = RUTA_TRANSICION.matcher(ruta(request));
+        if (transicion.matches() && !transicion.group(1).equals(asignacion.strip())) {
+            log.warn("⚠️ Clave de enrutamiento {} distinta de la asignación de la ruta: {}", asignacion, request.getRequestURI());
+            rechazar(response, "La cabecera " + CABECERA_ASIGNACION + " no coincide con la asignación " + transicion.group(1));
+            return;
+        }
+        filterChain.doFilter(request, response);
+    }
+
+    // ==================== MÉTODOS PRIVADOS ====================
+
+    private String ruta(HttpServletRequest request) {
+        return request.getRequestURI().substring(request.getContextPath().length());
+    }
+
+    private void rechazar(HttpServletResponse response, String mensaje) throws IOException {
+        response.setStatus(HttpStatus.BAD_REQUEST.value());
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        response.setCharacterEncoding("UTF-8");
+        response.getWriter().write("{\"success\":false,\"message\":\"" + mensaje + "\"}");
+    }
+}
@@ -0,0 +1,112 @@
+package ucb.edu.bo.sumajflow.config;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Límite de peticiones HTTP en curso para el modo con hilos virtuales (spring.threads.virtual.enabled).
+ * Con hilos de plataforma el tope lo pone el pool de Tomcat; con hilos virtuales cada petición tiene su hilo
+ * y miles de ellas terminarían esperando una conexión del pool JDBC (10) hasta el timeout de Hikari.
+ * Aquí esperan un permiso un tiempo acotado y, si no llega, reciben 503 con Retry-After.
+ * Las conexiones WebSocket/SockJS no pasan por el límite: sus peticiones duran lo que la sesión.
+ */
+@Slf4j
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE)
+@ConditionalOnProperty(name = "spring.threads.virtual.enabled", havingValue = "true")
+@RequiredArgsConstructor
+public class LimiteConcurrenciaFilter extends OncePerRequestFilter {
+
+    private final MeterRegistry meterRegistry;
+
+    @Value("${concurrencia.http.max-en-curso:40}")
+    private int maxEnCurso;
+
+    @Value("${concurrencia.http.espera-maxima:PT2S}")
+    private Duration esperaMaxima;
+
+    private Semaphore permisos;
+    private Counter rechazadas;
+    private Timer espera;
+
+    @PostConstruct
+    public void iniciar() {
+        permisos = new Semaphore(maxEnCurso, true);
+
+        Gauge.builder("concurrencia.http.en-curso", permisos, p -> maxEnCurso - p.availablePermits())
+                .description("Peticiones HTTP atendiéndose bajo el límite de concurrencia")
+                .register(meterRegistry);
+        rechazadas = Counter.builder("concurrencia.http.rechazadas")
+                .description("Peticiones rechazadas con 503 por esperar demasiado un permiso")
+                .register(meterRegistry);
+        espera = Timer.builder("concurrencia.http.espera")
+                .description("Espera de las peticiones por un permiso")
+                .publishPercentiles(0.5, 0.95, 0.99)
+                .register(meterRegistry);
+
+        log.info("🧵 Hilos virtuales activos - Peticiones HTTP en curso: máx. {}, espera: {}", maxEnCurso, esperaMaxima);
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        String ruta = request.getRequestURI().substring(request.getContextPath().length());
+        return ruta.startsWith("/ws") || ruta.startsWith("/actuator");
+    }
+
+    @Override
+    protected void doFilterInternal(
+            HttpServletRequest request,
+            HttpServletResponse response,
+            FilterChain filterChain
+    ) throws ServletException, IOException {
+        long inicio = System.nanoTime();
+        boolean adquirido;
+        try {
+            adquirido = permisos.tryAcquire(esperaMaxima.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            adquirido = false;
+        }
+        espera.record(System.nanoTime() - inicio, TimeUnit.NANOSECONDS);
+
+        if (!adquirido) {
+            rechazadas.increment();
+            log.warn("⚠️ Petición rechazada por límite de concurrencia: {} {}", request.getMethod(), request.getRequestURI());
+            response.setStatus(HttpStatus.SERVICE_UNAVAILABLE.value());
+            response.setHeader(HttpHeaders.RETRY_AFTER, "2");
+            response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+            response.setCharacterEncoding("UTF-8");
+            response.getWriter().write("{\"success\":false,\"message\":\"Servidor saturado, reintente en unos segundos\"}");
+            return;
+        }
+
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            permisos.release();
+        }
+    }
+}
@@ -9,11 +9,11 @@ import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
 import org.springframework.messaging.support.ChannelInterceptor;
 import org.springframework.messaging.support.MessageHeaderAccessor;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
-import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.stereotype.Component;
 import ucb.edu.bo.sumajflow.utils.JwtUtil;
+import ucb.edu.bo.sumajflow.utils.UsuarioAutenticado;
 
-import java.util.Collections;
+import java.util.Optional;
 
 @Slf4j
 @Component
@@ -33,21 +33,21 @@ public class WebSocketChannelInterceptor implements ChannelInterceptor {
                 String token = authHeader.substring(7);
 
                 try {
-                    if (jwtUtil.validateToken(token)) {
-                        String correo = jwtUtil.extractCorreo(token);
-                        String rol = jwtUtil.extractRol(token);
-                        Integer usuarioId = jwtUtil.extractUsuarioId(token);
+                    Optional<UsuarioAutenticado> usuario = jwtUtil.autenticarAcceso(token);
+                    if (usuario.isPresent()) {
+                        Integer usuarioId = usuario.get().usuarioId();
 
+                        // El nombre del principal es el ID: /user/{id}/queue/... depende de ello
                         UsernamePasswordAuthenticationToken authentication =
                                 new UsernamePasswordAuthenticationToken(
                                         usuarioId.toString(),
                                         null,
-                                        Collections.singletonList(new SimpleGrantedAuthority("ROLE_" + rol.toUpperCase()))
+                                        usuario.get().autoridades()
                                 );
 
                         accessor.setUser(authentication);
                         log.info("✅ WebSocket autenticado - Principal Name (ID): {}", usuarioId);
-                        } else {
+                    } else {
                         log.warn("⚠️ Token JWT inválido en WebSocket");
                     }
                 } catch (Exception e) {
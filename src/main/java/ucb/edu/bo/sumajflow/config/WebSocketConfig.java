@@ -1,16 +1,20 @@
 package ucb.edu.bo.sumajflow.config;
 
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.messaging.simp.config.ChannelRegistration;
 import org.springframework.messaging.simp.config.MessageBrokerRegistry;
 import org.springframework.scheduling.TaskScheduler;
 import org.springframework.scheduling.annotation.EnableScheduling;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
 import org.springframework.web.socket.config.annotation.*;
 import org.springframework.web.socket.server.standard.ServletServerContainerFactoryBean;
 
+@Slf4j
 @Configuration
 @EnableWebSocketMessageBroker
 @EnableScheduling
@@ -19,6 +23,33 @@ public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
 
     private final WebSocketChannelInterceptor webSocketChannelInterceptor;
 
+    @Value("${spring.threads.virtual.enabled:false}")
+    private boolean hilosVirtuales;
+
+    // Con hilos virtuales el tamaño del pool solo acota cuántos mensajes se procesan a la vez
+    @Value("${concurrencia.websocket.max-en-curso:32}")
+    private int maxEnCursoWebSocket;
+
+    // simple: broker en memoria (una sola instancia); relay: broker STOMP externo compartido por todas,
+    // con el tracking enrutado por asignación (ver EnrutamientoTrackingFilter)
+    @Value("${websocket.broker.modo:simple}")
+    private String modoBroker;
+
+    @Value("${websocket.broker.relay.host:localhost}")
+    private String relayHost;
+
+    @Value("${websocket.broker.relay.port:61613}")
+    private int relayPort;
+
+    @Value("${websocket.broker.relay.login:guest}")
+    private String relayLogin;
+
+    @Value("${websocket.broker.relay.passcode:guest}")
+    private String relayPasscode;
+
+    @Value("${websocket.broker.relay.virtual-host:}")
+    private String relayVirtualHost;
+
     @Bean
     public TaskScheduler heartBeatScheduler() {
         ThreadPoolTaskScheduler scheduler = new ThreadPoolTaskScheduler();
@@ -45,9 +76,13 @@ public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
 
     @Override
     public void configureMessageBroker(MessageBrokerRegistry config) {
-        config.enableSimpleBroker("/topic", "/queue")
-                .setHeartbeatValue(new long[]{20000, 20000}) // Aumentado a 20s para reducir colisiones
-                .setTaskScheduler(heartBeatScheduler());
+        if ("relay".equalsIgnoreCase(modoBroker)) {
+            configurarBrokerRelay(config);
+        } else {
+            config.enableSimpleBroker("/topic", "/queue")
+                    .setHeartbeatValue(new long[]{20000, 20000}) // Aumentado a 20s para reducir colisiones
+                    .setTaskScheduler(heartBeatScheduler());
+        }
 
         config.setApplicationDestinationPrefixes("/app");
         config.setUserDestinationPrefix("/user");
@@ -72,8 +107,12 @@ public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
 
     @Override
     public void configureClientInboundChannel(ChannelRegistration registration) {
+        registration.interceptors(webSocketChannelInterceptor);
+        if (hilosVirtuales) {
+            registration.taskExecutor(ejecutorVirtual("ws-inbound-"));
+            return;
+        }
         registration
-                .interceptors(webSocketChannelInterceptor)
                 .taskExecutor()
                 .corePoolSize(4)
                 .maxPoolSize(8)
@@ -82,6 +121,10 @@ public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
 
     @Override
     public void configureClientOutboundChannel(ChannelRegistration registration) {
+        if (hilosVirtuales) {
+            registration.taskExecutor(ejecutorVirtual("ws-outbound-"));
+            return;
+        }
         registration
                 .taskExecutor()
                 .corePoolSize(4)
@@ -97,4 +140,43 @@ public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
                 .setSendTimeLimit(30000) // 30 segundos (aumentado)
                 .setTimeToFirstMessage(60000); // 60 segundos (aumentado)
     }
-}
\ No newline at end of file
+
+    /**
+     * Relay STOMP hacia un broker externo (Artemis, RabbitMQ). Los mensajes a /topic y /queue de
+     * cualquier instancia llegan a los suscriptores de todas. Los destinos /user/... se resuelven
+     * entre instancias: cada una difunde sus sesiones por /topic/simp-user-registry y lo que no puede
+     * resolver localmente por /topic/unresolved-user-destination.
+     */
+    private void configurarBrokerRelay(MessageBrokerRegistry config) {
+        var relay = config.enableStompBrokerRelay("/topic", "/queue")
+                .setRelayHost(relayHost)
+                .setRelayPort(relayPort)
+                .setClientLogin(relayLogin)
+                .setClientPasscode(relayPasscode)
+                .setSystemLogin(relayLogin)
+                .setSystemPasscode(relayPasscode)
+                .setSystemHeartbeatSendInterval(20000)
+                .setSystemHeartbeatReceiveInterval(20000)
+                .setUserDestinationBroadcast("/topic/unresolved-user-destination")
+                .setUserRegistryBroadcast("/topic/simp-user-registry");
+        if (!relayVirtualHost.isBlank()) {
+            relay.setVirtualHost(relayVirtualHost);
+        }
+
+        log.info("📡 WebSocket con broker relay STOMP - {}:{}", relayHost, relayPort);
+    }
+
+    /**
+     * Ejecutor de canal STOMP sobre hilos virtuales, con un tope de mensajes en curso
+     */
+    private ThreadPoolTaskExecutor ejecutorVirtual(String prefijo) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setVirtualThreads(true);
+        executor.setThreadNamePrefix(prefijo);
+        executor.setCorePoolSize(maxEnCursoWebSocket);
+        executor.setMaxPoolSize(maxEnCursoWebSocket);
+        executor.setAllowCoreThreadTimeOut(true);
+        executor.setKeepAliveSeconds(60);
+        return executor;
+    }
+}
@@ -3,25 +3,17 @@ package ucb.edu.bo.sumajflow.config;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.context.event.EventListener;
-import org.springframework.messaging.simp.SimpMessagingTemplate;
 import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
 import org.springframework.stereotype.Component;
 import org.springframework.web.socket.messaging.*;
-
-import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledExecutorService;
-import java.util.concurrent.TimeUnit;
+import ucb.edu.bo.sumajflow.bl.PresenciaWebSocketService;
 
 @Slf4j
 @Component
 @RequiredArgsConstructor
 public class WebSocketEventListener {
 
-    private final Map<String, String> userSessions = new ConcurrentHashMap<>();
-    private final Map<String, ScheduledExecutorService> disconnectSchedulers = new ConcurrentHashMap<>();
-    private final SimpMessagingTemplate messagingTemplate;
+    private final PresenciaWebSocketService presencia;
 
     @EventListener
     public void handleWebSocketConnectListener(SessionConnectedEvent event) {
@@ -29,21 +21,8 @@ public class WebSocketEventListener {
         String sessionId = headerAccessor.getSessionId();
         String username = getUsername(headerAccessor);
 
-        // Cancelar cualquier cierre programado para este usuario
-        ScheduledExecutorService oldScheduler = disconnectSchedulers.remove(username);
-        if (oldScheduler != null) {
-            oldScheduler.shutdownNow();
-            log.debug("Cancelado cierre programado para usuario: {}", username);
-        }
-
-        String oldSession = userSessions.put(username, sessionId);
-
-        if (oldSession != null && !oldSession.equals(sessionId)) {
-            log.warn("🔄 RECONEXIÓN detectada - Usuario: {}, Nueva sesión: {}, Sesión anterior: {}",
-                    username, sessionId, oldSession);
-
-            // Dar tiempo para que la sesión anterior se cierre naturalmente
-            // antes de intentar cerrarla manualmente
+        if (presencia.conectar(sessionId, username)) {
+            log.debug("🔄 RECONEXIÓN - Usuario: {}, Sesión: {}", username, sessionId);
         } else {
             log.info("✅ WebSocket CONECTADO - Usuario: {}, Sesión: {}", username, sessionId);
         }
@@ -51,26 +30,9 @@ public class WebSocketEventListener {
 
     @EventListener
     public void handleWebSocketDisconnectListener(SessionDisconnectEvent event) {
-        StompHeaderAccessor headerAccessor = StompHeaderAccessor.wrap(event.getMessage());
-        String sessionId = headerAccessor.getSessionId();
-        String username = getUsername(headerAccessor);
-
-        // Programar limpieza después de un pequeño delay para evitar race conditions
-        ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
-        disconnectSchedulers.put(username, scheduler);
-
-        scheduler.schedule(() -> {
-            String activeSession = userSessions.get(username);
-            if (sessionId.equals(activeSession)) {
-                userSessions.remove(username);
-                log.info("🔌 WebSocket DESCONECTADO - Usuario: {}, Sesión: {}", username, sessionId);
-            } else {
-                log.debug("Sesión {} ya fue reemplazada por {} para usuario {}",
-                        sessionId, activeSession, username);
-            }
-            disconnectSchedulers.remove(username);
-            scheduler.shutdown();
-        }, 500, TimeUnit.MILLISECONDS);
+        // La salida del usuario se confirma tras el periodo de gracia, en el registro de presencia
+        presencia.desconectar(event.getSessionId());
+        log.debug("🔌 WebSocket DESCONECTADO - Sesión: {}", event.getSessionId());
     }
 
     @EventListener
@@ -79,11 +41,18 @@ public class WebSocketEventListener {
         String username = getUsername(headerAccessor);
         String destination = headerAccessor.getDestination();
 
-        log.info("📬 SUSCRIPCIÓN - Usuario: {}, Destino: {}", username, destination);
+        presencia.suscribir(headerAccessor.getSessionId(), username, headerAccessor.getSubscriptionId(), destination);
+        log.debug("📬 SUSCRIPCIÓN - Usuario: {}, Destino: {}", username, destination);
+    }
+
+    @EventListener
+    public void handleUnsubscribeEvent(SessionUnsubscribeEvent event) {
+        StompHeaderAccessor headerAccessor = StompHeaderAccessor.wrap(event.getMessage());
+        presencia.desuscribir(headerAccessor.getSessionId(), headerAccessor.getSubscriptionId());
     }
 
     private String getUsername(StompHeaderAccessor headerAccessor) {
         return headerAccessor.getUser() != null ?
                 headerAccessor.getUser().getName() : "anonymous";
     }
-}
\ No newline at end of file
+}
@@ -1,12 +1,14 @@
 package ucb.edu.bo.sumajflow.controller.comercializadora;
 
 import lombok.RequiredArgsConstructor;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import ucb.edu.bo.sumajflow.bl.NotificacionBl;
 import ucb.edu.bo.sumajflow.utils.JwtUtil;
 
+import java.time.LocalDateTime;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -21,6 +23,7 @@ public class NotificacionesComercializadoraController {
     /**
      * Obtener todas las notificaciones con filtros
      * GET /cooperativa/notificaciones?soloNoLeidas=true&tipo=info&page=0&size=20
+     * Con cursorFecha y cursorId (fecha e id de la última notificación recibida) pagina por keyset, sin COUNT
      */
     @GetMapping
     public ResponseEntity<Map<String, Object>> obtenerNotificaciones(
@@ -28,7 +31,9 @@ public class NotificacionesComercializadoraController {
             @RequestParam(required = false) Boolean soloNoLeidas,
             @RequestParam(required = false) String tipo,
             @RequestParam(defaultValue = "0") Integer page,
-            @RequestParam(defaultValue = "20") Integer size
+            @RequestParam(defaultValue = "20") Integer size,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime cursorFecha,
+            @RequestParam(required = false) Integer cursorId
     ) {
         Map<String, Object> response = new HashMap<>();
 
@@ -36,7 +41,7 @@ public class NotificacionesComercializadoraController {
             Integer usuarioId = extractUsuarioId(token);
 
             Map<String, Object> resultado = notificacionBl.obtenerNotificacionesPaginadas(
-                    usuarioId, soloNoLeidas, tipo, page, size
+                    usuarioId, soloNoLeidas, tipo, page, size, cursorFecha, cursorId
             );
 
             response.put("success", true);
@@ -170,6 +170,8 @@ public class VentaComercializadoraController {
     /**
      * Listar ventas de la comercializadora con filtros
      * GET /comercializadora/ventas
+     * Con cursorFecha y cursorId (createdAt e id de la última fila recibida) pagina por keyset;
+     * incluirTotal=false evita el COUNT
      */
     @GetMapping
     public ResponseEntity<Map<String, Object>> listarVentas(
@@ -179,6 +181,9 @@ public class VentaComercializadoraController {
             @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime fechaHasta,
             @RequestParam(defaultValue = "0") int page,
             @RequestParam(defaultValue = "10") int size,
+            @RequestParam(defaultValue = "true") boolean incluirTotal,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime cursorFecha,
+            @RequestParam(required = false) Integer cursorId,
             @RequestHeader("Authorization") String token
     ) {
         Map<String, Object> response = new HashMap<>();
@@ -186,7 +191,7 @@ public class VentaComercializadoraController {
         try {
             Integer usuarioId = extractUsuarioId(token);
             Page<VentaLiquidacionResponseDto> ventas = ventaComercializadoraBl.listarVentas(
-                    usuarioId, estado, tipoLiquidacion, fechaDesde, fechaHasta, page, size);
+                    usuarioId, estado, tipoLiquidacion, fechaDesde, fechaHasta, page, size, incluirTotal, cursorFecha, cursorId);
 
             response.put("success", true);
             response.put("data", ventas.getContent());
@@ -194,6 +199,7 @@ public class VentaComercializadoraController {
             response.put("totalPages", ventas.getTotalPages());
             response.put("currentPage", ventas.getNumber());
             response.put("pageSize", ventas.getSize());
+            response.put("hasNext", ventas.hasNext());
             return ResponseEntity.ok(response);
 
         } catch (Exception e) {
@@ -25,6 +25,8 @@ public class LiquidacionIngenioController {
     /**
      * Listar liquidaciones de Toll del ingenio
      * GET /ingenio/liquidaciones/toll
+     * Con cursorFecha y cursorId (createdAt e id de la última fila recibida) pagina por keyset;
+     * incluirTotal=false evita el COUNT
      */
     @GetMapping("/toll")
     public ResponseEntity<Map<String, Object>> listarLiquidacionesToll(
@@ -33,6 +35,9 @@ public class LiquidacionIngenioController {
             @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime fechaHasta,
             @RequestParam(defaultValue = "0") int page,
             @RequestParam(defaultValue = "10") int size,
+            @RequestParam(defaultValue = "true") boolean incluirTotal,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime cursorFecha,
+            @RequestParam(required = false) Integer cursorId,
             @RequestHeader("Authorization") String token
     ) {
         Map<String, Object> response = new HashMap<>();
@@ -41,7 +46,7 @@ public class LiquidacionIngenioController {
             Integer usuarioId = extractUsuarioId(token);
 
             Page<LiquidacionTollResponseDto> liquidaciones = liquidacionTollIngenioBl.listarLiquidacionesToll(
-                    usuarioId, estado, fechaDesde, fechaHasta, page, size
+                    usuarioId, estado, fechaDesde, fechaHasta, page, size, incluirTotal, cursorFecha, cursorId
             );
 
             response.put("success", true);
@@ -50,6 +55,7 @@ public class LiquidacionIngenioController {
             response.put("totalPages", liquidaciones.getTotalPages());
             response.put("currentPage", liquidaciones.getNumber());
             response.put("pageSize", liquidaciones.getSize());
+            response.put("hasNext", liquidaciones.hasNext());
 
             return ResponseEntity.ok(response);
 
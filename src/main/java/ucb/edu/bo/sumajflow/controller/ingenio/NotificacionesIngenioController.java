@@ -1,5 +1,6 @@
 package ucb.edu.bo.sumajflow.controller.ingenio;
 import lombok.RequiredArgsConstructor;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
@@ -7,6 +8,7 @@ import ucb.edu.bo.sumajflow.bl.NotificacionBl;
 import ucb.edu.bo.sumajflow.dto.NotificacionDto;
 import ucb.edu.bo.sumajflow.utils.JwtUtil;
 
+import java.time.LocalDateTime;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -22,6 +24,7 @@ public class NotificacionesIngenioController {
     /**
      * Obtener todas las notificaciones con filtros
      * GET /ingenio/notificaciones?soloNoLeidas=true&tipo=info&page=0&size=20
+     * Con cursorFecha y cursorId (fecha e id de la última notificación recibida) pagina por keyset, sin COUNT
      */
     @GetMapping
     public ResponseEntity<Map<String, Object>> obtenerNotificaciones(
@@ -29,7 +32,9 @@ public class NotificacionesIngenioController {
             @RequestParam(required = false) Boolean soloNoLeidas,
             @RequestParam(required = false) String tipo,
             @RequestParam(defaultValue = "0") Integer page,
-            @RequestParam(defaultValue = "20") Integer size
+            @RequestParam(defaultValue = "20") Integer size,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime cursorFecha,
+            @RequestParam(required = false) Integer cursorId
     ) {
         Map<String, Object> response = new HashMap<>();
 
@@ -37,7 +42,7 @@ public class NotificacionesIngenioController {
             Integer usuarioId = extractUsuarioId(token);
 
             Map<String, Object> resultado = notificacionBl.obtenerNotificacionesPaginadas(
-                    usuarioId, soloNoLeidas, tipo, page, size
+                    usuarioId, soloNoLeidas, tipo, page, size, cursorFecha, cursorId
             );
 
             response.put("success", true);
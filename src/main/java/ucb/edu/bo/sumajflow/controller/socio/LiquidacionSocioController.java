@@ -29,6 +29,8 @@ public class LiquidacionSocioController {
     /**
      * Listar liquidaciones de Toll del socio
      * GET /socio/liquidaciones/toll
+     * Con cursorFecha y cursorId (createdAt e id de la última fila recibida) pagina por keyset;
+     * incluirTotal=false evita el COUNT
      */
     @GetMapping("/toll")
     public ResponseEntity<Map<String, Object>> listarLiquidacionesToll(
@@ -37,6 +39,9 @@ public class LiquidacionSocioController {
             @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime fechaHasta,
             @RequestParam(defaultValue = "0") int page,
             @RequestParam(defaultValue = "10") int size,
+            @RequestParam(defaultValue = "true") boolean incluirTotal,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime cursorFecha,
+            @RequestParam(required = false) Integer cursorId,
             @RequestHeader("Authorization") String token
     ) {
         Map<String, Object> response = new HashMap<>();
@@ -45,7 +50,7 @@ public class LiquidacionSocioController {
             Integer usuarioId = extractUsuarioId(token);
 
             Page<LiquidacionTollResponseDto> liquidaciones = liquidacionTollSocioBl.listarLiquidacionesToll(
-                    usuarioId, estado, fechaDesde, fechaHasta, page, size
+                    usuarioId, estado, fechaDesde, fechaHasta, page, size, incluirTotal, cursorFecha, cursorId
             );
 
             response.put("success", true);
@@ -54,6 +59,7 @@ public class LiquidacionSocioController {
             response.put("totalPages", liquidaciones.getTotalPages());
             response.put("currentPage", liquidaciones.getNumber());
             response.put("pageSize", liquidaciones.getSize());
+            response.put("hasNext", liquidaciones.hasNext());
 
             return ResponseEntity.ok(response);
 
@@ -1,6 +1,7 @@
 package ucb.edu.bo.sumajflow.controller.socio;
 
 import lombok.RequiredArgsConstructor;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
@@ -8,6 +9,7 @@ import ucb.edu.bo.sumajflow.bl.NotificacionBl;
 import ucb.edu.bo.sumajflow.dto.NotificacionDto;
 import ucb.edu.bo.sumajflow.utils.JwtUtil;
 
+import java.time.LocalDateTime;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -24,6 +26,7 @@ public class NotificacionesSocioController {
     /**
      * Obtener todas las notificaciones con filtros
      * GET /socio/notificaciones?soloNoLeidas=true&tipo=info&page=0&size=20
+     * Con cursorFecha y cursorId (fecha e id de la última notificación recibida) pagina por keyset, sin COUNT
      */
     @GetMapping
     public ResponseEntity<Map<String, Object>> obtenerNotificaciones(
@@ -31,7 +34,9 @@ public class NotificacionesSocioController {
             @RequestParam(required = false) Boolean soloNoLeidas,
             @RequestParam(required = false) String tipo,
             @RequestParam(defaultValue = "0") Integer page,
-            @RequestParam(defaultValue = "20") Integer size
+            @RequestParam(defaultValue = "20") Integer size,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime cursorFecha,
+            @RequestParam(required = false) Integer cursorId
     ) {
         Map<String, Object> response = new HashMap<>();
 
@@ -39,7 +44,7 @@ public class NotificacionesSocioController {
             Integer usuarioId = extractUsuarioId(token);
 
             Map<String, Object> resultado = notificacionBl.obtenerNotificacionesPaginadas(
-                    usuarioId, soloNoLeidas, tipo, page, size
+                    usuarioId, soloNoLeidas, tipo, page, size, cursorFecha, cursorId
             );
 
             response.put("success", true);
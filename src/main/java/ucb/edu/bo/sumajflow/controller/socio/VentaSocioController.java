@@ -171,6 +171,8 @@ public class VentaSocioController {
     /**
      * Listar ventas del socio con filtros
      * GET /socio/ventas
+     * Con cursorFecha y cursorId (createdAt e id de la última fila recibida) pagina por keyset;
+     * incluirTotal=false evita el COUNT
      */
     @GetMapping
     public ResponseEntity<Map<String, Object>> listarVentas(
@@ -180,6 +182,9 @@ public class VentaSocioController {
             @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime fechaHasta,
             @RequestParam(defaultValue = "0") int page,
             @RequestParam(defaultValue = "10") int size,
+            @RequestParam(defaultValue = "true") boolean incluirTotal,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime cursorFecha,
+            @RequestParam(required = false) Integer cursorId,
             @RequestHeader("Authorization") String token
     ) {
         Map<String, Object> response = new HashMap<>();
@@ -187,7 +192,7 @@ public class VentaSocioController {
         try {
             Integer usuarioId = extractUsuarioId(token);
             Page<VentaLiquidacionResponseDto> ventas = ventaSocioBl.listarVentas(
-                    usuarioId, estado, tipoLiquidacion, fechaDesde, fechaHasta, page, size);
+                    usuarioId, estado, tipoLiquidacion, fechaDesde, fechaHasta, page, size, incluirTotal, cursorFecha, cursorId);
 
             response.put("success", true);
             response.put("data", ventas.getContent());
@@ -195,6 +200,7 @@ public class VentaSocioController {
             response.put("totalPages", ventas.getTotalPages());
             response.put("currentPage", ventas.getNumber());
             response.put("pageSize", ventas.getSize());
+            response.put("hasNext", ventas.hasNext());
             return ResponseEntity.ok(response);
 
         } catch (Exception e) {
@@ -1,16 +1,25 @@
 package ucb.edu.bo.sumajflow.controller.tracking;
 
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.RuntimeJsonMappingException;
+import jakarta.servlet.http.HttpServletRequest;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import ucb.edu.bo.sumajflow.bl.tracking.TrackingBl;
+import ucb.edu.bo.sumajflow.config.EnrutamientoTrackingFilter;
 import ucb.edu.bo.sumajflow.dto.tracking.*;
 
+import java.io.IOException;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.RejectedExecutionException;
 
 /**
  * Controlador REST para operaciones de tracking GPS
@@ -23,6 +32,7 @@ import java.util.Map;
 public class TrackingController {
 
     private final TrackingBl trackingBl;
+    private final ObjectMapper objectMapper;
 
     // ==================== INICIAR TRACKING ====================
 
@@ -94,11 +104,13 @@ public class TrackingController {
     @PostMapping("/ubicacion")
     public ResponseEntity<Map<String, Object>> actualizarUbicacion(
             @Valid @RequestBody ActualizarUbicacionDto dto,
+            @RequestHeader(value = EnrutamientoTrackingFilter.CABECERA_ASIGNACION, required = false) Integer asignacionEnrutada,
             @RequestHeader("Authorization") String token) {
 
         Map<String, Object> response = new HashMap<>();
 
         try {
+            verificarEnrutamiento(asignacionEnrutada, dto.getAsignacionCamionId());
             log.debug("Actualizando ubicación - Asignación: {}, Lat: {}, Lng: {}",
                     dto.getAsignacionCamionId(), dto.getLat(), dto.getLng());
 
@@ -115,6 +127,14 @@ public class TrackingController {
             response.put("message", e.getMessage());
             return ResponseEntity.badRequest().body(response);
 
+        } catch (RejectedExecutionException e) {
+            log.warn("Ingesta de ubicaciones saturada - Asignación: {}", dto.getAsignacionCamionId());
+            response.put("success", false);
+            response.put("message", e.getMessage());
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .header(HttpHeaders.RETRY_AFTER, "2")
+                    .body(response);
+
         } catch (Exception e) {
             log.error("Error al actualizar ubicación", e);
             response.put("success", false);
@@ -141,11 +161,13 @@ public class TrackingController {
     @PostMapping("/sincronizar")
     public ResponseEntity<Map<String, Object>> sincronizarUbicaciones(
             @Valid @RequestBody SincronizarUbicacionesDto dto,
+            @RequestHeader(value = EnrutamientoTrackingFilter.CABECERA_ASIGNACION, required = false) Integer asignacionEnrutada,
             @RequestHeader("Authorization") String token) {
 
         Map<String, Object> response = new HashMap<>();
 
         try {
+            verificarEnrutamiento(asignacionEnrutada, dto.getAsignacionCamionId());
             log.info("Sincronizando {} ubicaciones para asignación ID: {}",
                     dto.getUbicaciones().size(), dto.getAsignacionCamionId());
 
@@ -172,6 +194,64 @@ public class TrackingController {
         }
     }
 
+    /**
+     * Sincroniza backlogs grandes en streaming (una ubicación JSON por línea)
+     * POST /tracking/sincronizar/stream?asignacionCamionId=15
+     * Content-Type: application/x-ndjson
+     *
+     * Body:
+     * {"lat": -19.5836, "lng": -65.7531, "timestamp": "2025-01-07T14:30:00", ...}
+     * {"lat": -19.5840, "lng": -65.7535, "timestamp": "2025-01-07T14:30:30", ...}
+     *
+     * Las ubicaciones deben venir en orden cronológico; se persisten por lotes y
+     * reintentar el mismo envío no duplica puntos.
+     */
+    @PostMapping(value = "/sincronizar/stream", consumes = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<Map<String, Object>> sincronizarUbicacionesStream(
+            @RequestParam Integer asignacionCamionId,
+            HttpServletRequest request,
+            @RequestHeader(value = EnrutamientoTrackingFilter.CABECERA_ASIGNACION, required = false) Integer asignacionEnrutada,
+            @RequestHeader("Authorization") String token) {
+
+        Map<String, Object> response = new HashMap<>();
+
+        try (MappingIterator<UbicacionOfflineDto> ubicaciones = objectMapper
+                .readerFor(UbicacionOfflineDto.class)
+                .readValues(request.getInputStream())) {
+
+            verificarEnrutamiento(asignacionEnrutada, asignacionCamionId);
+
+            log.info("Sincronizando ubicaciones en streaming para asignación ID: {}", asignacionCamionId);
+
+            SincronizacionResponseDto resultado = trackingBl.sincronizarUbicacionesOffline(
+                    asignacionCamionId,
+                    ubicaciones);
+
+            response.put("success", resultado.getSuccess());
+            response.put("data", resultado);
+
+            return ResponseEntity.ok(response);
+
+        } catch (IllegalArgumentException e) {
+            log.warn("Error de validación al sincronizar: {}", e.getMessage());
+            response.put("success", false);
+            response.put("message", e.getMessage());
+            return ResponseEntity.badRequest().body(response);
+
+        } catch (RuntimeJsonMappingException | IOException e) {
+            log.warn("Cuerpo NDJSON inválido al sincronizar: {}", e.getMessage());
+            response.put("success", false);
+            response.put("message", "Formato de ubicaciones inválido: " + e.getMessage());
+            return ResponseEntity.badRequest().body(response);
+
+        } catch (Exception e) {
+            log.error("Error al sincronizar ubicaciones", e);
+            response.put("success", false);
+            response.put("message", "Error interno del servidor: " + e.getMessage());
+            return ResponseEntity.internalServerError().body(response);
+        }
+    }
+
     // ==================== PUNTOS DE CONTROL ====================
 
     /**
@@ -324,17 +404,25 @@ public class TrackingController {
 
     /**
      * Obtiene el historial de ubicaciones de una asignación
-     * GET /tracking/asignacion/{asignacionId}/historial
+     * GET /tracking/asignacion/{asignacionId}/historial?tolerancia=15&algoritmo=visvalingam&formato=polyline
+     *
+     * tolerancia: metros de desviación permitida al simplificar (sin parámetro = todos los puntos)
+     * algoritmo: douglas-peucker (por defecto) | visvalingam
+     * formato: puntos (por defecto) | polyline
      */
     @GetMapping("/asignacion/{asignacionId}/historial")
     public ResponseEntity<Map<String, Object>> getHistorialUbicaciones(
             @PathVariable Integer asignacionId,
+            @RequestParam(required = false) Double tolerancia,
+            @RequestParam(required = false) String algoritmo,
+            @RequestParam(required = false) String formato,
             @RequestHeader("Authorization") String token) {
 
         Map<String, Object> response = new HashMap<>();
 
         try {
-            HistorialUbicacionesDto historial = trackingBl.getHistorialUbicaciones(asignacionId);
+            HistorialUbicacionesDto historial = trackingBl.getHistorialUbicaciones(
+                    asignacionId, tolerancia, algoritmo, formato);
 
             response.put("success", true);
             response.put("data", historial);
@@ -354,15 +442,23 @@ public class TrackingController {
         }
     }
 
+    /**
+     * Historial agrupado por estado del viaje, con los mismos parámetros de simplificación que /historial
+     * GET /tracking/asignacion/{asignacionId}/historial-por-estado
+     */
     @GetMapping("/asignacion/{asignacionId}/historial-por-estado")
     public ResponseEntity<Map<String, Object>> getHistorialPorEstado(
             @PathVariable Integer asignacionId,
+            @RequestParam(required = false) Double tolerancia,
+            @RequestParam(required = false) String algoritmo,
+            @RequestParam(required = false) String formato,
             @RequestHeader("Authorization") String token) {
 
         Map<String, Object> response = new HashMap<>();
 
         try {
-            HistorialPorEstadoDto historial = trackingBl.getHistorialPorEstado(asignacionId);
+            HistorialPorEstadoDto historial = trackingBl.getHistorialPorEstado(
+                    asignacionId, tolerancia, algoritmo, formato);
 
             response.put("success", true);
             response.put("data", historial);
@@ -439,4 +535,16 @@ public class TrackingController {
             return ResponseEntity.internalServerError().body(response);
         }
     }
+
+    // ==================== MÉTODOS PRIVADOS ====================
+
+    /**
+     * La clave de enrutamiento (modo relay) debe ser la misma asignación de la petición
+     */
+    private void verificarEnrutamiento(Integer asignacionEnrutada, Integer asignacionCamionId) {
+        if (asignacionEnrutada != null && !asignacionEnrutada.equals(asignacionCamionId)) {
+            throw new IllegalArgumentException("La cabecera " + EnrutamientoTrackingFilter.CABECERA_ASIGNACION
+                    + " no coincide con la asignación " + asignacionCamionId);
+        }
+    }
 }
\ No newline at end of file
@@ -0,0 +1,41 @@
+package ucb.edu.bo.sumajflow.controller.tracking;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.messaging.handler.annotation.DestinationVariable;
+import org.springframework.messaging.simp.annotation.SubscribeMapping;
+import org.springframework.stereotype.Controller;
+import ucb.edu.bo.sumajflow.bl.tracking.TrackingBl;
+import ucb.edu.bo.sumajflow.dto.tracking.MonitoreoLoteDto;
+import ucb.edu.bo.sumajflow.dto.tracking.TrackingResponseDto;
+
+/**
+ * Snapshot inicial de tracking por WebSocket.
+ * El cliente se suscribe a /app/tracking/... una vez para recibir el estado completo
+ * y luego escucha los deltas de posición en /topic/tracking/...
+ */
+@Slf4j
+@Controller
+@RequiredArgsConstructor
+public class TrackingWebSocketController {
+
+    private final TrackingBl trackingBl;
+
+    /**
+     * SUBSCRIBE /app/tracking/camion/{asignacionCamionId}
+     */
+    @SubscribeMapping("/tracking/camion/{asignacionCamionId}")
+    public TrackingResponseDto snapshotCamion(@DestinationVariable Integer asignacionCamionId) {
+        log.debug("📸 Snapshot de tracking solicitado - Camión: {}", asignacionCamionId);
+        return trackingBl.getTrackingByAsignacion(asignacionCamionId);
+    }
+
+    /**
+     * SUBSCRIBE /app/tracking/lote/{loteId}
+     */
+    @SubscribeMapping("/tracking/lote/{loteId}")
+    public MonitoreoLoteDto snapshotLote(@DestinationVariable Integer loteId) {
+        log.debug("📸 Snapshot de monitoreo solicitado - Lote: {}", loteId);
+        return trackingBl.getMonitoreoLote(loteId);
+    }
+}
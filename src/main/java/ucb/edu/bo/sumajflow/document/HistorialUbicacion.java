@@ -0,0 +1,42 @@
+package ucb.edu.bo.sumajflow.document;
+
+import lombok.*;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.TimeSeries;
+import org.springframework.data.mongodb.core.timeseries.Granularity;
+
+import java.time.LocalDateTime;
+
+/**
+ * Punto del historial GPS de un viaje.
+ * Se guarda en una colección time-series separada (append-only) para que el documento
+ * principal de tracking no crezca con la duración del viaje.
+ */
+@TimeSeries(
+        collection = "tracking_historial",
+        timeField = "timestamp",
+        metaField = "asignacionCamionId",
+        granularity = Granularity.SECONDS)
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class HistorialUbicacion {
+
+    @Id
+    private String id;
+
+    private Integer asignacionCamionId;
+    private Integer loteId;
+
+    private Double lat;
+    private Double lng;
+    private LocalDateTime timestamp;
+    private Double precision;
+    private Double velocidad;
+    private Double rumbo;
+    private Double altitud;
+    private Boolean sincronizado;
+    private Boolean esOffline;
+    private String estadoViaje;
+}
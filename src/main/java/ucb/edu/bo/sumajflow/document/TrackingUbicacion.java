@@ -10,14 +10,21 @@ import org.springframework.data.mongodb.core.mapping.Document;
 
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
+/**
+ * Documento principal de tracking de un viaje: ubicación actual, puntos de control y métricas.
+ * El historial GPS se guarda aparte en {@link HistorialUbicacion}.
+ */
 @Document(collection = "tracking_ubicaciones")
 @Data
 @Builder
 @NoArgsConstructor
 @AllArgsConstructor
 @CompoundIndex(name = "lote_transportista_idx", def = "{'loteId': 1, 'transportistaId': 1}")
+@CompoundIndex(name = "sincronizacion_estado_idx", def = "{'ultimaSincronizacion': 1, 'estadoViaje': 1}")
 public class TrackingUbicacion {
 
     @Id
@@ -38,9 +45,6 @@ public class TrackingUbicacion {
 
     private UbicacionActual ubicacionActual;
 
-    @Builder.Default
-    private List<PuntoUbicacion> historialUbicaciones = new ArrayList<>();
-
     private String estadoViaje;
 
     @Builder.Default
@@ -48,6 +52,9 @@ public class TrackingUbicacion {
 
     private LocalDateTime ultimaSincronizacion;
 
+    // Marca del último flush de ingesta aplicado; un reintento con la misma marca no vuelve a sumar métricas
+    private Long marcaIngesta;
+
     @Builder.Default
     private List<PuntoControl> puntosControl = new ArrayList<>();
 
@@ -79,23 +86,6 @@ public class TrackingUbicacion {
         private Double altitud;
     }
 
-    @Data
-    @Builder
-    @NoArgsConstructor
-    @AllArgsConstructor
-    public static class PuntoUbicacion {
-        private Double lat;
-        private Double lng;
-        private LocalDateTime timestamp;
-        private Double precision;
-        private Double velocidad;
-        private Double rumbo;
-        private Double altitud;
-        private Boolean sincronizado;
-        private Boolean esOffline;
-        private String estadoViaje;
-    }
-
     @Data
     @Builder
     @NoArgsConstructor
@@ -111,6 +101,16 @@ public class TrackingUbicacion {
         private LocalDateTime llegada;
         private LocalDateTime salida;
         private String estado;
+        private List<Vertice> poligono;  // Zona poligonal opcional (p. ej. sector de la mina), además del radio
+    }
+
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Vertice {
+        private Double lat;
+        private Double lng;
     }
 
     @Data
@@ -130,6 +130,31 @@ public class TrackingUbicacion {
         private Double velocidadMaxima = 0.0;
         private LocalDateTime inicioViaje;
         private LocalDateTime finViaje;
+
+        // Acumulados por estadoViaje, en el orden en que se recorrieron
+        @Builder.Default
+        private Map<String, MetricasSegmento> segmentos = new LinkedHashMap<>();
+    }
+
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class MetricasSegmento {
+        @Builder.Default
+        private Double distanciaRecorrida = 0.0;
+        @Builder.Default
+        private Long tiempoEnMovimiento = 0L;
+        @Builder.Default
+        private Long tiempoDetenido = 0L;
+        @Builder.Default
+        private Double velocidadMaxima = 0.0;
+        @Builder.Default
+        private Integer totalUbicaciones = 0;
+        @Builder.Default
+        private Integer ubicacionesOffline = 0;
+        private LocalDateTime inicio;
+        private LocalDateTime fin;
     }
 
     @Data
@@ -0,0 +1,15 @@
+package ucb.edu.bo.sumajflow.dto.comercializadora;
+
+import java.math.BigDecimal;
+
+/**
+ * Fila agregada de compras pagadas por mes (yyyy-MM) y tipo de liquidación
+ */
+public interface ComprasMesProyeccion {
+    String getMes();
+    String getTipoLiquidacion();
+    Long getCantidad();
+    BigDecimal getValorNetoBob();
+    BigDecimal getPesoFinal();
+    BigDecimal getPesoTmh();
+}
@@ -0,0 +1,14 @@
+package ucb.edu.bo.sumajflow.dto.comercializadora;
+
+import java.math.BigDecimal;
+
+/**
+ * Fila agregada de compras pagadas por socio
+ */
+public interface ComprasSocioProyeccion {
+    Integer getSocioId();
+    Integer getUsuarioId();
+    Long getCantidad();
+    BigDecimal getValorNetoBob();
+    BigDecimal getPesoFinal();
+}
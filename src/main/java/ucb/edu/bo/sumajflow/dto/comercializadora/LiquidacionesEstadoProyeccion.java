@@ -0,0 +1,13 @@
+package ucb.edu.bo.sumajflow.dto.comercializadora;
+
+import java.math.BigDecimal;
+
+/**
+ * Cantidad y valor neto de liquidaciones agrupadas por tipo y estado
+ */
+public interface LiquidacionesEstadoProyeccion {
+    String getTipoLiquidacion();
+    String getEstado();
+    Long getCantidad();
+    BigDecimal getValorNetoBob();
+}
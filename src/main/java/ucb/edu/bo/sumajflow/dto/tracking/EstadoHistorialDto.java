@@ -21,4 +21,5 @@ public class EstadoHistorialDto {
     private Double velocidadMaximaKmH;
     private Integer ubicacionesOffline;
     private List<UbicacionDto> ubicaciones;
+    private String polyline;  // Solo con formato=polyline (en lugar de ubicaciones)
 }
@@ -15,6 +15,8 @@ import java.util.List; /**
 public class HistorialUbicacionesDto {
     private Integer asignacionCamionId;
     private Integer totalPuntos;
+    private Integer puntosOriginales;
     private List<UbicacionDto> ubicaciones;
+    private String polyline;  // Solo con formato=polyline (en lugar de ubicaciones)
     private RutaResumenDto resumen;
 }
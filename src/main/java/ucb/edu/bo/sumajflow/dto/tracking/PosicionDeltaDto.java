@@ -0,0 +1,42 @@
+package ucb.edu.bo.sumajflow.dto.tracking;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * DTO compacto enviado por WebSocket en cada ping.
+ * Solo lleva la posición y los campos que cambiaron desde el último envío;
+ * el snapshot completo (TrackingResponseDto) se envía al suscribirse o en cambios de estado.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class PosicionDeltaDto {
+
+    public static final String TIPO = "delta";
+
+    @Builder.Default
+    private String tipo = TIPO;
+
+    private Integer asignacionCamionId;
+    private Integer loteId;
+
+    // Posición
+    private Double lat;
+    private Double lng;
+    private Double velocidad;
+    private Double rumbo;
+    private LocalDateTime timestamp;
+
+    // Solo presentes si cambiaron
+    private String estadoConexion;
+    private Double distanciaRecorrida;
+    private Double velocidadMaxima;
+}
@@ -26,6 +26,9 @@ public class ResumenFinalTrackingDto {
     // Métricas del viaje
     private MetricasViajeDto metricas;
 
+    // Métricas acumuladas por estado del viaje (sin trayectoria)
+    private List<EstadoHistorialDto> metricasPorEstado;
+
     // Puntos de control
     private List<PuntoControlDto> puntosControl;
 
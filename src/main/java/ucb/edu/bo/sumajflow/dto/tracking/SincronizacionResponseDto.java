@@ -16,6 +16,7 @@ import java.util.List; /**
 public class SincronizacionResponseDto {
     private Boolean success;
     private Integer ubicacionesSincronizadas;
+    private Integer ubicacionesDuplicadas;
     private Integer ubicacionesFallidas;
     private List<String> errores;
     private LocalDateTime ultimaSincronizacion;
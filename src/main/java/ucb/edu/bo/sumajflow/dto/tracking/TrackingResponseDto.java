@@ -9,7 +9,8 @@ import java.time.LocalDateTime;
 import java.util.List;
 
 /**
- * DTO de respuesta con información completa del tracking
+ * DTO de respuesta con información completa del tracking.
+ * Por WebSocket comparte topic con PosicionDeltaDto; el cliente los distingue por tipo.
  */
 @Data
 @Builder
@@ -17,6 +18,11 @@ import java.util.List;
 @AllArgsConstructor
 public class TrackingResponseDto {
 
+    public static final String TIPO = "snapshot";
+
+    @Builder.Default
+    private String tipo = TIPO;
+
     private String id;
     private Integer asignacionCamionId;
     private Integer loteId;
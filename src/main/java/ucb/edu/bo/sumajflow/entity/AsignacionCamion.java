@@ -4,8 +4,6 @@ import jakarta.persistence.*;
 import jakarta.validation.constraints.NotNull;
 import jakarta.validation.constraints.Size;
 import lombok.*;
-import org.hibernate.annotations.JdbcTypeCode;
-import org.hibernate.type.SqlTypes;
 import org.springframework.data.annotation.CreatedDate;
 import org.springframework.data.annotation.LastModifiedDate;
 import org.springframework.data.jpa.domain.support.AuditingEntityListener;
@@ -50,10 +48,6 @@ public class AsignacionCamion implements Serializable {
     @Column(name = "fecha_fin")
     private LocalDateTime fechaFin;
 
-    @Column(name = "observaciones",  columnDefinition = "jsonb")
-    @JdbcTypeCode(SqlTypes.JSON)
-    private String observaciones;
-
     // Auditoría
     @CreatedDate
     @Column(name = "created_at", nullable = false, updatable = false)
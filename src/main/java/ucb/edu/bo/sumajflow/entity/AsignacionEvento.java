@@ -0,0 +1,59 @@
+package ucb.edu.bo.sumajflow.entity;
+
+import jakarta.persistence.*;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Size;
+import lombok.*;
+import org.hibernate.annotations.Immutable;
+import org.hibernate.annotations.JdbcTypeCode;
+import org.hibernate.type.SqlTypes;
+
+import java.io.Serializable;
+import java.time.LocalDateTime;
+
+/**
+ * Evento de un viaje (inicio, llegada a mina, pesajes, descarga...). Solo se insertan filas:
+ * la posición y la fecha van en columnas propias y el resto del evento en {@code datos}.
+ */
+@Entity
+@Immutable
+@Table(name = "asignacion_evento")
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@ToString(exclude = "asignacionCamionId")
+public class AsignacionEvento implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Integer id;
+
+    @NotNull
+    @Size(min = 1, max = 40)
+    @Column(name = "tipo_evento", nullable = false, length = 40)
+    private String tipoEvento;
+
+    @NotNull
+    @Column(name = "fecha_registro", nullable = false)
+    private LocalDateTime fechaRegistro;
+
+    @Column(name = "lat")
+    private Double lat;
+
+    @Column(name = "lng")
+    private Double lng;
+
+    @NotNull
+    @Column(name = "datos", nullable = false, columnDefinition = "jsonb")
+    @JdbcTypeCode(SqlTypes.JSON)
+    private String datos;
+
+    // Relaciones
+    @ManyToOne(fetch = FetchType.LAZY, optional = false)
+    @JoinColumn(name = "asignacion_camion_id", nullable = false)
+    private AsignacionCamion asignacionCamionId;
+}
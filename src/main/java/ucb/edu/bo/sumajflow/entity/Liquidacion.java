@@ -20,6 +20,31 @@ import java.util.Objects;
 
 @Entity
 @Table(name = "liquidacion")
+// Plan de carga del detalle: un grafo por colección (cargarlas juntas multiplicaría filas)
+@NamedEntityGraph(name = "Liquidacion.partes", attributeNodes = {
+        @NamedAttributeNode("socioId"),
+        @NamedAttributeNode("comercializadoraId")
+})
+@NamedEntityGraph(name = "Liquidacion.concentrados", attributeNodes = {
+        @NamedAttributeNode(value = "liquidacionConcentradoList", subgraph = "concentrado")
+}, subgraphs = {
+        @NamedSubgraph(name = "concentrado", attributeNodes = {
+                @NamedAttributeNode(value = "concentradoId", subgraph = "ingenio"),
+                @NamedAttributeNode("reporteQuimicoId")
+        }),
+        @NamedSubgraph(name = "ingenio", attributeNodes = @NamedAttributeNode("ingenioMineroId"))
+})
+@NamedEntityGraph(name = "Liquidacion.lotes", attributeNodes = {
+        @NamedAttributeNode(value = "liquidacionLoteList", subgraph = "lote")
+}, subgraphs = {
+        @NamedSubgraph(name = "lote", attributeNodes = {
+                @NamedAttributeNode(value = "lotesId", subgraph = "mina"),
+                @NamedAttributeNode("reporteQuimicoId")
+        }),
+        @NamedSubgraph(name = "mina", attributeNodes = @NamedAttributeNode("minasId"))
+})
+@NamedEntityGraph(name = "Liquidacion.cotizaciones", attributeNodes = @NamedAttributeNode("cotizacionesList"))
+@NamedEntityGraph(name = "Liquidacion.deducciones", attributeNodes = @NamedAttributeNode("deduccionesList"))
 @EntityListeners(AuditingEntityListener.class)
 @Getter
 @Setter
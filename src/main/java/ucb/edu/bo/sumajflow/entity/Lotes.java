@@ -15,6 +15,14 @@ import java.util.List;
 
 @Entity
 @Table(name = "lotes")
+@NamedEntityGraph(name = "Lotes.detalle", attributeNodes = {
+        @NamedAttributeNode(value = "minasId", subgraph = "mina")
+}, subgraphs = {
+        @NamedSubgraph(name = "mina", attributeNodes = {
+                @NamedAttributeNode("sectoresId"),
+                @NamedAttributeNode("socioId")
+        })
+})
 @EntityListeners(AuditingEntityListener.class)
 @Getter
 @Setter
@@ -1,5 +1,6 @@
 package ucb.edu.bo.sumajflow.repository;
 
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
@@ -18,6 +19,10 @@ public interface AsignacionCamionRepository extends JpaRepository<AsignacionCami
   // Obtener todas las asignaciones de un lote
   List<AsignacionCamion> findByLotesId(Lotes lote);
 
+  // Con transportista, usuario y persona en el mismo SELECT (detalle de lote)
+  @EntityGraph(attributePaths = {"transportistaId", "transportistaId.usuariosId", "transportistaId.usuariosId.persona"})
+  List<AsignacionCamion> findWithTransportistaByLotesId(Lotes lote);
+
   List<AsignacionCamion> findByFechaInicioAfter(LocalDateTime fechaInicioAfter);
 
   // Contar asignaciones de un lote
@@ -0,0 +1,46 @@
+package ucb.edu.bo.sumajflow.repository;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import ucb.edu.bo.sumajflow.entity.AsignacionCamion;
+import ucb.edu.bo.sumajflow.entity.AsignacionEvento;
+import ucb.edu.bo.sumajflow.entity.Cooperativa;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+public interface AsignacionEventoRepository extends JpaRepository<AsignacionEvento, Integer> {
+
+    // Eventos de un viaje en orden cronológico (evidencias)
+    List<AsignacionEvento> findByAsignacionCamionIdOrderByFechaRegistroAscIdAsc(AsignacionCamion asignacion);
+
+    // Eventos de ciertos tipos para varios viajes (pesajes de los camiones de un lote)
+    @Query("SELECT e FROM AsignacionEvento e " +
+            "WHERE e.asignacionCamionId IN :asignaciones AND e.tipoEvento IN :tipos " +
+            "ORDER BY e.fechaRegistro ASC, e.id ASC")
+    List<AsignacionEvento> findByAsignacionesAndTipos(
+            @Param("asignaciones") Collection<AsignacionCamion> asignaciones,
+            @Param("tipos") Collection<String> tipos
+    );
+
+    // Último evento con coordenadas de cada viaje (índice parcial idx_asignacion_evento_ubicacion)
+    @Query(value = "SELECT DISTINCT ON (e.asignacion_camion_id) e.* FROM asignacion_evento e " +
+            "WHERE e.asignacion_camion_id IN (:asignacionIds) AND e.lat IS NOT NULL AND e.lng IS NOT NULL " +
+            "ORDER BY e.asignacion_camion_id, e.fecha_registro DESC, e.id DESC",
+            nativeQuery = true)
+    List<AsignacionEvento> findUltimaUbicacionByAsignacionIds(@Param("asignacionIds") Collection<Integer> asignacionIds);
+
+    // Viajes de la cooperativa con un evento del tipo en el rango (pesajes del día en balanza)
+    @Query("SELECT COUNT(DISTINCT e.asignacionCamionId) FROM AsignacionEvento e " +
+            "JOIN e.asignacionCamionId a JOIN a.lotesId l JOIN l.minasId m JOIN m.sectoresId s " +
+            "WHERE s.cooperativaId = :cooperativa AND e.tipoEvento = :tipo " +
+            "AND e.fechaRegistro >= :desde AND e.fechaRegistro < :hasta")
+    long contarViajesConEventoEntre(
+            @Param("cooperativa") Cooperativa cooperativa,
+            @Param("tipo") String tipo,
+            @Param("desde") LocalDateTime desde,
+            @Param("hasta") LocalDateTime hasta
+    );
+}
@@ -12,6 +12,7 @@ import ucb.edu.bo.sumajflow.entity.Lotes;
 import ucb.edu.bo.sumajflow.entity.Socio;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -29,6 +30,14 @@ public interface ConcentradoRepository extends JpaRepository<Concentrado, Intege
   List<Concentrado> findBySocioPropietarioIdAndEstado(Socio socio, String estado);
   List<Concentrado> findByLoteConcentradoRelacionList_LoteComplejoId(Lotes lote);
 
+  // Concentrados en un estado generados a partir de cualquiera de los lotes indicados
+  @Query("SELECT DISTINCT c FROM Concentrado c JOIN c.loteConcentradoRelacionList r " +
+          "WHERE r.loteComplejoId IN :lotes AND c.estado = :estado")
+  List<Concentrado> findByLotesComplejoAndEstado(
+          @Param("lotes") Collection<Lotes> lotes,
+          @Param("estado") String estado
+  );
+
   List<Concentrado> findByIngenioMineroIdAndEstado(IngenioMinero ingenioMineroId, String estado);
   List<Concentrado> findBySocioPropietarioId(Socio socioPropietarioId);
 
@@ -1,14 +1,22 @@
 package ucb.edu.bo.sumajflow.repository;
 
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
+import ucb.edu.bo.sumajflow.dto.comercializadora.ComprasMesProyeccion;
+import ucb.edu.bo.sumajflow.dto.comercializadora.ComprasSocioProyeccion;
+import ucb.edu.bo.sumajflow.dto.comercializadora.LiquidacionesEstadoProyeccion;
 import ucb.edu.bo.sumajflow.entity.*;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
-public interface LiquidacionRepository extends JpaRepository<Liquidacion, Integer> {
+public interface LiquidacionRepository extends JpaRepository<Liquidacion, Integer>,
+        JpaSpecificationExecutor<Liquidacion>, LiquidacionRepositoryCustom {
     List<Liquidacion> findBySocioIdOrderByCreatedAtDesc(Socio socio);
     List<Liquidacion> findBySocioIdAndTipoLiquidacionOrderByCreatedAtDesc(Socio socio, String tipoLiquidacion);
     List<Liquidacion> findByTipoLiquidacionOrderByCreatedAtDesc(String tipoLiquidacion);
@@ -17,6 +25,29 @@ public interface LiquidacionRepository extends JpaRepository<Liquidacion, Intege
 
     List<Liquidacion> findBySocioId(Socio socioId);
 
+    // ==================== PLAN DE CARGA DEL DETALLE ====================
+    // Cada paso inicializa una colección sobre la misma instancia del contexto de persistencia
+
+    @EntityGraph("Liquidacion.partes")
+    @Query("SELECT l FROM Liquidacion l WHERE l.id = :id")
+    Optional<Liquidacion> cargarPartes(@Param("id") Integer id);
+
+    @EntityGraph("Liquidacion.concentrados")
+    @Query("SELECT l FROM Liquidacion l WHERE l.id = :id")
+    Optional<Liquidacion> cargarConcentrados(@Param("id") Integer id);
+
+    @EntityGraph("Liquidacion.lotes")
+    @Query("SELECT l FROM Liquidacion l WHERE l.id = :id")
+    Optional<Liquidacion> cargarLotes(@Param("id") Integer id);
+
+    @EntityGraph("Liquidacion.cotizaciones")
+    @Query("SELECT l FROM Liquidacion l WHERE l.id = :id")
+    Optional<Liquidacion> cargarCotizaciones(@Param("id") Integer id);
+
+    @EntityGraph("Liquidacion.deducciones")
+    @Query("SELECT l FROM Liquidacion l WHERE l.id = :id")
+    Optional<Liquidacion> cargarDeducciones(@Param("id") Integer id);
+
     @Query("SELECT l FROM Liquidacion l " +
             "WHERE l.socioId = :socio " +
             "AND l.tipoLiquidacion = :tipo")
@@ -50,4 +81,87 @@ public interface LiquidacionRepository extends JpaRepository<Liquidacion, Intege
     Optional<List<Liquidacion>> findByConcentradoId(@Param("concentrado") Concentrado concentrado);
 
     List<Liquidacion> findByComercializadoraIdAndEstadoAndTipoLiquidacion(Comercializadora comercializadoraId, String estado, String tipoLiquidacion);
+
+    // ==================== AGREGADOS PARA DASHBOARD ====================
+
+    /**
+     * Liquidaciones de una comercializadora agrupadas por tipo y estado, con el mismo criterio
+     * que v_resumen_estado_actor (estado nulo como '')
+     */
+    @Query(value = """
+            SELECT l.tipo_liquidacion AS "tipoLiquidacion",
+                   COALESCE(l.estado, '') AS "estado",
+                   COUNT(*) AS "cantidad",
+                   COALESCE(SUM(l.valor_neto_bob), 0) AS "valorNetoBob"
+            FROM liquidacion l
+            WHERE l.comercializadora_id = :comercializadoraId
+            AND l.tipo_liquidacion IN (:tipos)
+            GROUP BY l.tipo_liquidacion, COALESCE(l.estado, '')
+            """, nativeQuery = true)
+    List<LiquidacionesEstadoProyeccion> agregarPorEstadoComercializadora(
+            @Param("comercializadoraId") Integer comercializadoraId,
+            @Param("tipos") Collection<String> tipos
+    );
+
+    /**
+     * Compras pagadas por mes de pago y tipo, con el peso de los concentrados liquidados
+     * (sumado por liquidación antes de agrupar para no multiplicar el valor neto)
+     */
+    @Query(value = """
+            SELECT to_char(date_trunc('month', l.fecha_pago), 'YYYY-MM') AS "mes",
+                   l.tipo_liquidacion AS "tipoLiquidacion",
+                   COUNT(*) AS "cantidad",
+                   COALESCE(SUM(l.valor_neto_bob), 0) AS "valorNetoBob",
+                   COALESCE(SUM(p.peso_final), 0) AS "pesoFinal",
+                   COALESCE(SUM(p.peso_tmh), 0) AS "pesoTmh"
+            FROM liquidacion l
+            LEFT JOIN LATERAL (
+                SELECT SUM(c.peso_final) AS peso_final, SUM(c.peso_tmh) AS peso_tmh
+                FROM liquidacion_concentrado lc
+                JOIN concentrado c ON c.id = lc.concentrado_id
+                WHERE lc.liquidacion_id = l.id
+            ) p ON true
+            WHERE l.comercializadora_id = :comercializadoraId
+            AND l.tipo_liquidacion IN (:tipos)
+            AND l.estado = 'pagado'
+            AND l.fecha_pago >= :desde
+            AND l.fecha_pago < :hasta
+            GROUP BY date_trunc('month', l.fecha_pago), l.tipo_liquidacion
+            """, nativeQuery = true)
+    List<ComprasMesProyeccion> agregarComprasPagadasPorMes(
+            @Param("comercializadoraId") Integer comercializadoraId,
+            @Param("tipos") Collection<String> tipos,
+            @Param("desde") LocalDateTime desde,
+            @Param("hasta") LocalDateTime hasta
+    );
+
+    /**
+     * Socios con mayor monto de compras pagadas
+     */
+    @Query(value = """
+            SELECT l.socio_id AS "socioId",
+                   s.usuarios_id AS "usuarioId",
+                   COUNT(*) AS "cantidad",
+                   COALESCE(SUM(l.valor_neto_bob), 0) AS "valorNetoBob",
+                   COALESCE(SUM(p.peso_final), 0) AS "pesoFinal"
+            FROM liquidacion l
+            JOIN socio s ON s.id = l.socio_id
+            LEFT JOIN LATERAL (
+                SELECT SUM(c.peso_final) AS peso_final
+                FROM liquidacion_concentrado lc
+                JOIN concentrado c ON c.id = lc.concentrado_id
+                WHERE lc.liquidacion_id = l.id
+            ) p ON true
+            WHERE l.comercializadora_id = :comercializadoraId
+            AND l.tipo_liquidacion IN (:tipos)
+            AND l.estado = 'pagado'
+            GROUP BY l.socio_id, s.usuarios_id
+            ORDER BY "valorNetoBob" DESC
+            LIMIT :limite
+            """, nativeQuery = true)
+    List<ComprasSocioProyeccion> agregarComprasPagadasPorSocio(
+            @Param("comercializadoraId") Integer comercializadoraId,
+            @Param("tipos") Collection<String> tipos,
+            @Param("limite") int limite
+    );
 }
\ No newline at end of file
@@ -0,0 +1,28 @@
+package ucb.edu.bo.sumajflow.repository;
+
+import org.springframework.data.domain.Page;
+import org.springframework.data.jpa.domain.Specification;
+import ucb.edu.bo.sumajflow.entity.Liquidacion;
+
+import java.time.LocalDateTime;
+
+/**
+ * Paginación de liquidaciones en la base de datos, ordenadas por createdAt DESC, id DESC
+ */
+public interface LiquidacionRepositoryCustom {
+
+    /**
+     * Página por OFFSET/LIMIT. El COUNT solo se ejecuta si contar es true y no puede deducirse
+     * de la propia página; si no, el total es una cota inferior que basta para hasNext().
+     */
+    Page<Liquidacion> buscarPagina(Specification<Liquidacion> spec, int page, int size, boolean contar);
+
+    /**
+     * Modo keyset: las size filas siguientes a (cursorFecha, cursorId), sin OFFSET ni COUNT
+     */
+    Page<Liquidacion> buscarDespuesDe(
+            Specification<Liquidacion> spec,
+            LocalDateTime cursorFecha,
+            Integer cursorId,
+            int size);
+}
@@ -0,0 +1,94 @@
+package ucb.edu.bo.sumajflow.repository;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.data.jpa.repository.query.QueryUtils;
+import ucb.edu.bo.sumajflow.entity.Liquidacion;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+public class LiquidacionRepositoryCustomImpl implements LiquidacionRepositoryCustom {
+
+    // id desempata createdAt iguales: orden total, necesario para keyset y páginas estables
+    private static final Sort ORDEN = Sort.by(Sort.Direction.DESC, "createdAt", "id");
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public Page<Liquidacion> buscarPagina(Specification<Liquidacion> spec, int page, int size, boolean contar) {
+        PageRequest pageable = PageRequest.of(page, size, ORDEN);
+        long offset = pageable.getOffset();
+
+        // Una fila extra indica si hay página siguiente sin necesidad de COUNT
+        List<Liquidacion> filas = buscar(spec, offset, size + 1);
+        boolean hayMas = filas.size() > size;
+        List<Liquidacion> contenido = hayMas ? filas.subList(0, size) : filas;
+
+        long total;
+        if (!hayMas && (offset == 0 || !contenido.isEmpty())) {
+            total = offset + contenido.size();
+        } else if (contar) {
+            total = contar(spec);
+        } else {
+            total = offset + contenido.size() + (hayMas ? 1 : 0);
+        }
+
+        return new PageImpl<>(contenido, pageable, total);
+    }
+
+    @Override
+    public Page<Liquidacion> buscarDespuesDe(
+            Specification<Liquidacion> spec,
+            LocalDateTime cursorFecha,
+            Integer cursorId,
+            int size) {
+
+        List<Liquidacion> filas = buscar(spec.and(LiquidacionSpecifications.despuesDe(cursorFecha, cursorId)), 0, size + 1);
+        boolean hayMas = filas.size() > size;
+        List<Liquidacion> contenido = hayMas ? filas.subList(0, size) : filas;
+
+        return new PageImpl<>(contenido, PageRequest.of(0, size, ORDEN), contenido.size() + (hayMas ? 1 : 0));
+    }
+
+    private List<Liquidacion> buscar(Specification<Liquidacion> spec, long offset, int limite) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Liquidacion> query = cb.createQuery(Liquidacion.class);
+        Root<Liquidacion> root = query.from(Liquidacion.class);
+
+        Predicate predicado = spec.toPredicate(root, query, cb);
+        if (predicado != null) {
+            query.where(predicado);
+        }
+        query.orderBy(QueryUtils.toOrders(ORDEN, root, cb));
+
+        return entityManager.createQuery(query)
+                .setFirstResult((int) offset)
+                .setMaxResults(limite)
+                .getResultList();
+    }
+
+    private long contar(Specification<Liquidacion> spec) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Long> query = cb.createQuery(Long.class);
+        Root<Liquidacion> root = query.from(Liquidacion.class);
+
+        Predicate predicado = spec.toPredicate(root, query, cb);
+        if (predicado != null) {
+            query.where(predicado);
+        }
+        query.select(cb.count(root));
+
+        return entityManager.createQuery(query).getSingleResult();
+    }
+}
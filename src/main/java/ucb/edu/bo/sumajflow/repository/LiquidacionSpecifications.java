@@ -0,0 +1,82 @@
+package ucb.edu.bo.sumajflow.repository;
+
+import jakarta.persistence.criteria.Join;
+import jakarta.persistence.criteria.Root;
+import jakarta.persistence.criteria.Subquery;
+import org.springframework.data.jpa.domain.Specification;
+import ucb.edu.bo.sumajflow.entity.*;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Filtros de liquidaciones evaluados en la base de datos.
+ * Los filtros opcionales devuelven un predicado nulo (sin restricción) cuando no se indican.
+ */
+public final class LiquidacionSpecifications {
+
+    private LiquidacionSpecifications() {
+    }
+
+    public static Specification<Liquidacion> deSocio(Socio socio) {
+        return (root, query, cb) -> cb.equal(root.get("socioId"), socio);
+    }
+
+    public static Specification<Liquidacion> deComercializadora(Comercializadora comercializadora) {
+        return (root, query, cb) -> cb.equal(root.get("comercializadoraId"), comercializadora);
+    }
+
+    /**
+     * Liquidaciones con al menos un lote asignado al ingenio (EXISTS, sin duplicar filas)
+     */
+    public static Specification<Liquidacion> deIngenio(IngenioMinero ingenio) {
+        return (root, query, cb) -> {
+            Subquery<Integer> subquery = query.subquery(Integer.class);
+            Root<LiquidacionLote> liquidacionLote = subquery.from(LiquidacionLote.class);
+            Join<Lotes, LoteIngenio> loteIngenio = liquidacionLote.join("lotesId").join("loteIngenioList");
+
+            subquery.select(liquidacionLote.get("id"))
+                    .where(cb.equal(liquidacionLote.get("liquidacionId"), root),
+                            cb.equal(loteIngenio.get("ingenioMineroId"), ingenio));
+            return cb.exists(subquery);
+        };
+    }
+
+    public static Specification<Liquidacion> conTipos(List<String> tiposLiquidacion) {
+        return (root, query, cb) -> root.get("tipoLiquidacion").in(tiposLiquidacion);
+    }
+
+    public static Specification<Liquidacion> conTipo(String tipoLiquidacion) {
+        return (root, query, cb) -> tipoLiquidacion == null || tipoLiquidacion.isEmpty()
+                ? null
+                : cb.equal(root.get("tipoLiquidacion"), tipoLiquidacion);
+    }
+
+    public static Specification<Liquidacion> conEstado(String estado) {
+        return (root, query, cb) -> estado == null || estado.isEmpty()
+                ? null
+                : cb.equal(root.get("estado"), estado);
+    }
+
+    public static Specification<Liquidacion> creadaDesde(LocalDateTime fechaDesde) {
+        return (root, query, cb) -> fechaDesde == null
+                ? null
+                : cb.greaterThanOrEqualTo(root.get("createdAt"), fechaDesde);
+    }
+
+    public static Specification<Liquidacion> creadaHasta(LocalDateTime fechaHasta) {
+        return (root, query, cb) -> fechaHasta == null
+                ? null
+                : cb.lessThanOrEqualTo(root.get("createdAt"), fechaHasta);
+    }
+
+    /**
+     * Filas posteriores al cursor en orden (createdAt DESC, id DESC)
+     */
+    public static Specification<Liquidacion> despuesDe(LocalDateTime cursorFecha, Integer cursorId) {
+        return (root, query, cb) -> cb.or(
+                cb.lessThan(root.get("createdAt"), cursorFecha),
+                cb.and(cb.equal(root.get("createdAt"), cursorFecha),
+                        cb.lessThan(root.get("id"), cursorId)));
+    }
+}
@@ -10,6 +10,7 @@ import ucb.edu.bo.sumajflow.entity.LoteComercializadora;
 import ucb.edu.bo.sumajflow.entity.Lotes;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -17,6 +18,10 @@ public interface LoteComercializadoraRepository extends JpaRepository<LoteComerc
 
   Optional<LoteComercializadora> findByLotesId(Lotes lote);
 
+  // Destinos de varios lotes en una sola consulta
+  @Query("SELECT lc FROM LoteComercializadora lc JOIN FETCH lc.comercializadoraId WHERE lc.lotesId IN :lotes")
+  List<LoteComercializadora> findByLotesIdIn(@Param("lotes") Collection<Lotes> lotes);
+
   List<LoteComercializadora> findByComercializadoraId(Comercializadora comercializadora);
 
   /**
@@ -10,6 +10,7 @@ import ucb.edu.bo.sumajflow.entity.LoteIngenio;
 import ucb.edu.bo.sumajflow.entity.Lotes;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -17,6 +18,10 @@ public interface LoteIngenioRepository extends JpaRepository<LoteIngenio, Intege
 
   Optional<LoteIngenio> findByLotesId(Lotes lote);
 
+  // Destinos de varios lotes en una sola consulta
+  @Query("SELECT li FROM LoteIngenio li JOIN FETCH li.ingenioMineroId WHERE li.lotesId IN :lotes")
+  List<LoteIngenio> findByLotesIdIn(@Param("lotes") Collection<Lotes> lotes);
+
   List<LoteIngenio> findByIngenioMineroId(IngenioMinero ingenio);
 
   /**
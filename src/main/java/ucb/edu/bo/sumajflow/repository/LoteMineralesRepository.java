@@ -1,11 +1,13 @@
 package ucb.edu.bo.sumajflow.repository;
 
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import ucb.edu.bo.sumajflow.entity.LoteMinerales;
 import ucb.edu.bo.sumajflow.entity.Lotes;
 
+import java.util.Collection;
 import java.util.List;
 
 public interface LoteMineralesRepository extends JpaRepository<LoteMinerales, Integer> {
@@ -13,6 +15,14 @@ public interface LoteMineralesRepository extends JpaRepository<LoteMinerales, In
   // Obtener minerales de un lote
   List<LoteMinerales> findByLotesId(Lotes lote);
 
+  // Con el mineral en el mismo SELECT (detalle de lote)
+  @EntityGraph(attributePaths = "mineralesId")
+  List<LoteMinerales> findWithMineralesByLotesId(Lotes lote);
+
+  // Minerales de varios lotes en una sola consulta
+  @Query("SELECT lm FROM LoteMinerales lm JOIN FETCH lm.mineralesId WHERE lm.lotesId IN :lotes")
+  List<LoteMinerales> findByLotesIdIn(@Param("lotes") Collection<Lotes> lotes);
+
   // Eliminar minerales de un lote (para actualización)
   void deleteByLotesId(Lotes lote);
 }
\ No newline at end of file
@@ -1,8 +1,11 @@
 package ucb.edu.bo.sumajflow.repository;
 
+import jakarta.persistence.LockModeType;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import ucb.edu.bo.sumajflow.entity.Lotes;
@@ -15,6 +18,15 @@ import java.util.Optional;
 
 public interface LotesRepository extends JpaRepository<Lotes, Integer> {
 
+  // Lote con mina, sector y socio en un solo SELECT (detalle de lote)
+  @EntityGraph("Lotes.detalle")
+  @Query("SELECT l FROM Lotes l WHERE l.id = :id")
+  Optional<Lotes> findDetalleById(@Param("id") Integer id);
+
+  // Lote bloqueado (SELECT ... FOR UPDATE) para recalcular su estado a partir de sus camiones
+  @Lock(LockModeType.PESSIMISTIC_WRITE)
+  @Query("SELECT l FROM Lotes l WHERE l.id = :id")
+  Optional<Lotes> findByIdParaActualizar(@Param("id") Integer id);
 
   // Query NATIVA con CAST() función
   @Query(value = "SELECT * FROM lotes " +
@@ -192,4 +204,30 @@ public interface LotesRepository extends JpaRepository<Lotes, Integer> {
 
   @Query("SELECT l FROM Lotes l WHERE l.minasId.socioId = :socio AND l.estado = :estado")
   List<Lotes> findByMinasSocioIdAndEstado(Socio socio, String estado);
+
+  /**
+   * Lotes de una cooperativa en un estado, con mina y socio cargados en la misma consulta
+   */
+  @Query("SELECT l FROM Lotes l " +
+          "JOIN FETCH l.minasId m " +
+          "JOIN FETCH m.socioId " +
+          "WHERE m.sectoresId.cooperativaId.id = :cooperativaId AND l.estado = :estado " +
+          "ORDER BY l.fechaCreacion DESC")
+  List<Lotes> findByCooperativaAndEstadoConSocio(
+          @Param("cooperativaId") Integer cooperativaId,
+          @Param("estado") String estado
+  );
+
+  /**
+   * Lotes de un socio por estado y tipo de operación, con mina y comercializadora destino
+   */
+  @Query("SELECT DISTINCT l FROM Lotes l " +
+          "JOIN FETCH l.minasId m " +
+          "LEFT JOIN FETCH l.loteComercializadoraList " +
+          "WHERE m.socioId = :socio AND l.estado = :estado AND l.tipoOperacion = :tipoOperacion")
+  List<Lotes> findBySocioConDestino(
+          @Param("socio") Socio socio,
+          @Param("estado") String estado,
+          @Param("tipoOperacion") String tipoOperacion
+  );
 }
\ No newline at end of file
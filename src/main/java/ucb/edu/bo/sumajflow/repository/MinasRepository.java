@@ -4,6 +4,7 @@ import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import ucb.edu.bo.sumajflow.entity.Cooperativa;
 import ucb.edu.bo.sumajflow.entity.Minas;
 import ucb.edu.bo.sumajflow.entity.Sectores;
 import ucb.edu.bo.sumajflow.entity.Socio;
@@ -93,4 +94,13 @@ public interface MinasRepository extends JpaRepository<Minas, Integer> {
   long countLotesActivosByMina(@Param("mina") Minas mina);
 
   List<Minas> findBySectoresId(Sectores sectoresId);
+
+  /**
+   * Cantidad de minas por sector de una cooperativa: [nombre del sector, cantidad]
+   */
+  @Query("SELECT s.nombre, COUNT(m) FROM Minas m JOIN m.sectoresId s " +
+          "WHERE s.cooperativaId = :cooperativa " +
+          "GROUP BY s.id, s.nombre " +
+          "ORDER BY COUNT(m) DESC")
+  List<Object[]> contarMinasPorSector(@Param("cooperativa") Cooperativa cooperativa);
 }
\ No newline at end of file
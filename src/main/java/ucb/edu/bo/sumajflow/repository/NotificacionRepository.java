@@ -1,6 +1,7 @@
 package ucb.edu.bo.sumajflow.repository;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
 import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
@@ -9,7 +10,8 @@ import ucb.edu.bo.sumajflow.entity.Usuarios;
 
 import java.util.List;
 
-public interface NotificacionRepository extends JpaRepository<Notificacion, Integer> {
+public interface NotificacionRepository extends JpaRepository<Notificacion, Integer>,
+        JpaSpecificationExecutor<Notificacion> {
 
     // Obtener notificaciones de un usuario ordenadas por fecha (más recientes primero)
     List<Notificacion> findByUsuariosIdOrderByFechaCreacionDesc(Usuarios usuario);
@@ -23,14 +25,18 @@ public interface NotificacionRepository extends JpaRepository<Notificacion, Inte
     // Contar no leídas
     Long countByUsuariosIdAndLeido(Usuarios usuario, Boolean leido);
 
-    // Marcar como leída
+    // Contar no leídas por id de usuario (sin cargar el usuario)
+    long countByUsuariosId_IdAndLeido(Integer usuarioId, Boolean leido);
+
+    // Marcar como leída (devuelve 1 solo si estaba sin leer)
     @Modifying
-    @Query("UPDATE Notificacion n SET n.leido = true, n.fechaLectura = CURRENT_TIMESTAMP WHERE n.id = :id")
-    void marcarComoLeida(@Param("id") Integer id);
+    @Query("UPDATE Notificacion n SET n.leido = true, n.fechaLectura = CURRENT_TIMESTAMP " +
+            "WHERE n.id = :id AND n.leido = false")
+    int marcarComoLeida(@Param("id") Integer id);
 
-    // Marcar todas como leídas
+    // Marcar todas como leídas (devuelve cuántas estaban sin leer)
     @Modifying
     @Query("UPDATE Notificacion n SET n.leido = true, n.fechaLectura = CURRENT_TIMESTAMP " +
             "WHERE n.usuariosId = :usuario AND n.leido = false")
-    void marcarTodasComoLeidas(@Param("usuario") Usuarios usuario);
+    int marcarTodasComoLeidas(@Param("usuario") Usuarios usuario);
 }
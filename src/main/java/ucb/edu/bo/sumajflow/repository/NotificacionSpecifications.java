@@ -0,0 +1,43 @@
+package ucb.edu.bo.sumajflow.repository;
+
+import org.springframework.data.jpa.domain.Specification;
+import ucb.edu.bo.sumajflow.entity.Notificacion;
+import ucb.edu.bo.sumajflow.entity.Usuarios;
+
+import java.time.LocalDateTime;
+
+/**
+ * Filtros de la bandeja de notificaciones evaluados en la base de datos.
+ * Los filtros opcionales devuelven un predicado nulo (sin restricción) cuando no se indican.
+ */
+public final class NotificacionSpecifications {
+
+    private NotificacionSpecifications() {
+    }
+
+    public static Specification<Notificacion> deUsuario(Usuarios usuario) {
+        return (root, query, cb) -> cb.equal(root.get("usuariosId"), usuario);
+    }
+
+    public static Specification<Notificacion> soloNoLeidas(Boolean soloNoLeidas) {
+        return (root, query, cb) -> Boolean.TRUE.equals(soloNoLeidas)
+                ? cb.isFalse(root.get("leido"))
+                : null;
+    }
+
+    public static Specification<Notificacion> conTipo(String tipo) {
+        return (root, query, cb) -> tipo == null || tipo.isEmpty()
+                ? null
+                : cb.equal(root.get("tipo"), tipo);
+    }
+
+    /**
+     * Filas posteriores al cursor en orden (fechaCreacion DESC, id DESC)
+     */
+    public static Specification<Notificacion> despuesDe(LocalDateTime cursorFecha, Integer cursorId) {
+        return (root, query, cb) -> cb.or(
+                cb.lessThan(root.get("fechaCreacion"), cursorFecha),
+                cb.and(cb.equal(root.get("fechaCreacion"), cursorFecha),
+                        cb.lessThan(root.get("id"), cursorId)));
+    }
+}
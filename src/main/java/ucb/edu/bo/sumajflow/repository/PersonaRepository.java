@@ -1,13 +1,21 @@
 package ucb.edu.bo.sumajflow.repository;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import ucb.edu.bo.sumajflow.entity.Persona;
 import ucb.edu.bo.sumajflow.entity.Usuarios;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 public interface PersonaRepository extends JpaRepository<Persona, Integer> {
 
 
     Optional<Persona> findByUsuariosId(Usuarios usuario);
+
+    // Personas de varios usuarios en una sola consulta
+    @Query("SELECT p FROM Persona p WHERE p.usuariosId.id IN :usuarioIds")
+    List<Persona> findByUsuarioIds(@Param("usuarioIds") Collection<Integer> usuarioIds);
 }
\ No newline at end of file
@@ -0,0 +1,24 @@
+package ucb.edu.bo.sumajflow.repository.mongodb;
+
+import org.springframework.data.mongodb.repository.MongoRepository;
+import org.springframework.stereotype.Repository;
+import ucb.edu.bo.sumajflow.document.HistorialUbicacion;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface HistorialUbicacionRepository extends MongoRepository<HistorialUbicacion, String> {
+
+    List<HistorialUbicacion> findByAsignacionCamionIdOrderByTimestampAsc(Integer asignacionCamionId);
+
+    Optional<HistorialUbicacion> findFirstByAsignacionCamionIdOrderByTimestampDesc(Integer asignacionCamionId);
+
+    Optional<HistorialUbicacion> findFirstByAsignacionCamionIdAndTimestampLessThanOrderByTimestampDesc(
+            Integer asignacionCamionId, LocalDateTime timestamp);
+
+    long countByAsignacionCamionId(Integer asignacionCamionId);
+
+    void deleteByAsignacionCamionId(Integer asignacionCamionId);
+}
@@ -10,7 +10,7 @@ import java.util.List;
 import java.util.Optional;
 
 @Repository
-public interface TrackingUbicacionRepository extends MongoRepository<TrackingUbicacion, String> {
+public interface TrackingUbicacionRepository extends MongoRepository<TrackingUbicacion, String>, TrackingUbicacionRepositoryCustom {
 
     Optional<TrackingUbicacion> findByAsignacionCamionId(Integer asignacionCamionId);
 
@@ -21,15 +21,18 @@ public interface TrackingUbicacionRepository extends MongoRepository<TrackingUbi
 
     List<TrackingUbicacion> findByEstadoViaje(String estadoViaje);
 
-    @Query("{ 'estadoViaje': { $nin: ['completado', 'cancelado'] } }")
+    @Query("{ 'estadoViaje': { $nin: ['completado', 'cancelado', 'Completado', 'Cancelado por rechazo'] } }")
     List<TrackingUbicacion> findAllActive();
 
+    @Query("{ 'loteId': ?0, 'estadoViaje': { $in: ['Completado', 'Cancelado por rechazo'] } }")
+    List<TrackingUbicacion> findFinalizadosByLoteId(Integer loteId);
+
     @Query("{ 'loteId': ?0, 'estadoViaje': { $nin: ['completado', 'cancelado'] } }")
     List<TrackingUbicacion> findActiveByLoteId(Integer loteId);
 
     boolean existsByAsignacionCamionId(Integer asignacionCamionId);
 
-    @Query("{ 'ultimaSincronizacion': { $lt: ?0 }, 'estadoViaje': { $nin: ['completado', 'cancelado'] } }")
+    @Query("{ 'ultimaSincronizacion': { $lt: ?0 }, 'estadoViaje': { $nin: ['completado', 'cancelado', 'Completado', 'Cancelado por rechazo'] }, 'estadoConexion': { $ne: 'offline' } }")
     List<TrackingUbicacion> findOfflineTrackings(LocalDateTime threshold);
 
     @Query("{ 'ubicacionActual.location': { $near: { $geometry: { type: 'Point', coordinates: [?1, ?0] }, $maxDistance: ?2 } } }")
@@ -0,0 +1,74 @@
+package ucb.edu.bo.sumajflow.repository.mongodb;
+
+import ucb.edu.bo.sumajflow.document.TrackingUbicacion;
+
+import java.time.LocalDateTime;
+
+/**
+ * Actualizaciones parciales y atómicas (findAndModify) sobre el documento de tracking,
+ * para no reescribir el documento completo ni pisar escrituras concurrentes.
+ */
+public interface TrackingUbicacionRepositoryCustom {
+
+    /**
+     * $set de la ubicación actual y del estado de conexión
+     * @return el documento ANTES de la actualización, o null si no existe tracking
+     */
+    TrackingUbicacion registrarUbicacionActual(
+            Integer asignacionCamionId,
+            TrackingUbicacion.UbicacionActual ubicacion,
+            LocalDateTime sincronizacion);
+
+    /**
+     * $set de la ubicación y $inc de las métricas en un solo findAndModify, solo si la ubicación guardada
+     * sigue siendo la del timestamp esperado (null: sin ubicación): el delta se calculó sobre ella
+     * @return el documento después de la actualización, o null si la ubicación cambió o no existe tracking
+     */
+    TrackingUbicacion reemplazarUbicacionActual(
+            Integer asignacionCamionId,
+            LocalDateTime timestampEsperado,
+            TrackingUbicacion.UbicacionActual ubicacion,
+            TrackingUbicacion.MetricasViaje delta,
+            LocalDateTime sincronizacion);
+
+    /**
+     * $inc de distancia/tiempos, $max de velocidad máxima y lo mismo por segmento de estado
+     * @param delta métricas a sumar (ver AcumuladorMetricas)
+     * @return el documento después de la actualización
+     */
+    TrackingUbicacion acumularMetricas(
+            Integer asignacionCamionId,
+            TrackingUbicacion.MetricasViaje delta);
+
+    /**
+     * $set posicional (arrayFilters por orden) del estado, llegada y salida de un punto de control
+     * @return el documento después de la actualización
+     */
+    TrackingUbicacion actualizarPuntoControl(
+            Integer asignacionCamionId,
+            CambioPuntoControl cambio);
+
+    /**
+     * $set del estado de viaje y del punto de control afectado (si hay), $push del evento de estado
+     * @param cambio cambio del punto de control de la transición, o null
+     * @return el documento después de la actualización, o null si no existe tracking
+     */
+    TrackingUbicacion registrarCambioEstado(
+            Integer asignacionCamionId,
+            String estadoViaje,
+            TrackingUbicacion.EventoEstado evento,
+            CambioPuntoControl cambio);
+
+    /**
+     * $set de estadoConexion = offline solo si sigue online y no sincroniza desde antes del límite
+     * @return true si este llamado hizo la transición (para emitir un único evento)
+     */
+    boolean marcarOffline(Integer asignacionCamionId, LocalDateTime limiteSincronizacion);
+
+    /**
+     * Cambio de un punto de control, identificado por su orden. Llegada y salida se marcan con la hora
+     * de la actualización solo si el punto aún no las tiene, así un reintento conserva la primera.
+     */
+    record CambioPuntoControl(Integer orden, String estado, boolean marcarLlegada, boolean marcarSalida) {
+    }
+}
@@ -0,0 +1,181 @@
+package ucb.edu.bo.sumajflow.repository.mongodb;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import ucb.edu.bo.sumajflow.document.TrackingUbicacion;
+
+import java.time.LocalDateTime;
+
+@RequiredArgsConstructor
+public class TrackingUbicacionRepositoryCustomImpl implements TrackingUbicacionRepositoryCustom {
+
+    private final MongoTemplate mongoTemplate;
+
+    @Override
+    public TrackingUbicacion registrarUbicacionActual(
+            Integer asignacionCamionId,
+            TrackingUbicacion.UbicacionActual ubicacion,
+            LocalDateTime sincronizacion) {
+
+        Update update = new Update()
+                .set("ubicacionActual", ubicacion)
+                .set("estadoConexion", "online")
+                .set("ultimaSincronizacion", sincronizacion)
+                .set("updatedAt", LocalDateTime.now());
+
+        return mongoTemplate.findAndModify(
+                porAsignacion(asignacionCamionId),
+                update,
+                FindAndModifyOptions.options().returnNew(false),
+                TrackingUbicacion.class);
+    }
+
+    @Override
+    public TrackingUbicacion reemplazarUbicacionActual(
+            Integer asignacionCamionId,
+            LocalDateTime timestampEsperado,
+            TrackingUbicacion.UbicacionActual ubicacion,
+            TrackingUbicacion.MetricasViaje delta,
+            LocalDateTime sincronizacion) {
+
+        Criteria criterio = Criteria.where("asignacionCamionId").is(asignacionCamionId);
+        if (timestampEsperado != null) {
+            criterio.and("ubicacionActual.timestamp").is(timestampEsperado);
+        } else {
+            criterio.and("ubicacionActual").is(null);
+        }
+
+        Update update = incrementoMetricas(delta)
+                .set("ubicacionActual", ubicacion)
+                .set("estadoConexion", "online")
+                .set("ultimaSincronizacion", sincronizacion)
+                .set("updatedAt", LocalDateTime.now());
+
+        return mongoTemplate.findAndModify(
+                Query.query(criterio),
+                update,
+                FindAndModifyOptions.options().returnNew(true),
+                TrackingUbicacion.class);
+    }
+
+    @Override
+    public TrackingUbicacion acumularMetricas(
+            Integer asignacionCamionId,
+            TrackingUbicacion.MetricasViaje delta) {
+
+        return mongoTemplate.findAndModify(
+                porAsignacion(asignacionCamionId),
+                incrementoMetricas(delta),
+                FindAndModifyOptions.options().returnNew(true),
+                TrackingUbicacion.class);
+    }
+
+    /**
+     * Update que suma un delta de métricas (totales y segmentos por estado) sin leer el documento.
+     * Compartido con la ingesta por lotes, que lo combina con el $set de la ubicación.
+     */
+    public static Update incrementoMetricas(TrackingUbicacion.MetricasViaje delta) {
+        Update update = new Update()
+                .inc("metricas.distanciaRecorrida", delta.getDistanciaRecorrida())
+                .inc("metricas.tiempoEnMovimiento", delta.getTiempoEnMovimiento())
+                .inc("metricas.tiempoDetenido", delta.getTiempoDetenido());
+
+        if (delta.getVelocidadMaxima() > 0) {
+            update.max("metricas.velocidadMaxima", delta.getVelocidadMaxima());
+        }
+
+        delta.getSegmentos().forEach((estado, segmento) -> {
+            String ruta = "metricas.segmentos." + estado + ".";
+            update.inc(ruta + "distanciaRecorrida", segmento.getDistanciaRecorrida())
+                    .inc(ruta + "tiempoEnMovimiento", segmento.getTiempoEnMovimiento())
+                    .inc(ruta + "tiempoDetenido", segmento.getTiempoDetenido())
+                    .inc(ruta + "totalUbicaciones", segmento.getTotalUbicaciones())
+                    .inc(ruta + "ubicacionesOffline", segmento.getUbicacionesOffline())
+                    .max(ruta + "velocidadMaxima", segmento.getVelocidadMaxima());
+            if (segmento.getInicio() != null) {
+                update.min(ruta + "inicio", segmento.getInicio());
+            }
+            if (segmento.getFin() != null) {
+                update.max(ruta + "fin", segmento.getFin());
+            }
+        });
+
+        return update;
+    }
+
+    @Override
+    public TrackingUbicacion actualizarPuntoControl(
+            Integer asignacionCamionId,
+            CambioPuntoControl cambio) {
+
+        Update update = new Update().set("updatedAt", LocalDateTime.now());
+        cambiarPuntoControl(update, cambio);
+
+        return mongoTemplate.findAndModify(
+                porAsignacion(asignacionCamionId),
+                update,
+                FindAndModifyOptions.options().returnNew(true),
+                TrackingUbicacion.class);
+    }
+
+    @Override
+    public TrackingUbicacion registrarCambioEstado(
+            Integer asignacionCamionId,
+            String estadoViaje,
+            TrackingUbicacion.EventoEstado evento,
+            CambioPuntoControl cambio) {
+
+        Update update = new Update()
+                .set("estadoViaje", estadoViaje)
+                .push("eventosEstado", evento)
+                .set("updatedAt", LocalDateTime.now());
+        if (cambio != null) {
+            cambiarPuntoControl(update, cambio);
+        }
+
+        return mongoTemplate.findAndModify(
+                porAsignacion(asignacionCamionId),
+                update,
+                FindAndModifyOptions.options().returnNew(true),
+                TrackingUbicacion.class);
+    }
+
+    @Override
+    public boolean marcarOffline(Integer asignacionCamionId, LocalDateTime limiteSincronizacion) {
+        Query query = Query.query(Criteria.where("asignacionCamionId").is(asignacionCamionId)
+                .and("estadoConexion").ne("offline")
+                .and("ultimaSincronizacion").lt(limiteSincronizacion));
+
+        Update update = new Update()
+                .set("estadoConexion", "offline")
+                .set("updatedAt", LocalDateTime.now());
+
+        return mongoTemplate.updateFirst(query, update, TrackingUbicacion.class).getModifiedCount() > 0;
+    }
+
+    /**
+     * Solo el elemento del punto: $[punto] por orden, $[sinLlegada] / $[sinSalida] además sin marca previa
+     */
+    private void cambiarPuntoControl(Update update, CambioPuntoControl cambio) {
+        update.set("puntosControl.$[punto].estado", cambio.estado())
+                .filterArray(Criteria.where("punto.orden").is(cambio.orden()));
+
+        LocalDateTime ahora = LocalDateTime.now();
+        if (cambio.marcarLlegada()) {
+            update.set("puntosControl.$[sinLlegada].llegada", ahora)
+                    .filterArray(Criteria.where("sinLlegada.orden").is(cambio.orden()).and("sinLlegada.llegada").is(null));
+        }
+        if (cambio.marcarSalida()) {
+            update.set("puntosControl.$[sinSalida].salida", ahora)
+                    .filterArray(Criteria.where("sinSalida.orden").is(cambio.orden()).and("sinSalida.salida").is(null));
+        }
+    }
+
+    private Query porAsignacion(Integer asignacionCamionId) {
+        return Query.query(Criteria.where("asignacionCamionId").is(asignacionCamionId));
+    }
+}
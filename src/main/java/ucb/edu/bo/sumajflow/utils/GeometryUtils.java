@@ -1,15 +1,20 @@
 package ucb.edu.bo.sumajflow.utils;
 
 import ucb.edu.bo.sumajflow.document.TrackingUbicacion;
+import ucb.edu.bo.sumajflow.dto.tracking.UbicacionDto;
 import ucb.edu.bo.sumajflow.entity.SectoresCoordenadas;
 
 import java.math.BigDecimal;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Deque;
 import java.util.List;
+import java.util.PriorityQueue;
 
 public class GeometryUtils {
 
     private static final double EARTH_RADIUS_KM = 6371.0;
+    private static final double METROS_POR_GRADO = EARTH_RADIUS_KM * 1000 * Math.PI / 180;
 
     // ==================== MÉTODOS DE POLÍGONOS ====================
 
@@ -108,12 +113,23 @@ public class GeometryUtils {
             BigDecimal lat1, BigDecimal lon1,
             BigDecimal lat2, BigDecimal lon2
     ) {
-        double dLat = Math.toRadians(lat2.doubleValue() - lat1.doubleValue());
-        double dLon = Math.toRadians(lon2.doubleValue() - lon1.doubleValue());
+        return calcularDistancia(
+                lat1.doubleValue(), lon1.doubleValue(),
+                lat2.doubleValue(), lon2.doubleValue()
+        );
+    }
+
+    /**
+     * Calcula la distancia entre dos puntos usando doubles (sin pasar por BigDecimal)
+     * @return Distancia en kilómetros
+     */
+    public static double calcularDistancia(double lat1, double lng1, double lat2, double lng2) {
+        double dLat = Math.toRadians(lat2 - lat1);
+        double dLon = Math.toRadians(lng2 - lng1);
 
         double a = Math.sin(dLat / 2) * Math.sin(dLat / 2)
-                + Math.cos(Math.toRadians(lat1.doubleValue()))
-                * Math.cos(Math.toRadians(lat2.doubleValue()))
+                + Math.cos(Math.toRadians(lat1))
+                * Math.cos(Math.toRadians(lat2))
                 * Math.sin(dLon / 2) * Math.sin(dLon / 2);
 
         double c = 2 * Math.atan2(Math.sqrt(a), Math.sqrt(1 - a));
@@ -122,14 +138,46 @@ public class GeometryUtils {
     }
 
     /**
-     * Calcula la distancia entre dos puntos usando doubles
-     * @return Distancia en kilómetros
+     * Distancia aproximada con proyección equirectangular (sin funciones trigonométricas por llamada).
+     * Error despreciable a escala de un viaje; usar para prefiltros y distancias informativas.
+     * @param cosLat Coseno de la latitud de referencia, precalculado por el llamador
+     * @return Distancia en metros
      */
-    public static double calcularDistancia(double lat1, double lng1, double lat2, double lng2) {
-        return calcularDistancia(
-                BigDecimal.valueOf(lat1), BigDecimal.valueOf(lng1),
-                BigDecimal.valueOf(lat2), BigDecimal.valueOf(lng2)
-        );
+    public static double calcularDistanciaEquirectangularMetros(
+            double lat1, double lng1,
+            double lat2, double lng2,
+            double cosLat
+    ) {
+        double dx = (lng2 - lng1) * cosLat * METROS_POR_GRADO;
+        double dy = (lat2 - lat1) * METROS_POR_GRADO;
+        return Math.sqrt(dx * dx + dy * dy);
+    }
+
+    /**
+     * Ray casting sobre vértices en arreglos paralelos (grados)
+     */
+    public static boolean puntoEnPoligono(double lat, double lng, double[] lats, double[] lngs) {
+        int n = lats.length;
+        if (n < 3) {
+            return false;
+        }
+
+        boolean inside = false;
+        for (int i = 0, j = n - 1; i < n; j = i++) {
+            boolean intersect = ((lats[i] > lat) != (lats[j] > lat))
+                    && (lng < (lngs[j] - lngs[i]) * (lat - lats[i]) / (lats[j] - lats[i]) + lngs[i]);
+            if (intersect) {
+                inside = !inside;
+            }
+        }
+        return inside;
+    }
+
+    /**
+     * Metros por grado de latitud (útil para convertir radios a bounding boxes en grados)
+     */
+    public static double metrosPorGrado() {
+        return METROS_POR_GRADO;
     }
 
     /**
@@ -289,4 +337,184 @@ public class GeometryUtils {
                 .min((p1, p2) -> p1.getOrden().compareTo(p2.getOrden()))
                 .orElse(null);
     }
-}
\ No newline at end of file
+
+    // ==================== SIMPLIFICACIÓN DE TRAYECTORIAS ====================
+
+    /**
+     * Simplifica una trayectoria con Douglas-Peucker (iterativo, sin recursión)
+     * @param toleranciaMetros Distancia perpendicular máxima que puede desviarse la ruta simplificada
+     * @return Subconjunto ordenado de los puntos originales; siempre conserva el primero y el último
+     */
+    public static List<UbicacionDto> simplificarDouglasPeucker(List<UbicacionDto> puntos, double toleranciaMetros) {
+        int n = puntos.size();
+        if (n < 3 || toleranciaMetros <= 0) {
+            return puntos;
+        }
+
+        double[][] xy = proyectarMetros(puntos);
+        boolean[] conservar = new boolean[n];
+        conservar[0] = true;
+        conservar[n - 1] = true;
+
+        Deque<int[]> pendientes = new ArrayDeque<>();
+        pendientes.push(new int[]{0, n - 1});
+
+        while (!pendientes.isEmpty()) {
+            int[] tramo = pendientes.pop();
+            int inicio = tramo[0];
+            int fin = tramo[1];
+
+            double distanciaMaxima = 0;
+            int indiceMaximo = -1;
+            for (int i = inicio + 1; i < fin; i++) {
+                double distancia = distanciaASegmento(xy[i], xy[inicio], xy[fin]);
+                if (distancia > distanciaMaxima) {
+                    distanciaMaxima = distancia;
+                    indiceMaximo = i;
+                }
+            }
+
+            if (indiceMaximo != -1 && distanciaMaxima > toleranciaMetros) {
+                conservar[indiceMaximo] = true;
+                pendientes.push(new int[]{inicio, indiceMaximo});
+                pendientes.push(new int[]{indiceMaximo, fin});
+            }
+        }
+
+        List<UbicacionDto> resultado = new ArrayList<>();
+        for (int i = 0; i < n; i++) {
+            if (conservar[i]) {
+                resultado.add(puntos.get(i));
+            }
+        }
+        return resultado;
+    }
+
+    /**
+     * Simplifica una trayectoria con Visvalingam-Whyatt: elimina primero los puntos que forman
+     * el triángulo de menor área con sus vecinos
+     * @param toleranciaMetros Se usa toleranciaMetros² como área mínima efectiva (m²) para conservar un punto
+     * @return Subconjunto ordenado de los puntos originales; siempre conserva el primero y el último
+     */
+    public static List<UbicacionDto> simplificarVisvalingam(List<UbicacionDto> puntos, double toleranciaMetros) {
+        int n = puntos.size();
+        if (n < 3 || toleranciaMetros <= 0) {
+            return puntos;
+        }
+
+        double areaMinima = toleranciaMetros * toleranciaMetros;
+        double[][] xy = proyectarMetros(puntos);
+        int[] anterior = new int[n];
+        int[] siguiente = new int[n];
+        double[] area = new double[n];
+        boolean[] eliminado = new boolean[n];
+
+        // Cola con borrado perezoso: {área, índice}; se descartan entradas cuya área ya no es la vigente
+        PriorityQueue<double[]> cola = new PriorityQueue<>((a, b) -> Double.compare(a[0], b[0]));
+        for (int i = 0; i < n; i++) {
+            anterior[i] = i - 1;
+            siguiente[i] = i + 1;
+            if (i > 0 && i < n - 1) {
+                area[i] = areaTriangulo(xy[i - 1], xy[i], xy[i + 1]);
+                cola.add(new double[]{area[i], i});
+            }
+        }
+
+        double areaMaximaEliminada = 0;
+        while (!cola.isEmpty()) {
+            double[] entrada = cola.poll();
+            int i = (int) entrada[1];
+            if (eliminado[i] || entrada[0] != area[i]) {
+                continue;
+            }
+
+            // Área efectiva monótona: un punto no puede valer menos que uno ya eliminado
+            double efectiva = Math.max(area[i], areaMaximaEliminada);
+            if (efectiva >= areaMinima) {
+                break;
+            }
+            areaMaximaEliminada = efectiva;
+            eliminado[i] = true;
+
+            int a = anterior[i];
+            int b = siguiente[i];
+            siguiente[a] = b;
+            anterior[b] = a;
+
+            if (a > 0) {
+                area[a] = areaTriangulo(xy[anterior[a]], xy[a], xy[b]);
+                cola.add(new double[]{area[a], a});
+            }
+            if (b < n - 1) {
+                area[b] = areaTriangulo(xy[a], xy[b], xy[siguiente[b]]);
+                cola.add(new double[]{area[b], b});
+            }
+        }
+
+        List<UbicacionDto> resultado = new ArrayList<>();
+        for (int i = 0; i < n; i++) {
+            if (!eliminado[i]) {
+                resultado.add(puntos.get(i));
+            }
+        }
+        return resultado;
+    }
+
+    /**
+     * Codifica la trayectoria en formato Encoded Polyline (precisión 1e-5), compatible con
+     * Google Maps, Leaflet (polyline-encoded) y Mapbox
+     */
+    public static String codificarPolyline(List<UbicacionDto> puntos) {
+        StringBuilder resultado = new StringBuilder(puntos.size() * 8);
+        long latAnterior = 0;
+        long lngAnterior = 0;
+
+        for (UbicacionDto punto : puntos) {
+            long lat = Math.round(punto.getLat() * 1e5);
+            long lng = Math.round(punto.getLng() * 1e5);
+            codificarValorPolyline(lat - latAnterior, resultado);
+            codificarValorPolyline(lng - lngAnterior, resultado);
+            latAnterior = lat;
+            lngAnterior = lng;
+        }
+
+        return resultado.toString();
+    }
+
+    private static void codificarValorPolyline(long valor, StringBuilder resultado) {
+        long v = valor < 0 ? ~(valor << 1) : valor << 1;
+        while (v >= 0x20) {
+            resultado.append((char) ((0x20 | (v & 0x1f)) + 63));
+            v >>= 5;
+        }
+        resultado.append((char) (v + 63));
+    }
+
+    /**
+     * Proyección equirectangular local a metros, suficiente para las distancias de un viaje
+     */
+    private static double[][] proyectarMetros(List<UbicacionDto> puntos) {
+        double cosLat = Math.cos(Math.toRadians(puntos.getFirst().getLat()));
+        double[][] xy = new double[puntos.size()][];
+        for (int i = 0; i < puntos.size(); i++) {
+            UbicacionDto p = puntos.get(i);
+            xy[i] = new double[]{p.getLng() * METROS_POR_GRADO * cosLat, p.getLat() * METROS_POR_GRADO};
+        }
+        return xy;
+    }
+
+    private static double distanciaASegmento(double[] p, double[] a, double[] b) {
+        double dx = b[0] - a[0];
+        double dy = b[1] - a[1];
+        double longitud2 = dx * dx + dy * dy;
+        if (longitud2 == 0) {
+            return Math.hypot(p[0] - a[0], p[1] - a[1]);
+        }
+        double t = Math.max(0, Math.min(1, ((p[0] - a[0]) * dx + (p[1] - a[1]) * dy) / longitud2));
+        return Math.hypot(p[0] - (a[0] + t * dx), p[1] - (a[1] + t * dy));
+    }
+
+    private static double areaTriangulo(double[] a, double[] b, double[] c) {
+        return Math.abs((a[0] * (b[1] - c[1]) + b[0] * (c[1] - a[1]) + c[0] * (a[1] - b[1])) / 2);
+    }
+}
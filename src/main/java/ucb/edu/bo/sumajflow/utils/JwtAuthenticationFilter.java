@@ -5,13 +5,11 @@ import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
-import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Component;
 import org.springframework.web.filter.OncePerRequestFilter;
 
 import java.io.IOException;
-import java.util.Collections;
 
 @Component
 public class JwtAuthenticationFilter extends OncePerRequestFilter {
@@ -35,15 +33,12 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
 
         try {
             String token = extractToken(request);
+            // Una sola verificación del token (o ninguna, si ya está en la caché de JwtUtil)
+            UsuarioAutenticado usuario = token != null ? jwtUtil.autenticarAcceso(token).orElse(null) : null;
 
-            if (token != null && jwtUtil.validateToken(token) && jwtUtil.isAccessToken(token)) {
-                String correo = jwtUtil.extractCorreo(token);
-                String rol = jwtUtil.extractRol(token);
-                Integer usuarioId = jwtUtil.extractUsuarioId(token);
-                Boolean aprobado = jwtUtil.extractAprobado(token);
-
+            if (usuario != null) {
                 //  Si es socio no aprobad
-                if ("socio".equalsIgnoreCase(rol) && !Boolean.TRUE.equals(aprobado)) {
+                if ("socio".equalsIgnoreCase(usuario.rol()) && !Boolean.TRUE.equals(usuario.aprobado())) {
                     String uri = request.getRequestURI();
                     if (!uri.startsWith("/auth/") &&
                             !uri.startsWith("/public/") &&
@@ -60,16 +55,12 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
                     }
                 }
 
-                // Crear autenticación
+                // Crear autenticación (getName() devuelve el correo)
                 UsernamePasswordAuthenticationToken authentication =
-                        new UsernamePasswordAuthenticationToken(
-                                correo,
-                                null,
-                                Collections.singletonList(new SimpleGrantedAuthority("ROLE_" + rol.toUpperCase()))
-                        );
+                        new UsernamePasswordAuthenticationToken(usuario, null, usuario.autoridades());
 
                 // Agregar detalles adicionales (ID del usuario)
-                authentication.setDetails(usuarioId);
+                authentication.setDetails(usuario.usuarioId());
 
                 // Establecer en el contexto de seguridad
                 SecurityContextHolder.getContext().setAuthentication(authentication);
@@ -1,19 +1,26 @@
 package ucb.edu.bo.sumajflow.utils;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
 import io.jsonwebtoken.*;
 import io.jsonwebtoken.security.Keys;
+import jakarta.annotation.PostConstruct;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
 import javax.crypto.SecretKey;
 import java.nio.charset.StandardCharsets;
-import java.util.Date;
-import java.util.HashMap;
-import java.util.Map;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Function;
 
 /**
- * Utilidad para generar y validar tokens JWT
+ * Utilidad para generar y validar tokens JWT.
+ * La clave y el parser se construyen una vez; cada token se verifica (HMAC + JSON) una sola vez y sus
+ * claims quedan en una caché acotada, indexada por el hash SHA-256 del token y que expira con él.
  */
 @Component
 public class JwtUtil {
@@ -30,13 +37,83 @@ public class JwtUtil {
     @Value("${jwt.issuer}")
     private String issuer;
 
+    @Value("${jwt.cache.tamano-maximo:10000}")
+    private long tamanoMaximoCache;
+
+    private SecretKey signingKey;
+    private JwtParser parser;
+    private Cache<String, TokenVerificado> verificados;
+
+    @PostConstruct
+    public void iniciar() {
+        // Genera la clave HMAC SHA de 256 bits
+        signingKey = Keys.hmacShaKeyFor(secret.getBytes(StandardCharsets.UTF_8));
+        parser = Jwts.parser().verifyWith(signingKey).build();
+        verificados = Caffeine.newBuilder()
+                .maximumSize(tamanoMaximoCache)
+                .expireAfter(new Expiry<String, TokenVerificado>() {
+                    @Override
+                    public long expireAfterCreate(String clave, TokenVerificado token, long ahora) {
+                        long restanteMs = token.expiracion() == null
+                                ? 0 : token.expiracion().getTime() - System.currentTimeMillis();
+                        return TimeUnit.MILLISECONDS.toNanos(Math.max(restanteMs, 0));
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(String clave, TokenVerificado token, long ahora, long duracionActual) {
+                        return duracionActual;
+                    }
+
+                    @Override
+                    public long expireAfterRead(String clave, TokenVerificado token, long ahora, long duracionActual) {
+                        return duracionActual;
+                    }
+                })
+                .build();
+    }
+
     /**
-     * Genera una clave secreta a partir del secret string
+     * Clave HMAC construida al iniciar
      */
     private SecretKey getSigningKey() {
-        byte[] keyBytes = secret.getBytes(StandardCharsets.UTF_8);
-        // Genera la clave HMAC SHA de 256 bits
-        return Keys.hmacShaKeyFor(keyBytes);
+        return signingKey;
+    }
+
+    // ==================== VERIFICACIÓN ====================
+
+    /**
+     * Verifica el token una sola vez y devuelve sus claims; las siguientes llamadas con el mismo
+     * token salen de la caché hasta que expira.
+     * @throws JwtException si la firma no es válida o el token expiró
+     * @throws IllegalArgumentException si el token está vacío
+     */
+    public TokenVerificado verificar(String token) {
+        if (token == null || token.isBlank()) {
+            throw new IllegalArgumentException("Token vacío");
+        }
+
+        String clave = hashToken(token);
+        TokenVerificado verificado = verificados.getIfPresent(clave);
+        if (verificado != null) {
+            return verificado;
+        }
+
+        verificado = TokenVerificado.de(parser.parseSignedClaims(token).getPayload());
+        verificados.put(clave, verificado);
+        return verificado;
+    }
+
+    /**
+     * Usuario de un token de acceso válido (filtro HTTP y CONNECT de WebSocket); vacío si el token
+     * es inválido, expiró o es de refresco
+     */
+    public Optional<UsuarioAutenticado> autenticarAcceso(String token) {
+        try {
+            TokenVerificado verificado = verificar(token);
+            return verificado.esAcceso() ? Optional.of(verificado.usuario()) : Optional.empty();
+        } catch (JwtException | IllegalArgumentException e) {
+            return Optional.empty();
+        }
     }
 
     /**
@@ -90,40 +167,40 @@ public class JwtUtil {
      * Extrae el correo del token
      */
     public String extractCorreo(String token) {
-        return extractClaim(token, Claims::getSubject);
+        return verificar(token).usuario().correo();
     }
 
     /**
      * Extrae el ID del usuario del token
      */
     public Integer extractUsuarioId(String token) {
-        return extractClaim(token, claims -> claims.get("id", Integer.class));
+        return verificar(token).usuario().usuarioId();
     }
 
     // Metodo para extraer el estado de aprobación
     public Boolean extractAprobado(String token) {
-        return extractClaim(token, claims -> claims.get("aprobado", Boolean.class));
+        return verificar(token).usuario().aprobado();
     }
 
     /**
      * Extrae el rol del usuario del token
      */
     public String extractRol(String token) {
-        return extractClaim(token, claims -> claims.get("rol", String.class));
+        return verificar(token).usuario().rol();
     }
 
     /**
      * Extrae el tipo de token (access o refresh)
      */
     public String extractTokenType(String token) {
-        return extractClaim(token, claims -> claims.get("type", String.class));
+        return verificar(token).tipo();
     }
 
     /**
      * Extrae la fecha de expiración del token
      */
     public Date extractExpiration(String token) {
-        return extractClaim(token, Claims::getExpiration);
+        return verificar(token).expiracion();
     }
 
     /**
@@ -138,11 +215,7 @@ public class JwtUtil {
      * Extrae todos los claims del token
      */
     private Claims extractAllClaims(String token) {
-        return Jwts.parser()
-                .verifyWith(getSigningKey())
-                .build()
-                .parseSignedClaims(token)
-                .getPayload();
+        return parser.parseSignedClaims(token).getPayload();
     }
 
     /**
@@ -172,10 +245,6 @@ public class JwtUtil {
      */
     public Boolean validateToken(String token) {
         try {
-            Jwts.parser()
-                    .verifyWith(getSigningKey())
-                    .build()
-                    .parseSignedClaims(token);
             return !isTokenExpired(token);
         } catch (JwtException | IllegalArgumentException e) {
             return false;
@@ -186,15 +255,27 @@ public class JwtUtil {
      * Verifica si es un token de acceso
      */
     public Boolean isAccessToken(String token) {
-        String type = extractTokenType(token);
-        return "access".equals(type);
+        return verificar(token).esAcceso();
     }
 
     /**
      * Verifica si es un refresh token
      */
     public Boolean isRefreshToken(String token) {
-        String type = extractTokenType(token);
-        return "refresh".equals(type);
+        return verificar(token).esRefresco();
+    }
+
+    // ==================== MÉTODOS PRIVADOS ====================
+
+    /**
+     * Clave de la caché: hash del token, para no retener los tokens en memoria
+     */
+    private static String hashToken(String token) {
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(token.getBytes(StandardCharsets.UTF_8));
+            return Base64.getEncoder().encodeToString(hash);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 no disponible", e);
+        }
     }
-}
\ No newline at end of file
+}
@@ -54,6 +54,7 @@ public class SecurityConfig {
                 "Accept",
                 "Authorization",
                 "X-Requested-With",
+                "X-Asignacion-Camion-Id",
                 "Access-Control-Request-Method",
                 "Access-Control-Request-Headers"
         ));
@@ -0,0 +1,33 @@
+package ucb.edu.bo.sumajflow.utils;
+
+import io.jsonwebtoken.Claims;
+
+import java.util.Date;
+
+/**
+ * Claims de un token JWT con la firma ya verificada, tal como los guarda la caché de {@link JwtUtil}
+ */
+public record TokenVerificado(
+        UsuarioAutenticado usuario,
+        String tipo,
+        Date expiracion
+) {
+
+    static TokenVerificado de(Claims claims) {
+        UsuarioAutenticado usuario = new UsuarioAutenticado(
+                claims.get("id", Integer.class),
+                claims.getSubject(),
+                claims.get("rol", String.class),
+                claims.get("aprobado", Boolean.class)
+        );
+        return new TokenVerificado(usuario, claims.get("type", String.class), claims.getExpiration());
+    }
+
+    public boolean esAcceso() {
+        return "access".equals(tipo);
+    }
+
+    public boolean esRefresco() {
+        return "refresh".equals(tipo);
+    }
+}
@@ -0,0 +1,28 @@
+package ucb.edu.bo.sumajflow.utils;
+
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+
+import java.security.Principal;
+import java.util.List;
+
+/**
+ * Usuario de un token JWT ya verificado. Es el principal de la autenticación HTTP:
+ * getName() sigue devolviendo el correo y el ID del usuario queda también en los details.
+ */
+public record UsuarioAutenticado(
+        Integer usuarioId,
+        String correo,
+        String rol,
+        Boolean aprobado
+) implements Principal {
+
+    @Override
+    public String getName() {
+        return correo;
+    }
+
+    public List<GrantedAuthority> autoridades() {
+        return List.of(new SimpleGrantedAuthority("ROLE_" + rol.toUpperCase()));
+    }
+}
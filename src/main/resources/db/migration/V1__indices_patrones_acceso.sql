@@ -0,0 +1,84 @@
+-- =====================================================================
+-- V1 — ÍNDICES SEGÚN LOS PATRONES DE ACCESO DE LOS REPOSITORIOS
+-- =====================================================================
+-- PostgreSQL no indexa las claves foráneas automáticamente; cada índice
+-- indica la consulta que lo usa. IF NOT EXISTS permite aplicar la migración
+-- sobre bases que ya tengan alguno creado a mano (p. ej. desde scheme.sql).
+-- =====================================================================
+
+-- ---------------------------------------------------------------------
+-- lotes
+-- ---------------------------------------------------------------------
+-- LotesRepository.findByMinasIdInWithFilters (minas_id = ANY(...) ordenado por fecha)
+CREATE INDEX IF NOT EXISTS idx_lotes_minas_fecha ON lotes (minas_id, fecha_creacion DESC);
+-- Bandejas por estado (pendientes de aprobación, en transporte, etc.)
+CREATE INDEX IF NOT EXISTS idx_lotes_estado_fecha ON lotes (estado, fecha_creacion DESC);
+
+-- Relaciones lote ↔ destino (existenLotesEnProcesoPara*, obtenerLotesEnProcesoPara*)
+CREATE INDEX IF NOT EXISTS idx_lote_ingenio_ingenio ON lote_ingenio (ingenio_minero_id);
+CREATE INDEX IF NOT EXISTS idx_lote_ingenio_lote ON lote_ingenio (lotes_id);
+CREATE INDEX IF NOT EXISTS idx_lote_comercializadora_comercializadora ON lote_comercializadora (comercializadora_id);
+CREATE INDEX IF NOT EXISTS idx_lote_comercializadora_lote ON lote_comercializadora (lotes_id);
+CREATE INDEX IF NOT EXISTS idx_lote_minerales_lote ON lote_minerales (lotes_id);
+
+-- ---------------------------------------------------------------------
+-- asignacion_camion / pesajes
+-- ---------------------------------------------------------------------
+-- Camiones de un lote (detalle de lote, monitoreo)
+CREATE INDEX IF NOT EXISTS idx_asignacion_camion_lote ON asignacion_camion (lotes_id);
+-- TransportistaRepository.findDisponiblesByCooperativa / isDisponible (NOT EXISTS por transportista y estado)
+CREATE INDEX IF NOT EXISTS idx_asignacion_camion_transportista_estado ON asignacion_camion (transportista_id, estado);
+-- Pesajes de una asignación
+CREATE INDEX IF NOT EXISTS idx_pesajes_asignacion ON pesajes (asignacion_camion_id);
+
+-- ---------------------------------------------------------------------
+-- transportistas
+-- ---------------------------------------------------------------------
+-- findDisponiblesByCooperativa (EXISTS por cooperativa e invitación)
+CREATE INDEX IF NOT EXISTS idx_invitacion_cooperativa_cooperativa
+    ON invitacion_cooperativa (cooperativa_id, invitacion_transportista_id);
+
+-- ---------------------------------------------------------------------
+-- liquidaciones (LiquidacionSpecifications, orden created_at DESC, id DESC)
+-- ---------------------------------------------------------------------
+CREATE INDEX IF NOT EXISTS idx_liquidacion_socio_creada ON liquidacion (socio_id, created_at DESC, id DESC);
+CREATE INDEX IF NOT EXISTS idx_liquidacion_comercializadora_creada
+    ON liquidacion (comercializadora_id, created_at DESC, id DESC);
+CREATE INDEX IF NOT EXISTS idx_liquidacion_estado ON liquidacion (estado);
+-- deIngenio (EXISTS sobre los lotes/concentrados liquidados) y carga de detalle
+CREATE INDEX IF NOT EXISTS idx_liquidacion_lote_liquidacion ON liquidacion_lote (liquidacion_id);
+CREATE INDEX IF NOT EXISTS idx_liquidacion_lote_lote ON liquidacion_lote (lotes_id);
+CREATE INDEX IF NOT EXISTS idx_liquidacion_concentrado_liquidacion ON liquidacion_concentrado (liquidacion_id);
+CREATE INDEX IF NOT EXISTS idx_liquidacion_concentrado_concentrado ON liquidacion_concentrado (concentrado_id);
+CREATE INDEX IF NOT EXISTS idx_liquidacion_deduccion_liquidacion ON liquidacion_deduccion (liquidacion_id);
+CREATE INDEX IF NOT EXISTS idx_liquidacion_cotizacion_liquidacion ON liquidacion_cotizacion (liquidacion_id);
+
+-- ---------------------------------------------------------------------
+-- concentrados
+-- ---------------------------------------------------------------------
+CREATE INDEX IF NOT EXISTS idx_concentrado_ingenio ON concentrado (ingenio_minero_id);
+CREATE INDEX IF NOT EXISTS idx_concentrado_socio_propietario ON concentrado (socio_propietario_id);
+CREATE INDEX IF NOT EXISTS idx_lote_concentrado_relacion_lote ON lote_concentrado_relacion (lote_complejo_id);
+CREATE INDEX IF NOT EXISTS idx_lote_concentrado_relacion_concentrado ON lote_concentrado_relacion (concentrado_id);
+CREATE INDEX IF NOT EXISTS idx_lote_proceso_planta_concentrado ON lote_proceso_planta (concentrado_id);
+
+-- ---------------------------------------------------------------------
+-- minas / cooperativas
+-- ---------------------------------------------------------------------
+CREATE INDEX IF NOT EXISTS idx_minas_socio ON minas (socio_id);
+CREATE INDEX IF NOT EXISTS idx_minas_sector ON minas (sectores_id);
+CREATE INDEX IF NOT EXISTS idx_sectores_cooperativa ON sectores (cooperativa_id);
+CREATE INDEX IF NOT EXISTS idx_cooperativa_socio_cooperativa ON cooperativa_socio (cooperativa_id);
+CREATE INDEX IF NOT EXISTS idx_cooperativa_socio_socio ON cooperativa_socio (socio_id);
+
+-- ---------------------------------------------------------------------
+-- notificaciones (NotificacionSpecifications, orden fecha_creacion DESC, id DESC)
+-- ---------------------------------------------------------------------
+CREATE INDEX IF NOT EXISTS idx_notificaciones_usuario_fecha ON notificaciones (usuarios_id, fecha_creacion DESC, id DESC);
+CREATE INDEX IF NOT EXISTS idx_notificaciones_usuario_no_leidas ON notificaciones (usuarios_id) WHERE leido = false;
+
+-- ---------------------------------------------------------------------
+-- auditoría
+-- ---------------------------------------------------------------------
+CREATE INDEX IF NOT EXISTS idx_auditoria_fecha_operacion ON auditoria (fecha_operacion DESC);
+CREATE INDEX IF NOT EXISTS idx_auditoria_lotes_lote ON auditoria_lotes (lote_id, fecha_registro);
@@ -0,0 +1,190 @@
+-- =====================================================================
+-- V2 — RESÚMENES PRE-AGREGADOS PARA LOS DASHBOARDS
+-- =====================================================================
+-- Dos tablas por actor (socio, cooperativa, ingenio, comercializadora):
+--   resumen_estado_actor  → foto actual: lotes, concentrados y liquidaciones por estado
+--   resumen_diario_actor  → métricas por día: pagos, viajes, aprobaciones, producción
+-- Las vistas v_resumen_* definen cómo se calculan desde las tablas operativas.
+-- ResumenDashboardService recalcula solo los actores afectados en la misma
+-- transacción que cambia el estado, y ResumenDashboardReconciliador compara
+-- periódicamente tablas y vistas para corregir cualquier desviación.
+-- =====================================================================
+
+CREATE TABLE IF NOT EXISTS resumen_estado_actor (
+    tipo_actor VARCHAR(20) NOT NULL,
+    actor_id   INTEGER     NOT NULL,
+    entidad    VARCHAR(20) NOT NULL,
+    categoria  VARCHAR(50) NOT NULL,
+    estado     VARCHAR(70) NOT NULL,
+    cantidad   BIGINT      NOT NULL,
+    monto      NUMERIC(18, 4) NOT NULL,
+    peso       NUMERIC(18, 4) NOT NULL,
+    PRIMARY KEY (tipo_actor, actor_id, entidad, categoria, estado)
+);
+
+CREATE TABLE IF NOT EXISTS resumen_diario_actor (
+    tipo_actor   VARCHAR(20) NOT NULL,
+    actor_id     INTEGER     NOT NULL,
+    metrica      VARCHAR(30) NOT NULL,
+    fecha        DATE        NOT NULL,
+    categoria    VARCHAR(50) NOT NULL,
+    cantidad     BIGINT      NOT NULL,
+    monto        NUMERIC(18, 4) NOT NULL,
+    peso         NUMERIC(18, 4) NOT NULL,
+    horas_espera BIGINT      NOT NULL,
+    PRIMARY KEY (tipo_actor, actor_id, metrica, fecha, categoria)
+);
+
+-- ---------------------------------------------------------------------
+-- JSON guardado como texto
+-- ---------------------------------------------------------------------
+-- scheme.sql declara asignacion_camion.observaciones como varchar; la columna puede
+-- traer texto que no es JSON. NULL en lugar de abortar la migración o la vista.
+CREATE OR REPLACE FUNCTION jsonb_o_nulo(texto TEXT) RETURNS JSONB
+    LANGUAGE plpgsql IMMUTABLE AS
+$$
+BEGIN
+    RETURN CAST(texto AS JSONB);
+EXCEPTION
+    WHEN others THEN
+        RETURN NULL;
+END;
+$$;
+
+-- ---------------------------------------------------------------------
+-- Foto por estado
+-- ---------------------------------------------------------------------
+-- categoria: '' para lotes, mineral principal para concentrados, tipo_liquidacion para liquidaciones
+-- monto: suma de valor_neto_bob (liquidaciones) · peso: peso real del lote / peso final del concentrado
+CREATE OR REPLACE VIEW v_resumen_estado_actor AS
+SELECT CAST('socio' AS VARCHAR(20)) AS tipo_actor, m.socio_id AS actor_id,
+       CAST('lote' AS VARCHAR(20)) AS entidad, CAST('' AS VARCHAR(50)) AS categoria, l.estado,
+       COUNT(*) AS cantidad, CAST(0 AS NUMERIC(18, 4)) AS monto,
+       CAST(COALESCE(SUM(l.peso_total_real), 0) AS NUMERIC(18, 4)) AS peso
+FROM lotes l
+JOIN minas m ON m.id = l.minas_id
+GROUP BY m.socio_id, l.estado
+UNION ALL
+SELECT 'cooperativa', s.cooperativa_id, 'lote', '', l.estado,
+       COUNT(*), 0, COALESCE(SUM(l.peso_total_real), 0)
+FROM lotes l
+JOIN minas m ON m.id = l.minas_id
+JOIN sectores s ON s.id = m.sectores_id
+GROUP BY s.cooperativa_id, l.estado
+UNION ALL
+SELECT 'ingenio', li.ingenio_minero_id, 'lote', '', l.estado,
+       COUNT(*), 0, COALESCE(SUM(l.peso_total_real), 0)
+FROM lote_ingenio li
+JOIN lotes l ON l.id = li.lotes_id
+GROUP BY li.ingenio_minero_id, l.estado
+UNION ALL
+SELECT 'comercializadora', lc.comercializadora_id, 'lote', '', l.estado,
+       COUNT(*), 0, COALESCE(SUM(l.peso_total_real), 0)
+FROM lote_comercializadora lc
+JOIN lotes l ON l.id = lc.lotes_id
+GROUP BY lc.comercializadora_id, l.estado
+UNION ALL
+SELECT 'socio', c.socio_propietario_id, 'concentrado', COALESCE(c.mineral_principal, ''), COALESCE(c.estado, ''),
+       COUNT(*), 0, COALESCE(SUM(c.peso_final), 0)
+FROM concentrado c
+WHERE c.socio_propietario_id IS NOT NULL
+GROUP BY c.socio_propietario_id, COALESCE(c.mineral_principal, ''), COALESCE(c.estado, '')
+UNION ALL
+SELECT 'ingenio', c.ingenio_minero_id, 'concentrado', COALESCE(c.mineral_principal, ''), COALESCE(c.estado, ''),
+       COUNT(*), 0, COALESCE(SUM(c.peso_final), 0)
+FROM concentrado c
+GROUP BY c.ingenio_minero_id, COALESCE(c.mineral_principal, ''), COALESCE(c.estado, '')
+UNION ALL
+SELECT 'socio', l.socio_id, 'liquidacion', l.tipo_liquidacion, COALESCE(l.estado, ''),
+       COUNT(*), COALESCE(SUM(l.valor_neto_bob), 0), 0
+FROM liquidacion l
+GROUP BY l.socio_id, l.tipo_liquidacion, COALESCE(l.estado, '')
+UNION ALL
+SELECT 'comercializadora', l.comercializadora_id, 'liquidacion', l.tipo_liquidacion, COALESCE(l.estado, ''),
+       COUNT(*), COALESCE(SUM(l.valor_neto_bob), 0), 0
+FROM liquidacion l
+WHERE l.comercializadora_id IS NOT NULL
+GROUP BY l.comercializadora_id, l.tipo_liquidacion, COALESCE(l.estado, '')
+UNION ALL
+-- Mismo criterio que LiquidacionRepository.findByIngenioMineroId (lotes liquidados del ingenio);
+-- el DISTINCT evita contar dos veces una liquidación con varios lotes del mismo ingenio
+SELECT 'ingenio', i.ingenio_minero_id, 'liquidacion', l.tipo_liquidacion, COALESCE(l.estado, ''),
+       COUNT(*), COALESCE(SUM(l.valor_neto_bob), 0), 0
+FROM (
+    SELECT DISTINCT li.ingenio_minero_id, ll.liquidacion_id
+    FROM liquidacion_lote ll
+    JOIN lote_ingenio li ON li.lotes_id = ll.lotes_id
+) i
+JOIN liquidacion l ON l.id = i.liquidacion_id
+GROUP BY i.ingenio_minero_id, l.tipo_liquidacion, COALESCE(l.estado, '');
+
+-- ---------------------------------------------------------------------
+-- Métricas diarias
+-- ---------------------------------------------------------------------
+-- liquidacion_pagada: por fecha de pago y tipo (monto = valor_neto_bob)
+-- viaje_completado:   por fecha de fin (peso = peso neto del pesaje de origen, en kg)
+-- lote_aprobado / lote_rechazado: decisiones de la cooperativa (horas_espera desde la creación del lote)
+-- concentrado_creado: por fecha de creación (peso = peso final)
+CREATE OR REPLACE VIEW v_resumen_diario_actor AS
+SELECT CAST('socio' AS VARCHAR(20)) AS tipo_actor, l.socio_id AS actor_id,
+       CAST('liquidacion_pagada' AS VARCHAR(30)) AS metrica, CAST(l.fecha_pago AS DATE) AS fecha,
+       CAST(l.tipo_liquidacion AS VARCHAR(50)) AS categoria,
+       COUNT(*) AS cantidad, CAST(COALESCE(SUM(l.valor_neto_bob), 0) AS NUMERIC(18, 4)) AS monto,
+       CAST(0 AS NUMERIC(18, 4)) AS peso, CAST(0 AS BIGINT) AS horas_espera
+FROM liquidacion l
+WHERE l.estado = 'pagado' AND l.fecha_pago IS NOT NULL
+GROUP BY l.socio_id, CAST(l.fecha_pago AS DATE), l.tipo_liquidacion
+UNION ALL
+SELECT 'comercializadora', l.comercializadora_id, 'liquidacion_pagada', CAST(l.fecha_pago AS DATE), l.tipo_liquidacion,
+       COUNT(*), COALESCE(SUM(l.valor_neto_bob), 0), 0, 0
+FROM liquidacion l
+WHERE l.estado = 'pagado' AND l.fecha_pago IS NOT NULL AND l.comercializadora_id IS NOT NULL
+GROUP BY l.comercializadora_id, CAST(l.fecha_pago AS DATE), l.tipo_liquidacion
+UNION ALL
+SELECT 'ingenio', i.ingenio_minero_id, 'liquidacion_pagada', CAST(l.fecha_pago AS DATE), l.tipo_liquidacion,
+       COUNT(*), COALESCE(SUM(l.valor_neto_bob), 0), 0, 0
+FROM (
+    SELECT DISTINCT li.ingenio_minero_id, ll.liquidacion_id
+    FROM liquidacion_lote ll
+    JOIN lote_ingenio li ON li.lotes_id = ll.lotes_id
+) i
+JOIN liquidacion l ON l.id = i.liquidacion_id
+WHERE l.estado = 'pagado' AND l.fecha_pago IS NOT NULL
+GROUP BY i.ingenio_minero_id, CAST(l.fecha_pago AS DATE), l.tipo_liquidacion
+UNION ALL
+SELECT 'cooperativa', s.cooperativa_id, 'viaje_completado', CAST(ac.fecha_fin AS DATE), '',
+       COUNT(*),
+       0,
+       -- Valores no numéricos (o texto que no es JSON) cuentan como 0
+       CAST(COALESCE(SUM(CASE
+           WHEN jsonb_o_nulo(CAST(ac.observaciones AS TEXT)) -> 'pesaje_origen' ->> 'peso_neto_kg' ~ '^-?[0-9]+(\.[0-9]+)?$'
+           THEN CAST(jsonb_o_nulo(CAST(ac.observaciones AS TEXT)) -> 'pesaje_origen' ->> 'peso_neto_kg' AS NUMERIC)
+           ELSE 0 END), 0) AS NUMERIC(18, 4)),
+       0
+FROM asignacion_camion ac
+JOIN lotes l ON l.id = ac.lotes_id
+JOIN minas m ON m.id = l.minas_id
+JOIN sectores s ON s.id = m.sectores_id
+WHERE ac.estado = 'Completado' AND ac.fecha_fin IS NOT NULL
+GROUP BY s.cooperativa_id, CAST(ac.fecha_fin AS DATE)
+UNION ALL
+SELECT 'cooperativa', s.cooperativa_id,
+       CASE a.accion WHEN 'APROBAR_COOPERATIVA' THEN 'lote_aprobado' ELSE 'lote_rechazado' END,
+       CAST(a.fecha_registro AS DATE), '',
+       COUNT(*), 0, 0,
+       CAST(COALESCE(SUM(FLOOR(EXTRACT(EPOCH FROM (a.fecha_registro - l.fecha_creacion)) / 3600)), 0) AS BIGINT)
+FROM auditoria_lotes a
+JOIN lotes l ON l.id = a.lote_id
+JOIN minas m ON m.id = l.minas_id
+JOIN sectores s ON s.id = m.sectores_id
+WHERE a.accion IN ('APROBAR_COOPERATIVA', 'RECHAZAR_COOPERATIVA')
+GROUP BY s.cooperativa_id, a.accion, CAST(a.fecha_registro AS DATE)
+UNION ALL
+SELECT 'ingenio', c.ingenio_minero_id, 'concentrado_creado', CAST(c.created_at AS DATE), '',
+       COUNT(*), 0, COALESCE(SUM(c.peso_final), 0), 0
+FROM concentrado c
+GROUP BY c.ingenio_minero_id, CAST(c.created_at AS DATE);
+
+-- Carga inicial (al recalcular un actor, los filtros por actor_id llegan a los índices de V1)
+INSERT INTO resumen_estado_actor SELECT * FROM v_resumen_estado_actor;
+INSERT INTO resumen_diario_actor SELECT * FROM v_resumen_diario_actor;
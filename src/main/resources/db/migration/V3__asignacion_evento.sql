@@ -0,0 +1,123 @@
+-- =====================================================================
+-- V3 — EVENTOS DE VIAJE EN TABLA PROPIA (asignacion_evento)
+-- =====================================================================
+-- Cada transición del viaje inserta una fila en lugar de reescribir el
+-- JSON completo de asignacion_camion.observaciones. Fecha y coordenadas
+-- van en columnas (última ubicación por índice); el resto del evento
+-- (pesos, fotos, confirmaciones) en datos.
+-- Orden: crear tabla → copiar los eventos existentes → rehacer la vista
+-- que leía el JSON → eliminar la columna.
+-- =====================================================================
+
+CREATE TABLE IF NOT EXISTS asignacion_evento (
+    id                   SERIAL PRIMARY KEY,
+    asignacion_camion_id INTEGER     NOT NULL REFERENCES asignacion_camion (id) ON DELETE CASCADE,
+    tipo_evento          VARCHAR(40) NOT NULL,
+    fecha_registro       TIMESTAMP   NOT NULL,
+    lat                  DOUBLE PRECISION,
+    lng                  DOUBLE PRECISION,
+    datos                JSONB       NOT NULL DEFAULT '{}'::jsonb
+);
+
+-- Evidencias de un viaje y pesajes de los camiones de un lote (por asignación y tipo)
+CREATE INDEX IF NOT EXISTS idx_asignacion_evento_asignacion_tipo
+    ON asignacion_evento (asignacion_camion_id, tipo_evento, fecha_registro DESC, id DESC);
+-- Última ubicación conocida de cada viaje (dashboards de socio y cooperativa)
+CREATE INDEX IF NOT EXISTS idx_asignacion_evento_ubicacion
+    ON asignacion_evento (asignacion_camion_id, fecha_registro DESC, id DESC)
+    WHERE lat IS NOT NULL AND lng IS NOT NULL;
+-- Pesajes del día por cooperativa (monitor de balanzas)
+CREATE INDEX IF NOT EXISTS idx_asignacion_evento_tipo_fecha
+    ON asignacion_evento (tipo_evento, fecha_registro);
+
+-- ---------------------------------------------------------------------
+-- Copia de los eventos guardados en el JSON
+-- ---------------------------------------------------------------------
+-- Cada clave de observaciones es un evento; timestamp, lat y lng pasan a columnas.
+-- Sin timestamp legible se usa la última fecha conocida del viaje.
+INSERT INTO asignacion_evento (asignacion_camion_id, tipo_evento, fecha_registro, lat, lng, datos)
+SELECT ac.id,
+       LEFT(ev.key, 40),
+       CASE WHEN ev.value ->> 'timestamp' ~ '^[0-9]{4}-[0-9]{2}-[0-9]{2}T[0-9]{2}:[0-9]{2}'
+            THEN CAST(ev.value ->> 'timestamp' AS TIMESTAMP)
+            ELSE COALESCE(ac.fecha_fin, ac.fecha_inicio, ac.fecha_asignacion, now()) END,
+       CASE WHEN ev.value ->> 'lat' ~ '^-?[0-9]+(\.[0-9]+)?$' THEN CAST(ev.value ->> 'lat' AS DOUBLE PRECISION) END,
+       CASE WHEN ev.value ->> 'lng' ~ '^-?[0-9]+(\.[0-9]+)?$' THEN CAST(ev.value ->> 'lng' AS DOUBLE PRECISION) END,
+       CASE WHEN jsonb_typeof(ev.value) = 'object'
+            THEN ev.value - 'timestamp' - 'lat' - 'lng'
+            ELSE jsonb_build_object('valor', ev.value) END
+FROM asignacion_camion ac
+CROSS JOIN LATERAL jsonb_each(jsonb_o_nulo(CAST(ac.observaciones AS TEXT))) ev
+-- jsonb_o_nulo (V2): el texto que no es JSON se omite en lugar de abortar la migración
+WHERE jsonb_typeof(jsonb_o_nulo(CAST(ac.observaciones AS TEXT))) = 'object';
+
+-- ---------------------------------------------------------------------
+-- Métricas diarias: viaje_completado toma el peso del evento pesaje_origen
+-- ---------------------------------------------------------------------
+CREATE OR REPLACE VIEW v_resumen_diario_actor AS
+SELECT CAST('socio' AS VARCHAR(20)) AS tipo_actor, l.socio_id AS actor_id,
+       CAST('liquidacion_pagada' AS VARCHAR(30)) AS metrica, CAST(l.fecha_pago AS DATE) AS fecha,
+       CAST(l.tipo_liquidacion AS VARCHAR(50)) AS categoria,
+       COUNT(*) AS cantidad, CAST(COALESCE(SUM(l.valor_neto_bob), 0) AS NUMERIC(18, 4)) AS monto,
+       CAST(0 AS NUMERIC(18, 4)) AS peso, CAST(0 AS BIGINT) AS horas_espera
+FROM liquidacion l
+WHERE l.estado = 'pagado' AND l.fecha_pago IS NOT NULL
+GROUP BY l.socio_id, CAST(l.fecha_pago AS DATE), l.tipo_liquidacion
+UNION ALL
+SELECT 'comercializadora', l.comercializadora_id, 'liquidacion_pagada', CAST(l.fecha_pago AS DATE), l.tipo_liquidacion,
+       COUNT(*), COALESCE(SUM(l.valor_neto_bob), 0), 0, 0
+FROM liquidacion l
+WHERE l.estado = 'pagado' AND l.fecha_pago IS NOT NULL AND l.comercializadora_id IS NOT NULL
+GROUP BY l.comercializadora_id, CAST(l.fecha_pago AS DATE), l.tipo_liquidacion
+UNION ALL
+SELECT 'ingenio', i.ingenio_minero_id, 'liquidacion_pagada', CAST(l.fecha_pago AS DATE), l.tipo_liquidacion,
+       COUNT(*), COALESCE(SUM(l.valor_neto_bob), 0), 0, 0
+FROM (
+    SELECT DISTINCT li.ingenio_minero_id, ll.liquidacion_id
+    FROM liquidacion_lote ll
+    JOIN lote_ingenio li ON li.lotes_id = ll.lotes_id
+) i
+JOIN liquidacion l ON l.id = i.liquidacion_id
+WHERE l.estado = 'pagado' AND l.fecha_pago IS NOT NULL
+GROUP BY i.ingenio_minero_id, CAST(l.fecha_pago AS DATE), l.tipo_liquidacion
+UNION ALL
+SELECT 'cooperativa', s.cooperativa_id, 'viaje_completado', CAST(ac.fecha_fin AS DATE), '',
+       COUNT(*),
+       0,
+       -- Valores no numéricos en el evento cuentan como 0
+       CAST(COALESCE(SUM(CASE
+           WHEN po.datos ->> 'peso_neto_kg' ~ '^-?[0-9]+(\.[0-9]+)?$'
+           THEN CAST(po.datos ->> 'peso_neto_kg' AS NUMERIC)
+           ELSE 0 END), 0) AS NUMERIC(18, 4)),
+       0
+FROM asignacion_camion ac
+JOIN lotes l ON l.id = ac.lotes_id
+JOIN minas m ON m.id = l.minas_id
+JOIN sectores s ON s.id = m.sectores_id
+LEFT JOIN LATERAL (
+    SELECT e.datos FROM asignacion_evento e
+    WHERE e.asignacion_camion_id = ac.id AND e.tipo_evento = 'pesaje_origen'
+    ORDER BY e.fecha_registro DESC, e.id DESC
+    LIMIT 1
+) po ON TRUE
+WHERE ac.estado = 'Completado' AND ac.fecha_fin IS NOT NULL
+GROUP BY s.cooperativa_id, CAST(ac.fecha_fin AS DATE)
+UNION ALL
+SELECT 'cooperativa', s.cooperativa_id,
+       CASE a.accion WHEN 'APROBAR_COOPERATIVA' THEN 'lote_aprobado' ELSE 'lote_rechazado' END,
+       CAST(a.fecha_registro AS DATE), '',
+       COUNT(*), 0, 0,
+       CAST(COALESCE(SUM(FLOOR(EXTRACT(EPOCH FROM (a.fecha_registro - l.fecha_creacion)) / 3600)), 0) AS BIGINT)
+FROM auditoria_lotes a
+JOIN lotes l ON l.id = a.lote_id
+JOIN minas m ON m.id = l.minas_id
+JOIN sectores s ON s.id = m.sectores_id
+WHERE a.accion IN ('APROBAR_COOPERATIVA', 'RECHAZAR_COOPERATIVA')
+GROUP BY s.cooperativa_id, a.accion, CAST(a.fecha_registro AS DATE)
+UNION ALL
+SELECT 'ingenio', c.ingenio_minero_id, 'concentrado_creado', CAST(c.created_at AS DATE), '',
+       COUNT(*), 0, COALESCE(SUM(c.peso_final), 0), 0
+FROM concentrado c
+GROUP BY c.ingenio_minero_id, CAST(c.created_at AS DATE);
+
+ALTER TABLE asignacion_camion DROP COLUMN IF EXISTS observaciones;
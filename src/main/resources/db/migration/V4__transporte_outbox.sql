@@ -0,0 +1,39 @@
+-- =====================================================================
+-- V4 — OUTBOX DE EFECTOS DE LAS TRANSICIONES DE VIAJE (transporte_outbox)
+-- =====================================================================
+-- Cada transición de TransporteBl inserta aquí sus efectos secundarios
+-- (tracking en MongoDB, estado del lote, WebSocket, auditoría,
+-- notificaciones) en la misma transacción que el cambio de estado.
+-- TransporteOutbox los procesa después, en orden por asignación:
+--   pendiente → procesado | fallido (agotó los reintentos)
+-- bloqueado_hasta es el arrendamiento de la fila mientras un worker la
+-- procesa; si la instancia cae, otra la retoma al vencer.
+-- =====================================================================
+
+CREATE TABLE IF NOT EXISTS transporte_outbox (
+    id                   BIGSERIAL PRIMARY KEY,
+    asignacion_camion_id INTEGER     NOT NULL,
+    tipo_efecto          VARCHAR(40) NOT NULL,
+    payload              JSONB       NOT NULL,
+    estado               VARCHAR(20) NOT NULL DEFAULT 'pendiente',
+    intentos             INTEGER     NOT NULL DEFAULT 0,
+    proximo_intento      TIMESTAMP   NOT NULL DEFAULT now(),
+    bloqueado_hasta      TIMESTAMP,
+    ultimo_error         TEXT,
+    fecha_creacion       TIMESTAMP   NOT NULL DEFAULT now(),
+    fecha_procesado      TIMESTAMP,
+    CONSTRAINT chk_transporte_outbox_estado CHECK (estado IN ('pendiente', 'procesado', 'fallido'))
+);
+
+-- Cabeza de la cola de cada asignación (orden por asignación)
+CREATE INDEX IF NOT EXISTS idx_transporte_outbox_pendiente_asignacion
+    ON transporte_outbox (asignacion_camion_id, id)
+    WHERE estado = 'pendiente';
+-- Pendientes listos para procesar
+CREATE INDEX IF NOT EXISTS idx_transporte_outbox_pendiente_proximo
+    ON transporte_outbox (proximo_intento, id)
+    WHERE estado = 'pendiente';
+-- Limpieza de procesados
+CREATE INDEX IF NOT EXISTS idx_transporte_outbox_procesado
+    ON transporte_outbox (fecha_procesado)
+    WHERE estado = 'procesado';
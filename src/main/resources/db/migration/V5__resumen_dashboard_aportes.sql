@@ -0,0 +1,148 @@
+-- =====================================================================
+-- V5 — APORTES POR FILA PARA EL MANTENIMIENTO INCREMENTAL DE RESÚMENES
+-- =====================================================================
+-- v_aporte_* devuelve, sin agrupar, lo que cada fila fuente aporta a los
+-- resúmenes: fuente = 'lote' | 'concentrado' | 'liquidacion' y fuente_id el
+-- id de esa fila. Los viajes y las decisiones de auditoría cuentan como aporte
+-- de su lote, así que un cambio de mina del lote también los mueve de cooperativa.
+-- ResumenDashboardService resta el aporte de una fila antes de su primer cambio
+-- en la transacción y suma el nuevo al confirmar (INSERT ... ON CONFLICT).
+-- Las vistas v_resumen_* pasan a agrupar estos aportes; las usa solo la
+-- reconciliación, que recalcula actores completos. Filtrar por fuente_id usa la
+-- clave primaria de cada tabla y, para viajes y auditoría, los índices por lote de V1.
+-- =====================================================================
+
+DROP VIEW IF EXISTS v_resumen_estado_actor;
+DROP VIEW IF EXISTS v_resumen_diario_actor;
+
+-- ---------------------------------------------------------------------
+-- Foto por estado
+-- ---------------------------------------------------------------------
+CREATE VIEW v_aporte_estado_actor AS
+SELECT CAST('lote' AS VARCHAR(20)) AS fuente, l.id AS fuente_id,
+       CAST('socio' AS VARCHAR(20)) AS tipo_actor, m.socio_id AS actor_id,
+       CAST('lote' AS VARCHAR(20)) AS entidad, CAST('' AS VARCHAR(50)) AS categoria,
+       CAST(l.estado AS VARCHAR(70)) AS estado,
+       CAST(0 AS NUMERIC(18, 4)) AS monto, CAST(COALESCE(l.peso_total_real, 0) AS NUMERIC(18, 4)) AS peso
+FROM lotes l
+JOIN minas m ON m.id = l.minas_id
+UNION ALL
+SELECT 'lote', l.id, 'cooperativa', s.cooperativa_id, 'lote', '', l.estado, 0, COALESCE(l.peso_total_real, 0)
+FROM lotes l
+JOIN minas m ON m.id = l.minas_id
+JOIN sectores s ON s.id = m.sectores_id
+UNION ALL
+SELECT 'lote', l.id, 'ingenio', li.ingenio_minero_id, 'lote', '', l.estado, 0, COALESCE(l.peso_total_real, 0)
+FROM lote_ingenio li
+JOIN lotes l ON l.id = li.lotes_id
+UNION ALL
+SELECT 'lote', l.id, 'comercializadora', lc.comercializadora_id, 'lote', '', l.estado, 0, COALESCE(l.peso_total_real, 0)
+FROM lote_comercializadora lc
+JOIN lotes l ON l.id = lc.lotes_id
+UNION ALL
+SELECT 'concentrado', c.id, 'socio', c.socio_propietario_id, 'concentrado',
+       COALESCE(c.mineral_principal, ''), COALESCE(c.estado, ''), 0, COALESCE(c.peso_final, 0)
+FROM concentrado c
+WHERE c.socio_propietario_id IS NOT NULL
+UNION ALL
+SELECT 'concentrado', c.id, 'ingenio', c.ingenio_minero_id, 'concentrado',
+       COALESCE(c.mineral_principal, ''), COALESCE(c.estado, ''), 0, COALESCE(c.peso_final, 0)
+FROM concentrado c
+UNION ALL
+SELECT 'liquidacion', l.id, 'socio', l.socio_id, 'liquidacion',
+       l.tipo_liquidacion, COALESCE(l.estado, ''), COALESCE(l.valor_neto_bob, 0), 0
+FROM liquidacion l
+UNION ALL
+SELECT 'liquidacion', l.id, 'comercializadora', l.comercializadora_id, 'liquidacion',
+       l.tipo_liquidacion, COALESCE(l.estado, ''), COALESCE(l.valor_neto_bob, 0), 0
+FROM liquidacion l
+WHERE l.comercializadora_id IS NOT NULL
+UNION ALL
+-- Una vez por ingenio aunque la liquidación tenga varios lotes del mismo ingenio
+SELECT 'liquidacion', l.id, 'ingenio', i.ingenio_minero_id, 'liquidacion',
+       l.tipo_liquidacion, COALESCE(l.estado, ''), COALESCE(l.valor_neto_bob, 0), 0
+FROM liquidacion l
+JOIN (
+    SELECT DISTINCT li.ingenio_minero_id, ll.liquidacion_id
+    FROM liquidacion_lote ll
+    JOIN lote_ingenio li ON li.lotes_id = ll.lotes_id
+) i ON i.liquidacion_id = l.id;
+
+CREATE VIEW v_resumen_estado_actor AS
+SELECT tipo_actor, actor_id, entidad, categoria, estado,
+       COUNT(*) AS cantidad,
+       CAST(SUM(monto) AS NUMERIC(18, 4)) AS monto,
+       CAST(SUM(peso) AS NUMERIC(18, 4)) AS peso
+FROM v_aporte_estado_actor
+GROUP BY tipo_actor, actor_id, entidad, categoria, estado;
+
+-- ---------------------------------------------------------------------
+-- Métricas diarias
+-- ---------------------------------------------------------------------
+CREATE VIEW v_aporte_diario_actor AS
+SELECT CAST('liquidacion' AS VARCHAR(20)) AS fuente, l.id AS fuente_id,
+       CAST('socio' AS VARCHAR(20)) AS tipo_actor, l.socio_id AS actor_id,
+       CAST('liquidacion_pagada' AS VARCHAR(30)) AS metrica, CAST(l.fecha_pago AS DATE) AS fecha,
+       CAST(l.tipo_liquidacion AS VARCHAR(50)) AS categoria,
+       CAST(COALESCE(l.valor_neto_bob, 0) AS NUMERIC(18, 4)) AS monto,
+       CAST(0 AS NUMERIC(18, 4)) AS peso, CAST(0 AS BIGINT) AS horas_espera
+FROM liquidacion l
+WHERE l.estado = 'pagado' AND l.fecha_pago IS NOT NULL
+UNION ALL
+SELECT 'liquidacion', l.id, 'comercializadora', l.comercializadora_id, 'liquidacion_pagada',
+       CAST(l.fecha_pago AS DATE), l.tipo_liquidacion, COALESCE(l.valor_neto_bob, 0), 0, 0
+FROM liquidacion l
+WHERE l.estado = 'pagado' AND l.fecha_pago IS NOT NULL AND l.comercializadora_id IS NOT NULL
+UNION ALL
+SELECT 'liquidacion', l.id, 'ingenio', i.ingenio_minero_id, 'liquidacion_pagada',
+       CAST(l.fecha_pago AS DATE), l.tipo_liquidacion, COALESCE(l.valor_neto_bob, 0), 0, 0
+FROM liquidacion l
+JOIN (
+    SELECT DISTINCT li.ingenio_minero_id, ll.liquidacion_id
+    FROM liquidacion_lote ll
+    JOIN lote_ingenio li ON li.lotes_id = ll.lotes_id
+) i ON i.liquidacion_id = l.id
+WHERE l.estado = 'pagado' AND l.fecha_pago IS NOT NULL
+UNION ALL
+-- Valores no numéricos en el evento cuentan como 0
+SELECT 'lote', l.id, 'cooperativa', s.cooperativa_id, 'viaje_completado', CAST(ac.fecha_fin AS DATE), '',
+       0,
+       CASE WHEN po.datos ->> 'peso_neto_kg' ~ '^-?[0-9]+(\.[0-9]+)?$'
+            THEN CAST(po.datos ->> 'peso_neto_kg' AS NUMERIC)
+            ELSE 0 END,
+       0
+FROM asignacion_camion ac
+JOIN lotes l ON l.id = ac.lotes_id
+JOIN minas m ON m.id = l.minas_id
+JOIN sectores s ON s.id = m.sectores_id
+LEFT JOIN LATERAL (
+    SELECT e.datos FROM asignacion_evento e
+    WHERE e.asignacion_camion_id = ac.id AND e.tipo_evento = 'pesaje_origen'
+    ORDER BY e.fecha_registro DESC, e.id DESC
+    LIMIT 1
+) po ON TRUE
+WHERE ac.estado = 'Completado' AND ac.fecha_fin IS NOT NULL
+UNION ALL
+SELECT 'lote', l.id, 'cooperativa', s.cooperativa_id,
+       CASE a.accion WHEN 'APROBAR_COOPERATIVA' THEN 'lote_aprobado' ELSE 'lote_rechazado' END,
+       CAST(a.fecha_registro AS DATE), '',
+       0, 0,
+       CAST(FLOOR(EXTRACT(EPOCH FROM (a.fecha_registro - l.fecha_creacion)) / 3600) AS BIGINT)
+FROM auditoria_lotes a
+JOIN lotes l ON l.id = a.lote_id
+JOIN minas m ON m.id = l.minas_id
+JOIN sectores s ON s.id = m.sectores_id
+WHERE a.accion IN ('APROBAR_COOPERATIVA', 'RECHAZAR_COOPERATIVA')
+UNION ALL
+SELECT 'concentrado', c.id, 'ingenio', c.ingenio_minero_id, 'concentrado_creado', CAST(c.created_at AS DATE), '',
+       0, COALESCE(c.peso_final, 0), 0
+FROM concentrado c;
+
+CREATE VIEW v_resumen_diario_actor AS
+SELECT tipo_actor, actor_id, metrica, fecha, categoria,
+       COUNT(*) AS cantidad,
+       CAST(SUM(monto) AS NUMERIC(18, 4)) AS monto,
+       CAST(SUM(peso) AS NUMERIC(18, 4)) AS peso,
+       CAST(COALESCE(SUM(horas_espera), 0) AS BIGINT) AS horas_espera
+FROM v_aporte_diario_actor
+GROUP BY tipo_actor, actor_id, metrica, fecha, categoria;
@@ -0,0 +1,13 @@
+-- =====================================================================
+-- V6 — INSTANCIA DUEÑA DE CADA EFECTO DEL OUTBOX DE TRANSPORTE
+-- =====================================================================
+-- Con varias instancias (websocket.broker.modo=relay) el viaje en memoria,
+-- las geocercas y el detector de desconexión viven en la instancia a la que
+-- el balanceador fija la asignación. nodo es la instancia que registró la
+-- transición: solo ella procesa el efecto mientras lo reclame a tiempo, así
+-- sus efectos en memoria se aplican donde está el viaje. Si no lo reclama
+-- (instancia caída), cualquier otra lo retoma pasada la espera configurada.
+-- Las filas anteriores quedan con nodo NULL y las procesa cualquiera.
+-- =====================================================================
+
+ALTER TABLE transporte_outbox ADD COLUMN IF NOT EXISTS nodo VARCHAR(100);
@@ -0,0 +1,12 @@
+-- =====================================================================
+-- V7 — EFECTOS FALLIDOS DETIENEN SU ASIGNACIÓN
+-- =====================================================================
+-- TransporteOutbox no reclama un efecto si hay otro anterior de la misma
+-- asignación pendiente o fallido. Este índice cubre la parte 'fallido' de esa
+-- comprobación (la pendiente ya la cubre idx_transporte_outbox_pendiente_asignacion)
+-- y el recuento de asignaciones detenidas.
+-- =====================================================================
+
+CREATE INDEX IF NOT EXISTS idx_transporte_outbox_fallido_asignacion
+    ON transporte_outbox (asignacion_camion_id, id)
+    WHERE estado = 'fallido';
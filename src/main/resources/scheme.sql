@@ -564,6 +564,11 @@ ALTER TABLE auditoria ADD CONSTRAINT FK_48 FOREIGN KEY (usuarios_id) REFERENCES
 ALTER TABLE auditoria_lotes ADD CONSTRAINT FK_49 FOREIGN KEY (lote_id) REFERENCES lotes(id);
 ALTER TABLE notificaciones ADD CONSTRAINT FK_51 FOREIGN KEY (usuarios_id) REFERENCES usuarios(id);
 
+-- Los índices se versionan en db/migration (Flyway); estos se repiten ahí con IF NOT EXISTS
+-- Bandeja de notificaciones: orden keyset (fecha_creacion, id) y conteo de no leídas
+CREATE INDEX idx_notificaciones_usuario_fecha ON notificaciones (usuarios_id, fecha_creacion DESC, id DESC);
+CREATE INDEX idx_notificaciones_usuario_no_leidas ON notificaciones (usuarios_id) WHERE leido = false;
+
 -- =====================================================
 -- 3. FUNCIONES DE AUDITORÍA
 -- =====================================================
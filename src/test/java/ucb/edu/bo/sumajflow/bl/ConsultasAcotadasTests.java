@@ -0,0 +1,374 @@
+package ucb.edu.bo.sumajflow.bl;
+
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.Page;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.annotation.Transactional;
+import ucb.edu.bo.sumajflow.bl.cooperativa.LotesCooperativaBl;
+import ucb.edu.bo.sumajflow.bl.socio.LotesSocioBl;
+import ucb.edu.bo.sumajflow.bl.socio.VentaSocioBl;
+import ucb.edu.bo.sumajflow.dto.cooperativa.LotePendienteDto;
+import ucb.edu.bo.sumajflow.dto.socio.LoteDetalleDto;
+import ucb.edu.bo.sumajflow.dto.venta.VentaLiquidacionResponseDto;
+import ucb.edu.bo.sumajflow.entity.Concentrado;
+import ucb.edu.bo.sumajflow.entity.Lotes;
+import ucb.edu.bo.sumajflow.entity.Usuarios;
+import ucb.edu.bo.sumajflow.repository.ConcentradoRepository;
+import ucb.edu.bo.sumajflow.repository.LotesRepository;
+import ucb.edu.bo.sumajflow.repository.UsuariosRepository;
+
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Guardia contra N+1: cada método de servicio debe emitir un número acotado de sentencias SQL,
+ * sin importar cuántas filas devuelva. Usa las estadísticas de Hibernate sobre datos sembrados
+ * en la misma transacción de la prueba (ids negativos, se revierten al terminar), con más filas
+ * que cualquier límite para que un N+1 sea visible.
+ */
+@SpringBootTest(properties = {
+        "tracking.ingesta.habilitada=false",
+        "spring.jpa.properties.hibernate.generate_statistics=true"
+})
+@Transactional
+class ConsultasAcotadasTests {
+
+    // Incluye las lecturas del usuario y su rol (Hibernate resuelve los OneToOne inversos con selects aparte)
+    private static final long MAX_LOTES_PENDIENTES = 15;
+    private static final long MAX_LOTES_VENTA = 12;
+    // Plan fijo del detalle: lote, destino, asignaciones, auditoría y liquidaciones, sin importar cuántos camiones
+    private static final long MAX_DETALLE_LOTE = 30;
+    // Página de ventas: socio, página, personas y un batch por asociación (lotes, deducciones, cotizaciones...)
+    private static final long MAX_PAGINA_VENTAS = 20;
+
+    // Ids sembrados: BASE - n, lejos de los ids reales (seriales positivos)
+    private static final int BASE = -990_000;
+    private static final int SOCIOS = 30;
+    private static final int LOTES_VENTA = 30;
+    private static final int CAMIONES = 40;
+    private static final int LIQUIDACIONES = 30;
+    private static final int TAMANIO_PAGINA = 25;
+
+    private static final int USUARIO_COOPERATIVA = BASE - 1;
+    private static final int USUARIO_COMERCIALIZADORA = BASE - 2;
+    private static final int USUARIO_INGENIO = BASE - 3;
+    private static final int USUARIOS_SOCIO = BASE - 100;         // - 1..SOCIOS
+    private static final int USUARIOS_TRANSPORTISTA = BASE - 1000; // - 1..CAMIONES
+
+    private static final int LOTES_PENDIENTES = BASE;              // - 1..SOCIOS, uno por socio
+    private static final int LOTES_PARA_VENTA = BASE - 100;        // - 1..LOTES_VENTA, del primer socio
+    private static final int LOTES_DETALLE = BASE - 200;           // - 1
+    private static final int LOTE_DETALLE = LOTES_DETALLE - 1;
+    private static final int MINA_PRIMER_SOCIO = BASE - 1;
+
+    @Autowired
+    private LotesCooperativaBl lotesCooperativaBl;
+
+    @Autowired
+    private VentaSocioBl ventaSocioBl;
+
+    @Autowired
+    private LotesSocioBl lotesSocioBl;
+
+    @Autowired
+    private LotesRepository lotesRepository;
+
+    @Autowired
+    private ConcentradoRepository concentradoRepository;
+
+    @Autowired
+    private UsuariosRepository usuariosRepository;
+
+    @Autowired
+    private CargadorPersonas cargadorPersonas;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private Statistics estadisticas;
+
+    @BeforeEach
+    void setUp() {
+        estadisticas = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        sembrarActores();
+        sembrarLotes();
+        sembrarCamiones();
+        sembrarConcentrados();
+        sembrarLiquidaciones();
+    }
+
+    @Test
+    void lotesPendientesDeCooperativa() {
+        List<LotePendienteDto> lotes = conLimiteDeSentencias(MAX_LOTES_PENDIENTES,
+                () -> lotesCooperativaBl.getLotesPendientesCooperativa(USUARIO_COOPERATIVA));
+
+        assertEquals(SOCIOS, lotes.size());
+    }
+
+    @Test
+    void lotesDisponiblesParaVenta() {
+        List<Map<String, Object>> lotes = conLimiteDeSentencias(MAX_LOTES_VENTA,
+                () -> ventaSocioBl.obtenerLotesDisponiblesParaVenta(USUARIOS_SOCIO - 1));
+
+        assertEquals(LOTES_VENTA, lotes.size());
+    }
+
+    @Test
+    void concentradosDeVariosLotes() {
+        List<Lotes> lotes = lotesRepository.findAllById(
+                IntStream.rangeClosed(1, LOTES_VENTA).mapToObj(i -> LOTES_PARA_VENTA - i).toList());
+
+        // Una sola sentencia para todos los lotes (antes: findAll() de concentrados por cada lote)
+        List<Concentrado> concentrados = conLimiteDeSentencias(1,
+                () -> concentradoRepository.findByLotesComplejoAndEstado(lotes, "esperando_pago"));
+
+        assertEquals(LOTES_VENTA, concentrados.size());
+    }
+
+    @Test
+    void detalleDeLoteConMasCamiones() {
+        LoteDetalleDto detalle = conLimiteDeSentencias(MAX_DETALLE_LOTE,
+                () -> lotesSocioBl.getLoteDetalleCompleto(LOTE_DETALLE, USUARIOS_SOCIO - 1));
+
+        assertEquals(CAMIONES, detalle.getAsignaciones().size());
+    }
+
+    @Test
+    void paginaDeVentasDelSocio() {
+        // Conversión completa de cada fila: socio, comercializadora, lotes con su mina, deducciones, reportes
+        Page<VentaLiquidacionResponseDto> pagina = conLimiteDeSentencias(MAX_PAGINA_VENTAS,
+                () -> ventaSocioBl.listarVentas(USUARIOS_SOCIO - 1, null, null, null, null,
+                        0, TAMANIO_PAGINA, false, null, null));
+
+        assertEquals(TAMANIO_PAGINA, pagina.getNumberOfElements());
+        assertTrue(pagina.hasNext());
+        assertTrue(pagina.getContent().stream().allMatch(v -> v.getSocioNombres() != null && v.getLotes().size() == 1));
+    }
+
+    @Test
+    void personasDeUnaPaginaEnUnaConsulta() {
+        List<Integer> usuarioIds = IntStream.rangeClosed(1, SOCIOS).mapToObj(i -> USUARIOS_SOCIO - i).toList();
+        List<Usuarios> usuarios = usuariosRepository.findAllById(usuarioIds);
+
+        // Una sentencia para toda la página; luego los conversores no consultan más
+        conLimiteDeSentencias(1, () -> {
+            cargadorPersonas.precargar(usuarios);
+            return null;
+        });
+        long encontradas = conLimiteDeSentencias(0, () -> usuarios.stream()
+                .filter(u -> cargadorPersonas.obtener(u).isPresent())
+                .count());
+
+        assertEquals(usuarioIds.size(), encontradas);
+    }
+
+    // ==================== DATOS DE PRUEBA ====================
+
+    /**
+     * Cooperativa con sector y balanza, comercializadora con almacén y balanza, un ingenio
+     * y SOCIOS socios afiliados, cada uno con su persona y su mina
+     */
+    private void sembrarActores() {
+        jdbcTemplate.update("""
+                INSERT INTO tipo_usuario (id, tipo_usuario, created_at, updated_at)
+                VALUES (?, 'prueba_consultas', now(), now())
+                """, BASE);
+        jdbcTemplate.update("""
+                INSERT INTO usuarios (id, correo, contrasena, tipo_usuario_id, created_at, updated_at)
+                SELECT id, 'consultas' || -id || '@sumajflow.test', 'x', ?, now(), now()
+                FROM unnest(ARRAY[?, ?, ?]) id
+                """, BASE, USUARIO_COOPERATIVA, USUARIO_COMERCIALIZADORA, USUARIO_INGENIO);
+        jdbcTemplate.update("""
+                INSERT INTO usuarios (id, correo, contrasena, tipo_usuario_id, created_at, updated_at)
+                SELECT ? - g, 'socio' || g || '@consultas.test', 'x', ?, now(), now()
+                FROM generate_series(1, ?) g
+                """, USUARIOS_SOCIO, BASE, SOCIOS);
+        jdbcTemplate.update("""
+                INSERT INTO persona (id, nombres, primer_apellido, ci, fecha_nacimiento, usuarios_id, created_at, updated_at)
+                SELECT ? - g, 'Socio ' || g, 'Prueba', 'CI-S' || g, date '1980-01-01', ? - g, now(), now()
+                FROM generate_series(1, ?) g
+                """, USUARIOS_SOCIO, USUARIOS_SOCIO, SOCIOS);
+
+        for (String tabla : List.of("cooperativa", "comercializadora", "ingenio_minero")) {
+            int usuario = switch (tabla) {
+                case "cooperativa" -> USUARIO_COOPERATIVA;
+                case "comercializadora" -> USUARIO_COMERCIALIZADORA;
+                default -> USUARIO_INGENIO;
+            };
+            jdbcTemplate.update("""
+                    INSERT INTO %s (id, razon_social, nit, nim, correo_contacto, departamento, provincia, municipio,
+                                    direccion, usuarios_id, created_at, updated_at)
+                    VALUES (?, 'Prueba %s', 'NIT-%s', 1000, '%s@consultas.test', 'Potosí', 'Tomás Frías', 'Potosí',
+                            'Calle 1', ?, now(), now())
+                    """.formatted(tabla, tabla, tabla, tabla), BASE - 1, usuario);
+        }
+        for (String tabla : List.of("balanza_cooperativa", "balanza_comercializadora")) {
+            String duenio = tabla.substring("balanza_".length()) + "_id";
+            jdbcTemplate.update("""
+                    INSERT INTO %s (id, %s, nombre, marca, modelo, numero_serie, capacidad_maxima, precision_minima,
+                                    fecha_ultima_calibracion, fecha_proxima_calibracion, latitud, longitud, created_at, updated_at)
+                    VALUES (?, ?, 'Balanza', 'Marca', 'Modelo', 'SN-1', 60000, 10,
+                            date '2025-01-01', date '2026-01-01', -19.58, -65.75, now(), now())
+                    """.formatted(tabla, duenio), BASE - 1, BASE - 1);
+        }
+        jdbcTemplate.update("""
+                INSERT INTO almacen_comercializadora (id, comercializadora_id, nombre, capacidad_maxima, latitud, longitud,
+                                                     created_at, updated_at)
+                VALUES (?, ?, 'Almacén', 1000, -19.60, -65.76, now(), now())
+                """, BASE - 1, BASE - 1);
+        jdbcTemplate.update("""
+                INSERT INTO sectores (id, nombre, estado, cooperativa_id, created_at, updated_at)
+                VALUES (?, 'Sector', 'activo', ?, now(), now())
+                """, BASE - 1, BASE - 1);
+        jdbcTemplate.update("""
+                INSERT INTO minerales (id, nombre, nomenclatura, created_at, updated_at)
+                VALUES (?, 'Plomo', 'Pb', now(), now())
+                """, BASE - 1);
+
+        jdbcTemplate.update("""
+                INSERT INTO socio (id, fecha_envio, estado, usuarios_id, created_at, updated_at)
+                SELECT ? - g, now(), 'aprobado', ? - g, now(), now()
+                FROM generate_series(1, ?) g
+                """, BASE, USUARIOS_SOCIO, SOCIOS);
+        jdbcTemplate.update("""
+                INSERT INTO cooperativa_socio (id, cooperativa_id, socio_id, fecha_afiliacion, estado, created_at, updated_at)
+                SELECT ? - g, ?, ? - g, date '2024-01-01', 'aprobado', now(), now()
+                FROM generate_series(1, ?) g
+                """, BASE, BASE - 1, BASE, SOCIOS);
+        jdbcTemplate.update("""
+                INSERT INTO minas (id, nombre, latitud, longitud, estado, socio_id, sectores_id, created_at, updated_at)
+                SELECT ? - g, 'Mina ' || g, -19.58, -65.75, 'activo', ? - g, ?, now(), now()
+                FROM generate_series(1, ?) g
+                """, BASE, BASE, BASE - 1, SOCIOS);
+    }
+
+    /**
+     * Un lote pendiente por socio, LOTES_VENTA lotes listos para venta del primer socio
+     * y el lote del detalle; todos de venta directa hacia la comercializadora
+     */
+    private void sembrarLotes() {
+        insertarLotes(LOTES_PENDIENTES, SOCIOS, "Pendiente de aprobación cooperativa", null);
+        insertarLotes(LOTES_PARA_VENTA, LOTES_VENTA, "Transporte completo", MINA_PRIMER_SOCIO);
+        insertarLotes(LOTES_DETALLE, 1, "En Transporte", MINA_PRIMER_SOCIO);
+    }
+
+    /**
+     * Lotes base - 1..cantidad con su comercializadora destino y un mineral
+     * @param mina mina de todos los lotes; null para que el lote g sea de la mina del socio g
+     */
+    private void insertarLotes(int base, int cantidad, String estado, Integer mina) {
+        jdbcTemplate.update("""
+                INSERT INTO lotes (id, minas_id, camiones_solicitados, tipo_operacion, tipo_mineral, estado,
+                                   fecha_creacion, updated_at)
+                SELECT ? - g, COALESCE(CAST(? AS INTEGER), ? - g), 1, 'venta_directa', 'complejo', ?,
+                       timestamp '2025-01-01' + g * interval '1 hour', now()
+                FROM generate_series(1, ?) g
+                """, base, mina, BASE, estado, cantidad);
+        jdbcTemplate.update("""
+                INSERT INTO lote_comercializadora (id, comercializadora_id, lotes_id, estado, created_at, updated_at)
+                SELECT ? - g, ?, ? - g, 'aprobado', now(), now()
+                FROM generate_series(1, ?) g
+                """, base, BASE - 1, base, cantidad);
+        jdbcTemplate.update("""
+                INSERT INTO lote_minerales (id, lotes_id, minerales_id, created_at, updated_at)
+                SELECT ? - g, ? - g, ?, now(), now()
+                FROM generate_series(1, ?) g
+                """, base, base, BASE - 1, cantidad);
+    }
+
+    /**
+     * CAMIONES transportistas (usuario, persona e invitación) asignados al lote del detalle
+     */
+    private void sembrarCamiones() {
+        jdbcTemplate.update("""
+                INSERT INTO usuarios (id, correo, contrasena, tipo_usuario_id, created_at, updated_at)
+                SELECT ? - g, 'camion' || g || '@consultas.test', 'x', ?, now(), now()
+                FROM generate_series(1, ?) g
+                """, USUARIOS_TRANSPORTISTA, BASE, CAMIONES);
+        jdbcTemplate.update("""
+                INSERT INTO persona (id, nombres, primer_apellido, ci, fecha_nacimiento, numero_celular, usuarios_id,
+                                     created_at, updated_at)
+                SELECT ? - g, 'Conductor ' || g, 'Prueba', 'CI-T' || g, date '1985-01-01', '700000' || g, ? - g, now(), now()
+                FROM generate_series(1, ?) g
+                """, USUARIOS_TRANSPORTISTA, USUARIOS_TRANSPORTISTA, CAMIONES);
+        jdbcTemplate.update("""
+                INSERT INTO invitacion_transportista (id, primer_nombre, primer_apellido, numero_celular, token_invitacion,
+                                                      qr_code_data, codigo_verificado, intentos_verificacion, estado,
+                                                      fecha_envio, fecha_expiracion, created_at, updated_at)
+                SELECT ? - g, 'Conductor ' || g, 'Prueba', '700000' || g, 'consultas-' || g,
+                       '{}', true, 0, 'aceptada', now(), now() + interval '7 days', now(), now()
+                FROM generate_series(1, ?) g
+                """, BASE, CAMIONES);
+        jdbcTemplate.update("""
+                INSERT INTO transportista (id, usuarios_id, invitacion_transportista_id, ci, licencia_conducir,
+                                           categoria_licencia, fecha_vencimiento_licencia, placa_vehiculo, estado,
+                                           created_at, updated_at)
+                SELECT ? - g, ? - g, ? - g, 'CI-T' || g, 'LIC-' || g, 'C', date '2030-01-01', g || 'ABC', 'aprobado',
+                       now(), now()
+                FROM generate_series(1, ?) g
+                """, BASE, USUARIOS_TRANSPORTISTA, BASE, CAMIONES);
+        jdbcTemplate.update("""
+                INSERT INTO asignacion_camion (id, lotes_id, transportista_id, numero_camion, estado, fecha_asignacion,
+                                               created_at, updated_at)
+                SELECT ? - g, ?, ? - g, g, 'En camino a la mina', now(), now(), now()
+                FROM generate_series(1, ?) g
+                """, BASE, LOTE_DETALLE, BASE, CAMIONES);
+    }
+
+    /**
+     * Un concentrado esperando pago por cada lote listo para venta
+     */
+    private void sembrarConcentrados() {
+        jdbcTemplate.update("""
+                INSERT INTO concentrado (id, codigo_concentrado, ingenio_minero_id, peso_inicial, estado, created_at, updated_at)
+                SELECT ? - g, 'CONSULTAS-' || g, ?, 1000, 'esperando_pago', now(), now()
+                FROM generate_series(1, ?) g
+                """, BASE, BASE - 1, LOTES_VENTA);
+        jdbcTemplate.update("""
+                INSERT INTO lote_concentrado_relacion (id, lote_complejo_id, concentrado_id, peso_entrada, updated_at)
+                SELECT ? - g, ? - g, ? - g, 1000, now()
+                FROM generate_series(1, ?) g
+                """, BASE, LOTES_PARA_VENTA, BASE, LOTES_VENTA);
+    }
+
+    /**
+     * LIQUIDACIONES ventas de lote complejo del primer socio, cada una con uno de sus lotes listos para venta
+     */
+    private void sembrarLiquidaciones() {
+        jdbcTemplate.update("""
+                INSERT INTO liquidacion (id, socio_id, comercializadora_id, tipo_liquidacion, estado, moneda,
+                                         created_at, updated_at)
+                SELECT ? - g, ?, ?, ?, 'pendiente_reporte', 'BOB', timestamp '2025-01-01' + g * interval '1 hour', now()
+                FROM generate_series(1, ?) g
+                """, BASE, BASE - 1, BASE - 1, LiquidacionVentaBl.TIPO_VENTA_LOTE_COMPLEJO, LIQUIDACIONES);
+        jdbcTemplate.update("""
+                INSERT INTO liquidacion_lote (id, liquidacion_id, lotes_id, peso_entrada, created_at, updated_at)
+                SELECT ? - g, ? - g, ? - g, 1000, now(), now()
+                FROM generate_series(1, ?) g
+                """, BASE, BASE, LOTES_PARA_VENTA, LIQUIDACIONES);
+    }
+
+    private <T> T conLimiteDeSentencias(long maximo, Supplier<T> accion) {
+        estadisticas.clear();
+        T resultado = accion.get();
+        long sentencias = estadisticas.getPrepareStatementCount();
+
+        assertTrue(sentencias <= maximo,
+                () -> "Se emitieron " + sentencias + " sentencias SQL (máximo " + maximo + ")");
+        return resultado;
+    }
+}
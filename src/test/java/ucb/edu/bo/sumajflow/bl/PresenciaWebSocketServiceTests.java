@@ -0,0 +1,78 @@
+package ucb.edu.bo.sumajflow.bl;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PresenciaWebSocketServiceTests {
+
+    private SimpleMeterRegistry meterRegistry;
+    private PresenciaWebSocketService presencia;
+
+    @BeforeEach
+    void preparar() {
+        meterRegistry = new SimpleMeterRegistry();
+        presencia = new PresenciaWebSocketService(meterRegistry);
+        ReflectionTestUtils.setField(presencia, "modoBroker", "simple");
+        ReflectionTestUtils.setField(presencia, "graciaDesconexion", Duration.ofMillis(200));
+        presencia.iniciar();
+    }
+
+    @AfterEach
+    void detener() {
+        presencia.detener();
+    }
+
+    @Test
+    void reconexionDentroDeLaGraciaMantieneAlUsuarioEnLinea() throws InterruptedException {
+        presencia.conectar("s1", "7");
+        presencia.desconectar("s1");
+        assertTrue(presencia.conectar("s2", "7"), "Debe contarse como reconexión");
+
+        Thread.sleep(400);
+        assertTrue(presencia.estaEnLinea("7"));
+
+        presencia.desconectar("s2");
+        presencia.desconectar("s2"); // Spring puede repetir la desconexión
+        Thread.sleep(400);
+        assertFalse(presencia.estaEnLinea("7"));
+        assertEquals(0, meterRegistry.get("websocket.presencia.usuarios").gauge().value());
+    }
+
+    @Test
+    void audienciaSigueLasSuscripciones() {
+        presencia.conectar("s1", "7");
+        presencia.suscribir("s1", "7", "sub-0", "/topic/lote/10");
+        presencia.suscribir("s1", "7", "sub-1", "/user/queue/notificaciones");
+        presencia.suscribir("s1", "7", "sub-2", "/topic/tracking/camion/*");
+
+        assertTrue(presencia.hayAudiencia("/topic/lote/10"));
+        assertFalse(presencia.hayAudiencia("/topic/lote/11"));
+        assertTrue(presencia.hayAudiencia("/topic/tracking/camion/5"));
+        assertTrue(presencia.hayAudienciaUsuario("7", "/queue/notificaciones"));
+        assertTrue(presencia.hayAudiencia("/user/7/queue/notificaciones"));
+        assertFalse(presencia.hayAudienciaUsuario("8", "/queue/notificaciones"));
+        assertEquals(3, meterRegistry.get("websocket.presencia.suscripciones").gauge().value());
+
+        presencia.desuscribir("s1", "sub-0");
+        assertFalse(presencia.hayAudiencia("/topic/lote/10"));
+
+        presencia.desconectar("s1");
+        assertFalse(presencia.hayAudiencia("/topic/tracking/camion/5"));
+        assertFalse(presencia.hayAudienciaUsuario("7", "/queue/notificaciones"));
+        assertEquals(0, meterRegistry.get("websocket.presencia.suscripciones").gauge().value());
+    }
+
+    @Test
+    void enModoRelaySiempreHayAudiencia() {
+        ReflectionTestUtils.setField(presencia, "relay", true);
+        assertTrue(presencia.hayAudiencia("/topic/lote/10"));
+        assertTrue(presencia.hayAudienciaUsuario("7", "/queue/notificaciones"));
+    }
+}
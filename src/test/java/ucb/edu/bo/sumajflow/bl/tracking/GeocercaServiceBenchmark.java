@@ -0,0 +1,200 @@
+package ucb.edu.bo.sumajflow.bl.tracking;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import ucb.edu.bo.sumajflow.document.TrackingUbicacion;
+import ucb.edu.bo.sumajflow.dto.tracking.GeofencingStatusDto;
+import ucb.edu.bo.sumajflow.utils.GeometryUtils;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Costo del geofencing por ping: {@code anterior} reproduce la verificación que hacía TrackingBl antes de
+ * {@link GeocercaService} (haversine vía BigDecimal contra cada punto de control y otra para el próximo
+ * pendiente); {@code geocercaService} es el camino actual, con la geometría del viaje compilada y cacheada.
+ * ubicacion = transito mide el caso habitual (fuera de todas las zonas); zona, el camión dentro de la mina.
+ * viajesEnCurso es cuántos viajes distintos reciben pings (se turnan, cada uno con sus puntos de control)
+ * y geometriasCacheadas cuántos viajes tienen su geometría en la caché del servicio: con miles de viajes
+ * el mapa y las geometrías dejan de caber en la caché de CPU. {@code geocercaServiceConcurrente} repite
+ * el camino actual desde {@value #HILOS} hilos a la vez.
+ * <p>
+ * Ejecutar: {@code ./mvnw test-compile} y luego el {@code main} de esta clase desde el IDE.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class GeocercaServiceBenchmark {
+
+    private static final int HILOS = 4;
+    private static final double RADIO_TIERRA_KM = 6371.0;
+
+    @Param({"4", "8"})
+    private int puntos;
+
+    @Param({"transito", "zona"})
+    private String ubicacion;
+
+    @Param({"1", "100", "5000"})
+    private int viajesEnCurso;
+
+    @Param({"1000", "20000"})
+    private int geometriasCacheadas;
+
+    private GeocercaService geocercaService;
+    // Puntos de control de cada viaje; el índice es el id de la asignación
+    private List<List<TrackingUbicacion.PuntoControl>> puntosPorViaje;
+    private double lat;
+    private double lng;
+
+    /**
+     * Viaje que toca en cada hilo: los pings se turnan entre los viajes en curso
+     */
+    @State(Scope.Thread)
+    public static class Turno {
+        private int siguiente;
+
+        @Setup
+        public void preparar(GeocercaServiceBenchmark benchmark) {
+            siguiente = ThreadLocalRandom.current().nextInt(benchmark.viajesEnCurso);
+        }
+
+        int avanzar(int viajes) {
+            int viaje = siguiente;
+            siguiente = viaje + 1 == viajes ? 0 : viaje + 1;
+            return viaje;
+        }
+    }
+
+    @Setup
+    public void preparar() {
+        if ("zona".equals(ubicacion)) {
+            lat = -19.5812;
+            lng = -65.7508;
+        } else {
+            lat = -19.58 + 0.045;
+            lng = -65.75 + 0.025;
+        }
+
+        geocercaService = new GeocercaService();
+        int viajes = Math.max(viajesEnCurso, geometriasCacheadas);
+        puntosPorViaje = new ArrayList<>(viajes);
+        for (int viaje = 0; viaje < viajes; viaje++) {
+            List<TrackingUbicacion.PuntoControl> puntosControl = puntosControl();
+            puntosPorViaje.add(puntosControl);
+            // Geometría ya compilada, como tras el primer ping de cada viaje
+            geocercaService.evaluar(viaje, puntosControl, lat, lng);
+        }
+    }
+
+    @Benchmark
+    public GeofencingStatusDto anterior(Turno turno) {
+        List<TrackingUbicacion.PuntoControl> puntosControl = puntosPorViaje.get(turno.avanzar(viajesEnCurso));
+        GeofencingStatusDto.GeofencingStatusDtoBuilder builder = GeofencingStatusDto.builder()
+                .dentroDeZona(false)
+                .puedeRegistrarLlegada(false)
+                .puedeRegistrarSalida(false);
+
+        for (TrackingUbicacion.PuntoControl punto : puntosControl) {
+            double distancia = distanciaMetrosBigDecimal(lat, lng, punto.getLat(), punto.getLng());
+            if (distancia <= punto.getRadio()) {
+                builder.dentroDeZona(true)
+                        .zonaNombre(punto.getNombre())
+                        .zonaTipo(punto.getTipo())
+                        .distanciaAZona(distancia);
+                if ("pendiente".equals(punto.getEstado()) || punto.getLlegada() == null) {
+                    builder.puedeRegistrarLlegada(true);
+                } else if (punto.getSalida() == null) {
+                    builder.puedeRegistrarSalida(true);
+                }
+                break;
+            }
+        }
+
+        TrackingUbicacion.PuntoControl proximo = GeometryUtils.encontrarProximoPuntoControlPendiente(puntosControl);
+        if (proximo != null) {
+            builder.proximoPuntoControl(proximo.getNombre())
+                    .distanciaProximoPunto(distanciaMetrosBigDecimal(lat, lng, proximo.getLat(), proximo.getLng()));
+        }
+        return builder.build();
+    }
+
+    @Benchmark
+    public GeofencingStatusDto geocercaService(Turno turno) {
+        int viaje = turno.avanzar(viajesEnCurso);
+        return geocercaService.evaluar(viaje, puntosPorViaje.get(viaje), lat, lng);
+    }
+
+    @Benchmark
+    @Threads(HILOS)
+    public GeofencingStatusDto geocercaServiceConcurrente(Turno turno) {
+        int viaje = turno.avanzar(viajesEnCurso);
+        return geocercaService.evaluar(viaje, puntosPorViaje.get(viaje), lat, lng);
+    }
+
+    /**
+     * Puntos a ~10 km entre sí, como mina → balanzas → almacén
+     */
+    private List<TrackingUbicacion.PuntoControl> puntosControl() {
+        List<TrackingUbicacion.PuntoControl> puntosControl = new ArrayList<>(puntos);
+        for (int i = 0; i < puntos; i++) {
+            double latPunto = -19.58 + i * 0.09;
+            double lngPunto = -65.75 + i * 0.05;
+            puntosControl.add(TrackingUbicacion.PuntoControl.builder()
+                    .tipo(i == 0 ? "mina" : "punto_" + i)
+                    .nombre("Punto " + i)
+                    .lat(latPunto)
+                    .lng(lngPunto)
+                    .radio(200)
+                    .orden(i + 1)
+                    .requerido(true)
+                    .estado(i == 0 ? "completado" : "pendiente")
+                    .poligono(i == 0 ? cuadrado(latPunto, lngPunto, 0.004) : null)
+                    .build());
+        }
+        return puntosControl;
+    }
+
+    /**
+     * Haversine como lo calculaba GeometryUtils antes de la versión con doubles
+     */
+    private static double distanciaMetrosBigDecimal(double lat1, double lng1, double lat2, double lng2) {
+        BigDecimal bLat1 = BigDecimal.valueOf(lat1);
+        BigDecimal bLng1 = BigDecimal.valueOf(lng1);
+        BigDecimal bLat2 = BigDecimal.valueOf(lat2);
+        BigDecimal bLng2 = BigDecimal.valueOf(lng2);
+
+        double dLat = Math.toRadians(bLat2.doubleValue() - bLat1.doubleValue());
+        double dLon = Math.toRadians(bLng2.doubleValue() - bLng1.doubleValue());
+        double a = Math.sin(dLat / 2) * Math.sin(dLat / 2)
+                + Math.cos(Math.toRadians(bLat1.doubleValue()))
+                * Math.cos(Math.toRadians(bLat2.doubleValue()))
+                * Math.sin(dLon / 2) * Math.sin(dLon / 2);
+        double c = 2 * Math.atan2(Math.sqrt(a), Math.sqrt(1 - a));
+        return RADIO_TIERRA_KM * c * 1000;
+    }
+
+    private static List<TrackingUbicacion.Vertice> cuadrado(double lat, double lng, double mitad) {
+        return List.of(
+                TrackingUbicacion.Vertice.builder().lat(lat - mitad).lng(lng - mitad).build(),
+                TrackingUbicacion.Vertice.builder().lat(lat - mitad).lng(lng + mitad).build(),
+                TrackingUbicacion.Vertice.builder().lat(lat + mitad).lng(lng + mitad).build(),
+                TrackingUbicacion.Vertice.builder().lat(lat + mitad).lng(lng - mitad).build());
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options opciones = new OptionsBuilder()
+                .include(GeocercaServiceBenchmark.class.getSimpleName())
+                .build();
+        new Runner(opciones).run();
+    }
+}
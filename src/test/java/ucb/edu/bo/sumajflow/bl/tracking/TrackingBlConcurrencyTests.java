@@ -0,0 +1,114 @@
+package ucb.edu.bo.sumajflow.bl.tracking;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import ucb.edu.bo.sumajflow.document.HistorialUbicacion;
+import ucb.edu.bo.sumajflow.document.TrackingUbicacion;
+import ucb.edu.bo.sumajflow.dto.tracking.ActualizarUbicacionDto;
+import ucb.edu.bo.sumajflow.repository.mongodb.HistorialUbicacionRepository;
+import ucb.edu.bo.sumajflow.repository.mongodb.TrackingUbicacionRepository;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest(properties = "tracking.ingesta.habilitada=false")
+class TrackingBlConcurrencyTests {
+
+    private static final int ASIGNACION_ID = -9001;
+    private static final int PINGS = 50;
+    private static final LocalDateTime INICIO = LocalDateTime.of(2025, 1, 7, 14, 0);
+
+    @Autowired
+    private TrackingBl trackingBl;
+
+    @Autowired
+    private TrackingUbicacionRepository trackingRepository;
+
+    @Autowired
+    private HistorialUbicacionRepository historialRepository;
+
+    @BeforeEach
+    void setUp() {
+        limpiar();
+        trackingRepository.save(TrackingUbicacion.builder()
+                .asignacionCamionId(ASIGNACION_ID)
+                .loteId(ASIGNACION_ID)
+                .estadoViaje("En camino a la mina")
+                .ubicacionActual(TrackingUbicacion.UbicacionActual.builder()
+                        .lat(-19.5836)
+                        .lng(-65.7531)
+                        .location(TrackingUbicacion.GeoJsonPoint.of(-19.5836, -65.7531))
+                        .timestamp(INICIO)
+                        .velocidad(0.0)
+                        .build())
+                .ultimaSincronizacion(LocalDateTime.now())
+                .build());
+    }
+
+    @AfterEach
+    void tearDown() {
+        limpiar();
+    }
+
+    @Test
+    void pingsConcurrentesNoPierdenPuntos() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(16);
+        CountDownLatch largada = new CountDownLatch(1);
+        List<Future<?>> futuros = new ArrayList<>();
+
+        for (int i = 1; i <= PINGS; i++) {
+            ActualizarUbicacionDto dto = ActualizarUbicacionDto.builder()
+                    .asignacionCamionId(ASIGNACION_ID)
+                    .lat(-19.5836 + i * 0.0001)
+                    .lng(-65.7531)
+                    .velocidad(40.0)
+                    .timestampCaptura(INICIO.plusSeconds(i))
+                    .esOffline(false)
+                    .build();
+
+            futuros.add(executor.submit(() -> {
+                largada.await();
+                return trackingBl.actualizarUbicacion(dto);
+            }));
+        }
+
+        largada.countDown();
+        for (Future<?> futuro : futuros) {
+            futuro.get();
+        }
+        executor.shutdown();
+
+        // Cada ping desplaza exactamente una ubicación previa al historial
+        List<HistorialUbicacion> historial = historialRepository.findByAsignacionCamionIdOrderByTimestampAsc(ASIGNACION_ID);
+        assertEquals(PINGS, historial.size());
+
+        Set<LocalDateTime> timestamps = new HashSet<>();
+        historial.forEach(p -> timestamps.add(p.getTimestamp()));
+        TrackingUbicacion tracking = trackingRepository.findByAsignacionCamionId(ASIGNACION_ID).orElseThrow();
+        timestamps.add(tracking.getUbicacionActual().getTimestamp());
+
+        // Historial + ubicación actual contienen el punto inicial y todos los pings, sin duplicados
+        assertEquals(PINGS + 1, timestamps.size());
+        for (int i = 0; i <= PINGS; i++) {
+            assertTrue(timestamps.contains(INICIO.plusSeconds(i)));
+        }
+    }
+
+    private void limpiar() {
+        trackingRepository.deleteByAsignacionCamionId(ASIGNACION_ID);
+        historialRepository.deleteByAsignacionCamionId(ASIGNACION_ID);
+    }
+}
@@ -0,0 +1,122 @@
+package ucb.edu.bo.sumajflow.bl.transporte;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import ucb.edu.bo.sumajflow.document.TrackingUbicacion;
+import ucb.edu.bo.sumajflow.repository.mongodb.TrackingUbicacionRepository;
+
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.when;
+
+/**
+ * Un fallo de MongoDB al registrar el evento de la transición no marca la fila como procesada:
+ * queda pendiente, con el intento contado y el reintento programado. Un efecto fallido detiene
+ * los siguientes de su asignación.
+ */
+@SpringBootTest(properties = {
+        "tracking.ingesta.habilitada=false",
+        "transporte.outbox.habilitado=true"
+})
+class TransporteOutboxTests {
+
+    private static final int ASIGNACION_ID = -9101;
+
+    @Autowired
+    private TransporteOutbox transporteOutbox;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @MockitoBean
+    private TrackingUbicacionRepository trackingRepository;
+
+    @BeforeEach
+    void setUp() {
+        limpiar();
+        when(trackingRepository.findByAsignacionCamionId(ASIGNACION_ID))
+                .thenReturn(Optional.of(TrackingUbicacion.builder()
+                        .asignacionCamionId(ASIGNACION_ID)
+                        .loteId(ASIGNACION_ID)
+                        .estadoViaje("En camino almacén destino")
+                        .build()));
+        when(trackingRepository.registrarCambioEstado(eq(ASIGNACION_ID), anyString(), any(), any()))
+                .thenThrow(new DataAccessResourceFailureException("MongoDB no disponible"));
+    }
+
+    @AfterEach
+    void tearDown() {
+        limpiar();
+    }
+
+    @Test
+    void falloDeMongoDejaElEfectoPendienteConElIntentoContado() throws Exception {
+        // Fuera de una transacción el outbox despierta al planificador de inmediato
+        transporteOutbox.registrar(new EfectoTransicion(
+                ASIGNACION_ID, "LLEGADA_ALMACEN", "En camino almacén destino", "Descargando",
+                -19.5836, -65.7531, null, null, null));
+
+        Map<String, Object> fila = esperarPrimerIntento();
+
+        assertEquals("pendiente", fila.get("estado"));
+        assertEquals(1, ((Number) fila.get("intentos")).intValue());
+        assertNull(fila.get("fecha_procesado"));
+        assertTrue(String.valueOf(fila.get("ultimo_error")).contains("MongoDB no disponible"));
+        assertTrue((Boolean) fila.get("reintento_futuro"), "El reintento debe quedar programado con espera");
+    }
+
+    @Test
+    void efectoFallidoDetieneLosSiguientesDeLaAsignacion() throws Exception {
+        jdbcTemplate.update("""
+                INSERT INTO transporte_outbox (asignacion_camion_id, tipo_efecto, payload, estado, intentos)
+                VALUES (?, 'LLEGADA_MINA', '{}'::jsonb, 'fallido', 8)
+                """, ASIGNACION_ID);
+        jdbcTemplate.update("""
+                INSERT INTO transporte_outbox (asignacion_camion_id, tipo_efecto, payload)
+                VALUES (?, 'FIN_CARGUIO', '{}'::jsonb)
+                """, ASIGNACION_ID);
+
+        transporteOutbox.drenar();
+        Thread.sleep(500);
+
+        Map<String, Object> siguiente = jdbcTemplate.queryForMap(
+                "SELECT estado, intentos, bloqueado_hasta FROM transporte_outbox " +
+                        "WHERE asignacion_camion_id = ? AND tipo_efecto = 'FIN_CARGUIO'", ASIGNACION_ID);
+        assertEquals("pendiente", siguiente.get("estado"));
+        assertEquals(0, ((Number) siguiente.get("intentos")).intValue());
+        assertNull(siguiente.get("bloqueado_hasta"), "No debe reclamarse con un efecto anterior fallido");
+    }
+
+    // ==================== MÉTODOS PRIVADOS ====================
+
+    private Map<String, Object> esperarPrimerIntento() throws InterruptedException {
+        long limite = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(15);
+        while (System.currentTimeMillis() < limite) {
+            Map<String, Object> fila = jdbcTemplate.queryForMap(
+                    "SELECT estado, intentos, ultimo_error, fecha_procesado, proximo_intento > now() AS reintento_futuro " +
+                            "FROM transporte_outbox WHERE asignacion_camion_id = ?", ASIGNACION_ID);
+            if (((Number) fila.get("intentos")).intValue() > 0 || !"pendiente".equals(fila.get("estado"))) {
+                return fila;
+            }
+            Thread.sleep(50);
+        }
+        fail("El outbox no procesó el efecto");
+        return null;
+    }
+
+    private void limpiar() {
+        jdbcTemplate.update("DELETE FROM transporte_outbox WHERE asignacion_camion_id = ?", ASIGNACION_ID);
+    }
+}
@@ -0,0 +1,188 @@
+package ucb.edu.bo.sumajflow.config;
+
+import org.apache.activemq.artemis.core.config.Configuration;
+import org.apache.activemq.artemis.core.config.impl.ConfigurationImpl;
+import org.apache.activemq.artemis.core.server.embedded.EmbeddedActiveMQ;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.messaging.converter.StringMessageConverter;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.messaging.simp.stomp.*;
+import org.springframework.web.socket.WebSocketHttpHeaders;
+import org.springframework.web.socket.client.standard.StandardWebSocketClient;
+import org.springframework.web.socket.messaging.WebSocketStompClient;
+import ucb.edu.bo.sumajflow.SumajflowApplication;
+import ucb.edu.bo.sumajflow.utils.JwtUtil;
+
+import java.lang.reflect.Type;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.concurrent.*;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Dos instancias de la aplicación con websocket.broker.modo=relay contra un Artemis embebido:
+ * lo que una publica con SimpMessagingTemplate (topic y destino de usuario) llega a un cliente
+ * STOMP conectado a la otra. Las escrituras de tracking y las transiciones de viaje exigen la clave de
+ * enrutamiento por asignación.
+ */
+class BrokerRelayTests {
+
+    private static final int USUARIO_ID = 990001;
+    private static final long ESPERA_SEGUNDOS = 15;
+
+    private static EmbeddedActiveMQ broker;
+    private static ConfigurableApplicationContext nodoA;
+    private static ConfigurableApplicationContext nodoB;
+
+    @BeforeAll
+    static void iniciar() throws Exception {
+        int puertoBroker;
+        try (ServerSocket socket = new ServerSocket(0)) {
+            puertoBroker = socket.getLocalPort();
+        }
+
+        Configuration configuracion = new ConfigurationImpl()
+                .setPersistenceEnabled(false)
+                .setSecurityEnabled(false)
+                .addAcceptorConfiguration("stomp", "tcp://127.0.0.1:" + puertoBroker
+                        + "?protocols=STOMP;anycastPrefix=/queue/;multicastPrefix=/topic/");
+        broker = new EmbeddedActiveMQ();
+        broker.setConfiguration(configuracion);
+        broker.start();
+
+        nodoA = iniciarNodo(puertoBroker);
+        nodoB = iniciarNodo(puertoBroker);
+    }
+
+    @AfterAll
+    static void detener() throws Exception {
+        if (nodoA != null) {
+            nodoA.close();
+        }
+        if (nodoB != null) {
+            nodoB.close();
+        }
+        if (broker != null) {
+            broker.stop();
+        }
+    }
+
+    @Test
+    void mensajesDeUnNodoLleganAClientesDelOtro() throws Exception {
+        String token = nodoB.getBean(JwtUtil.class)
+                .generateAccessToken(USUARIO_ID, "relay@sumajflow.test", "socio", true);
+
+        WebSocketStompClient cliente = new WebSocketStompClient(new StandardWebSocketClient());
+        cliente.setMessageConverter(new StringMessageConverter());
+
+        StompHeaders connect = new StompHeaders();
+        connect.add("Authorization", "Bearer " + token);
+        StompSession sesion = cliente.connectAsync(
+                "ws://localhost:" + puerto(nodoB) + "/ws-native",
+                new WebSocketHttpHeaders(), connect, new StompSessionHandlerAdapter() { }
+        ).get(ESPERA_SEGUNDOS, TimeUnit.SECONDS);
+
+        try {
+            BlockingQueue<String> delTopic = new LinkedBlockingQueue<>();
+            BlockingQueue<String> delUsuario = new LinkedBlockingQueue<>();
+
+            // Con receipt: el broker confirma la suscripción antes de publicar
+            sesion.setAutoReceipt(true);
+            CountDownLatch suscrito = new CountDownLatch(2);
+            sesion.subscribe("/topic/prueba-relay", recolector(delTopic)).addReceiptTask(suscrito::countDown);
+            sesion.subscribe("/user/queue/prueba-relay", recolector(delUsuario)).addReceiptTask(suscrito::countDown);
+            assertTrue(suscrito.await(ESPERA_SEGUNDOS, TimeUnit.SECONDS), "Suscripciones sin confirmar");
+
+            SimpMessagingTemplate templateA = nodoA.getBean(SimpMessagingTemplate.class);
+            templateA.convertAndSend("/topic/prueba-relay", "hola-topic");
+            templateA.convertAndSendToUser(String.valueOf(USUARIO_ID), "/queue/prueba-relay", "hola-usuario");
+
+            assertEquals("hola-topic", delTopic.poll(ESPERA_SEGUNDOS, TimeUnit.SECONDS));
+            assertEquals("hola-usuario", delUsuario.poll(ESPERA_SEGUNDOS, TimeUnit.SECONDS));
+        } finally {
+            sesion.disconnect();
+            cliente.stop();
+        }
+    }
+
+    @Test
+    void escriturasDeTrackingSinClaveDeEnrutamientoSeRechazan() throws Exception {
+        // El estado del tracking es de cada instancia: sin la clave el balanceador no puede fijar el nodo
+        HttpRequest peticion = HttpRequest.newBuilder(URI.create("http://localhost:" + puerto(nodoA) + "/tracking/ubicacion"))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString("{\"asignacionCamionId\":1,\"lat\":-19.58,\"lng\":-65.75}"))
+                .build();
+
+        HttpResponse<String> respuesta = HttpClient.newHttpClient().send(peticion, HttpResponse.BodyHandlers.ofString());
+
+        assertEquals(400, respuesta.statusCode());
+        assertTrue(respuesta.body().contains(EnrutamientoTrackingFilter.CABECERA_ASIGNACION));
+    }
+
+    @Test
+    void transicionesConClaveDeOtraAsignacionSeRechazan() throws Exception {
+        // La transición debe caer en la instancia del viaje: la clave es la asignación de la ruta
+        HttpRequest peticion = HttpRequest.newBuilder(URI.create("http://localhost:" + puerto(nodoA) + "/transportista/viaje/5/iniciar"))
+                .header("Content-Type", "application/json")
+                .header(EnrutamientoTrackingFilter.CABECERA_ASIGNACION, "6")
+                .POST(HttpRequest.BodyPublishers.ofString("{}"))
+                .build();
+
+        HttpResponse<String> respuesta = HttpClient.newHttpClient().send(peticion, HttpResponse.BodyHandlers.ofString());
+
+        assertEquals(400, respuesta.statusCode());
+        assertTrue(respuesta.body().contains(EnrutamientoTrackingFilter.CABECERA_ASIGNACION));
+    }
+
+    // ==================== MÉTODOS PRIVADOS ====================
+
+    private static ConfigurableApplicationContext iniciarNodo(int puertoBroker) throws InterruptedException {
+        ConfigurableApplicationContext nodo = new SpringApplicationBuilder(SumajflowApplication.class)
+                .properties(
+                        "server.port=0",
+                        "websocket.broker.modo=relay",
+                        "websocket.broker.relay.host=127.0.0.1",
+                        "websocket.broker.relay.port=" + puertoBroker,
+                        "tracking.ingesta.habilitada=false",
+                        "transporte.outbox.habilitado=false",
+                        "dashboard.resumen.reconciliacion-habilitada=false"
+                )
+                .run();
+
+        // La sesión de sistema del relay se conecta en segundo plano
+        StompBrokerRelayMessageHandler relay = nodo.getBean(StompBrokerRelayMessageHandler.class);
+        long limite = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(ESPERA_SEGUNDOS);
+        while (!relay.isBrokerAvailable() && System.currentTimeMillis() < limite) {
+            Thread.sleep(100);
+        }
+        assertTrue(relay.isBrokerAvailable(), "El relay no se conectó al broker");
+        return nodo;
+    }
+
+    private static int puerto(ConfigurableApplicationContext nodo) {
+        return Integer.parseInt(nodo.getEnvironment().getRequiredProperty("local.server.port"));
+    }
+
+    private static StompFrameHandler recolector(BlockingQueue<String> destino) {
+        return new StompFrameHandler() {
+            @Override
+            public Type getPayloadType(StompHeaders headers) {
+                return String.class;
+            }
+
+            @Override
+            public void handleFrame(StompHeaders headers, Object payload) {
+                destino.add((String) payload);
+            }
+        };
+    }
+}
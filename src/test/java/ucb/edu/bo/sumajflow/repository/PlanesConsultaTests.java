@@ -0,0 +1,267 @@
+package ucb.edu.bo.sumajflow.repository;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Verifica con EXPLAIN que las consultas más usadas de los repositorios se resuelven con índices.
+ * Las tablas se copian (con sus índices, ya migrados por Flyway) a un esquema temporal, se siembran
+ * con datos sintéticos y todo se revierte al terminar cada prueba.
+ * Volumen configurable con -Dplanes.escala (filas de lotes/liquidaciones; el resto es proporcional).
+ */
+@SpringBootTest(properties = "tracking.ingesta.habilitada=false")
+@Transactional
+class PlanesConsultaTests {
+
+    private static final String ESQUEMA = "planes_consulta";
+    private static final int ESCALA = Integer.getInteger("planes.escala", 200_000);
+
+    private static final List<String> TABLAS = List.of(
+            "lotes", "asignacion_camion", "asignacion_evento", "pesajes", "transportista", "invitacion_cooperativa",
+            "liquidacion", "notificaciones", "lote_concentrado_relacion", "auditoria");
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @BeforeEach
+    void sembrar() {
+        jdbcTemplate.execute("CREATE SCHEMA " + ESQUEMA);
+        for (String tabla : TABLAS) {
+            jdbcTemplate.execute("CREATE TABLE %s.%s (LIKE public.%s INCLUDING DEFAULTS INCLUDING INDEXES)"
+                    .formatted(ESQUEMA, tabla, tabla));
+            // Sin NOT NULL para sembrar solo las columnas que intervienen en las consultas
+            jdbcTemplate.queryForList("""
+                            SELECT column_name FROM information_schema.columns
+                            WHERE table_schema = ? AND table_name = ? AND is_nullable = 'NO' AND column_name <> 'id'
+                            """, String.class, ESQUEMA, tabla)
+                    .forEach(columna -> jdbcTemplate.execute("ALTER TABLE %s.%s ALTER COLUMN %s DROP NOT NULL"
+                            .formatted(ESQUEMA, tabla, columna)));
+        }
+        jdbcTemplate.execute("SET LOCAL search_path TO " + ESQUEMA + ", public");
+
+        jdbcTemplate.update("""
+                INSERT INTO lotes (id, minas_id, estado, tipo_operacion, tipo_mineral, camiones_solicitados, fecha_creacion)
+                SELECT g, g %% 5000 + 1,
+                       (ARRAY['Pendiente de aprobación cooperativa', 'En Transporte', 'Procesado',
+                              'Vendido a comercializadora', 'Rechazado'])[g %% 5 + 1],
+                       CASE WHEN g %% 2 = 0 THEN 'procesamiento_planta' ELSE 'venta_directa' END,
+                       'complejo', 1, timestamp '2024-01-01' + g * interval '1 minute'
+                FROM generate_series(1, %d) g
+                """.formatted(ESCALA));
+        jdbcTemplate.update("""
+                INSERT INTO asignacion_camion (id, lotes_id, transportista_id, numero_camion, estado)
+                SELECT g, g %% %d + 1, g %% 10000 + 1, 1,
+                       CASE WHEN g %% 50 = 0 THEN 'En camino a la mina' ELSE 'Completado' END
+                FROM generate_series(1, %d) g
+                """.formatted(ESCALA, ESCALA * 2));
+        jdbcTemplate.update("""
+                INSERT INTO asignacion_evento (id, asignacion_camion_id, tipo_evento, fecha_registro, lat, lng, datos)
+                SELECT g, g %% %d + 1,
+                       (ARRAY['inicio_viaje', 'pesaje_origen', 'pesaje_destino'])[g %% 3 + 1],
+                       timestamp '2024-01-01' + g * interval '1 minute',
+                       CASE WHEN g %% 10 <> 0 THEN -19.58 END, CASE WHEN g %% 10 <> 0 THEN -65.75 END, '{}'
+                FROM generate_series(1, %d) g
+                """.formatted(ESCALA * 2, ESCALA * 4));
+        jdbcTemplate.update("""
+                INSERT INTO pesajes (id, asignacion_camion_id, tipo_pesaje, peso_bruto, peso_tara)
+                SELECT g, g %% %d + 1, 'cooperativa', 30000, 12000
+                FROM generate_series(1, %d) g
+                """.formatted(ESCALA * 2, ESCALA * 2));
+        jdbcTemplate.update("""
+                INSERT INTO transportista (id, invitacion_transportista_id, estado, calificacion_promedio, viajes_completados)
+                SELECT g, g, 'aprobado', (g % 500) / 100.0, g % 100
+                FROM generate_series(1, 10000) g
+                """);
+        jdbcTemplate.update("""
+                INSERT INTO invitacion_cooperativa (id, cooperativa_id, invitacion_transportista_id)
+                SELECT g, g % 200 + 1, g
+                FROM generate_series(1, 10000) g
+                """);
+        jdbcTemplate.update("""
+                INSERT INTO liquidacion (id, socio_id, comercializadora_id, tipo_liquidacion, estado, created_at, updated_at)
+                SELECT g, g %% 2000 + 1, g %% 50 + 1,
+                       CASE WHEN g %% 3 = 0 THEN 'venta_concentrado' ELSE 'servicio_toll' END,
+                       (ARRAY['pendiente_aprobacion', 'aprobado', 'pagado'])[g %% 3 + 1],
+                       timestamp '2024-01-01' + g * interval '1 minute',
+                       timestamp '2024-01-01' + g * interval '1 minute'
+                FROM generate_series(1, %d) g
+                """.formatted(ESCALA));
+        jdbcTemplate.update("""
+                INSERT INTO notificaciones (id, usuarios_id, tipo, titulo, mensaje, leido, fecha_creacion, updated_at)
+                SELECT g, g %% 5000 + 1, 'info', 'Notificación', 'Mensaje', g %% 10 <> 0,
+                       timestamp '2024-01-01' + g * interval '1 minute',
+                       timestamp '2024-01-01' + g * interval '1 minute'
+                FROM generate_series(1, %d) g
+                """.formatted(ESCALA * 2));
+        jdbcTemplate.update("""
+                INSERT INTO lote_concentrado_relacion (id, lote_complejo_id, concentrado_id, peso_entrada)
+                SELECT g, g %% %d + 1, g %% %d + 1, 1000
+                FROM generate_series(1, %d) g
+                """.formatted(ESCALA, ESCALA / 2, ESCALA));
+        jdbcTemplate.update("""
+                INSERT INTO auditoria (id, tabla_afectada, accion, fecha_operacion)
+                SELECT g, 'lotes', 'UPDATE', timestamp '2024-01-01' + g * interval '1 minute'
+                FROM generate_series(1, %d) g
+                """.formatted(ESCALA * 2));
+
+        TABLAS.forEach(tabla -> jdbcTemplate.execute("ANALYZE " + tabla));
+    }
+
+    @Test
+    void lotesPorMinasConFiltros() {
+        // LotesRepository.findByMinasIdInWithFilters (sin filtros opcionales), primera página
+        assertUsaIndice("lotes", """
+                SELECT * FROM lotes
+                WHERE minas_id = ANY(CAST('{11,12,13}' AS INTEGER[]))
+                AND (CAST(NULL AS TEXT) IS NULL OR estado = CAST(NULL AS TEXT))
+                AND (CAST(NULL AS TIMESTAMP) IS NULL OR fecha_creacion >= CAST(NULL AS TIMESTAMP))
+                AND (CAST(NULL AS INTEGER) IS NULL OR minas_id = CAST(NULL AS INTEGER))
+                ORDER BY fecha_creacion DESC
+                LIMIT 20
+                """);
+    }
+
+    @Test
+    void transportistasDisponiblesPorCooperativa() {
+        // TransportistaRepository.findDisponiblesByCooperativa
+        String sql = """
+                SELECT t.* FROM transportista t
+                WHERE t.estado = 'aprobado'
+                AND EXISTS (
+                    SELECT 1 FROM invitacion_cooperativa ic
+                    WHERE ic.invitacion_transportista_id = t.invitacion_transportista_id
+                    AND ic.cooperativa_id = 7)
+                AND NOT EXISTS (
+                    SELECT 1 FROM asignacion_camion ac
+                    WHERE ac.transportista_id = t.id
+                    AND ac.estado IN ('Esperando iniciar', 'En camino a la mina', 'Esperando carguío',
+                                      'En camino balanza cooperativa', 'En camino balanza destino',
+                                      'En camino almacén destino', 'Descargando'))
+                ORDER BY t.calificacion_promedio DESC, t.viajes_completados DESC
+                """;
+        assertUsaIndice("invitacion_cooperativa", sql);
+        assertUsaIndice("asignacion_camion", sql);
+    }
+
+    @Test
+    void asignacionesYPesajesDeLote() {
+        assertUsaIndice("asignacion_camion", "SELECT * FROM asignacion_camion WHERE lotes_id = 123");
+        assertUsaIndice("pesajes", "SELECT * FROM pesajes WHERE asignacion_camion_id = 456");
+    }
+
+    @Test
+    void eventosDeViajes() {
+        // EventosViajeBl.ultimasUbicaciones
+        assertUsaIndice("asignacion_evento", """
+                SELECT DISTINCT ON (e.asignacion_camion_id) e.* FROM asignacion_evento e
+                WHERE e.asignacion_camion_id IN (11, 12, 13) AND e.lat IS NOT NULL AND e.lng IS NOT NULL
+                ORDER BY e.asignacion_camion_id, e.fecha_registro DESC, e.id DESC
+                """);
+        // EventosViajeBl.pesajesPorAsignacion
+        assertUsaIndice("asignacion_evento", """
+                SELECT * FROM asignacion_evento
+                WHERE asignacion_camion_id IN (11, 12, 13) AND tipo_evento IN ('pesaje_origen', 'pesaje_destino')
+                ORDER BY fecha_registro, id
+                """);
+    }
+
+    @Test
+    void liquidacionesPorSocioYComercializadora() {
+        // LiquidacionRepositoryCustomImpl.buscarPagina (size + 1 filas, orden created_at DESC, id DESC)
+        assertUsaIndice("liquidacion", """
+                SELECT * FROM liquidacion
+                WHERE socio_id = 15
+                ORDER BY created_at DESC, id DESC
+                LIMIT 21
+                """);
+        assertUsaIndice("liquidacion", """
+                SELECT * FROM liquidacion
+                WHERE comercializadora_id = 3 AND estado = 'pagado'
+                ORDER BY created_at DESC, id DESC
+                LIMIT 21
+                """);
+    }
+
+    @Test
+    void bandejaDeNotificaciones() {
+        // NotificacionBl.obtenerNotificacionesPaginadas en modo keyset y contador de no leídas
+        assertUsaIndice("notificaciones", """
+                SELECT * FROM notificaciones
+                WHERE usuarios_id = 42
+                AND (fecha_creacion < timestamp '2024-06-01'
+                     OR (fecha_creacion = timestamp '2024-06-01' AND id < 100000))
+                ORDER BY fecha_creacion DESC, id DESC
+                LIMIT 21
+                """);
+        assertUsaIndice("notificaciones",
+                "SELECT count(*) FROM notificaciones WHERE usuarios_id = 42 AND leido = false");
+    }
+
+    @Test
+    void relacionesLoteConcentrado() {
+        assertUsaIndice("lote_concentrado_relacion",
+                "SELECT * FROM lote_concentrado_relacion WHERE concentrado_id = 77");
+        assertUsaIndice("lote_concentrado_relacion",
+                "SELECT * FROM lote_concentrado_relacion WHERE lote_complejo_id = 88");
+    }
+
+    @Test
+    void auditoriaPorRangoDeFechas() {
+        assertUsaIndice("auditoria", """
+                SELECT * FROM auditoria
+                WHERE fecha_operacion BETWEEN timestamp '2024-02-01' AND timestamp '2024-02-02'
+                ORDER BY fecha_operacion DESC
+                LIMIT 50
+                """);
+    }
+
+    // ==================== MÉTODOS AUXILIARES ====================
+
+    /**
+     * Falla si el plan lee la tabla con Seq Scan o si no usa ninguno de sus índices secundarios
+     */
+    private void assertUsaIndice(String tabla, String sql) {
+        String plan = jdbcTemplate.queryForObject("EXPLAIN (FORMAT JSON) " + sql, String.class);
+
+        List<JsonNode> nodos = new ArrayList<>();
+        try {
+            recolectarNodos(objectMapper.readTree(plan).get(0).get("Plan"), nodos);
+        } catch (Exception e) {
+            throw new IllegalStateException("Plan no legible: " + plan, e);
+        }
+
+        Set<String> indices = new HashSet<>(jdbcTemplate.queryForList(
+                "SELECT indexname FROM pg_indexes WHERE schemaname = ? AND tablename = ? AND indexname NOT LIKE '%pkey'",
+                String.class, ESQUEMA, tabla));
+
+        boolean lecturaSecuencial = nodos.stream().anyMatch(nodo ->
+                "Seq Scan".equals(nodo.path("Node Type").asText())
+                        && tabla.equals(nodo.path("Relation Name").asText()));
+        boolean usaIndice = nodos.stream().anyMatch(nodo -> indices.contains(nodo.path("Index Name").asText()));
+
+        assertFalse(lecturaSecuencial, () -> "Seq Scan sobre " + tabla + ":\n" + plan);
+        assertTrue(usaIndice, () -> "Ningún índice de " + tabla + " en el plan:\n" + plan);
+    }
+
+    private void recolectarNodos(JsonNode nodo, List<JsonNode> nodos) {
+        nodos.add(nodo);
+        nodo.path("Plans").forEach(hijo -> recolectarNodos(hijo, nodos));
+    }
+}
@@ -0,0 +1,95 @@
+package ucb.edu.bo.sumajflow.utils;
+
+import org.junit.jupiter.api.Test;
+import ucb.edu.bo.sumajflow.dto.tracking.UbicacionDto;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class GeometryUtilsTests {
+
+    private static final double TOLERANCIA_METROS = 10;
+
+    @Test
+    void douglasPeuckerReduceUnaRectaASusExtremos() {
+        List<UbicacionDto> recta = recta(20);
+
+        assertEquals(List.of(recta.getFirst(), recta.getLast()),
+                GeometryUtils.simplificarDouglasPeucker(recta, TOLERANCIA_METROS));
+    }
+
+    @Test
+    void visvalingamReduceUnaRectaASusExtremos() {
+        List<UbicacionDto> recta = recta(20);
+
+        assertEquals(List.of(recta.getFirst(), recta.getLast()),
+                GeometryUtils.simplificarVisvalingam(recta, TOLERANCIA_METROS));
+    }
+
+    @Test
+    void zigzagMayorQueLaToleranciaSeConserva() {
+        // Desvíos de ~110 m, muy por encima de la tolerancia
+        List<UbicacionDto> zigzag = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            zigzag.add(punto(-19.58 + (i % 2) * 0.001, -65.75 + i * 0.001));
+        }
+
+        assertEquals(zigzag, GeometryUtils.simplificarDouglasPeucker(zigzag, TOLERANCIA_METROS));
+        assertEquals(zigzag, GeometryUtils.simplificarVisvalingam(zigzag, TOLERANCIA_METROS));
+    }
+
+    @Test
+    void toleranciaCeroConservaTodosLosPuntos() {
+        List<UbicacionDto> recta = recta(20);
+
+        assertEquals(recta, GeometryUtils.simplificarDouglasPeucker(recta, 0));
+        assertEquals(recta, GeometryUtils.simplificarVisvalingam(recta, 0));
+    }
+
+    @Test
+    void trayectoriasVaciasOUnicoPuntoNoCambian() {
+        List<UbicacionDto> vacia = List.of();
+        List<UbicacionDto> unico = List.of(punto(-19.58, -65.75));
+
+        assertEquals(vacia, GeometryUtils.simplificarDouglasPeucker(vacia, TOLERANCIA_METROS));
+        assertEquals(vacia, GeometryUtils.simplificarVisvalingam(vacia, TOLERANCIA_METROS));
+        assertEquals(unico, GeometryUtils.simplificarDouglasPeucker(unico, TOLERANCIA_METROS));
+        assertEquals(unico, GeometryUtils.simplificarVisvalingam(unico, TOLERANCIA_METROS));
+        assertEquals("", GeometryUtils.codificarPolyline(vacia));
+    }
+
+    @Test
+    void polylineCoincideConElEjemploDeGoogle() {
+        // Ejemplo de la documentación de Encoded Polyline Algorithm Format
+        List<UbicacionDto> puntos = List.of(
+                punto(38.5, -120.2),
+                punto(40.7, -120.95),
+                punto(43.252, -126.453));
+
+        assertEquals("_p~iF~ps|U_ulLnnqC_mqNvxq`@", GeometryUtils.codificarPolyline(puntos));
+    }
+
+    @Test
+    void polylineDeUnPunto() {
+        assertEquals("_p~iF~ps|U", GeometryUtils.codificarPolyline(List.of(punto(38.5, -120.2))));
+    }
+
+    // ==================== MÉTODOS PRIVADOS ====================
+
+    /**
+     * Puntos sobre un mismo paralelo, ~100 m entre sí
+     */
+    private static List<UbicacionDto> recta(int cantidad) {
+        List<UbicacionDto> puntos = new ArrayList<>();
+        for (int i = 0; i < cantidad; i++) {
+            puntos.add(punto(-19.58, -65.75 + i * 0.001));
+        }
+        return puntos;
+    }
+
+    private static UbicacionDto punto(double lat, double lng) {
+        return UbicacionDto.builder().lat(lat).lng(lng).build();
+    }
+}
@@ -0,0 +1,73 @@
+package ucb.edu.bo.sumajflow.utils;
+
+import jakarta.servlet.ServletException;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Costo de {@link JwtAuthenticationFilter} por petición autenticada.
+ * tamanoCache = 0 mide la verificación completa (HMAC + JSON) en cada petición; 10000 mide el camino
+ * habitual, con el token ya verificado en la caché de {@link JwtUtil}.
+ * <p>
+ * Ejecutar: {@code ./mvnw test-compile} y luego el {@code main} de esta clase desde el IDE
+ * (o {@code java -cp target/test-classes:<classpath de test> ...JwtAuthenticationFilterBenchmark}).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JwtAuthenticationFilterBenchmark {
+
+    @Param({"0", "10000"})
+    private long tamanoCache;
+
+    private JwtAuthenticationFilter filtro;
+    private MockHttpServletRequest request;
+
+    @Setup
+    public void preparar() {
+        JwtUtil jwtUtil = new JwtUtil();
+        ReflectionTestUtils.setField(jwtUtil, "secret", "clave-de-benchmark-con-al-menos-32-bytes!!");
+        ReflectionTestUtils.setField(jwtUtil, "expiration", TimeUnit.HOURS.toMillis(1));
+        ReflectionTestUtils.setField(jwtUtil, "refreshExpiration", TimeUnit.DAYS.toMillis(1));
+        ReflectionTestUtils.setField(jwtUtil, "issuer", "sumajflow-api");
+        ReflectionTestUtils.setField(jwtUtil, "tamanoMaximoCache", tamanoCache);
+        jwtUtil.iniciar();
+
+        filtro = new JwtAuthenticationFilter(jwtUtil);
+
+        String token = jwtUtil.generateAccessToken(42, "transportista@sumajflow.test", "transportista", true);
+        request = new MockHttpServletRequest("POST", "/tracking/ubicacion");
+        request.addHeader("Authorization", "Bearer " + token);
+    }
+
+    @Benchmark
+    public Object filtrarPeticionAutenticada() throws ServletException, IOException {
+        try {
+            filtro.doFilter(request, new MockHttpServletResponse(), new MockFilterChain());
+            return SecurityContextHolder.getContext().getAuthentication();
+        } finally {
+            SecurityContextHolder.clearContext();
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options opciones = new OptionsBuilder()
+                .include(JwtAuthenticationFilterBenchmark.class.getSimpleName())
+                .build();
+        new Runner(opciones).run();
+    }
+}